@@ -0,0 +1,30 @@
+package project.signature.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Класс BenchmarkRunner запускает бенчмарки JMH с профилировщиком сборщика мусора,
+ * чтобы вместе со временем выполнения выводилась скорость выделения памяти ({@code gc.alloc.rate.norm}).
+ * Запуск: {@code mvn -Pjmh test-compile exec:exec -Djmh.args="HeaderMatchBenchmark"}.
+ */
+public class BenchmarkRunner {
+
+    /**
+     * Точка входа.
+     *
+     * @param args Регулярное выражение для выбора бенчмарков (по умолчанию — все).
+     * @throws RunnerException Если произошла ошибка при выполнении бенчмарков.
+     */
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : ".*")
+                .exclude(BenchmarkRunner.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,160 @@
+package project.signature.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import project.signature.DirScanner;
+import project.signature.ScanSession;
+import project.signature.ScanSummary;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк полного обхода сгенерированных деревьев директорий разной формы.
+ * Каждый десятый файл начинается с сигнатуры "MZ".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DirectoryWalkBenchmark {
+
+    /**
+     * Форма дерева директорий.
+     */
+    public enum Shape {
+        /**
+         * Одна директория с большим количеством файлов.
+         */
+        WIDE,
+        /**
+         * Глубокая цепочка вложенных директорий с несколькими файлами на уровне.
+         */
+        DEEP,
+        /**
+         * Много директорий с множеством маленьких файлов.
+         */
+        SMALL_FILES,
+        /**
+         * Несколько больших (разреженных) файлов.
+         */
+        FEW_HUGE
+    }
+
+    @Param({"WIDE", "DEEP", "SMALL_FILES", "FEW_HUGE"})
+    public Shape shape;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private Path root;
+
+    @Setup
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("walk-bench");
+        switch (shape) {
+            case WIDE -> createFiles(root, 5000, 64);
+            case DEEP -> {
+                Path dir = root;
+                for (int depth = 0; depth < 200; depth++) {
+                    createFiles(dir, 5, 64);
+                    dir = Files.createDirectory(dir.resolve("d" + depth));
+                }
+            }
+            case SMALL_FILES -> {
+                for (int i = 0; i < 50; i++) {
+                    createFiles(Files.createDirectory(root.resolve("d" + i)), 200, 16);
+                }
+            }
+            case FEW_HUGE -> {
+                for (int i = 0; i < 4; i++) {
+                    try (RandomAccessFile file = new RandomAccessFile(root.resolve("huge" + i).toFile(), "rw")) {
+                        file.write(i % 2 == 0 ? new byte[]{'M', 'Z'} : new byte[]{'P', 'K'});
+                        file.setLength(256L * 1024 * 1024);
+                    }
+                }
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Обход через {@link ScanSession} с публикацией найденных файлов.
+     *
+     * @param blackhole Получатель найденных файлов.
+     * @return Итоги сканирования.
+     */
+    @Benchmark
+    public ScanSummary scanSession(Blackhole blackhole) {
+        ScanSession session = new ScanSession(root.toFile());
+        session.setParallelism(parallelism);
+        session.setHitListener(blackhole::consume);
+        return session.run();
+    }
+
+    /**
+     * Статический {@link DirScanner#analyzeDirectory(java.io.File)} с текстовыми метаданными
+     * (последовательный обход, параметр {@code parallelism} не учитывается).
+     *
+     * @return Количество найденных файлов.
+     */
+    @Benchmark
+    public int analyzeDirectory() {
+        DirScanner.resetToZeroCnt();
+        DirScanner.getMetadata().clear();
+        DirScanner.analyzeDirectory(root.toFile());
+        return DirScanner.getCnt();
+    }
+
+    /**
+     * Создает файлы в директории; каждый десятый начинается с "MZ".
+     *
+     * @param dir   Директория.
+     * @param count Количество файлов.
+     * @param size  Размер файла в байтах.
+     * @throws IOException Если произошла ошибка при создании файлов.
+     */
+    private static void createFiles(Path dir, int count, int size) throws IOException {
+        byte[] content = new byte[size];
+        for (int i = 0; i < count; i++) {
+            content[0] = i % 10 == 0 ? (byte) 'M' : (byte) 'T';
+            content[1] = i % 10 == 0 ? (byte) 'Z' : (byte) 'X';
+            Files.write(dir.resolve("f" + i + ".bin"), content);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package project.signature.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import project.signature.DirScanner;
+import project.signature.FileInspector;
+import project.signature.ScanHit;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк проверки одного файла и сбора его метаданных.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileInspectorBenchmark {
+
+    private Path directory;
+    private File executable;
+    private File text;
+    private final FileInspector inspector = new FileInspector(false, null);
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("inspector-bench");
+        executable = Files.write(directory.resolve("a.exe"), new byte[]{'M', 'Z', (byte) 0x90, 0}).toFile();
+        text = Files.write(directory.resolve("b.txt"), "plain text".getBytes()).toFile();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(executable.toPath());
+        Files.delete(text.toPath());
+        Files.delete(directory);
+        DirScanner.getMetadata().clear();
+        DirScanner.resetToZeroCnt();
+    }
+
+    /**
+     * Проверка файла с совпадающей сигнатурой.
+     *
+     * @return Запись о найденном файле.
+     * @throws IOException Если произошла ошибка при чтении файла.
+     */
+    @Benchmark
+    public ScanHit inspectHit() throws IOException {
+        return inspector.inspect(executable);
+    }
+
+    /**
+     * Проверка файла без совпадений.
+     *
+     * @return {@code null}.
+     * @throws IOException Если произошла ошибка при чтении файла.
+     */
+    @Benchmark
+    public ScanHit inspectMiss() throws IOException {
+        return inspector.inspect(text);
+    }
+
+    /**
+     * Статический {@link DirScanner#analyzeFile(File)}: проверка и текстовые метаданные.
+     *
+     * @return Количество найденных файлов.
+     */
+    @Benchmark
+    public int analyzeFile() {
+        DirScanner.analyzeFile(executable);
+        DirScanner.getMetadata().clear();
+        return DirScanner.getCnt();
+    }
+
+    /**
+     * Сбор метаданных как в {@link DirScanner#displayInfo(File)}: атрибуты файла и текстовое описание.
+     *
+     * @return Текстовое описание файла.
+     * @throws IOException Если произошла ошибка при чтении атрибутов.
+     */
+    @Benchmark
+    public String displayInfo() throws IOException {
+        BasicFileAttributes attr = Files.readAttributes(executable.toPath(), BasicFileAttributes.class);
+        return ScanHit.of(executable.toPath(), attr, List.of("exe"), List.of()).describe();
+    }
+
+    /**
+     * Сбор метаданных без форматирования: только структурированная запись.
+     *
+     * @return Запись о найденном файле.
+     * @throws IOException Если произошла ошибка при чтении атрибутов.
+     */
+    @Benchmark
+    public ScanHit collectRecord() throws IOException {
+        BasicFileAttributes attr = Files.readAttributes(executable.toPath(), BasicFileAttributes.class);
+        return ScanHit.of(executable.toPath(), attr, List.of("exe"), List.of());
+    }
+}
@@ -0,0 +1,101 @@
+package project.signature.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import project.signature.SignatureMatcher;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк сопоставления заголовка файла с набором сигнатур.
+ * Сравнивает прежний способ (шестнадцатеричная строка через {@code String.format} и перебор
+ * значений {@code Signature.getExtensions()}) со скомпилированным {@link SignatureMatcher}
+ * при разном количестве сигнатур.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeaderMatchBenchmark {
+
+    /**
+     * Количество сигнатур в наборе.
+     */
+    @Param({"1", "100", "500"})
+    public int signatures;
+
+    /**
+     * Признак того, что заголовок совпадает с сигнатурой "exe".
+     */
+    @Param({"true", "false"})
+    public boolean hit;
+
+    private Map<String, String> extensions;
+    private SignatureMatcher matcher;
+    private byte[] header;
+    private final int[] ids = new int[16];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        extensions = new HashMap<>();
+        extensions.put("exe", "4D5A");
+        while (extensions.size() < signatures) {
+            int length = 2 + random.nextInt(7);
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < length; i++) {
+                hex.append(String.format("%02X", random.nextInt(256)));
+            }
+            extensions.put("type" + extensions.size(), hex.toString());
+        }
+        matcher = SignatureMatcher.compile(extensions, Map.of());
+        header = new byte[matcher.getHeaderLength()];
+        random.nextBytes(header);
+        header[0] = hit ? (byte) 'M' : (byte) 0xFE;
+        header[1] = hit ? (byte) 'Z' : (byte) 0xFE;
+    }
+
+    /**
+     * Прежний способ: два байта заголовка в строку и сравнение со всеми сигнатурами.
+     *
+     * @return Признак совпадения.
+     */
+    @Benchmark
+    public boolean legacyHexLookup() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2; i++) {
+            sb.append(String.format("%02X", header[i]));
+        }
+        String result = sb.toString();
+        for (String string : extensions.values()) {
+            if (string.equals(result)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Скомпилированное дерево: все совпадающие сигнатуры за один проход.
+     *
+     * @return Количество совпавших сигнатур.
+     */
+    @Benchmark
+    public int compiledTrieMatch() {
+        return matcher.match(header, header.length, ids);
+    }
+}
@@ -2,7 +2,9 @@ module project.signature {
     requires javafx.controls;
     requires javafx.fxml;
     requires java.desktop;
+    requires java.management;
     requires java.sql;
+    requires jdk.httpserver;
     requires jdk.jdi;
     requires org.apache.logging.log4j;
 
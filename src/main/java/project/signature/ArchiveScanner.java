@@ -0,0 +1,513 @@
+package project.signature;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Класс ArchiveScanner проверяет сигнатуры файлов внутри архивов ZIP (JAR), TAR и GZIP без распаковки на диск.
+ * Из каждого элемента архива читается только заголовок, необходимый для {@link SignatureMatcher};
+ * элементы, сами являющиеся архивами, проверяются рекурсивно до заданной глубины.
+ * <p>
+ * Объем распакованных данных и количество элементов одного архива ограничены, поэтому архивы-бомбы
+ * не могут занять неограниченное время или память: при превышении ограничения проверка прекращается
+ * и возвращаются найденные к этому моменту совпадения.
+ */
+public class ArchiveScanner {
+
+    /**
+     * Глубина вложенности архивов по умолчанию.
+     */
+    public static final int DEFAULT_MAX_DEPTH = 3;
+
+    /**
+     * Ограничение объема распакованных данных одного архива по умолчанию в байтах.
+     */
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    /**
+     * Ограничение количества элементов одного архива (с учетом вложенных) по умолчанию.
+     */
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+    /**
+     * Максимальное количество совпадений, сохраняемых для одного архива.
+     */
+    static final int MATCH_LIMIT = 16;
+
+    /**
+     * Длина заголовка, достаточная для распознавания архива (признак TAR находится на смещении 257).
+     */
+    static final int PROBE_LENGTH = 265;
+
+    /**
+     * Размер блока TAR.
+     */
+    private static final int TAR_BLOCK = 512;
+
+    /**
+     * Совпадение сигнатуры с элементом архива.
+     *
+     * @param name  Название сигнатуры.
+     * @param entry Путь элемента внутри архива; уровни вложенности разделяются {@code !/}.
+     */
+    public record Match(String name, String entry) {
+    }
+
+    /**
+     * Формат архива.
+     */
+    enum Format {
+        ZIP, GZIP, TAR
+    }
+
+    /**
+     * Превышено ограничение на объем данных или количество элементов.
+     */
+    private static final class LimitExceededException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        LimitExceededException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Набор сигнатур.
+     */
+    private final SignatureMatcher matcher;
+
+    /**
+     * Глубина вложенности архивов.
+     */
+    private final int maxDepth;
+
+    /**
+     * Ограничение объема распакованных данных в байтах.
+     */
+    private final long maxBytes;
+
+    /**
+     * Ограничение количества элементов.
+     */
+    private final int maxEntries;
+
+    /**
+     * Создает проверку архивов с текущим набором сигнатур {@link Signature#getMatcher()}
+     * и ограничениями по умолчанию.
+     *
+     * @param maxDepth Глубина вложенности архивов.
+     */
+    public ArchiveScanner(int maxDepth) {
+        this(Signature.getMatcher(), maxDepth, DEFAULT_MAX_BYTES, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Создает проверку архивов.
+     *
+     * @param matcher    Набор сигнатур.
+     * @param maxDepth   Глубина вложенности архивов (1 — только элементы самого архива).
+     * @param maxBytes   Ограничение объема распакованных данных одного архива в байтах.
+     * @param maxEntries Ограничение количества элементов одного архива.
+     * @throws IllegalArgumentException Если ограничения не положительны.
+     */
+    public ArchiveScanner(SignatureMatcher matcher, int maxDepth, long maxBytes, int maxEntries) {
+        if (maxDepth < 1 || maxBytes < 1 || maxEntries < 1) {
+            throw new IllegalArgumentException("Archive limits must be positive");
+        }
+        this.matcher = matcher;
+        this.maxDepth = maxDepth;
+        this.maxBytes = maxBytes;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Определяет формат архива по заголовку файла.
+     *
+     * @param header Заголовок файла.
+     * @param length Количество прочитанных байт заголовка.
+     * @return Формат архива или {@code null}, если заголовок не принадлежит поддерживаемому архиву.
+     */
+    static Format detect(byte[] header, int length) {
+        if (length >= 4 && header[0] == 'P' && header[1] == 'K' && header[2] == 3 && header[3] == 4) {
+            return Format.ZIP;
+        }
+        if (length >= 2 && (header[0] & 0xFF) == 0x1F && (header[1] & 0xFF) == 0x8B) {
+            return Format.GZIP;
+        }
+        if (length >= 262 && header[257] == 'u' && header[258] == 's' && header[259] == 't'
+                && header[260] == 'a' && header[261] == 'r') {
+            return Format.TAR;
+        }
+        return null;
+    }
+
+    /**
+     * Проверяет элементы архива.
+     *
+     * @param path   Путь к архиву.
+     * @param format Формат архива (см. {@link #detect(byte[], int)}).
+     * @return Не более {@link #MATCH_LIMIT} совпадений в порядке элементов архива.
+     * @throws IOException Если архив не удалось открыть.
+     */
+    public List<Match> scan(Path path, Format format) throws IOException {
+        Scan scan = new Scan();
+        try {
+            if (format == Format.ZIP) {
+                scan.zipFile(path);
+            } else {
+                try (InputStream in = Files.newInputStream(path)) {
+                    scan.stream(format, "", stripCompression(path.getFileName().toString()), in, 1);
+                }
+            }
+        } catch (LimitExceededException e) {
+            ScanLog.events.debug("Archive limits exceeded, the check is stopped: {} {}", path, e.getMessage());
+        } catch (IOException e) {
+            if (scan.matches.isEmpty()) {
+                throw e;
+            }
+            // Поврежденный конец архива не отменяет уже найденные совпадения
+            ScanLog.events.debug("The archive is damaged: {} {}", path, e.toString());
+        }
+        return scan.matches;
+    }
+
+    /**
+     * Проверка одного архива с общими для всех уровней вложенности счетчиками.
+     */
+    private final class Scan {
+        private final List<Match> matches = new ArrayList<>();
+        private final int[] ids = new int[Math.max(4, matcher.size())];
+        private long bytes;
+        private int entries;
+
+        /**
+         * Проверяет архив ZIP на диске: элементы открываются по центральному каталогу,
+         * и из каждого распаковывается только заголовок.
+         *
+         * @param path Путь к архиву.
+         * @throws IOException Если архив не удалось прочитать.
+         */
+        void zipFile(Path path) throws IOException {
+            try (ZipFile zip = new ZipFile(path.toFile())) {
+                Enumeration<? extends ZipEntry> items = zip.entries();
+                while (items.hasMoreElements() && !full()) {
+                    ZipEntry item = items.nextElement();
+                    if (item.isDirectory()) {
+                        continue;
+                    }
+                    countEntry();
+                    try (InputStream in = zip.getInputStream(item)) {
+                        entry(item.getName(), counted(in), 1);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Проверяет архив, читаемый потоком.
+         *
+         * @param format Формат архива.
+         * @param prefix Путь архива внутри внешнего архива или пустая строка.
+         * @param name   Имя содержимого для GZIP.
+         * @param in     Поток архива.
+         * @param depth  Уровень вложенности элементов архива.
+         * @throws IOException Если архив не удалось прочитать или превышено ограничение.
+         */
+        void stream(Format format, String prefix, String name, InputStream in, int depth) throws IOException {
+            switch (format) {
+                case ZIP -> {
+                    ZipInputStream zip = new ZipInputStream(in);
+                    ZipEntry item;
+                    while (!full() && (item = zip.getNextEntry()) != null) {
+                        if (item.isDirectory()) {
+                            continue;
+                        }
+                        countEntry();
+                        InputStream entry = counted(zip);
+                        entry(prefix + item.getName(), entry, depth);
+                        // Остаток элемента распаковывается с учетом ограничения объема
+                        entry.skip(Long.MAX_VALUE);
+                    }
+                }
+                case GZIP -> {
+                    countEntry();
+                    entry(prefix + name, counted(new GZIPInputStream(in)), depth);
+                }
+                case TAR -> tar(prefix, in, depth);
+            }
+        }
+
+        /**
+         * Проверяет элементы архива TAR (форматы ustar и GNU с длинными именами).
+         *
+         * @param prefix Путь архива внутри внешнего архива или пустая строка.
+         * @param in     Поток архива.
+         * @param depth  Уровень вложенности элементов архива.
+         * @throws IOException Если архив не удалось прочитать или превышено ограничение.
+         */
+        void tar(String prefix, InputStream in, int depth) throws IOException {
+            byte[] header = new byte[TAR_BLOCK];
+            String longName = null;
+            while (!full() && in.readNBytes(header, 0, TAR_BLOCK) == TAR_BLOCK && header[0] != 0) {
+                long size = parseOctal(header, 124, 12);
+                long padded = (size + TAR_BLOCK - 1) / TAR_BLOCK * TAR_BLOCK;
+                byte type = header[156];
+                if (type == 'L') {
+                    // Длинное имя следующего элемента (расширение GNU)
+                    byte[] data = in.readNBytes((int) Math.min(size, 4096));
+                    longName = text(data, 0, data.length);
+                    in.skipNBytes(padded - data.length);
+                    continue;
+                }
+                String name = longName != null ? longName : tarName(header);
+                longName = null;
+                if (type == '0' || type == 0) {
+                    countEntry();
+                    BoundedInputStream entry = new BoundedInputStream(in, size);
+                    entry(prefix + name, entry, depth);
+                    in.skipNBytes(entry.remaining + padded - size);
+                } else {
+                    in.skipNBytes(padded);
+                }
+            }
+        }
+
+        /**
+         * Проверяет заголовок элемента и, если элемент сам является архивом, его содержимое.
+         *
+         * @param name  Путь элемента.
+         * @param in    Поток элемента.
+         * @param depth Уровень вложенности элемента.
+         * @throws IOException Если элемент не удалось прочитать или превышено ограничение.
+         */
+        void entry(String name, InputStream in, int depth) throws IOException {
+            byte[] probe = in.readNBytes(Math.max(PROBE_LENGTH, matcher.getHeaderLength()));
+            int found = matcher.match(probe, probe.length, ids);
+            for (int i = 0; i < Math.min(found, ids.length) && !full(); i++) {
+                matches.add(new Match(matcher.getName(ids[i]), name));
+            }
+            if (depth >= maxDepth) {
+                return;
+            }
+            Format nested = detect(probe, probe.length);
+            if (nested != null) {
+                InputStream rest = new SequenceInputStream(new ByteArrayInputStream(probe), in);
+                stream(nested, name + "!/", stripCompression(fileName(name)), rest, depth + 1);
+            }
+        }
+
+        /**
+         * Проверяет, достигнуто ли максимальное количество совпадений.
+         *
+         * @return {@code true}, если дальнейшая проверка не нужна.
+         */
+        boolean full() {
+            return matches.size() >= MATCH_LIMIT;
+        }
+
+        /**
+         * Учитывает элемент архива.
+         *
+         * @throws LimitExceededException Если превышено ограничение количества элементов.
+         */
+        void countEntry() throws LimitExceededException {
+            if (++entries > maxEntries) {
+                throw new LimitExceededException("more than " + maxEntries + " entries");
+            }
+        }
+
+        /**
+         * Учитывает распакованные байты.
+         *
+         * @param count Количество байт.
+         * @throws LimitExceededException Если превышено ограничение объема.
+         */
+        void countBytes(long count) throws LimitExceededException {
+            bytes += count;
+            if (bytes > maxBytes) {
+                throw new LimitExceededException("more than " + maxBytes + " decompressed bytes");
+            }
+        }
+
+        /**
+         * Оборачивает поток распакованных данных: прочитанные и пропущенные байты учитываются
+         * в ограничении объема, а закрытие не передается внешнему потоку.
+         *
+         * @param in Поток распакованных данных.
+         * @return Поток с учетом объема.
+         */
+        InputStream counted(InputStream in) {
+            return new FilterInputStream(in) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b >= 0) {
+                        countBytes(1);
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    int read = super.read(buffer, offset, length);
+                    if (read > 0) {
+                        countBytes(read);
+                    }
+                    return read;
+                }
+
+                @Override
+                public long skip(long count) throws IOException {
+                    // Пропуск распакованных данных выполняется чтением, чтобы учесть каждый байт
+                    byte[] buffer = new byte[8192];
+                    long skipped = 0;
+                    int read;
+                    while (skipped < count
+                            && (read = read(buffer, 0, (int) Math.min(buffer.length, count - skipped))) > 0) {
+                        skipped += read;
+                    }
+                    return skipped;
+                }
+
+                @Override
+                public void close() {
+                    // Внешний поток закрывает его владелец
+                }
+            };
+        }
+    }
+
+    /**
+     * Поток, ограниченный заданным количеством байт внешнего потока; закрытие не передается внешнему потоку.
+     */
+    private static final class BoundedInputStream extends InputStream {
+        private final InputStream in;
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long length) {
+            this.in = in;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+    }
+
+    /**
+     * Возвращает имя элемента TAR с учетом префикса ustar.
+     *
+     * @param header Заголовок элемента.
+     * @return Имя элемента.
+     */
+    private static String tarName(byte[] header) {
+        String name = text(header, 0, 100);
+        boolean ustar = header[257] == 'u' && header[258] == 's' && header[259] == 't';
+        String prefix = ustar ? text(header, 345, 155) : "";
+        return prefix.isEmpty() ? name : prefix + "/" + name;
+    }
+
+    /**
+     * Читает строку, завершенную нулевым байтом.
+     *
+     * @param bytes  Массив байт.
+     * @param offset Начало строки.
+     * @param length Максимальная длина строки.
+     * @return Строка.
+     */
+    private static String text(byte[] bytes, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && bytes[end] != 0) {
+            end++;
+        }
+        return new String(bytes, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Разбирает восьмеричное число из заголовка TAR.
+     *
+     * @param bytes  Заголовок.
+     * @param offset Начало поля.
+     * @param length Длина поля.
+     * @return Значение поля.
+     * @throws IOException Если поле содержит недопустимые символы.
+     */
+    private static long parseOctal(byte[] bytes, int offset, int length) throws IOException {
+        long value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            byte b = bytes[i];
+            if (b == 0 || b == ' ') {
+                if (value > 0) {
+                    break;
+                }
+                continue;
+            }
+            if (b < '0' || b > '7') {
+                throw new IOException("Invalid TAR header");
+            }
+            value = (value << 3) + (b - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Возвращает последний элемент пути внутри архива.
+     *
+     * @param name Путь элемента.
+     * @return Имя элемента.
+     */
+    private static String fileName(String name) {
+        int slash = name.lastIndexOf('/');
+        return slash < 0 ? name : name.substring(slash + 1);
+    }
+
+    /**
+     * Возвращает имя содержимого сжатого файла ("a.tar.gz" -> "a.tar", "a.tgz" -> "a.tar").
+     *
+     * @param name Имя сжатого файла.
+     * @return Имя содержимого.
+     */
+    static String stripCompression(String name) {
+        if (name.endsWith(".tgz")) {
+            return name.substring(0, name.length() - 4) + ".tar";
+        }
+        if (name.endsWith(".gz")) {
+            return name.substring(0, name.length() - 3);
+        }
+        return name;
+    }
+}
@@ -0,0 +1,148 @@
+package project.signature;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Класс DeepScanner выполняет глубокое сканирование: поиск сигнатур из {@link Signature}
+ * по всему содержимому файла, а не только в его заголовке.
+ * Файл отображается в память окнами фиксированного размера через {@link FileChannel#map},
+ * поэтому содержимое не копируется в кучу, а файлы размером в несколько гигабайт обрабатываются
+ * с постоянным потреблением памяти. Состояние {@link SignatureAutomaton} переносится между окнами,
+ * так что сигнатуры на границе окон не теряются.
+ */
+public class DeepScanner {
+
+    /**
+     * Размер окна отображения по умолчанию — 64 МБ.
+     */
+    public static final long DEFAULT_WINDOW_SIZE = 64L * 1024 * 1024;
+
+    /**
+     * Найденное вхождение сигнатуры.
+     *
+     * @param name   Название сигнатуры (например, "exe").
+     * @param offset Смещение начала вложенного объекта от начала файла в байтах.
+     */
+    public record Match(String name, long offset) {
+    }
+
+    /**
+     * Обработчик найденных вхождений сигнатур.
+     */
+    @FunctionalInterface
+    public interface MatchListener {
+        /**
+         * Вызывается для каждого найденного вхождения в порядке возрастания позиции конца сигнатуры.
+         *
+         * @param name   Название сигнатуры.
+         * @param offset Смещение начала вложенного объекта от начала файла.
+         * @param length Длина сигнатуры в байтах.
+         * @return {@code true}, чтобы продолжить сканирование, {@code false}, чтобы остановить его.
+         */
+        boolean onMatch(String name, long offset, int length);
+    }
+
+    /**
+     * Автомат, по которому выполняется поиск.
+     */
+    private final SignatureAutomaton automaton;
+
+    /**
+     * Размер окна отображения файла в память.
+     */
+    private final long windowSize;
+
+    /**
+     * Создает сканер по текущему набору сигнатур {@link Signature#getAutomaton()}.
+     */
+    public DeepScanner() {
+        this(Signature.getAutomaton(), DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Создает сканер с заданным автоматом и размером окна.
+     *
+     * @param automaton  Автомат сигнатур.
+     * @param windowSize Размер окна отображения в байтах.
+     * @throws IllegalArgumentException Если размер окна не положителен или превышает {@link Integer#MAX_VALUE}.
+     */
+    public DeepScanner(SignatureAutomaton automaton, long windowSize) {
+        if (windowSize < 1 || windowSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid window size: " + windowSize);
+        }
+        this.automaton = automaton;
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Сканирует файл и передает каждое найденное вхождение обработчику.
+     * Вхождения сигнатур со смещением (например, "ustar" на смещении 257) сообщаются относительно
+     * начала вложенного объекта; вхождения, для которых это начало оказалось бы до начала файла, пропускаются.
+     *
+     * @param file     Файл для сканирования.
+     * @param listener Обработчик найденных вхождений.
+     * @throws IOException Если произошла ошибка при чтении файла.
+     */
+    public void scan(Path file, MatchListener listener) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int state = SignatureAutomaton.ROOT;
+            for (long position = 0; position < size; position += windowSize) {
+                int length = (int) Math.min(windowSize, size - position);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                for (int i = 0; i < length; i++) {
+                    state = automaton.step(state, window.get(i));
+                    if (automaton.isMatch(state)
+                            && !report(state, position + i, listener)) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Сканирует файл и возвращает найденные вхождения.
+     *
+     * @param file  Файл для сканирования.
+     * @param limit Максимальное количество возвращаемых вхождений.
+     * @return Список найденных вхождений (не более {@code limit}).
+     * @throws IOException Если произошла ошибка при чтении файла.
+     */
+    public List<Match> scan(Path file, int limit) throws IOException {
+        List<Match> matches = new ArrayList<>();
+        if (limit > 0) {
+            scan(file, (name, offset, length) -> {
+                matches.add(new Match(name, offset));
+                return matches.size() < limit;
+            });
+        }
+        return matches;
+    }
+
+    /**
+     * Передает обработчику все сигнатуры, заканчивающиеся в данной позиции.
+     *
+     * @param state    Состояние автомата.
+     * @param end      Позиция последнего байта сигнатуры в файле.
+     * @param listener Обработчик найденных вхождений.
+     * @return {@code false}, если обработчик запросил остановку.
+     */
+    private boolean report(int state, long end, MatchListener listener) {
+        for (int k = automaton.outputStart(state); k < automaton.outputEnd(state); k++) {
+            int id = automaton.outputId(k);
+            int length = automaton.getLength(id);
+            long start = end - length + 1 - automaton.getOffset(id);
+            if (start >= 0 && !listener.onMatch(automaton.getName(id), start, length)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
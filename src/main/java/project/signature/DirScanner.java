@@ -1,24 +1,21 @@
 package project.signature;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
-
 /**
  * Класс DirScanner предназначен для сканирования директорий и поиска файлов с определенной сигнатурой.
  * Класс предоставляет методы для рекурсивного анализа директорий, анализа отдельных файлов,
  * сбора метаданных о найденных файлах и управления счетчиком найденных файлов.
+ * Состояние класса статическое и общее для всего приложения; для независимых и одновременных
+ * сканирований используется {@link ScanSession}.
  */
 public class DirScanner {
 
-    private static final Logger logger = LogManager.getLogger(DirScanner.class);
     /**
      * Строка, содержащая сообщение о результате последнего анализа.
      * По умолчанию: "Исполняемые файлы не найдены".
@@ -35,6 +32,22 @@ public class DirScanner {
      */
     private static final List<String> metadata = new ArrayList<>();
 
+    /**
+     * Признак глубокого сканирования: поиск сигнатур по всему содержимому файлов
+     * с помощью {@link DeepScanner}, если заголовок файла не совпал ни с одной сигнатурой.
+     */
+    private static volatile boolean deepScan;
+
+    /**
+     * Индекс результатов предыдущих сканирований; {@code null}, если каждый файл проверяется заново.
+     */
+    private static volatile ScanIndex index;
+
+    /**
+     * Правила отбора файлов и директорий; {@code null}, если обходится все дерево.
+     */
+    private static volatile ScanFilter filter;
+
     /**
      * Возвращает текущее значение счетчика найденных файлов.
      *
@@ -58,6 +71,64 @@ public class DirScanner {
         cnt = 0;
     }
 
+    /**
+     * Возвращает признак глубокого сканирования.
+     *
+     * @return {@code true}, если включен поиск сигнатур по всему содержимому файлов.
+     */
+    public static boolean isDeepScan() {
+        return deepScan;
+    }
+
+    /**
+     * Включает или выключает глубокое сканирование.
+     * В этом режиме файлы, заголовок которых не совпал с сигнатурами, дополнительно проверяются
+     * {@link DeepScanner} на наличие вложенных исполняемых файлов.
+     *
+     * @param enabled {@code true}, чтобы включить глубокое сканирование.
+     */
+    public static void setDeepScan(boolean enabled) {
+        deepScan = enabled;
+    }
+
+    /**
+     * Возвращает индекс результатов предыдущих сканирований.
+     *
+     * @return Индекс или {@code null}, если он не используется.
+     */
+    public static ScanIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Устанавливает индекс результатов предыдущих сканирований.
+     * Файлы, не изменившиеся с момента записи в индекс, не открываются повторно.
+     *
+     * @param scanIndex Индекс или {@code null}, чтобы проверять каждый файл заново.
+     */
+    public static void setIndex(ScanIndex scanIndex) {
+        index = scanIndex;
+    }
+
+    /**
+     * Возвращает правила отбора файлов и директорий.
+     *
+     * @return Правила или {@code null}, если они не используются.
+     */
+    public static ScanFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Устанавливает правила отбора файлов и директорий.
+     * Исключенные поддиректории не читаются, а исключенные файлы не открываются.
+     *
+     * @param scanFilter Правила или {@code null}, чтобы обходить все дерево.
+     */
+    public static void setFilter(ScanFilter scanFilter) {
+        filter = scanFilter;
+    }
+
     /**
      * Возвращает строку с результатом последнего анализа.
      *
@@ -78,111 +149,66 @@ public class DirScanner {
 
     /**
      * Рекурсивно анализирует указанную директорию и все ее поддиректории на наличие файлов с определенной сигнатурой.
-     * Для каждого найденного файла вызывается метод {@link #analyzeFile(File)}.
+     * Обход выполняется последовательно через {@link ScanSession} с текущими настройками класса;
+     * каждый найденный файл увеличивает счетчик {@link #cnt} и добавляется в метаданные.
      * Результат анализа сохраняется в поле {@link #answer}.
      *
      * @param directory Директория для анализа.
-     * @throws RuntimeException Если произошла ошибка во время анализа файла.
      */
     public static void analyzeDirectory(File directory) {
-        // Устанавливаем значение по умолчанию
-        setString("OK");
-
-        if (directory == null || !directory.exists() || !directory.isDirectory()) {
-            logger.error("The directory is incorrect");
-            setString("Директория некорректная");
-            return;
-        }
-
-        if (!directory.canRead()) {
-            logger.error("Insufficient permissions to read the directory: {}", directory.getAbsolutePath());
-            setString("Недостаточно прав для чтения");
-            return;
-        }
-
-        File[] files = directory.listFiles();
-        if (files == null || files.length == 0) {
-            setString("Пустая папка");
-            return;
-        }
-
-        for (File file : files) {
-            if (file.isFile()) {
-                try {
-                    analyzeFile(file);
-                } catch (RuntimeException e) {
-                    logger.error("Error analyzing the file: {}", file.getAbsolutePath(), e);
-                }
-            } else if (file.isDirectory()) {
-                analyzeDirectory(file);
-            }
-        }
+        ScanSession session = new ScanSession(directory);
+        session.setDeepScan(deepScan);
+        session.setIndex(index);
+        session.setFilter(filter);
+        session.setHitListener(hit -> {
+            addCnt();
+            addMetadata(hit.describe());
+        });
+        ScanSummary summary = session.run();
+        setString(summary.status().getMessage());
     }
 
     /**
-     * Анализирует указанный файл на предмет совпадения первых двух байт с известными сигнатурами.
+     * Анализирует указанный файл на предмет совпадения первых байт с известными сигнатурами.
      * Если сигнатура найдена, увеличивается счетчик {@link #cnt}, и информация о файле добавляется в метаданные.
      *
      * @param file Файл для анализа.
      */
     public static void analyzeFile(File file) {
         if (!file.canRead()) {
-            logger.warn("Access to the file is denied: {}", file.getAbsolutePath());
+            ScanLog.events.debug("Access to the file is denied: {}", file);
             return; // Пропускаем файл, к которому нет доступа
         }
 
-        try (FileInputStream input = new FileInputStream(file)) {
-            byte[] buffer = new byte[2];
-
-            if (input.read(buffer) != -1) {
-
-                String result = bytesToHex(buffer);
-                for (String string : Signature.getExtensions().values()) {
-                    if (string.equals(result)) {
-                        logger.info("The executable file was found: {}", file.getName());
-                        addCnt();
-                        displayInfo(file);
-                        break;
-                    }
-                }
+        try {
+            ScanHit hit = inspector().inspect(file);
+            if (hit != null) {
+                addCnt();
+                addMetadata(hit.describe());
             }
         } catch (IOException e) {
-            logger.error("Error reading the file: {}", file.getAbsolutePath(), e);
+            ScanLog.error("Error reading the file: {}", file, e);
         }
     }
 
     /**
-     * Собирает и добавляет метаданные указанного файла в список {@link #metadata}.
+     * Создает проверку файлов с текущими настройками класса.
      *
-     * @param file Файл, для которого необходимо собрать метаданные.
-     * @throws IOException Если произошла ошибка при чтении атрибутов файла.
+     * @return Проверка файлов.
      */
-    public static void displayInfo(File file) throws IOException {
-        BasicFileAttributes attr = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
-
-        String result = "→ Название файла -> " + file.getName() + "\n" +
-                "Полный путь -> " + file.getAbsolutePath() + "\n" +
-                "Дата создания -> " + attr.creationTime() + "\n" +
-                "Дата последнего использования -> " + attr.lastAccessTime() + "\n" +
-                "Дата последнего изменения -> " + attr.lastModifiedTime() + "\n" +
-                "Символическая ссылка -> " + attr.isSymbolicLink() + "\n" +
-                "Размер -> " + attr.size() + " байт" + "\n\n";
-        addMetadata(result);
+    static FileInspector inspector() {
+        return new FileInspector(deepScan, index);
     }
 
-
     /**
-     * Преобразует массив байт в шестнадцатеричную строку.
+     * Собирает и добавляет метаданные указанного файла в список {@link #metadata}.
      *
-     * @param bytes Массив байт для преобразования.
-     * @return Шестнадцатеричное представление массива байт.
+     * @param file Файл, для которого необходимо собрать метаданные.
+     * @throws IOException Если произошла ошибка при чтении атрибутов файла.
      */
-    private static String bytesToHex(byte[] bytes) {
-        StringBuilder sb = new StringBuilder();
-        for (byte b : bytes) {
-            sb.append(String.format("%02X", b));
-        }
-        return sb.toString();
+    public static void displayInfo(File file) throws IOException {
+        BasicFileAttributes attr = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        addMetadata(ScanHit.of(file.toPath(), attr, List.of(), List.of()).describe());
     }
 
     /**
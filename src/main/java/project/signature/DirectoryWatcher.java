@@ -0,0 +1,515 @@
+package project.signature;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Класс DirectoryWatcher — непрерывное наблюдение за директорией через {@link WatchService}.
+ * События создания и изменения файлов накапливаются и обрабатываются пакетом, когда в течение
+ * {@link #setDebounceMillis(long) интервала} новых событий нет (но не реже, чем раз в
+ * {@value #MAX_DELAY_FACTOR} интервалов при непрерывной записи). Проверяются только затронутые файлы;
+ * новые поддиректории и директории, для которых события были потеряны
+ * ({@link StandardWatchEventKinds#OVERFLOW}), сканируются заново целиком через {@link ScanSession}.
+ * Между событиями поток наблюдения ожидает без обращений к диску.
+ */
+public class DirectoryWatcher implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger(DirectoryWatcher.class);
+
+    /**
+     * Интервал ожидания новых событий по умолчанию в миллисекундах.
+     */
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 500;
+
+    /**
+     * Во сколько раз максимальная задержка обработки пакета больше интервала ожидания.
+     */
+    static final int MAX_DELAY_FACTOR = 10;
+
+    /**
+     * Номер для имени потока наблюдения.
+     */
+    private static final AtomicInteger threadNumber = new AtomicInteger();
+
+    /**
+     * Корневая директория наблюдения.
+     */
+    private final Path root;
+
+    /**
+     * Интервал ожидания новых событий в миллисекундах.
+     */
+    private long debounceMillis = DEFAULT_DEBOUNCE_MILLIS;
+
+    /**
+     * Признак глубокого сканирования.
+     */
+    private boolean deepScan;
+
+    /**
+     * Глубина проверки архивов; 0 — архивы не проверяются.
+     */
+    private int archiveDepth;
+
+    /**
+     * Признак проверки структуры заголовков найденных файлов.
+     */
+    private boolean verifyStructure;
+
+    /**
+     * Признак анализа энтропии найденных файлов.
+     */
+    private boolean analyzeEntropy;
+
+    /**
+     * Обработчик найденных файлов или {@code null}.
+     */
+    private Consumer<? super ScanHit> hitListener;
+
+    /**
+     * Служба наблюдения; создается при запуске.
+     */
+    private WatchService watchService;
+
+    /**
+     * Зарегистрированные директории по ключам наблюдения.
+     */
+    private final Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+
+    /**
+     * Проверка файлов; создается при запуске.
+     */
+    private FileInspector inspector;
+
+    /**
+     * Показатели проверки файлов по событиям; создаются при запуске.
+     */
+    private ScanMetrics metrics;
+
+    /**
+     * Правила отбора файлов и директорий или {@code null}.
+     */
+    private ScanFilter filter;
+
+    /**
+     * Правила отбора, скомпилированные для корня при запуске, или {@code null}, если правил нет.
+     */
+    private ScanFilter.Compiled rules;
+
+    /**
+     * Признак остановки наблюдения.
+     */
+    private volatile boolean closed;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder checkedFiles = new LongAdder();
+    private final LongAdder rescans = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * Создает наблюдение за директорией.
+     *
+     * @param root Корневая директория наблюдения.
+     */
+    public DirectoryWatcher(Path root) {
+        this.root = root;
+    }
+
+    /**
+     * Устанавливает интервал ожидания новых событий перед обработкой пакета.
+     *
+     * @param debounceMillis Интервал в миллисекундах.
+     * @throws IllegalArgumentException Если интервал отрицателен.
+     */
+    public void setDebounceMillis(long debounceMillis) {
+        checkNotStarted();
+        if (debounceMillis < 0) {
+            throw new IllegalArgumentException("Negative debounce interval: " + debounceMillis);
+        }
+        this.debounceMillis = debounceMillis;
+    }
+
+    /**
+     * Включает или выключает глубокое сканирование (см. {@link FileInspector}).
+     *
+     * @param deepScan {@code true}, чтобы искать вложенные сигнатуры.
+     */
+    public void setDeepScan(boolean deepScan) {
+        checkNotStarted();
+        this.deepScan = deepScan;
+    }
+
+    /**
+     * Устанавливает глубину проверки содержимого архивов (см. {@link ArchiveScanner}).
+     *
+     * @param archiveDepth Глубина вложенности архивов; 0 — архивы не проверяются.
+     * @throws IllegalArgumentException Если глубина отрицательна.
+     */
+    public void setArchiveDepth(int archiveDepth) {
+        checkNotStarted();
+        if (archiveDepth < 0) {
+            throw new IllegalArgumentException("Negative archive depth: " + archiveDepth);
+        }
+        this.archiveDepth = archiveDepth;
+    }
+
+    /**
+     * Включает или выключает проверку структуры заголовков найденных файлов (см. {@link StructureVerifier}).
+     * Файлы с поврежденным заголовком не публикуются.
+     *
+     * @param verifyStructure {@code true}, чтобы проверять структуру заголовков.
+     */
+    public void setVerifyStructure(boolean verifyStructure) {
+        checkNotStarted();
+        this.verifyStructure = verifyStructure;
+    }
+
+    /**
+     * Включает или выключает анализ энтропии найденных файлов (см. {@link EntropyAnalyzer}).
+     *
+     * @param analyzeEntropy {@code true}, чтобы анализировать энтропию.
+     */
+    public void setAnalyzeEntropy(boolean analyzeEntropy) {
+        checkNotStarted();
+        this.analyzeEntropy = analyzeEntropy;
+    }
+
+    /**
+     * Устанавливает обработчик, вызываемый для каждого найденного файла в потоке наблюдения,
+     * а при повторном сканировании с проверкой структуры — и в потоках проверки.
+     *
+     * @param hitListener Обработчик или {@code null}.
+     */
+    public void setHitListener(Consumer<? super ScanHit> hitListener) {
+        checkNotStarted();
+        this.hitListener = hitListener;
+    }
+
+    /**
+     * Устанавливает правила отбора. Исключенные директории не регистрируются для наблюдения,
+     * исключенные файлы не проверяются.
+     *
+     * @param filter Правила отбора или {@code null}.
+     */
+    public synchronized void setFilter(ScanFilter filter) {
+        checkNotStarted();
+        this.filter = filter;
+    }
+
+    /**
+     * Регистрирует корневую директорию и все поддиректории и запускает поток наблюдения.
+     * События, произошедшие после возврата из метода, будут обработаны.
+     *
+     * @throws IOException Если директорию не удалось зарегистрировать.
+     */
+    public synchronized void start() throws IOException {
+        checkNotStarted();
+        watchService = root.getFileSystem().newWatchService();
+        metrics = new ScanMetrics(root.toString());
+        inspector = new FileInspector(deepScan, archiveDepth, null, metrics);
+        rules = filter == null || filter.isEmpty() ? null : filter.compile(root);
+        try {
+            registerTree(root);
+        } catch (IOException e) {
+            watchService.close();
+            throw e;
+        }
+        Thread thread = new Thread(this::watch, "directory-watcher-" + threadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        thread.start();
+        logger.info("Watching {}: {} directories", root, directories.size());
+    }
+
+    /**
+     * Останавливает наблюдение. Накопленные, но не обработанные события отбрасываются.
+     *
+     * @throws IOException Если службу наблюдения не удалось закрыть.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    /**
+     * Возвращает количество обработанных пакетов событий.
+     *
+     * @return Количество пакетов.
+     */
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    /**
+     * Возвращает количество файлов, проверенных по событиям.
+     *
+     * @return Количество файлов.
+     */
+    public long getCheckedFileCount() {
+        return checkedFiles.sum();
+    }
+
+    /**
+     * Возвращает количество повторных сканирований поддиректорий.
+     *
+     * @return Количество сканирований.
+     */
+    public long getRescanCount() {
+        return rescans.sum();
+    }
+
+    /**
+     * Возвращает количество найденных файлов.
+     *
+     * @return Количество найденных файлов.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Цикл наблюдения: накапливает события и обрабатывает их пакетами.
+     */
+    private void watch() {
+        Set<Path> files = new LinkedHashSet<>();
+        Set<Path> subtrees = new LinkedHashSet<>();
+        long debounce = TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+        long firstEvent = 0;
+        long lastEvent = 0;
+        try {
+            while (!closed) {
+                WatchKey key;
+                if (files.isEmpty() && subtrees.isEmpty()) {
+                    key = watchService.take();
+                    firstEvent = System.nanoTime();
+                } else {
+                    long deadline = Math.min(lastEvent + debounce, firstEvent + debounce * MAX_DELAY_FACTOR);
+                    long wait = deadline - System.nanoTime();
+                    key = wait > 0 ? watchService.poll(wait, TimeUnit.NANOSECONDS) : null;
+                    if (key == null) {
+                        process(files, subtrees);
+                        files.clear();
+                        subtrees.clear();
+                        continue;
+                    }
+                }
+                lastEvent = System.nanoTime();
+                collect(key, files, subtrees);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Наблюдение остановлено методом close()
+        }
+        logger.info("Stopped watching {}: {} batches, {} files checked, {} rescans, {} hits",
+                root, getBatchCount(), getCheckedFileCount(), getRescanCount(), getHitCount());
+    }
+
+    /**
+     * Разбирает события ключа наблюдения на затронутые файлы и поддиректории для повторного сканирования.
+     *
+     * @param key      Ключ наблюдения с событиями.
+     * @param files    Затронутые файлы.
+     * @param subtrees Поддиректории для повторного сканирования.
+     */
+    private void collect(WatchKey key, Set<Path> files, Set<Path> subtrees) {
+        Path directory = directories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // События потеряны: директория будет просмотрена целиком
+                logger.warn("Watch events overflowed, rescanning {}", directory == null ? root : directory);
+                subtrees.add(directory == null ? root : directory);
+            } else if (directory != null && event.context() instanceof Path name) {
+                Path child = directory.resolve(name);
+                if (Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                    subtrees.add(child);
+                } else {
+                    files.add(child);
+                }
+            }
+        }
+        if (!key.reset()) {
+            directories.remove(key);
+        }
+    }
+
+    /**
+     * Обрабатывает пакет событий: сканирует поддиректории и проверяет остальные затронутые файлы.
+     *
+     * @param files    Затронутые файлы.
+     * @param subtrees Поддиректории для повторного сканирования.
+     */
+    private void process(Set<Path> files, Set<Path> subtrees) {
+        batches.increment();
+        for (Path subtree : subtrees) {
+            if (!isCovered(subtree.getParent(), subtrees)) {
+                rescan(subtree);
+            }
+        }
+        for (Path file : files) {
+            if (isCovered(file.getParent(), subtrees)) {
+                continue;
+            }
+            BasicFileAttributes attr;
+            try {
+                attr = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (IOException e) {
+                // Файл удален до обработки пакета
+                continue;
+            }
+            if (!attr.isRegularFile() || rules != null && !rules.acceptFile(file, attr, depth(file))) {
+                continue;
+            }
+            checkedFiles.increment();
+            try {
+                ScanHit hit = inspector.inspect(file, attr);
+                if (hit != null && verifyStructure && !hit.types().isEmpty()) {
+                    hit = StructureVerifier.confirm(hit, metrics);
+                }
+                if (hit != null && analyzeEntropy) {
+                    hit = EntropyAnalyzer.analyze(hit, metrics);
+                }
+                if (hit != null) {
+                    publish(hit);
+                }
+            } catch (IOException e) {
+                ScanLog.error("Error reading the file: {}", file.toFile(), e);
+            } catch (RuntimeException e) {
+                ScanLog.error("Error analyzing the file: {}", file.toFile(), e);
+            }
+        }
+        logger.debug("Watch batch processed: {} files, {} directories", files.size(), subtrees.size());
+    }
+
+    /**
+     * Проверяет, входит ли путь в одну из поддиректорий, которые будут просмотрены целиком.
+     *
+     * @param path     Путь или {@code null}.
+     * @param subtrees Поддиректории для повторного сканирования.
+     * @return {@code true}, если путь или один из его предков есть в {@code subtrees}.
+     */
+    private static boolean isCovered(Path path, Set<Path> subtrees) {
+        for (Path current = path; current != null; current = current.getParent()) {
+            if (subtrees.contains(current)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Регистрирует поддиректорию (новые вложенные директории тоже) и сканирует ее заново.
+     *
+     * @param subtree Поддиректория.
+     */
+    private void rescan(Path subtree) {
+        if (!Files.isDirectory(subtree, LinkOption.NOFOLLOW_LINKS)
+                || rules != null && !subtree.equals(root) && !rules.acceptDirectory(subtree, depth(subtree))) {
+            return;
+        }
+        rescans.increment();
+        try {
+            registerTree(subtree);
+        } catch (IOException e) {
+            ScanLog.error("Unable to watch the directory: {}", subtree.toFile(), e);
+        }
+        ScanSession session = new ScanSession(subtree.toFile());
+        session.setDeepScan(deepScan);
+        session.setArchiveDepth(archiveDepth);
+        session.setVerifyStructure(verifyStructure);
+        session.setAnalyzeEntropy(analyzeEntropy);
+        session.setRules(rules, depth(subtree));
+        session.setHitListener(this::publish);
+        try {
+            session.run();
+        } catch (RuntimeException e) {
+            // Ошибка в поддиректории не должна останавливать наблюдение
+            ScanLog.error("Error rescanning the directory: {}", subtree.toFile(), e);
+        }
+    }
+
+    /**
+     * Возвращает глубину пути относительно корня наблюдения.
+     *
+     * @param path Путь внутри корня.
+     * @return Количество элементов пути после корня.
+     */
+    private int depth(Path path) {
+        return path.equals(root) ? 0 : root.relativize(path).getNameCount();
+    }
+
+    /**
+     * Передает найденный файл обработчику.
+     *
+     * @param hit Найденный файл.
+     */
+    private void publish(ScanHit hit) {
+        hits.increment();
+        if (hitListener != null) {
+            hitListener.accept(hit);
+        }
+    }
+
+    /**
+     * Регистрирует директорию и все вложенные директории в службе наблюдения.
+     * Повторная регистрация директории возвращает прежний ключ.
+     *
+     * @param start Директория.
+     * @throws IOException Если директорию не удалось обойти.
+     */
+    private void registerTree(Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (rules != null && !dir.equals(start) && !rules.acceptDirectory(dir, depth(dir))) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                WatchKey key = dir.register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+                directories.put(key, dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                ScanLog.error("Unable to watch the directory: {}", file.toFile(), e);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Проверяет, что наблюдение еще не запущено.
+     *
+     * @throws IllegalStateException Если наблюдение уже запущено.
+     */
+    private void checkNotStarted() {
+        if (watchService != null) {
+            throw new IllegalStateException("The directory watcher has already been started");
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package project.signature;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Класс DuplicateFinder группирует найденные файлы по содержимому.
+ * Подписывается на одну или несколько {@link ScanSession} ({@link #subscribeTo(ScanSession)}) и получает
+ * найденные файлы в потоке издателя, а SHA-256 вычисляет в собственном пуле потоков, поэтому не замедляет обход.
+ * Файлы сначала группируются по размеру: хэш вычисляется только для файлов, размер которых совпал
+ * с размером другого найденного файла (или для всех, если включено {@link #setHashAll(boolean)}).
+ * Файл с уникальным размером заведомо не имеет копий среди найденных.
+ */
+public class DuplicateFinder implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(DuplicateFinder.class);
+
+    /**
+     * Размер буфера чтения при вычислении хэша.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Группа одинаковых файлов.
+     *
+     * @param sha256 SHA-256 содержимого в шестнадцатеричном формате или {@code null},
+     *               если размер файла уникален и хэш не вычислялся.
+     * @param size   Размер файлов в байтах.
+     * @param paths  Пути файлов группы.
+     */
+    public record DuplicateGroup(String sha256, long size, List<Path> paths) {
+    }
+
+    /**
+     * Найденные файлы одного размера.
+     */
+    private static final class SizeBucket {
+        private Path first;
+        private int count;
+    }
+
+    /**
+     * Пул потоков вычисления хэшей.
+     */
+    private final ExecutorService hashers;
+
+    /**
+     * Признак вычисления хэша всех найденных файлов.
+     */
+    private volatile boolean hashAll;
+
+    /**
+     * Найденные файлы по размерам.
+     */
+    private final Map<Long, SizeBucket> sizes = new ConcurrentHashMap<>();
+
+    /**
+     * Пути файлов по хэшу содержимого.
+     */
+    private final Map<String, List<Path>> digests = new ConcurrentHashMap<>();
+
+    /**
+     * Размеры файлов по хэшу содержимого.
+     */
+    private final Map<String, Long> digestSizes = new ConcurrentHashMap<>();
+
+    /**
+     * Количество активных подписок и незавершенных вычислений; изменяется под монитором объекта.
+     */
+    private int subscriptions;
+    private int pending;
+
+    private final AtomicInteger threadNumber = new AtomicInteger();
+    private final LongAdder hashedFiles = new LongAdder();
+    private final LongAdder hashedBytes = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * Создает группировку с пулом по количеству процессоров.
+     */
+    public DuplicateFinder() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Создает группировку с заданным количеством потоков вычисления хэшей.
+     *
+     * @param threads Количество потоков.
+     * @throws IllegalArgumentException Если {@code threads} меньше 1.
+     */
+    public DuplicateFinder(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of hashing threads must be positive: " + threads);
+        }
+        hashers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "sha256-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Включает вычисление хэша всех найденных файлов, а не только файлов с совпадающими размерами.
+     *
+     * @param hashAll {@code true}, чтобы вычислять хэш каждого файла.
+     */
+    public void setHashAll(boolean hashAll) {
+        this.hashAll = hashAll;
+    }
+
+    /**
+     * Подписывается на найденные файлы сессии. Подписка оформляется до запуска сессии.
+     *
+     * @param session Сессия сканирования.
+     */
+    public void subscribeTo(ScanSession session) {
+        synchronized (this) {
+            subscriptions++;
+        }
+        session.subscribe(new Flow.Subscriber<ScanHit>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ScanHit hit) {
+                add(hit.path(), hit.size());
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                logger.error("The scan was interrupted, duplicate groups may be incomplete", throwable);
+                finishSubscription();
+            }
+
+            @Override
+            public void onComplete() {
+                finishSubscription();
+            }
+        });
+    }
+
+    /**
+     * Добавляет найденный файл.
+     *
+     * @param path Путь к файлу.
+     * @param size Размер файла в байтах.
+     */
+    public void add(Path path, long size) {
+        if (hashAll) {
+            submit(path, size);
+            return;
+        }
+        SizeBucket bucket = sizes.computeIfAbsent(size, key -> new SizeBucket());
+        Path first = null;
+        synchronized (bucket) {
+            bucket.count++;
+            if (bucket.count == 1) {
+                bucket.first = path;
+                return;
+            }
+            if (bucket.count == 2) {
+                first = bucket.first;
+            }
+        }
+        // Размер совпал: вычисляются хэши первого файла этого размера и нового
+        if (first != null) {
+            submit(first, size);
+        }
+        submit(path, size);
+    }
+
+    /**
+     * Ожидает завершения всех подписок и вычислений и возвращает группы файлов.
+     *
+     * @return Группы, упорядоченные по убыванию количества копий, затем размера.
+     * @throws InterruptedException Если ожидание прервано.
+     */
+    public List<DuplicateGroup> await() throws InterruptedException {
+        synchronized (this) {
+            while (subscriptions > 0 || pending > 0) {
+                wait();
+            }
+        }
+        List<DuplicateGroup> groups = new ArrayList<>();
+        for (Map.Entry<String, List<Path>> entry : digests.entrySet()) {
+            List<Path> paths;
+            synchronized (entry.getValue()) {
+                paths = List.copyOf(entry.getValue());
+            }
+            groups.add(new DuplicateGroup(entry.getKey(), digestSizes.get(entry.getKey()), paths));
+        }
+        for (Map.Entry<Long, SizeBucket> entry : sizes.entrySet()) {
+            SizeBucket bucket = entry.getValue();
+            synchronized (bucket) {
+                if (bucket.count == 1) {
+                    groups.add(new DuplicateGroup(null, entry.getKey(), List.of(bucket.first)));
+                }
+            }
+        }
+        groups.sort(Comparator.comparingInt((DuplicateGroup group) -> group.paths().size()).reversed()
+                .thenComparing(Comparator.comparingLong(DuplicateGroup::size).reversed()));
+        logger.info("Duplicate grouping finished: {} groups, {} files hashed, {} bytes, {} errors",
+                groups.size(), getHashedFiles(), getHashedBytes(), getErrorCount());
+        return groups;
+    }
+
+    /**
+     * Возвращает количество файлов, для которых вычислен хэш.
+     *
+     * @return Количество файлов.
+     */
+    public long getHashedFiles() {
+        return hashedFiles.sum();
+    }
+
+    /**
+     * Возвращает количество байт, прочитанных для вычисления хэшей.
+     *
+     * @return Количество байт.
+     */
+    public long getHashedBytes() {
+        return hashedBytes.sum();
+    }
+
+    /**
+     * Возвращает количество файлов, которые не удалось прочитать.
+     *
+     * @return Количество ошибок.
+     */
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    /**
+     * Останавливает пул потоков вычисления хэшей.
+     */
+    @Override
+    public void close() {
+        hashers.shutdownNow();
+    }
+
+    /**
+     * Записывает группы в формате JSON Lines: одна группа на строку.
+     *
+     * @param out    Получатель.
+     * @param groups Группы файлов.
+     * @throws IOException Если произошла ошибка при записи.
+     */
+    public static void writeReport(Writer out, List<DuplicateGroup> groups) throws IOException {
+        for (DuplicateGroup group : groups) {
+            StringBuilder line = new StringBuilder(128);
+            line.append("{\"sha256\":");
+            if (group.sha256() == null) {
+                line.append("null");
+            } else {
+                HitWriter.appendJsonString(line, group.sha256());
+            }
+            line.append(",\"size\":").append(group.size());
+            line.append(",\"count\":").append(group.paths().size());
+            line.append(",\"paths\":[");
+            for (int i = 0; i < group.paths().size(); i++) {
+                if (i > 0) {
+                    line.append(',');
+                }
+                HitWriter.appendJsonString(line, group.paths().get(i).toAbsolutePath().toString());
+            }
+            line.append("]}\n");
+            out.append(line);
+        }
+        out.flush();
+    }
+
+    /**
+     * Передает вычисление хэша файла в пул потоков.
+     *
+     * @param path Путь к файлу.
+     * @param size Размер файла в байтах.
+     */
+    private void submit(Path path, long size) {
+        synchronized (this) {
+            pending++;
+        }
+        hashers.execute(() -> {
+            try {
+                String digest = sha256(path);
+                digestSizes.putIfAbsent(digest, size);
+                List<Path> paths = digests.computeIfAbsent(digest, key -> new ArrayList<>());
+                synchronized (paths) {
+                    paths.add(path);
+                }
+            } catch (IOException e) {
+                ScanLog.error("Unable to hash the file: {}", path.toFile(), e);
+                errors.increment();
+            } finally {
+                synchronized (this) {
+                    pending--;
+                    notifyAll();
+                }
+            }
+        });
+    }
+
+    /**
+     * Завершает одну подписку.
+     */
+    private synchronized void finishSubscription() {
+        subscriptions--;
+        notifyAll();
+    }
+
+    /**
+     * Вычисляет SHA-256 содержимого файла.
+     *
+     * @param path Путь к файлу.
+     * @return Хэш в шестнадцатеричном формате.
+     * @throws IOException Если файл не удалось прочитать.
+     */
+    private String sha256(Path path) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(path)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+                hashedBytes.add(read);
+            }
+        }
+        hashedFiles.increment();
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+}
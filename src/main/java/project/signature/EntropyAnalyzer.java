@@ -0,0 +1,577 @@
+package project.signature;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Класс EntropyAnalyzer оценивает, упакован или зашифрован ли найденный исполняемый файл,
+ * по энтропии Шеннона его содержимого. За один проход по файлу, отображенному в память окнами
+ * по {@link DeepScanner#DEFAULT_WINDOW_SIZE}, вычисляются энтропия всего файла, энтропия каждой секции
+ * PE или ELF и энтропия скользящего окна {@link #WINDOW} байт с шагом в половину окна.
+ * Байты подсчитываются в гистограммах из примитивных массивов потока, поэтому проход не создает
+ * объектов и упирается в скорость чтения с диска.
+ * <p>
+ * Файл считается упакованным, если в нем есть секция известного упаковщика (UPX, ASPack, MPRESS и др.),
+ * если энтропия исполняемой секции не ниже {@link #PACKED_SECTION_ENTROPY} или, для файла без
+ * таблицы секций, если энтропия всего файла не ниже {@link #PACKED_FILE_ENTROPY}.
+ * Экземпляр не нужен: методы статические и безопасны для вызова из нескольких потоков.
+ */
+public final class EntropyAnalyzer {
+
+    /**
+     * Размер скользящего окна в байтах.
+     */
+    public static final int WINDOW = 4096;
+
+    /**
+     * Энтропия исполняемой секции, начиная с которой файл считается упакованным, в битах на байт.
+     * Энтропия машинного кода обычно 5,5–6,8 бит на байт, сжатых и зашифрованных данных — больше 7,5.
+     */
+    public static final double PACKED_SECTION_ENTROPY = 7.0;
+
+    /**
+     * Энтропия всего файла без таблицы секций, начиная с которой файл считается упакованным.
+     */
+    public static final double PACKED_FILE_ENTROPY = 7.2;
+
+    /**
+     * Энтропия окна, начиная с которой окно считается сжатым или зашифрованным.
+     */
+    public static final double HIGH_WINDOW_ENTROPY = 7.2;
+
+    /**
+     * Наименьший размер секции, энтропия которой учитывается при оценке.
+     */
+    private static final long MIN_SECTION_SIZE = 512;
+
+    /**
+     * Наибольшее количество секций, разбираемых в таблице секций.
+     */
+    private static final int MAX_SECTIONS = 128;
+
+    /**
+     * Названия секций, которые создают известные упаковщики и протекторы.
+     */
+    private static final Map<String, String> PACKER_SECTIONS = Map.ofEntries(
+            Map.entry("UPX0", "UPX"), Map.entry("UPX1", "UPX"), Map.entry("UPX2", "UPX"),
+            Map.entry(".aspack", "ASPack"), Map.entry(".adata", "ASPack"),
+            Map.entry(".MPRESS1", "MPRESS"), Map.entry(".MPRESS2", "MPRESS"),
+            Map.entry(".petite", "Petite"), Map.entry("PEC2", "PECompact"), Map.entry("pec1", "PECompact"),
+            Map.entry(".nsp0", "NsPack"), Map.entry(".nsp1", "NsPack"),
+            Map.entry(".themida", "Themida"), Map.entry(".winlice", "WinLicense"),
+            Map.entry(".vmp0", "VMProtect"), Map.entry(".vmp1", "VMProtect"),
+            Map.entry(".enigma1", "Enigma"), Map.entry(".enigma2", "Enigma"));
+
+    /**
+     * Значения {@code c * log2(c)} для количеств байт в окне.
+     */
+    private static final double[] WINDOW_LOG = new double[WINDOW + 1];
+
+    static {
+        for (int c = 1; c <= WINDOW; c++) {
+            WINDOW_LOG[c] = c * Math.log(c) / Math.log(2);
+        }
+    }
+
+    /**
+     * Гистограммы потока, переиспользуемые между файлами.
+     */
+    private static final ThreadLocal<Histograms> HISTOGRAMS = ThreadLocal.withInitial(Histograms::new);
+
+    /**
+     * Энтропия секции исполняемого файла.
+     *
+     * @param name       Название секции.
+     * @param offset     Смещение данных секции в файле.
+     * @param size       Размер данных секции в файле.
+     * @param executable Признак секции с исполняемым кодом.
+     * @param entropy    Энтропия данных секции в битах на байт.
+     */
+    public record Section(String name, long offset, long size, boolean executable, double entropy) {
+    }
+
+    /**
+     * Результат анализа энтропии файла.
+     *
+     * @param entropy          Энтропия всего файла в битах на байт (от 0 до 8).
+     * @param maxWindowEntropy Наибольшая энтропия скользящего окна.
+     * @param highEntropyShare Доля окон с энтропией не ниже {@link #HIGH_WINDOW_ENTROPY}.
+     * @param sections         Секции PE или ELF; пустой список, если таблица секций не разобрана.
+     * @param packed           Признак вероятно упакованного или зашифрованного файла.
+     * @param reason           Причина признака {@code packed} (название упаковщика или секции) или пустая строка.
+     */
+    public record Report(double entropy, double maxWindowEntropy, double highEntropyShare,
+                         List<Section> sections, boolean packed, String reason) {
+    }
+
+    private EntropyAnalyzer() {
+    }
+
+    /**
+     * Анализирует найденный исполняемый файл и записывает длительность и объем анализа в показатели.
+     * Файлы, найденные только по содержимому архива или вложенным сигнатурам, и файлы, уже имеющие
+     * результат анализа (например, из индекса), не анализируются. Если файл прочитать не удалось,
+     * запись возвращается без изменений.
+     *
+     * @param hit     Запись о найденном файле.
+     * @param metrics Показатели сканирования.
+     * @return Запись с результатом анализа или та же запись.
+     */
+    static ScanHit analyze(ScanHit hit, ScanMetrics metrics) {
+        if (hit.types().isEmpty() || hit.entropy() != null) {
+            return hit;
+        }
+        long start = System.nanoTime();
+        Report report;
+        try {
+            report = analyze(hit.path());
+        } catch (IOException e) {
+            ScanLog.events.debug("Unable to analyze the entropy of the file: {}", hit.path());
+            return hit;
+        } catch (RuntimeException e) {
+            // Поврежденный заголовок не должен прерывать сканирование
+            ScanLog.events.debug("Unable to analyze the entropy of the malformed file: {}", hit.path(), e);
+            return hit;
+        }
+        metrics.entropyAnalyzed(start, hit.size(), report.packed());
+        if (report.packed()) {
+            ScanLog.events.debug("The file is probably packed ({}): {}", report.reason(), hit.path());
+        }
+        return hit.withEntropy(report);
+    }
+
+    /**
+     * Анализирует энтропию файла за один проход.
+     *
+     * @param file Файл.
+     * @return Результат анализа.
+     * @throws IOException Если файл не удалось прочитать.
+     */
+    public static Report analyze(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<Section> layout = readSections(channel, size);
+            Histograms histograms = HISTOGRAMS.get();
+            histograms.reset(layout.size());
+            Pass pass = new Pass(histograms, layout);
+            for (long position = 0; position < size; position += DeepScanner.DEFAULT_WINDOW_SIZE) {
+                int length = (int) Math.min(DeepScanner.DEFAULT_WINDOW_SIZE, size - position);
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                pass.consume(mapped, position, length);
+            }
+            return pass.finish(size);
+        }
+    }
+
+    /**
+     * Состояние одного прохода по файлу.
+     */
+    private static final class Pass {
+
+        private final Histograms histograms;
+
+        /**
+         * Секции файла.
+         */
+        private final List<Section> layout;
+
+        /**
+         * Количество байт в текущей половине окна.
+         */
+        private int halfFill;
+
+        /**
+         * Количество байт в предыдущей половине окна.
+         */
+        private int previousFill;
+
+        /**
+         * Количество окон и окон с высокой энтропией.
+         */
+        private long windows;
+        private long highWindows;
+
+        /**
+         * Наибольшая энтропия окна.
+         */
+        private double maxWindow;
+
+        Pass(Histograms histograms, List<Section> layout) {
+            this.histograms = histograms;
+            this.layout = layout;
+        }
+
+        /**
+         * Подсчитывает байты отображенной части файла. Байты подсчитываются в гистограмме фрагмента,
+         * которая переносится в гистограммы окна и секций на границах половин окна и секций.
+         *
+         * @param buffer   Отображенная часть файла.
+         * @param position Смещение части в файле.
+         * @param length   Длина части.
+         */
+        void consume(ByteBuffer buffer, long position, int length) {
+            int[] chunk = histograms.chunk;
+            int index = 0;
+            while (index < length) {
+                long offset = position + index;
+                int end = Math.min(length, index + (WINDOW / 2 - halfFill));
+                end = (int) Math.min(end, nextBoundary(offset) - position);
+                for (int i = index; i < end; i++) {
+                    chunk[buffer.get(i) & 0xFF]++;
+                }
+                fold(offset, end - index);
+                index = end;
+            }
+        }
+
+        /**
+         * Возвращает ближайшую границу секции после смещения.
+         *
+         * @param offset Смещение в файле.
+         * @return Смещение начала или конца секции либо {@link Long#MAX_VALUE}.
+         */
+        private long nextBoundary(long offset) {
+            long next = Long.MAX_VALUE;
+            for (Section section : layout) {
+                long start = section.offset();
+                long end = start + section.size();
+                if (start > offset && start < next) {
+                    next = start;
+                } else if (end > offset && end < next) {
+                    next = end;
+                }
+            }
+            return next;
+        }
+
+        /**
+         * Переносит гистограмму фрагмента в гистограммы половины окна и секций, содержащих фрагмент.
+         *
+         * @param offset Смещение начала фрагмента.
+         * @param length Длина фрагмента.
+         */
+        private void fold(long offset, int length) {
+            int[] chunk = histograms.chunk;
+            int[] half = histograms.half;
+            for (int s = 0; s < layout.size(); s++) {
+                Section section = layout.get(s);
+                if (offset >= section.offset() && offset < section.offset() + section.size()) {
+                    long[] counts = histograms.sections[s];
+                    for (int b = 0; b < 256; b++) {
+                        counts[b] += chunk[b];
+                    }
+                }
+            }
+            for (int b = 0; b < 256; b++) {
+                half[b] += chunk[b];
+            }
+            Arrays.fill(chunk, 0);
+            halfFill += length;
+            if (halfFill == WINDOW / 2) {
+                closeHalf(false);
+            }
+        }
+
+        /**
+         * Завершает половину окна: вычисляет энтропию окна из двух последних половин
+         * и переносит половину в гистограмму файла. Файл короче окна составляет одно неполное окно.
+         *
+         * @param last Признак последней половины файла.
+         */
+        private void closeHalf(boolean last) {
+            int[] half = histograms.half;
+            int[] previous = histograms.previous;
+            long[] total = histograms.total;
+            if (previousFill > 0 || last) {
+                double sum = 0;
+                for (int b = 0; b < 256; b++) {
+                    sum += WINDOW_LOG[half[b] + previous[b]];
+                }
+                int count = halfFill + previousFill;
+                double entropy = count == 0 ? 0 : Math.log(count) / Math.log(2) - sum / count;
+                windows++;
+                if (entropy >= HIGH_WINDOW_ENTROPY) {
+                    highWindows++;
+                }
+                maxWindow = Math.max(maxWindow, entropy);
+            }
+            for (int b = 0; b < 256; b++) {
+                total[b] += half[b];
+                previous[b] = half[b];
+            }
+            Arrays.fill(half, 0);
+            previousFill = halfFill;
+            halfFill = 0;
+        }
+
+        /**
+         * Завершает проход и формирует результат.
+         *
+         * @param size Размер файла.
+         * @return Результат анализа.
+         */
+        Report finish(long size) {
+            if (halfFill > 0 || windows == 0 && previousFill > 0) {
+                closeHalf(true);
+            }
+            List<Section> sections = new ArrayList<>(layout.size());
+            String reason = "";
+            boolean executableKnown = false;
+            for (int s = 0; s < layout.size(); s++) {
+                Section section = layout.get(s);
+                double entropy = entropy(histograms.sections[s], section.size());
+                sections.add(new Section(section.name(), section.offset(), section.size(), section.executable(),
+                        entropy));
+                String packer = PACKER_SECTIONS.get(section.name());
+                if (packer != null && reason.isEmpty()) {
+                    reason = packer;
+                }
+                if (section.executable() && section.size() >= MIN_SECTION_SIZE) {
+                    executableKnown = true;
+                    if (entropy >= PACKED_SECTION_ENTROPY && reason.isEmpty()) {
+                        reason = "high entropy section " + section.name();
+                    }
+                }
+            }
+            double entropy = entropy(histograms.total, size);
+            if (!executableKnown && entropy >= PACKED_FILE_ENTROPY && reason.isEmpty()) {
+                reason = "high entropy file";
+            }
+            return new Report(entropy, maxWindow, windows == 0 ? 0 : (double) highWindows / windows,
+                    List.copyOf(sections), !reason.isEmpty(), reason);
+        }
+    }
+
+    /**
+     * Вычисляет энтропию Шеннона по гистограмме.
+     *
+     * @param counts Количество вхождений каждого значения байта.
+     * @param total  Общее количество байт.
+     * @return Энтропия в битах на байт.
+     */
+    static double entropy(long[] counts, long total) {
+        if (total <= 0) {
+            return 0;
+        }
+        double sum = 0;
+        for (long count : counts) {
+            if (count > 0) {
+                sum += count * Math.log(count);
+            }
+        }
+        return (Math.log(total) - sum / total) / Math.log(2);
+    }
+
+    /**
+     * Читает таблицу секций PE или ELF. Разбираются только секции, данные которых находятся в файле.
+     *
+     * @param channel Открытый файл.
+     * @param size    Размер файла.
+     * @return Секции с нулевой энтропией или пустой список, если формат не распознан.
+     * @throws IOException Если файл не удалось прочитать.
+     */
+    private static List<Section> readSections(FileChannel channel, long size) throws IOException {
+        ByteBuffer header = read(channel, 0, 64);
+        if (header.remaining() >= 64 && header.getShort(0) == 0x5A4D) {
+            return readPeSections(channel, header, size);
+        }
+        if (header.remaining() >= 64 && header.order(ByteOrder.BIG_ENDIAN).getInt(0) == 0x7F454C46) {
+            return readElfSections(channel, header, size);
+        }
+        return List.of();
+    }
+
+    /**
+     * Читает таблицу секций PE.
+     *
+     * @param channel Открытый файл.
+     * @param header  Заголовок DOS.
+     * @param size    Размер файла.
+     * @return Секции или пустой список.
+     * @throws IOException Если файл не удалось прочитать.
+     */
+    private static List<Section> readPeSections(FileChannel channel, ByteBuffer header, long size)
+            throws IOException {
+        long lfanew = Integer.toUnsignedLong(header.order(ByteOrder.LITTLE_ENDIAN).getInt(0x3C));
+        ByteBuffer coff = read(channel, lfanew, 24);
+        if (coff.remaining() < 24 || coff.getInt(0) != 0x00004550) {
+            return List.of();
+        }
+        int count = Math.min(Short.toUnsignedInt(coff.getShort(6)), MAX_SECTIONS);
+        long table = lfanew + 24 + Short.toUnsignedInt(coff.getShort(20));
+        ByteBuffer entries = read(channel, table, count * 40);
+        List<Section> sections = new ArrayList<>(count);
+        for (int i = 0; i + 40 <= entries.remaining(); i += 40) {
+            byte[] name = new byte[8];
+            entries.get(i, name);
+            long rawSize = Integer.toUnsignedLong(entries.getInt(i + 16));
+            long rawOffset = Integer.toUnsignedLong(entries.getInt(i + 20));
+            int characteristics = entries.getInt(i + 36);
+            // IMAGE_SCN_CNT_CODE или IMAGE_SCN_MEM_EXECUTE
+            boolean executable = (characteristics & 0x20) != 0 || (characteristics & 0x20000000) != 0;
+            addSection(sections, cString(name), rawOffset, rawSize, executable, size);
+        }
+        return sections;
+    }
+
+    /**
+     * Читает таблицу секций ELF вместе с их названиями.
+     *
+     * @param channel Открытый файл.
+     * @param header  Заголовок ELF.
+     * @param size    Размер файла.
+     * @return Секции или пустой список.
+     * @throws IOException Если файл не удалось прочитать.
+     */
+    private static List<Section> readElfSections(FileChannel channel, ByteBuffer header, long size)
+            throws IOException {
+        boolean wide = header.get(4) == 2;
+        header.order(header.get(5) == 2 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+        long tableOffset = wide ? header.getLong(0x28) : Integer.toUnsignedLong(header.getInt(0x20));
+        int entrySize = Short.toUnsignedInt(header.getShort(wide ? 0x3A : 0x2E));
+        int count = Math.min(Short.toUnsignedInt(header.getShort(wide ? 0x3C : 0x30)), MAX_SECTIONS);
+        int names = Short.toUnsignedInt(header.getShort(wide ? 0x3E : 0x32));
+        if (tableOffset <= 0 || tableOffset >= size || entrySize < (wide ? 64 : 40) || count == 0
+                || names >= count) {
+            return List.of();
+        }
+        ByteBuffer entries = read(channel, tableOffset, count * entrySize).order(header.order());
+        if (entries.remaining() < count * entrySize) {
+            return List.of();
+        }
+        long namesOffset = wide ? entries.getLong(names * entrySize + 0x18)
+                : Integer.toUnsignedLong(entries.getInt(names * entrySize + 0x10));
+        long namesSize = wide ? entries.getLong(names * entrySize + 0x20)
+                : Integer.toUnsignedLong(entries.getInt(names * entrySize + 0x14));
+        if (namesOffset < 0 || namesOffset >= size) {
+            return List.of();
+        }
+        ByteBuffer strings = read(channel, namesOffset, (int) Math.min(Math.max(namesSize, 0), 64 * 1024));
+        byte[] nameTable = new byte[strings.remaining()];
+        strings.get(0, nameTable);
+
+        List<Section> sections = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int base = i * entrySize;
+            int name = entries.getInt(base);
+            int type = entries.getInt(base + 4);
+            long flags = wide ? entries.getLong(base + 8) : Integer.toUnsignedLong(entries.getInt(base + 8));
+            long offset = wide ? entries.getLong(base + 0x18) : Integer.toUnsignedLong(entries.getInt(base + 0x10));
+            long length = wide ? entries.getLong(base + 0x20) : Integer.toUnsignedLong(entries.getInt(base + 0x14));
+            // SHT_NOBITS не занимает места в файле
+            if (type == 0 || type == 8) {
+                continue;
+            }
+            String sectionName = name >= 0 && name < nameTable.length
+                    ? cString(Arrays.copyOfRange(nameTable, name, Math.min(nameTable.length, name + 64))) : "";
+            // SHF_EXECINSTR
+            addSection(sections, sectionName, offset, length, (flags & 0x4) != 0, size);
+        }
+        return sections;
+    }
+
+    /**
+     * Добавляет секцию, если ее данные находятся в пределах файла.
+     *
+     * @param sections   Секции.
+     * @param name       Название секции.
+     * @param offset     Смещение данных.
+     * @param length     Размер данных.
+     * @param executable Признак исполняемой секции.
+     * @param size       Размер файла.
+     */
+    private static void addSection(List<Section> sections, String name, long offset, long length,
+                                   boolean executable, long size) {
+        if (length > 0 && offset >= 0 && offset < size) {
+            sections.add(new Section(name, offset, Math.min(length, size - offset), executable, 0));
+        }
+    }
+
+    /**
+     * Возвращает строку до первого нулевого байта.
+     *
+     * @param bytes Байты строки.
+     * @return Строка в кодировке ASCII.
+     */
+    private static String cString(byte[] bytes) {
+        int length = 0;
+        while (length < bytes.length && bytes[length] != 0) {
+            length++;
+        }
+        return new String(bytes, 0, length, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Читает часть файла позиционным чтением.
+     *
+     * @param channel  Открытый файл.
+     * @param position Смещение в файле.
+     * @param length   Количество байт.
+     * @return Буфер с прочитанными байтами (может быть короче, если файл кончился).
+     * @throws IOException Если файл не удалось прочитать.
+     */
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.max(0, length)).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Гистограммы одного потока.
+     */
+    private static final class Histograms {
+
+        /**
+         * Гистограмма текущего фрагмента.
+         */
+        private final int[] chunk = new int[256];
+
+        /**
+         * Гистограммы текущей и предыдущей половины окна.
+         */
+        private final int[] half = new int[256];
+        private final int[] previous = new int[256];
+
+        /**
+         * Гистограмма всего файла.
+         */
+        private final long[] total = new long[256];
+
+        /**
+         * Гистограммы секций.
+         */
+        private long[][] sections = new long[0][];
+
+        /**
+         * Очищает гистограммы перед проходом по новому файлу.
+         *
+         * @param sectionCount Количество секций файла.
+         */
+        void reset(int sectionCount) {
+            Arrays.fill(chunk, 0);
+            Arrays.fill(half, 0);
+            Arrays.fill(previous, 0);
+            Arrays.fill(total, 0);
+            if (sections.length < sectionCount) {
+                sections = new long[sectionCount][256];
+            }
+            for (int s = 0; s < sectionCount; s++) {
+                Arrays.fill(sections[s], 0);
+            }
+        }
+    }
+}
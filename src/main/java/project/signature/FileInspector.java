@@ -0,0 +1,355 @@
+package project.signature;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Класс FileInspector проверяет отдельные файлы на наличие сигнатур из {@link Signature}.
+ * Настройки проверки (глубокое сканирование, индекс результатов) задаются при создании,
+ * поэтому несколько сканирований с разными настройками могут выполняться одновременно.
+ * Длительности чтения заголовков, атрибутов и глубокого сканирования записываются в {@link ScanMetrics}.
+ * Экземпляр безопасен для использования из нескольких потоков.
+ */
+public final class FileInspector {
+
+    /**
+     * Максимальное количество вложенных сигнатур, сохраняемых для одного файла.
+     */
+    static final int DEEP_SCAN_LIMIT = 16;
+
+    /**
+     * Буферы потока для чтения заголовка файла и идентификаторов найденных сигнатур.
+     */
+    private static final ThreadLocal<HeaderBuffer> HEADER_BUFFER = ThreadLocal.withInitial(HeaderBuffer::new);
+
+    /**
+     * Признак глубокого сканирования всего содержимого файла.
+     */
+    private final boolean deepScan;
+
+    /**
+     * Глубина проверки архивов; 0 — архивы не проверяются.
+     */
+    private final int archiveDepth;
+
+    /**
+     * Индекс результатов предыдущих сканирований или {@code null}.
+     */
+    private final ScanIndex index;
+
+    /**
+     * Показатели, в которые записываются прочитанные байты и длительности операций.
+     */
+    private final ScanMetrics metrics;
+
+    /**
+     * Создает проверку файлов с собственными показателями.
+     *
+     * @param deepScan {@code true}, чтобы искать вложенные сигнатуры по всему содержимому файла,
+     *                 если заголовок не совпал ни с одной сигнатурой.
+     * @param index    Индекс результатов предыдущих сканирований или {@code null}.
+     */
+    public FileInspector(boolean deepScan, ScanIndex index) {
+        this(deepScan, index, new ScanMetrics(null));
+    }
+
+    /**
+     * Создает проверку файлов, записывающую показатели в заданный объект.
+     *
+     * @param deepScan {@code true}, чтобы искать вложенные сигнатуры по всему содержимому файла.
+     * @param index    Индекс результатов предыдущих сканирований или {@code null}.
+     * @param metrics  Показатели сканирования.
+     */
+    public FileInspector(boolean deepScan, ScanIndex index, ScanMetrics metrics) {
+        this(deepScan, 0, index, metrics);
+    }
+
+    /**
+     * Создает проверку файлов с проверкой содержимого архивов.
+     *
+     * @param deepScan     {@code true}, чтобы искать вложенные сигнатуры по всему содержимому файла.
+     * @param archiveDepth Глубина проверки вложенных архивов ZIP, TAR и GZIP (см. {@link ArchiveScanner});
+     *                     0 — архивы не проверяются.
+     * @param index        Индекс результатов предыдущих сканирований или {@code null}.
+     * @param metrics      Показатели сканирования.
+     * @throws IllegalArgumentException Если глубина отрицательна.
+     */
+    public FileInspector(boolean deepScan, int archiveDepth, ScanIndex index, ScanMetrics metrics) {
+        if (archiveDepth < 0) {
+            throw new IllegalArgumentException("Negative archive depth: " + archiveDepth);
+        }
+        this.deepScan = deepScan;
+        this.archiveDepth = archiveDepth;
+        this.index = index;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Возвращает признак глубокого сканирования.
+     *
+     * @return {@code true}, если включен поиск вложенных сигнатур.
+     */
+    public boolean isDeepScan() {
+        return deepScan;
+    }
+
+    /**
+     * Возвращает индекс результатов предыдущих сканирований.
+     *
+     * @return Индекс или {@code null}.
+     */
+    public ScanIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Возвращает количество байт, прочитанных из файлов этой проверкой.
+     *
+     * @return Количество прочитанных байт.
+     */
+    public long getBytesRead() {
+        return metrics.getBytesRead();
+    }
+
+    /**
+     * Возвращает показатели, в которые записываются длительности операций.
+     *
+     * @return Показатели сканирования.
+     */
+    public ScanMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Проверяет файл и возвращает запись о нем, если в нем найдена сигнатура.
+     * Если задан индекс и файл не изменился с прошлого сканирования, результат берется
+     * из индекса без открытия файла.
+     *
+     * @param file Файл для проверки.
+     * @return Запись о найденном файле или {@code null}, если сигнатура не найдена.
+     * @throws IOException Если произошла ошибка при чтении файла или его атрибутов.
+     */
+    public ScanHit inspect(File file) throws IOException {
+        return inspect(file.toPath(), null);
+    }
+
+    /**
+     * Проверяет файл, переиспользуя атрибуты, прочитанные при обходе директории.
+     * Атрибуты нужны для индекса, глубокого сканирования и записи о найденном файле;
+     * если они переданы, повторно не читаются.
+     *
+     * @param path Путь к файлу.
+     * @param attr Атрибуты файла или {@code null}, если они будут прочитаны при необходимости.
+     * @return Запись о найденном файле или {@code null}, если сигнатура не найдена.
+     * @throws IOException Если произошла ошибка при чтении файла или его атрибутов.
+     */
+    public ScanHit inspect(Path path, BasicFileAttributes attr) throws IOException {
+        if (index != null) {
+            if (attr == null) {
+                attr = readAttributes(path);
+            }
+            ScanIndex.Entry entry = index.lookup(path, attr);
+            if (entry != null) {
+                return entry.hit() ? ScanHit.of(path, attr, entry.types(), entry.embedded(), entry.archived())
+                        .withEntropy(entry.entropy()) : null;
+            }
+        }
+
+        SignatureMatcher matcher = Signature.getMatcher();
+        HeaderBuffer buffer = HEADER_BUFFER.get();
+        int length = readHeader(path, buffer, archiveDepth > 0
+                ? Math.max(matcher.getHeaderLength(), ArchiveScanner.PROBE_LENGTH) : matcher.getHeaderLength());
+        List<String> types = match(matcher, buffer, length);
+        List<DeepScanner.Match> embedded = List.of();
+        List<ArchiveScanner.Match> archived = List.of();
+        if (archiveDepth > 0) {
+            ArchiveScanner.Format format = ArchiveScanner.detect(buffer.header, length);
+            if (format != null) {
+                archived = findArchived(path, matcher, format);
+            }
+        }
+        if (!types.isEmpty()) {
+            ScanLog.events.debug("The executable file was found: {} {}", path, types);
+        } else if (deepScan) {
+            embedded = findEmbedded(path, attr == null ? Files.size(path) : attr.size());
+            if (!embedded.isEmpty()) {
+                ScanLog.events.debug("An embedded executable was found: {} {}", path, embedded);
+            }
+        }
+
+        ScanHit hit = null;
+        if (!types.isEmpty() || !embedded.isEmpty() || !archived.isEmpty()) {
+            if (attr == null) {
+                attr = readAttributes(path);
+            }
+            hit = ScanHit.of(path, attr, types, embedded, archived);
+        }
+        if (index != null) {
+            index.record(path, attr, hit);
+        }
+        return hit;
+    }
+
+    /**
+     * Находит все сигнатуры из {@link Signature}, совпадающие с заголовком файла.
+     * Заголовок читается в буфер текущего потока и сопоставляется с {@link Signature#getMatcher()},
+     * поэтому для файлов без совпадений память не выделяется.
+     *
+     * @param file Файл для проверки.
+     * @return Названия найденных сигнатур или пустой список.
+     * @throws IOException Если произошла ошибка при чтении файла.
+     */
+    List<String> matchSignatures(File file) throws IOException {
+        SignatureMatcher matcher = Signature.getMatcher();
+        HeaderBuffer buffer = HEADER_BUFFER.get();
+        return match(matcher, buffer, readHeader(file.toPath(), buffer, matcher.getHeaderLength()));
+    }
+
+    /**
+     * Читает заголовок файла в буфер текущего потока.
+     *
+     * @param path   Путь к файлу.
+     * @param buffer Буфер текущего потока.
+     * @param length Требуемая длина заголовка.
+     * @return Количество прочитанных байт.
+     * @throws IOException Если произошла ошибка при чтении файла;
+     *                     {@link java.nio.file.AccessDeniedException}, если нет прав на чтение.
+     */
+    private int readHeader(Path path, HeaderBuffer buffer, int length) throws IOException {
+        byte[] header = buffer.header(length);
+        int read;
+        long start = System.nanoTime();
+        try (InputStream input = Files.newInputStream(path)) {
+            read = input.readNBytes(header, 0, length);
+        }
+        metrics.headerRead(start);
+        metrics.bytesRead(read);
+        return read;
+    }
+
+    /**
+     * Сопоставляет заголовок в буфере с набором сигнатур.
+     *
+     * @param matcher Набор сигнатур.
+     * @param buffer  Буфер текущего потока с заголовком.
+     * @param length  Количество прочитанных байт заголовка.
+     * @return Названия найденных сигнатур или пустой список.
+     */
+    private static List<String> match(SignatureMatcher matcher, HeaderBuffer buffer, int length) {
+        int found = matcher.match(buffer.header, length, buffer.ids);
+        if (found == 0) {
+            return List.of();
+        }
+        if (found > buffer.ids.length) {
+            buffer.ids = new int[found];
+            matcher.match(buffer.header, length, buffer.ids);
+        }
+        List<String> types = new ArrayList<>(found);
+        for (int i = 0; i < found; i++) {
+            types.add(matcher.getName(buffer.ids[i]));
+        }
+        return types;
+    }
+
+    /**
+     * Проверяет сигнатуры файлов внутри архива с помощью {@link ArchiveScanner}.
+     *
+     * @param path    Путь к архиву.
+     * @param matcher Набор сигнатур.
+     * @param format  Формат архива.
+     * @return Найденные в архиве сигнатуры или пустой список, если архив не удалось прочитать.
+     */
+    private List<ArchiveScanner.Match> findArchived(Path path, SignatureMatcher matcher,
+                                                    ArchiveScanner.Format format) {
+        List<ArchiveScanner.Match> archived;
+        try {
+            archived = new ArchiveScanner(matcher, archiveDepth,
+                    ArchiveScanner.DEFAULT_MAX_BYTES, ArchiveScanner.DEFAULT_MAX_ENTRIES).scan(path, format);
+        } catch (IOException e) {
+            // Файл лишь похож на архив: глубокое сканирование и запись в индекс продолжаются
+            ScanLog.events.debug("Unable to read the archive: {} {}", path, e.toString());
+            return List.of();
+        }
+        if (!archived.isEmpty()) {
+            ScanLog.events.debug("An executable was found in the archive: {} {}", path, archived);
+        }
+        return archived;
+    }
+
+    /**
+     * Ищет вложенные сигнатуры по всему содержимому файла с помощью {@link DeepScanner}.
+     * Вхождения на нулевом смещении не учитываются: они уже проверены по заголовку. Остальные вхождения
+     * проверяются {@link StructureVerifier#verifyEmbedded}: короткие сигнатуры вроде {@code 4D5A}
+     * случайно встречаются почти в любом большом файле.
+     *
+     * @param path Путь к файлу.
+     * @param size Размер файла.
+     * @return Не более {@link #DEEP_SCAN_LIMIT} найденных вложенных сигнатур.
+     * @throws IOException Если произошла ошибка при чтении файла.
+     */
+    private List<DeepScanner.Match> findEmbedded(Path path, long size) throws IOException {
+        metrics.bytesRead(size);
+        List<DeepScanner.Match> embedded = new ArrayList<>();
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            new DeepScanner().scan(path, (name, offset, length) -> {
+                try {
+                    if (offset > 0 && StructureVerifier.verifyEmbedded(channel, offset, length)) {
+                        embedded.add(new DeepScanner.Match(name, offset));
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return embedded.size() < DEEP_SCAN_LIMIT;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        metrics.deepScanned(start);
+        return embedded;
+    }
+
+    /**
+     * Читает основные атрибуты файла и записывает длительность чтения в показатели.
+     *
+     * @param path Путь к файлу.
+     * @return Атрибуты файла.
+     * @throws IOException Если атрибуты не удалось прочитать.
+     */
+    private BasicFileAttributes readAttributes(Path path) throws IOException {
+        long start = System.nanoTime();
+        BasicFileAttributes attr = Files.readAttributes(path, BasicFileAttributes.class);
+        metrics.attributesRead(start);
+        return attr;
+    }
+
+    /**
+     * Переиспользуемые буферы одного потока.
+     */
+    private static final class HeaderBuffer {
+        private byte[] header = new byte[0];
+        private int[] ids = new int[4];
+
+        /**
+         * Возвращает буфер заголовка не меньше заданной длины.
+         *
+         * @param length Требуемая длина буфера.
+         * @return Буфер заголовка.
+         */
+        byte[] header(int length) {
+            if (header.length < length) {
+                header = new byte[length];
+            }
+            return header;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package project.signature;
+
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Класс FileKeySet — множество посещенных файлов и директорий, идентифицируемых устройством и inode.
+ * Ключи хранятся в таблицах с открытой адресацией из примитивов {@code long}: пара (устройство, inode)
+ * упаковывается в одно число, если номер устройства занимает не больше 20 бит, а inode — не больше 44,
+ * что верно для большинства файловых систем; остальные ключи хранятся как объекты в дополнительном
+ * множестве. Таким образом запись занимает в среднем 11–21 байт вместо нескольких десятков у
+ * {@code HashSet} объектов.
+ * <p>
+ * Множество разделено на сегменты с отдельными блокировками, поэтому потоки обхода редко ждут друг друга.
+ * Количество записей ограничено: после достижения предела новые ключи не сохраняются,
+ * а {@link #add(FileKey)} сообщает о них как о новых (см. {@link #isSaturated()}).
+ */
+final class FileKeySet {
+
+    /**
+     * Предел количества записей по умолчанию; при заполнении таблицы занимают не больше 64 МБ.
+     */
+    static final long DEFAULT_LIMIT = 1L << 22;
+
+    /**
+     * Количество бит номера сегмента.
+     */
+    private static final int SEGMENT_BITS = 6;
+
+    /**
+     * Начальная емкость таблицы сегмента.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Количество бит номера устройства и inode в упакованном ключе.
+     */
+    private static final int DEVICE_BITS = 20;
+    private static final int INODE_BITS = 44;
+
+    /**
+     * Ключ файла: номер устройства и inode.
+     *
+     * @param device Номер устройства.
+     * @param inode  Номер inode.
+     */
+    record FileKey(long device, long inode) {
+
+        /**
+         * Возвращает ключ файла по его атрибутам.
+         * Используется {@link BasicFileAttributes#fileKey()}, который в UNIX-системах содержит
+         * устройство и inode, поэтому дополнительное обращение к файловой системе не требуется.
+         *
+         * @param attr Атрибуты файла.
+         * @return Ключ файла или {@code null}, если файловая система его не предоставляет.
+         */
+        static FileKey of(BasicFileAttributes attr) {
+            Object key = attr.fileKey();
+            if (key == null) {
+                return null;
+            }
+            // Формат sun.nio.fs.UnixFileKey: "(dev=<hex>,ino=<decimal>)"
+            String text = key.toString();
+            int device = text.indexOf("dev=");
+            int inode = text.indexOf(",ino=", device);
+            int end = text.indexOf(')', inode);
+            if (device < 0 || inode < 0 || end < 0) {
+                return null;
+            }
+            try {
+                return new FileKey(Long.parseUnsignedLong(text, device + 4, inode, 16),
+                        Long.parseUnsignedLong(text, inode + 5, end, 10));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Сегменты множества.
+     */
+    private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+
+    /**
+     * Предел количества записей.
+     */
+    private final long limit;
+
+    /**
+     * Количество записей.
+     */
+    private final AtomicLong size = new AtomicLong();
+
+    /**
+     * Признак того, что хотя бы один ключ не сохранен из-за предела.
+     */
+    private volatile boolean saturated;
+
+    /**
+     * Создает пустое множество.
+     *
+     * @param limit Предел количества записей.
+     * @throws IllegalArgumentException Если предел не положителен.
+     */
+    FileKeySet(long limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive: " + limit);
+        }
+        this.limit = limit;
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Добавляет ключ в множество.
+     *
+     * @param key Ключ файла.
+     * @return {@code false}, если ключ уже был добавлен; {@code true}, если ключ новый
+     * или множество заполнено и ключ в нем не найден.
+     */
+    boolean add(FileKey key) {
+        long packed = pack(key);
+        long hash = mix(packed != 0 ? packed : key.hashCode());
+        Segment segment = segments[(int) (hash >>> (Long.SIZE - SEGMENT_BITS))];
+        synchronized (segment) {
+            if (packed != 0 ? segment.contains(packed, hash) : segment.overflow.contains(key)) {
+                return false;
+            }
+            if (size.get() >= limit) {
+                saturated = true;
+                return true;
+            }
+            if (packed != 0) {
+                segment.insert(packed, hash);
+            } else {
+                segment.overflow.add(key);
+            }
+            size.incrementAndGet();
+            return true;
+        }
+    }
+
+    /**
+     * Возвращает количество сохраненных ключей.
+     *
+     * @return Количество записей.
+     */
+    long size() {
+        return size.get();
+    }
+
+    /**
+     * Проверяет, отбрасывались ли новые ключи из-за предела количества записей.
+     * После заполнения повторные пути к файлам, встреченным впервые, уже не распознаются.
+     *
+     * @return {@code true}, если множество заполнено.
+     */
+    boolean isSaturated() {
+        return saturated;
+    }
+
+    /**
+     * Упаковывает ключ в одно число.
+     *
+     * @param key Ключ файла.
+     * @return Упакованный ключ или 0, если ключ не помещается в 64 бита.
+     */
+    private static long pack(FileKey key) {
+        if (key.device() < 0 || key.device() >= 1L << DEVICE_BITS
+                || key.inode() < 0 || key.inode() >= 1L << INODE_BITS) {
+            return 0;
+        }
+        // Пара (0, 0) упаковывается в 0 — признак пустой ячейки — и хранится отдельно
+        return key.device() << INODE_BITS | key.inode();
+    }
+
+    /**
+     * Перемешивает биты ключа (финализатор MurmurHash3).
+     *
+     * @param value Ключ.
+     * @return Хеш ключа.
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        return value ^ value >>> 33;
+    }
+
+    /**
+     * Сегмент множества: таблица с линейным пробированием и множество неупаковываемых ключей.
+     * Доступ синхронизируется на самом сегменте.
+     */
+    private static final class Segment {
+
+        /**
+         * Упакованные ключи; 0 — пустая ячейка.
+         */
+        private long[] table = new long[INITIAL_CAPACITY];
+
+        /**
+         * Количество занятых ячеек таблицы.
+         */
+        private int count;
+
+        /**
+         * Ключи, которые не удалось упаковать.
+         */
+        private final Set<FileKey> overflow = new HashSet<>();
+
+        private boolean contains(long packed, long hash) {
+            int mask = table.length - 1;
+            for (int i = (int) hash & mask; table[i] != 0; i = (i + 1) & mask) {
+                if (table[i] == packed) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void insert(long packed, long hash) {
+            // Заполнение таблицы не превышает 3/4
+            if ((count + 1) * 4L > table.length * 3L) {
+                long[] old = table;
+                table = new long[old.length * 2];
+                for (long value : old) {
+                    if (value != 0) {
+                        place(value, mix(value));
+                    }
+                }
+            }
+            place(packed, hash);
+            count++;
+        }
+
+        private void place(long packed, long hash) {
+            int mask = table.length - 1;
+            int i = (int) hash & mask;
+            while (table[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            table[i] = packed;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package project.signature;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Класс FileSignatureRepository — хранилище сигнатур в локальном текстовом файле
+ * для работы без базы данных и для тестов.
+ * Первая строка файла содержит версию ({@code # signatures version N}), далее следуют записи
+ * в формате {@link SignatureRecord}. Файл перезаписывается целиком через временный файл
+ * и атомарное переименование, поэтому при сбое остается предыдущая версия.
+ */
+public class FileSignatureRepository implements SignatureRepository {
+
+    private static final Logger logger = LogManager.getLogger(FileSignatureRepository.class);
+
+    /**
+     * Начало строки с версией хранилища.
+     */
+    private static final String VERSION_PREFIX = "# signatures version ";
+
+    /**
+     * Путь к файлу хранилища.
+     */
+    private final Path file;
+
+    /**
+     * Создает хранилище в заданном файле. Файл создается при первой записи.
+     *
+     * @param file Путь к файлу хранилища.
+     */
+    public FileSignatureRepository(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Возвращает путь к файлу хранилища.
+     *
+     * @return Путь к файлу.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Читает версию из первой строки файла, не загружая записи.
+     *
+     * @return Версия хранилища; 0, если файл отсутствует.
+     * @throws IOException Если файл не удалось прочитать.
+     */
+    @Override
+    public synchronized long getVersion() throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return parseVersion(reader.readLine());
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public synchronized List<SignatureRecord> loadAll() throws IOException {
+        return new ArrayList<>(read().values());
+    }
+
+    @Override
+    public synchronized long saveAll(Collection<SignatureRecord> records) throws IOException {
+        long version = getVersion() + 1;
+        Map<String, SignatureRecord> merged = read();
+        for (SignatureRecord record : records) {
+            merged.put(record.name(), record);
+        }
+
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write(VERSION_PREFIX + version);
+            writer.newLine();
+            for (SignatureRecord record : merged.values()) {
+                writer.write(record.format());
+                writer.newLine();
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.info("Signature file saved: {} signatures, version {}", merged.size(), version);
+        return version;
+    }
+
+    /**
+     * Читает записи файла.
+     *
+     * @return Записи, упорядоченные по названию; пустая коллекция, если файл отсутствует.
+     * @throws IOException Если файл не удалось прочитать или он поврежден.
+     */
+    private Map<String, SignatureRecord> read() throws IOException {
+        Map<String, SignatureRecord> records = new TreeMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            for (SignatureRecord record : SignatureRecord.readAll(reader)) {
+                records.put(record.name(), record);
+            }
+        } catch (NoSuchFileException e) {
+            return records;
+        } catch (IllegalArgumentException e) {
+            throw new IOException("The signature file is damaged: " + file + ": " + e.getMessage(), e);
+        }
+        return records;
+    }
+
+    /**
+     * Разбирает строку с версией хранилища.
+     *
+     * @param line Первая строка файла.
+     * @return Версия; 0, если строка отсутствует или имеет другой вид.
+     */
+    private static long parseVersion(String line) {
+        if (line == null || !line.startsWith(VERSION_PREFIX)) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(line.substring(VERSION_PREFIX.length()).trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
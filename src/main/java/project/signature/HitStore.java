@@ -0,0 +1,406 @@
+package project.signature;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Класс HitStore — хранилище найденных файлов на диске с постоянным расходом памяти.
+ * Записи {@link ScanHit} добавляются в конец файла данных (в формате {@link ShardProtocol#writeHitFields}),
+ * а смещение каждой записи — в файл индекса по 8 байт, поэтому запись с любым номером читается
+ * без просмотра предыдущих. Запись в оба файла буферизуется буферами фиксированного размера;
+ * записанная часть файлов читается через отображение в память сегментами по {@link #SEGMENT_SIZE} байт,
+ * которое не занимает кучу. Таким образом объем кучи не зависит от количества найденных файлов,
+ * а интерфейс и выгрузка получают записи постранично ({@link #page(long, int)}).
+ * <p>
+ * Методы синхронизированы: файлы можно добавлять из потоков сканирования и одновременно читать.
+ */
+public final class HitStore implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger(HitStore.class);
+
+    /**
+     * Размер буфера записи каждого файла по умолчанию.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * Размер сегмента отображения файла в память.
+     */
+    static final long SEGMENT_SIZE = 64L << 20;
+
+    /**
+     * Директория файлов хранилища.
+     */
+    private final Path directory;
+
+    /**
+     * Признак удаления директории при закрытии.
+     */
+    private final boolean temporary;
+
+    /**
+     * Файл записей.
+     */
+    private final AppendFile data;
+
+    /**
+     * Файл смещений записей.
+     */
+    private final AppendFile offsets;
+
+    /**
+     * Буфер кодирования одной записи.
+     */
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream(512);
+
+    /**
+     * Количество записей.
+     */
+    private long size;
+
+    /**
+     * Признак закрытия хранилища.
+     */
+    private boolean closed;
+
+    /**
+     * Создает пустое хранилище во временной директории, удаляемой при закрытии.
+     *
+     * @return Хранилище.
+     * @throws IOException Если файлы не удалось создать.
+     */
+    public static HitStore createTemporary() throws IOException {
+        return new HitStore(Files.createTempDirectory("signature-hits"), DEFAULT_BUFFER_SIZE, true);
+    }
+
+    /**
+     * Создает пустое хранилище в заданной директории; существующие файлы хранилища перезаписываются.
+     *
+     * @param directory  Директория файлов хранилища.
+     * @param bufferSize Размер буфера записи каждого из двух файлов в байтах.
+     * @throws IOException              Если файлы не удалось создать.
+     * @throws IllegalArgumentException Если буфер меньше 8 байт.
+     */
+    public HitStore(Path directory, int bufferSize) throws IOException {
+        this(directory, bufferSize, false);
+    }
+
+    private HitStore(Path directory, int bufferSize, boolean temporary) throws IOException {
+        if (bufferSize < Long.BYTES) {
+            throw new IllegalArgumentException("Buffer size is too small: " + bufferSize);
+        }
+        Files.createDirectories(directory);
+        this.directory = directory;
+        this.temporary = temporary;
+        this.data = new AppendFile(directory.resolve("hits.dat"), bufferSize);
+        AppendFile index;
+        try {
+            index = new AppendFile(directory.resolve("hits.idx"), bufferSize);
+        } catch (IOException e) {
+            data.close();
+            throw e;
+        }
+        this.offsets = index;
+    }
+
+    /**
+     * Добавляет найденный файл в конец хранилища.
+     * Может использоваться как обработчик {@link ScanSession#setHitListener}.
+     *
+     * @param hit Найденный файл.
+     * @throws UncheckedIOException  Если запись не удалась.
+     * @throws IllegalStateException Если хранилище закрыто.
+     */
+    public synchronized void add(ScanHit hit) {
+        checkOpen();
+        try {
+            record.reset();
+            DataOutputStream out = new DataOutputStream(record);
+            out.writeInt(0);
+            ShardProtocol.writeHitFields(out, hit);
+            ByteBuffer bytes = ByteBuffer.wrap(record.toByteArray());
+            bytes.putInt(0, bytes.remaining() - Integer.BYTES);
+            long position = data.append(bytes);
+            offsets.append(ByteBuffer.allocate(Long.BYTES).putLong(0, position));
+            size++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Возвращает количество записей.
+     *
+     * @return Количество найденных файлов.
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Возвращает запись по номеру.
+     *
+     * @param index Номер записи от 0.
+     * @return Найденный файл.
+     * @throws IndexOutOfBoundsException Если номер вне диапазона.
+     * @throws UncheckedIOException      Если запись не удалось прочитать.
+     */
+    public synchronized ScanHit get(long index) {
+        checkOpen();
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Hit " + index + " out of " + size);
+        }
+        try {
+            long position = offsets.read(index * Long.BYTES, Long.BYTES).getLong();
+            int length = data.read(position, Integer.BYTES).getInt();
+            ByteBuffer fields = data.read(position + Integer.BYTES, length);
+            return ShardProtocol.readHit(new DataInputStream(new BufferInput(fields)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Возвращает страницу записей.
+     *
+     * @param from  Номер первой записи.
+     * @param count Наибольшее количество записей.
+     * @return Записи с номерами от {@code from}; меньше {@code count}, если хранилище кончилось.
+     */
+    public synchronized List<ScanHit> page(long from, int count) {
+        if (from < 0 || count < 0) {
+            throw new IllegalArgumentException("Invalid page: " + from + ", " + count);
+        }
+        long to = Math.min(size, from + count);
+        List<ScanHit> page = new ArrayList<>((int) Math.max(0, to - from));
+        for (long i = from; i < to; i++) {
+            page.add(get(i));
+        }
+        return page;
+    }
+
+    /**
+     * Передает все записи по порядку, читая их постранично, чтобы не удерживать блокировку
+     * хранилища на время обработки.
+     *
+     * @param action Обработчик записей.
+     */
+    public void forEach(Consumer<? super ScanHit> action) {
+        final int pageSize = 256;
+        for (long from = 0; ; from += pageSize) {
+            List<ScanHit> page = page(from, pageSize);
+            page.forEach(action);
+            if (page.size() < pageSize) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Дописывает буферы в файлы и закрывает их; файлы временного хранилища удаляются.
+     *
+     * @throws IOException Если файлы не удалось закрыть.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            data.close();
+        } finally {
+            offsets.close();
+        }
+        if (temporary) {
+            for (AppendFile file : List.of(data, offsets)) {
+                try {
+                    Files.deleteIfExists(file.path);
+                } catch (IOException e) {
+                    // Отображенный в память файл не удаляется в Windows до освобождения отображения
+                    logger.debug("The hit store file will be deleted on exit: {}", file.path);
+                    file.path.toFile().deleteOnExit();
+                }
+            }
+            try {
+                Files.deleteIfExists(directory);
+            } catch (IOException e) {
+                directory.toFile().deleteOnExit();
+            }
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("The hit store is closed");
+        }
+    }
+
+    /**
+     * Файл, дописываемый в конец через буфер и читаемый через отображение в память.
+     * Запись целиком находится либо в файле, либо в буфере: перед записью, не помещающейся в буфер,
+     * буфер сбрасывается.
+     */
+    private static final class AppendFile implements Closeable {
+
+        /**
+         * Путь к файлу.
+         */
+        private final Path path;
+
+        /**
+         * Канал файла.
+         */
+        private final FileChannel channel;
+
+        /**
+         * Буфер еще не записанных в файл байт.
+         */
+        private final ByteBuffer buffer;
+
+        /**
+         * Количество байт, записанных в файл.
+         */
+        private long flushed;
+
+        /**
+         * Отображенные сегменты файла; элемент {@code null}, если сегмент еще не отображался.
+         */
+        private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+        AppendFile(Path path, int bufferSize) throws IOException {
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            this.buffer = ByteBuffer.allocate(bufferSize);
+        }
+
+        /**
+         * Дописывает байты в конец файла.
+         *
+         * @param source Байты для записи.
+         * @return Позиция записанных байт в файле.
+         * @throws IOException Если запись не удалась.
+         */
+        long append(ByteBuffer source) throws IOException {
+            if (source.remaining() > buffer.remaining()) {
+                flush();
+            }
+            long position = flushed + buffer.position();
+            if (source.remaining() > buffer.capacity()) {
+                while (source.hasRemaining()) {
+                    flushed += channel.write(source, flushed);
+                }
+            } else {
+                buffer.put(source);
+            }
+            return position;
+        }
+
+        /**
+         * Записывает буфер в файл.
+         *
+         * @throws IOException Если запись не удалась.
+         */
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                flushed += channel.write(buffer, flushed);
+            }
+            buffer.clear();
+        }
+
+        /**
+         * Возвращает байты по позиции без копирования, если они находятся в одном сегменте или в буфере.
+         *
+         * @param position Позиция в файле.
+         * @param length   Количество байт.
+         * @return Буфер с байтами от текущей позиции.
+         * @throws IOException Если чтение не удалось.
+         */
+        ByteBuffer read(long position, int length) throws IOException {
+            if (position >= flushed) {
+                int start = (int) (position - flushed);
+                return buffer.duplicate().limit(start + length).position(start).slice();
+            }
+            int segment = (int) (position / SEGMENT_SIZE);
+            long segmentStart = segment * SEGMENT_SIZE;
+            if (position + length > segmentStart + SEGMENT_SIZE) {
+                // Запись на границе сегментов читается обычным чтением
+                ByteBuffer result = ByteBuffer.allocate(length);
+                while (result.hasRemaining()) {
+                    if (channel.read(result, position + result.position()) < 0) {
+                        throw new IOException("Unexpected end of " + path);
+                    }
+                }
+                return result.flip();
+            }
+            while (segments.size() <= segment) {
+                segments.add(null);
+            }
+            MappedByteBuffer mapped = segments.get(segment);
+            if (mapped == null || segmentStart + mapped.capacity() < position + length) {
+                // Отображается только уже записанная часть сегмента
+                mapped = channel.map(FileChannel.MapMode.READ_ONLY, segmentStart,
+                        Math.min(SEGMENT_SIZE, flushed - segmentStart));
+                segments.set(segment, mapped);
+            }
+            int start = (int) (position - segmentStart);
+            return mapped.duplicate().limit(start + length).position(start).slice();
+        }
+
+        @Override
+        public void close() throws IOException {
+            segments.clear();
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Поток чтения из буфера.
+     */
+    private static final class BufferInput extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        BufferInput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package project.signature;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.attribute.FileTime;
+import java.util.Locale;
+
+/**
+ * Класс HitWriter записывает найденные файлы в машиночитаемом формате по мере их обнаружения.
+ * Поддерживаются JSON Lines (один JSON-объект на строку) и CSV с заголовком.
+ * Запись буферизуется вызывающей стороной (например, {@link java.io.BufferedWriter});
+ * метод {@link #write(ScanHit)} синхронизирован и может вызываться из нескольких потоков обхода.
+ */
+public class HitWriter implements Closeable {
+
+    /**
+     * Формат вывода.
+     */
+    public enum Format {
+        /**
+         * JSON Lines: один JSON-объект на строку.
+         */
+        JSONL,
+        /**
+         * CSV с заголовком, разделитель — запятая.
+         */
+        CSV;
+
+        /**
+         * Возвращает формат по названию без учета регистра ("jsonl", "json", "csv").
+         *
+         * @param name Название формата.
+         * @return Формат вывода.
+         * @throws IllegalArgumentException Если формат не поддерживается.
+         */
+        public static Format of(String name) {
+            return switch (name.toLowerCase()) {
+                case "jsonl", "json" -> JSONL;
+                case "csv" -> CSV;
+                default -> throw new IllegalArgumentException("Unknown output format: " + name);
+            };
+        }
+    }
+
+    /**
+     * Заголовок CSV.
+     */
+    static final String CSV_HEADER = "path,size,created,accessed,modified,symlink,types,embedded,archived,aliasOf,"
+            + "entropy,packed,packer";
+
+    /**
+     * Получатель записей.
+     */
+    private final Writer out;
+
+    /**
+     * Формат вывода.
+     */
+    private final Format format;
+
+    /**
+     * Количество записанных файлов.
+     */
+    private long count;
+
+    /**
+     * Создает запись найденных файлов; для CSV сразу записывается заголовок.
+     *
+     * @param out    Получатель записей.
+     * @param format Формат вывода.
+     * @throws IOException Если произошла ошибка при записи заголовка.
+     */
+    public HitWriter(Writer out, Format format) throws IOException {
+        this.out = out;
+        this.format = format;
+        if (format == Format.CSV) {
+            out.write(CSV_HEADER);
+            out.write('\n');
+        }
+    }
+
+    /**
+     * Записывает найденный файл.
+     *
+     * @param hit Найденный файл.
+     * @throws UncheckedIOException Если произошла ошибка при записи.
+     */
+    public synchronized void write(ScanHit hit) {
+        try {
+            if (format == Format.JSONL) {
+                writeJson(hit);
+            } else {
+                writeCsv(hit);
+            }
+            count++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Возвращает количество записанных файлов.
+     *
+     * @return Количество записей.
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * Сбрасывает буферизованные записи получателю.
+     *
+     * @throws IOException Если произошла ошибка при записи.
+     */
+    public synchronized void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    private void writeJson(ScanHit hit) throws IOException {
+        StringBuilder line = new StringBuilder(256);
+        line.append("{\"path\":");
+        appendJsonString(line, hit.path().toAbsolutePath().toString());
+        line.append(",\"size\":").append(hit.size());
+        line.append(",\"created\":");
+        appendJsonString(line, time(hit.creationTime()));
+        line.append(",\"accessed\":");
+        appendJsonString(line, time(hit.lastAccessTime()));
+        line.append(",\"modified\":");
+        appendJsonString(line, time(hit.lastModifiedTime()));
+        line.append(",\"symlink\":").append(hit.symbolicLink());
+        line.append(",\"types\":[");
+        for (int i = 0; i < hit.types().size(); i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            appendJsonString(line, hit.types().get(i));
+        }
+        line.append("],\"embedded\":[");
+        for (int i = 0; i < hit.embedded().size(); i++) {
+            DeepScanner.Match match = hit.embedded().get(i);
+            if (i > 0) {
+                line.append(',');
+            }
+            line.append("{\"name\":");
+            appendJsonString(line, match.name());
+            line.append(",\"offset\":").append(match.offset()).append('}');
+        }
+        line.append("],\"archived\":[");
+        for (int i = 0; i < hit.archived().size(); i++) {
+            ArchiveScanner.Match match = hit.archived().get(i);
+            if (i > 0) {
+                line.append(',');
+            }
+            line.append("{\"name\":");
+            appendJsonString(line, match.name());
+            line.append(",\"entry\":");
+            appendJsonString(line, match.entry());
+            line.append('}');
+        }
+        line.append("],\"aliasOf\":");
+        if (hit.aliasOf() == null) {
+            line.append("null");
+        } else {
+            appendJsonString(line, hit.aliasOf().toAbsolutePath().toString());
+        }
+        line.append(",\"entropy\":");
+        appendJsonEntropy(line, hit.entropy());
+        line.append("}\n");
+        out.append(line);
+    }
+
+    private void writeCsv(ScanHit hit) throws IOException {
+        StringBuilder line = new StringBuilder(256);
+        appendCsvField(line, hit.path().toAbsolutePath().toString());
+        line.append(',').append(hit.size());
+        line.append(',').append(time(hit.creationTime()));
+        line.append(',').append(time(hit.lastAccessTime()));
+        line.append(',').append(time(hit.lastModifiedTime()));
+        line.append(',').append(hit.symbolicLink());
+        line.append(',');
+        appendCsvField(line, String.join(";", hit.types()));
+        StringBuilder embedded = new StringBuilder();
+        for (DeepScanner.Match match : hit.embedded()) {
+            if (embedded.length() > 0) {
+                embedded.append(';');
+            }
+            embedded.append(match.name()).append('@').append(match.offset());
+        }
+        line.append(',');
+        appendCsvField(line, embedded.toString());
+        StringBuilder archived = new StringBuilder();
+        for (ArchiveScanner.Match match : hit.archived()) {
+            if (archived.length() > 0) {
+                archived.append(';');
+            }
+            archived.append(match.name()).append('@').append(match.entry());
+        }
+        line.append(',');
+        appendCsvField(line, archived.toString());
+        line.append(',');
+        appendCsvField(line, hit.aliasOf() == null ? "" : hit.aliasOf().toAbsolutePath().toString());
+        EntropyAnalyzer.Report entropy = hit.entropy();
+        if (entropy == null) {
+            line.append(",,,");
+        } else {
+            line.append(',').append(entropyValue(entropy.entropy()));
+            line.append(',').append(entropy.packed()).append(',');
+            appendCsvField(line, entropy.reason());
+        }
+        line.append('\n');
+        out.append(line);
+    }
+
+    /**
+     * Добавляет результат анализа энтропии в формате JSON.
+     *
+     * @param line   Получатель.
+     * @param report Результат анализа или {@code null}.
+     */
+    private static void appendJsonEntropy(StringBuilder line, EntropyAnalyzer.Report report) {
+        if (report == null) {
+            line.append("null");
+            return;
+        }
+        line.append("{\"value\":").append(entropyValue(report.entropy()));
+        line.append(",\"maxWindow\":").append(entropyValue(report.maxWindowEntropy()));
+        line.append(",\"highShare\":").append(entropyValue(report.highEntropyShare()));
+        line.append(",\"packed\":").append(report.packed());
+        line.append(",\"reason\":");
+        appendJsonString(line, report.reason());
+        line.append(",\"sections\":[");
+        for (int i = 0; i < report.sections().size(); i++) {
+            EntropyAnalyzer.Section section = report.sections().get(i);
+            if (i > 0) {
+                line.append(',');
+            }
+            line.append("{\"name\":");
+            appendJsonString(line, section.name());
+            line.append(",\"offset\":").append(section.offset());
+            line.append(",\"size\":").append(section.size());
+            line.append(",\"executable\":").append(section.executable());
+            line.append(",\"entropy\":").append(entropyValue(section.entropy())).append('}');
+        }
+        line.append("]}");
+    }
+
+    /**
+     * Возвращает значение энтропии с тремя знаками после точки независимо от локали.
+     *
+     * @param value Значение.
+     * @return Строка с числом.
+     */
+    private static String entropyValue(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    /**
+     * Возвращает время в формате ISO-8601.
+     *
+     * @param time Время или {@code null}.
+     * @return Строка со временем или пустая строка.
+     */
+    private static String time(FileTime time) {
+        return time == null ? "" : time.toInstant().toString();
+    }
+
+    /**
+     * Добавляет строку в формате JSON (в кавычках, с экранированием).
+     *
+     * @param out   Получатель.
+     * @param value Строка.
+     */
+    static void appendJsonString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * Добавляет поле CSV; поле заключается в кавычки, если содержит запятую, кавычку или перевод строки.
+     *
+     * @param out   Получатель.
+     * @param value Значение поля.
+     */
+    static void appendCsvField(StringBuilder out, String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            out.append(value);
+            return;
+        }
+        out.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+}
@@ -0,0 +1,159 @@
+package project.signature;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Класс IoScheduler упорядочивает чтение заголовков файлов одной директории для медленных носителей.
+ * Файлы пакета сортируются по устройству и номеру inode из {@link FileKeySet.FileKey ключей}, полученных
+ * при обходе без дополнительных обращений к файловой системе, что на жестких дисках сокращает перемещения
+ * головки, и передаются в пул потоков своего устройства. Размер пула ограничивает количество
+ * одновременных чтений с одного устройства или сетевого ресурса, сколько бы потоков обхода ни работало.
+ * Файлы без ключа (файловая система не предоставляет номера inode) читаются в порядке листинга.
+ */
+final class IoScheduler implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(IoScheduler.class);
+
+    /**
+     * Максимальное количество чтений пакета, ожидающих в очереди устройства одновременно.
+     */
+    static final int WINDOW = 256;
+
+    /**
+     * Элемент пакета с ключом сортировки.
+     *
+     * @param item   Элемент пакета.
+     * @param device Номер устройства.
+     * @param inode  Номер inode или порядковый номер в листинге.
+     * @param <T>    Тип элемента пакета.
+     */
+    private record Candidate<T>(T item, long device, long inode) {
+    }
+
+    /**
+     * Количество одновременных чтений с одного устройства.
+     */
+    private final int concurrency;
+
+    /**
+     * Пулы потоков по номерам устройств.
+     */
+    private final Map<Long, ExecutorService> devices = new ConcurrentHashMap<>();
+
+    /**
+     * Номер для имен потоков.
+     */
+    private final AtomicInteger threadNumber = new AtomicInteger();
+
+    /**
+     * Создает планировщик чтения.
+     *
+     * @param concurrency Количество одновременных чтений с одного устройства.
+     * @throws IllegalArgumentException Если {@code concurrency} меньше 1.
+     */
+    IoScheduler(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("I/O concurrency must be positive: " + concurrency);
+        }
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Проверяет файлы пакета в порядке устройств и inode и возвращает найденные файлы в том же порядке.
+     * Метод ожидает завершения всех проверок пакета.
+     *
+     * @param files Файлы одной директории.
+     * @param key   Ключ файла элемента пакета или {@code null}, если он неизвестен.
+     * @param task  Проверка файла, возвращающая запись о найденном файле или {@code null}.
+     * @param <T>   Тип элемента пакета (например, путь вместе с атрибутами, прочитанными при обходе).
+     * @return Найденные файлы.
+     * @throws InterruptedException Если ожидание прервано; оставшиеся проверки отменяются.
+     */
+    <T> List<ScanHit> inspect(List<T> files, Function<T, FileKeySet.FileKey> key, Function<T, ScanHit> task)
+            throws InterruptedException {
+        List<Candidate<T>> candidates = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            T item = files.get(i);
+            FileKeySet.FileKey fileKey = key.apply(item);
+            candidates.add(fileKey != null ? new Candidate<>(item, fileKey.device(), fileKey.inode())
+                    : new Candidate<>(item, 0, i));
+        }
+        candidates.sort(Comparator.<Candidate<T>>comparingLong(Candidate::device).thenComparingLong(Candidate::inode));
+
+        List<ScanHit> hits = new ArrayList<>();
+        List<Future<ScanHit>> window = new ArrayList<>(Math.min(WINDOW, candidates.size()));
+        for (int start = 0; start < candidates.size(); start += WINDOW) {
+            window.clear();
+            int end = Math.min(start + WINDOW, candidates.size());
+            for (Candidate<T> candidate : candidates.subList(start, end)) {
+                window.add(executor(candidate.device()).submit(() -> task.apply(candidate.item())));
+            }
+            for (int i = 0; i < window.size(); i++) {
+                try {
+                    ScanHit hit = window.get(i).get();
+                    if (hit != null) {
+                        hits.add(hit);
+                    }
+                } catch (InterruptedException e) {
+                    for (Future<ScanHit> future : window.subList(i, window.size())) {
+                        future.cancel(false);
+                    }
+                    throw e;
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException cause) {
+                        throw cause;
+                    }
+                    if (e.getCause() instanceof Error cause) {
+                        throw cause;
+                    }
+                    throw new IllegalStateException(e.getCause());
+                } catch (CancellationException e) {
+                    // Проверка отменена при закрытии планировщика
+                }
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * Останавливает пулы потоков всех устройств.
+     */
+    @Override
+    public void close() {
+        for (ExecutorService executor : devices.values()) {
+            executor.shutdownNow();
+        }
+        devices.clear();
+    }
+
+    /**
+     * Возвращает пул потоков устройства, создавая его при первом обращении.
+     *
+     * @param device Номер устройства.
+     * @return Пул потоков устройства.
+     */
+    private ExecutorService executor(long device) {
+        return devices.computeIfAbsent(device, key -> {
+            logger.debug("I/O pool created for device {}: {} threads", key, concurrency);
+            return Executors.newFixedThreadPool(concurrency, runnable -> {
+                Thread thread = new Thread(runnable, "io-device-" + key + "-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        });
+    }
+}
@@ -0,0 +1,195 @@
+package project.signature;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Класс JdbcSignatureRepository — хранилище сигнатур в базе данных (Oracle через ojdbc8).
+ * Сигнатуры хранятся в таблице {@code SIGNATURES}, версия хранилища — в единственной строке
+ * таблицы {@code SIGNATURE_VERSION}. Таблицы создаются при первом обращении, если их нет.
+ * Каждое изменение выполняется в одной транзакции вместе с увеличением версии;
+ * массовая запись выполняется пакетами по {@link #BATCH_SIZE} строк.
+ * <p>
+ * Хранилище открывает соединение на каждую операцию: обращения к нему происходят только
+ * при запуске, перед сканированием (проверка версии) и при изменении сигнатур.
+ */
+public class JdbcSignatureRepository implements SignatureRepository {
+
+    private static final Logger logger = LogManager.getLogger(JdbcSignatureRepository.class);
+
+    /**
+     * Количество строк в одном пакете записи.
+     */
+    static final int BATCH_SIZE = 500;
+
+    private final String url;
+    private final String user;
+    private final String password;
+
+    /**
+     * Признак того, что таблицы хранилища уже проверены.
+     */
+    private volatile boolean schemaReady;
+
+    /**
+     * Создает хранилище для базы данных.
+     *
+     * @param url      URL подключения JDBC (например, "jdbc:oracle:thin:@//host:1521/service").
+     * @param user     Имя пользователя.
+     * @param password Пароль.
+     */
+    public JdbcSignatureRepository(String url, String user, String password) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+    }
+
+    @Override
+    public long getVersion() throws IOException {
+        try (Connection connection = connect();
+             Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery("SELECT VERSION FROM SIGNATURE_VERSION")) {
+            return result.next() ? result.getLong(1) : 0;
+        } catch (SQLException e) {
+            throw new IOException("Unable to read the signature database version", e);
+        }
+    }
+
+    @Override
+    public List<SignatureRecord> loadAll() throws IOException {
+        List<SignatureRecord> records = new ArrayList<>();
+        try (Connection connection = connect();
+             Statement statement = connection.createStatement();
+             ResultSet result = statement.executeQuery(
+                     "SELECT NAME, HEX, SIG_OFFSET FROM SIGNATURES ORDER BY NAME")) {
+            while (result.next()) {
+                records.add(new SignatureRecord(result.getString(1), result.getString(2), result.getInt(3)));
+            }
+        } catch (SQLException e) {
+            throw new IOException("Unable to load signatures from the database", e);
+        }
+        return records;
+    }
+
+    @Override
+    public long saveAll(Collection<SignatureRecord> records) throws IOException {
+        // Повторяющиеся названия оставляют последнюю запись, как и при добавлении по одной
+        Map<String, SignatureRecord> unique = new LinkedHashMap<>();
+        for (SignatureRecord record : records) {
+            unique.put(record.name(), record);
+        }
+        try (Connection connection = connect()) {
+            connection.setAutoCommit(false);
+            try {
+                try (PreparedStatement delete = connection.prepareStatement("DELETE FROM SIGNATURES WHERE NAME = ?");
+                     PreparedStatement insert = connection.prepareStatement(
+                             "INSERT INTO SIGNATURES (NAME, HEX, SIG_OFFSET) VALUES (?, ?, ?)")) {
+                    int pending = 0;
+                    for (SignatureRecord record : unique.values()) {
+                        delete.setString(1, record.name());
+                        delete.addBatch();
+                        insert.setString(1, record.name());
+                        insert.setString(2, record.hex());
+                        insert.setInt(3, record.offset());
+                        insert.addBatch();
+                        if (++pending == BATCH_SIZE) {
+                            delete.executeBatch();
+                            insert.executeBatch();
+                            pending = 0;
+                        }
+                    }
+                    if (pending > 0) {
+                        delete.executeBatch();
+                        insert.executeBatch();
+                    }
+                }
+                long version;
+                try (Statement statement = connection.createStatement()) {
+                    statement.executeUpdate("UPDATE SIGNATURE_VERSION SET VERSION = VERSION + 1");
+                    try (ResultSet result = statement.executeQuery("SELECT VERSION FROM SIGNATURE_VERSION")) {
+                        result.next();
+                        version = result.getLong(1);
+                    }
+                }
+                connection.commit();
+                logger.info("Signatures saved to the database: {}, version {}", unique.size(), version);
+                return version;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new IOException("Unable to save signatures to the database", e);
+        }
+    }
+
+    /**
+     * Открывает соединение и при первом обращении создает недостающие таблицы.
+     *
+     * @return Соединение с базой данных.
+     * @throws SQLException Если подключение не удалось.
+     */
+    private Connection connect() throws SQLException {
+        Connection connection = DriverManager.getConnection(url, user, password);
+        if (!schemaReady) {
+            try {
+                createSchema(connection);
+            } catch (SQLException e) {
+                connection.close();
+                throw e;
+            }
+            schemaReady = true;
+        }
+        return connection;
+    }
+
+    /**
+     * Создает таблицы хранилища, если их нет.
+     *
+     * @param connection Соединение с базой данных.
+     * @throws SQLException Если таблицы не удалось создать.
+     */
+    private static synchronized void createSchema(Connection connection) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (Statement statement = connection.createStatement()) {
+            if (!tableExists(metaData, "SIGNATURES")) {
+                statement.executeUpdate("CREATE TABLE SIGNATURES (NAME VARCHAR(64) PRIMARY KEY, "
+                        + "HEX VARCHAR(1024) NOT NULL, SIG_OFFSET INTEGER DEFAULT 0 NOT NULL)");
+                logger.info("The SIGNATURES table was created");
+            }
+            if (!tableExists(metaData, "SIGNATURE_VERSION")) {
+                statement.executeUpdate("CREATE TABLE SIGNATURE_VERSION (VERSION INTEGER NOT NULL)");
+                statement.executeUpdate("INSERT INTO SIGNATURE_VERSION (VERSION) VALUES (0)");
+                logger.info("The SIGNATURE_VERSION table was created");
+            }
+        }
+    }
+
+    /**
+     * Проверяет наличие таблицы в схеме текущего пользователя.
+     *
+     * @param metaData Метаданные базы данных.
+     * @param table    Название таблицы.
+     * @return {@code true}, если таблица существует.
+     * @throws SQLException Если метаданные не удалось прочитать.
+     */
+    private static boolean tableExists(DatabaseMetaData metaData, String table) throws SQLException {
+        try (ResultSet tables = metaData.getTables(null, metaData.getUserName(), table, new String[]{"TABLE"})) {
+            return tables.next();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package project.signature;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Класс LatencyHistogram — гистограмма длительностей операций в наносекундах.
+ * Значения раскладываются по логарифмическим корзинам с 8 подкорзинами на каждую степень двойки,
+ * поэтому относительная погрешность перцентилей не превышает 12,5%, а память фиксирована (496 счетчиков).
+ * Запись — несколько атомарных операций без блокировок, что позволяет не отключать гистограмму в работе.
+ */
+public class LatencyHistogram {
+
+    /**
+     * Количество подкорзин на степень двойки (2^{@value}).
+     */
+    private static final int SUB_BITS = 3;
+
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    /**
+     * Количество корзин.
+     */
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Записывает длительность операции.
+     *
+     * @param nanos Длительность в наносекундах.
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts.incrementAndGet(bucket(value));
+        count.increment();
+        total.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Возвращает количество записанных операций.
+     *
+     * @return Количество операций.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Возвращает среднюю длительность операции.
+     *
+     * @return Средняя длительность в наносекундах или 0, если операций не было.
+     */
+    public long getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : total.sum() / n;
+    }
+
+    /**
+     * Возвращает максимальную длительность операции.
+     *
+     * @return Максимальная длительность в наносекундах.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Возвращает приближенное значение перцентиля (верхнюю границу корзины).
+     *
+     * @param percentile Перцентиль от 0 до 100.
+     * @return Длительность в наносекундах или 0, если операций не было.
+     */
+    public long getPercentile(double percentile) {
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            n += counts.get(i);
+        }
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(n * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Возвращает снимок основных показателей гистограммы.
+     *
+     * @return Снимок гистограммы.
+     */
+    public LatencySnapshot snapshot() {
+        return new LatencySnapshot(getCount(), getMean(), getPercentile(50), getPercentile(99), getMax());
+    }
+
+    /**
+     * Возвращает номер корзины для значения.
+     *
+     * @param value Неотрицательное значение.
+     * @return Номер корзины.
+     */
+    static int bucket(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    /**
+     * Возвращает наибольшее значение, попадающее в корзину.
+     *
+     * @param bucket Номер корзины.
+     * @return Верхняя граница корзины.
+     */
+    static long upperBound(int bucket) {
+        if (bucket < SUB_COUNT) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_COUNT + SUB_BITS - 1;
+        long sub = bucket % SUB_COUNT;
+        long lower = (SUB_COUNT + sub) << (exponent - SUB_BITS);
+        return lower + (1L << (exponent - SUB_BITS)) - 1;
+    }
+}
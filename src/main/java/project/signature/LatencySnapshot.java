@@ -0,0 +1,72 @@
+package project.signature;
+
+/**
+ * Снимок показателей {@link LatencyHistogram}, публикуемый через JMX.
+ * Длительности возвращаются в микросекундах.
+ */
+public final class LatencySnapshot {
+
+    private final long count;
+    private final long mean;
+    private final long p50;
+    private final long p99;
+    private final long max;
+
+    /**
+     * Создает снимок показателей.
+     *
+     * @param count Количество операций.
+     * @param mean  Средняя длительность в наносекундах.
+     * @param p50   Медиана в наносекундах.
+     * @param p99   99-й перцентиль в наносекундах.
+     * @param max   Максимальная длительность в наносекундах.
+     */
+    public LatencySnapshot(long count, long mean, long p50, long p99, long max) {
+        this.count = count;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p99 = p99;
+        this.max = max;
+    }
+
+    /**
+     * @return Количество операций.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return Средняя длительность в микросекундах.
+     */
+    public double getMeanMicros() {
+        return mean / 1000.0;
+    }
+
+    /**
+     * @return Медиана в микросекундах.
+     */
+    public double getP50Micros() {
+        return p50 / 1000.0;
+    }
+
+    /**
+     * @return 99-й перцентиль в микросекундах.
+     */
+    public double getP99Micros() {
+        return p99 / 1000.0;
+    }
+
+    /**
+     * @return Максимальная длительность в микросекундах.
+     */
+    public double getMaxMicros() {
+        return max / 1000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d, mean=%.1f us, p50=%.1f us, p99=%.1f us, max=%.1f us",
+                count, getMeanMicros(), getP50Micros(), getP99Micros(), getMaxMicros());
+    }
+}
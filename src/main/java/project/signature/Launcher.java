@@ -1,5 +1,7 @@
 package project.signature;
 
+import java.util.Arrays;
+
 /**
  * Класс Launcher предназначен для запуска приложения.
  *  Этот класс обходит проблему с модулями JavaFX, позволяя корректно запустить приложение
@@ -7,11 +9,17 @@ package project.signature;
 public class Launcher {
     /**
      * Точка входа в приложение.
-     * Запускает главный класс приложения {@link Main}.
+     * Запускает главный класс приложения {@link Main}. Если первым аргументом передан {@code --cli},
+     * запускается консольный режим {@link ScanCli} без инициализации JavaFX.
      *
-     * @param args Аргументы командной строки, передаваемые в {@link Main#main(String[])}.
+     * @param args Аргументы командной строки, передаваемые в {@link Main#main(String[])}
+     *             или, после {@code --cli}, в {@link ScanCli#main(String[])}.
      */
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--cli")) {
+            ScanCli.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         Main.main(args);
     }
-}
\ No newline at end of file
+}
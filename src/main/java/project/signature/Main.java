@@ -1,16 +1,31 @@
 package project.signature;
 
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
 import javafx.stage.DirectoryChooser;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
@@ -34,6 +49,41 @@ public class Main extends Application {
      */
     private File dir = null;
 
+    /**
+     * Путь к файлу индекса результатов сканирования.
+     */
+    private static final Path INDEX_FILE = Path.of(System.getProperty("user.home"), ".signature", "scan-index.bin");
+
+    /**
+     * Индекс результатов предыдущих сканирований, загружаемый при первом сканировании.
+     */
+    private ScanIndex index = null;
+
+    /**
+     * Директория журналов сканирования; журнал каждой корневой директории хранится в отдельном файле.
+     */
+    private static final Path JOURNAL_DIRECTORY = Path.of(System.getProperty("user.home"), ".signature", "journals");
+
+    /**
+     * Постоянное хранилище сигнатур.
+     */
+    private final SignatureStore store = SignatureStore.open();
+
+    /**
+     * Количество найденных файлов на одной странице таблицы.
+     */
+    static final int PAGE_SIZE = 100;
+
+    /**
+     * Открытые хранилища найденных файлов; закрываются вместе с окном результатов или при выходе.
+     */
+    private final Set<HitStore> hitStores = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Журналы выполняющихся сканирований; при выходе сбрасываются на диск и закрываются.
+     */
+    private final Set<ScanJournal> journals = ConcurrentHashMap.newKeySet();
+
     /**
      * Точка входа в приложение JavaFX.
      * Инициализирует и отображает основное окно приложения.
@@ -42,11 +92,19 @@ public class Main extends Application {
      */
     @Override
     public void start(Stage primaryStage) {
+        refreshSignatures();
         label = new Label("Выберите каталог:");
+        Label label_progress = new Label();
 
         Button button_select = new Button("Выбрать каталог");
         Button button_check = new Button("Сканировать");
+        Button button_cancel = new Button("Отменить");
         Button button_add = new Button("Добавить в базу данных сигнатуру");
+        CheckBox check_deep = new CheckBox("Глубокое сканирование (поиск вложенных файлов)");
+        CheckBox check_archives = new CheckBox("Проверять содержимое архивов (ZIP, JAR, TAR, GZ)");
+        CheckBox check_resume = new CheckBox("Продолжить прерванное сканирование");
+        CheckBox check_entropy = new CheckBox("Анализ энтропии (поиск упакованных файлов)");
+        button_cancel.setDisable(true);
 
 
         button_select.setOnAction(event -> {
@@ -61,28 +119,92 @@ public class Main extends Application {
             if (dir == null || !dir.exists()) {
                 label.setText("Каталог не выбран");
                 logger.error("Attempt to analyze an unselected directory");
-            } else {
-                try {
-                    DirScanner.analyzeDirectory(dir);
-
+                return;
+            }
 
-                    switch (DirScanner.getString()) {
-                        case "Пустая папка" -> label.setText("Выбранная папка пустая");
-                        case "Недостаточно прав для чтения" -> label.setText("Для анализа директории недостаточно прав");
-                        case "Директория некорректная" -> label.setText("Директория некорректная");
-                        case "Исполняемый(-й) файл(-ы) найден(-ы)" -> label.setText("Исполняемый(-й) файл(-ы) найден(-ы)");
-                        default -> label.setText(DirScanner.getString());
+            refreshSignatures();
+            boolean deepScan = check_deep.isSelected();
+            int archiveDepth = check_archives.isSelected() ? ArchiveScanner.DEFAULT_MAX_DEPTH : 0;
+            String version = ScanIndex.currentVersion(deepScan, archiveDepth);
+            if (index == null) {
+                index = ScanIndex.load(INDEX_FILE, version);
+            }
+            index.revalidate(version);
+
+            ScanSession session = new ScanSession(dir);
+            session.setParallelism(Runtime.getRuntime().availableProcessors());
+            session.setDeepScan(deepScan);
+            session.setArchiveDepth(archiveDepth);
+            session.setAnalyzeEntropy(check_entropy.isSelected());
+            session.setIndex(index);
+            HitStore hits;
+            try {
+                hits = HitStore.createTemporary();
+            } catch (IOException e) {
+                label.setText("Не удалось создать файл результатов");
+                logger.error("Failed to create the hit store", e);
+                return;
+            }
+            ScanJournal journal;
+            try {
+                journal = ScanJournal.open(journalFile(dir), dir.toPath(), check_resume.isSelected());
+            } catch (IOException e) {
+                closeHitStore(hits);
+                label.setText("Не удалось открыть журнал сканирования");
+                logger.error("Failed to open the scan journal", e);
+                return;
+            }
+            journals.add(journal);
+            session.setJournal(journal);
+            hitStores.add(hits);
+            ScanTask task = new ScanTask(session, hits);
+
+            label.setText("Сканирование: " + dir.getAbsolutePath());
+            label_progress.textProperty().bind(task.messageProperty());
+            button_check.setDisable(true);
+            check_deep.setDisable(true);
+            check_archives.setDisable(true);
+            check_resume.setDisable(true);
+            check_entropy.setDisable(true);
+            button_cancel.setDisable(false);
+            button_cancel.setOnAction(cancel -> task.cancel());
+
+            task.stateProperty().addListener((observable, oldState, state) -> {
+                if (!task.isDone()) {
+                    return;
+                }
+                label_progress.textProperty().unbind();
+                button_cancel.setDisable(true);
+                switch (state) {
+                    case SUCCEEDED -> showSummary(task.getValue());
+                    case CANCELLED -> {
+                        label.setText("Сканирование отменено");
+                        logger.info("The scan was cancelled");
                     }
-                    if (DirScanner.getCnt() == 0) {
-                        logger.info("No executable files found");
-                    } else {
-                        logger.info("{} executable files found", DirScanner.getCnt());
-                        displayMetaData();
+                    default -> {
+                        label.setText("Ошибка при сканировании");
+                        logger.error("Unidentified error in the analysis", task.getException());
                     }
-                } catch (RuntimeException e) {
-                    logger.error("Unidentified error in the analysis");
                 }
-            }
+            });
+
+            // После отмены потоки сессии еще пишут в журнал, поэтому журнал закрывается,
+            // а новое сканирование разрешается только после окончания задачи
+            task.whenFinished(() -> {
+                if (journals.remove(journal)) {
+                    closeJournal(journal);
+                }
+                button_check.setDisable(false);
+                check_deep.setDisable(false);
+                check_archives.setDisable(false);
+                check_resume.setDisable(false);
+                check_entropy.setDisable(false);
+            });
+
+            displayMetaData(task);
+            Thread thread = new Thread(task, "scan-task");
+            thread.setDaemon(true);
+            thread.start();
         });
 
         button_add.setOnAction(event -> {
@@ -91,7 +213,8 @@ public class Main extends Application {
 
         VBox root = new VBox(10);
         root.getChildren().addAll(label, button_select,
-                button_check, button_add);
+                button_check, button_cancel, check_deep, check_archives, check_resume, check_entropy, button_add,
+                label_progress);
 
         Scene scene = new Scene(root, 400, 400);
         primaryStage.setTitle("Выбор каталога");
@@ -99,33 +222,219 @@ public class Main extends Application {
         primaryStage.show();
     }
 
+    /**
+     * Отображает итоги завершенного сканирования в главном окне.
+     *
+     * @param summary Итоги сканирования.
+     */
+    private void showSummary(ScanSummary summary) {
+        switch (summary.status()) {
+            case EMPTY -> label.setText("Выбранная папка пустая");
+            case ACCESS_DENIED -> label.setText("Для анализа директории недостаточно прав");
+            case INVALID_DIRECTORY -> label.setText("Директория некорректная");
+            case CANCELLED -> label.setText("Сканирование отменено");
+            case TIME_LIMIT -> label.setText("Время сканирования истекло, найдено файлов: " + summary.hits());
+            default -> label.setText(summary.hits() == 0
+                    ? "Исполняемые файлы не найдены"
+                    : "Исполняемый(-й) файл(-ы) найден(-ы): " + summary.hits());
+        }
+        if (summary.hits() == 0) {
+            logger.info("No executable files found");
+        } else {
+            logger.info("{} executable files found", summary.hits());
+        }
+    }
+
     /**
      * Отображает окно с метаданными найденных файлов.
-     * Окно содержит прокручиваемую область с метаданными и информацией о количестве найденных файлов.
+     * Найденные файлы хранятся на диске в {@link HitStore}, а таблица показывает их постранично
+     * по {@link #PAGE_SIZE}: в памяти находится только текущая страница, поэтому окно остается
+     * отзывчивым при любом количестве найденных файлов. Сортировка по столбцам действует в пределах страницы.
+     * Подробное описание выбранного файла выводится под таблицей. Хранилище закрывается,
+     * когда окно закрыто и сканирование завершено.
+     *
+     * @param task Задача сканирования, найденные файлы которой отображаются.
      */
-    public void displayMetaData() {
+    public void displayMetaData(ScanTask task) {
         Stage stage = new Stage();
-        Label label = new Label();
+        HitStore hits = task.getHits();
+        Label counter = new Label();
+        counter.textProperty().bind(task.hitCountProperty().asString("Количество найденных файлов: %d"));
+
+        TableView<ScanHit> table = new TableView<>();
+        ObservableList<ScanHit> rows = FXCollections.observableArrayList();
+        table.setItems(rows);
+
+        TableColumn<ScanHit, String> nameColumn = new TableColumn<>("Название файла");
+        nameColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(
+                String.valueOf(cell.getValue().path().getFileName())));
+        TableColumn<ScanHit, String> pathColumn = new TableColumn<>("Полный путь");
+        pathColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(
+                cell.getValue().path().toAbsolutePath().toString()));
+        pathColumn.setPrefWidth(300);
+        TableColumn<ScanHit, Long> sizeColumn = new TableColumn<>("Размер, байт");
+        sizeColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().size()));
+        TableColumn<ScanHit, FileTime> modifiedColumn = new TableColumn<>("Дата последнего изменения");
+        modifiedColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue().lastModifiedTime()));
+        TableColumn<ScanHit, String> typeColumn = new TableColumn<>("Сигнатуры");
+        typeColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(signatures(cell.getValue())));
+        TableColumn<ScanHit, String> entropyColumn = new TableColumn<>("Энтропия");
+        entropyColumn.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(entropy(cell.getValue())));
+        table.getColumns().addAll(List.of(nameColumn, pathColumn, sizeColumn, modifiedColumn, typeColumn,
+                entropyColumn));
+
+        Pagination pagination = new Pagination(1, 0);
+        pagination.setPageFactory(page -> {
+            rows.setAll(hits.page((long) page * PAGE_SIZE, PAGE_SIZE));
+            return table;
+        });
+        task.hitCountProperty().addListener((observable, oldCount, count) -> {
+            long pages = Math.max(1, (count.longValue() + PAGE_SIZE - 1) / PAGE_SIZE);
+            pagination.setPageCount((int) Math.min(pages, Integer.MAX_VALUE));
+            int page = pagination.getCurrentPageIndex();
+            if (rows.size() < PAGE_SIZE && page == pagination.getPageCount() - 1) {
+                // Последняя страница дополняется найденными с момента ее загрузки файлами
+                rows.setAll(hits.page((long) page * PAGE_SIZE, PAGE_SIZE));
+            }
+        });
 
-        String str = DirScanner.getMetadata().toString().substring(1,
-                DirScanner.getMetadata().toString().length() - 1);
-        str = str.replace(',', ' ');
+        TextArea details = new TextArea();
+        details.setEditable(false);
+        details.setWrapText(true);
+        details.setPrefRowCount(8);
+        table.getSelectionModel().selectedItemProperty().addListener((observable, oldHit, hit) ->
+                details.setText(hit == null ? "" : hit.describe()));
+
+        Label exportStatus = new Label();
+        Button exportButton = new Button("Сохранить в JSON Lines");
+        exportButton.disableProperty().bind(task.runningProperty());
+        exportButton.setOnAction(event -> {
+            FileChooser chooser = new FileChooser();
+            chooser.setInitialFileName("hits.jsonl");
+            File file = chooser.showSaveDialog(stage);
+            if (file != null) {
+                exportButton.setDisable(true);
+                exportHits(hits, file.toPath(), exportStatus);
+            }
+        });
 
-        String counter = "Количество найденных файлов: " + DirScanner.getCnt() + "\n\n";
+        // Хранилище закрывается, когда окно закрыто и сессия сканирования больше не пишет в него
+        Runnable release = () -> {
+            if (task.isFinished() && !stage.isShowing() && hitStores.remove(hits)) {
+                closeHitStore(hits);
+            }
+        };
+        stage.setOnHidden(event -> release.run());
+        task.whenFinished(release);
 
-        label.setText(counter + str);
-        label.setWrapText(true);
+        VBox root = new VBox(10, counter, pagination, details, new HBox(10, exportButton, exportStatus));
+        VBox.setVgrow(pagination, Priority.ALWAYS);
         stage.setTitle("Метаданные");
-
-        ScrollPane scrollPane = new ScrollPane();
-        scrollPane.setContent(label);
-        scrollPane.setFitToHeight(false);
-
-        Scene metadataScene = new Scene(scrollPane, 400, 600);
-        stage.setScene(metadataScene);
+        stage.setScene(new Scene(root, 800, 600));
         logger.info("Displaying a window with metadata of executable files");
         stage.show();
-        DirScanner.resetToZeroCnt();
+    }
+
+    /**
+     * Выгружает найденные файлы из хранилища в файл JSON Lines в фоновом потоке.
+     * Записи читаются постранично, поэтому выгрузка не загружает хранилище в память целиком.
+     *
+     * @param hits   Хранилище найденных файлов.
+     * @param file   Файл для записи.
+     * @param status Метка для сообщения о результате.
+     */
+    private void exportHits(HitStore hits, Path file, Label status) {
+        Thread thread = new Thread(() -> {
+            String message;
+            try (HitWriter writer = new HitWriter(Files.newBufferedWriter(file), HitWriter.Format.JSONL)) {
+                hits.forEach(writer::write);
+                message = "Сохранено: " + writer.getCount();
+                logger.info("{} hits exported to {}", writer.getCount(), file);
+            } catch (IOException | UncheckedIOException | IllegalStateException e) {
+                message = "Не удалось сохранить файл";
+                logger.error("Failed to export hits to {}", file, e);
+            }
+            String result = message;
+            Platform.runLater(() -> status.setText(result));
+        }, "hit-export");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Возвращает файл журнала сканирования директории.
+     *
+     * @param directory Корневая директория сканирования.
+     * @return Путь к файлу журнала, имя которого получено из хеша абсолютного пути директории;
+     * журнал другой директории с тем же хешем не будет продолжен ({@link ScanJournal#open}).
+     */
+    static Path journalFile(File directory) {
+        String name = directory.toPath().toAbsolutePath().normalize().toString();
+        return JOURNAL_DIRECTORY.resolve(String.format("%08x.journal", name.hashCode()));
+    }
+
+    /**
+     * Закрывает журнал сканирования, записывая ошибку в журнал приложения.
+     *
+     * @param journal Журнал сканирования.
+     */
+    private static void closeJournal(ScanJournal journal) {
+        try {
+            journal.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close the scan journal {}", journal.getFile(), e);
+        }
+    }
+
+    /**
+     * Закрывает хранилище найденных файлов, записывая ошибку в журнал.
+     *
+     * @param hits Хранилище найденных файлов.
+     */
+    private static void closeHitStore(HitStore hits) {
+        try {
+            hits.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close the hit store", e);
+        }
+    }
+
+    /**
+     * Возвращает названия сигнатур найденного файла для отображения в таблице.
+     *
+     * @param hit Найденный файл.
+     * @return Названия сигнатур заголовка, вложенных сигнатур со смещениями и файлов в архиве.
+     */
+    private static String signatures(ScanHit hit) {
+        StringBuilder result = new StringBuilder(String.join(", ", hit.types()));
+        for (DeepScanner.Match match : hit.embedded()) {
+            if (result.length() > 0) {
+                result.append(", ");
+            }
+            result.append(match.name()).append('@').append(match.offset());
+        }
+        for (ArchiveScanner.Match match : hit.archived()) {
+            if (result.length() > 0) {
+                result.append(", ");
+            }
+            result.append(match.name()).append(" в ").append(match.entry());
+        }
+        return result.toString();
+    }
+
+    /**
+     * Возвращает энтропию найденного файла и признак упаковки для отображения в таблице.
+     *
+     * @param hit Найденный файл.
+     * @return Энтропия в битах на байт с причиной упаковки или пустая строка, если файл не анализировался.
+     */
+    private static String entropy(ScanHit hit) {
+        EntropyAnalyzer.Report report = hit.entropy();
+        if (report == null) {
+            return "";
+        }
+        String value = String.format("%.2f", report.entropy());
+        return report.packed() ? value + " (упакован: " + report.reason() + ")" : value;
     }
 
     /**
@@ -167,8 +476,17 @@ public class Main extends Application {
                 label.setText("Введите сигнатуру и расширение");
                 logger.error("No signature or extension has been entered");
             } else {
-
-                Signature.addSignature(extension, signature);
+                try {
+                    store.add(new SignatureRecord(extension, signature, 0));
+                } catch (IllegalArgumentException e) {
+                    label.setText("Сигнатура должна состоять из шестнадцатеричных цифр");
+                    logger.error("Invalid signature entered: {}", signature);
+                    return;
+                } catch (IOException e) {
+                    label.setText("Не удалось сохранить сигнатуру в базу данных");
+                    logger.error("Failed to save the signature: {} -> {}", extension, signature, e);
+                    return;
+                }
                 label.setText("Сигнатура добавлена: " + extension + " -> " + signature);
                 logger.info("Signature added: {} -> {}", extension, signature);
 
@@ -184,6 +502,18 @@ public class Main extends Application {
         });
     }
 
+    /**
+     * Загружает сигнатуры из хранилища, если оно изменилось.
+     * При недоступном хранилище сканирование продолжается с уже загруженными сигнатурами.
+     */
+    private void refreshSignatures() {
+        try {
+            store.refresh();
+        } catch (IOException e) {
+            logger.error("Failed to load signatures from the store", e);
+        }
+    }
+
     /**
      * Точка входа в приложение.
      *
@@ -199,6 +529,11 @@ public class Main extends Application {
      * Используется для освобождения ресурсов и выполнения завершающих операций.
      */
     public void stop() {
+        // Журналы прерванных выходом сканирований сохраняются для продолжения
+        journals.forEach(Main::closeJournal);
+        journals.clear();
+        hitStores.forEach(Main::closeHitStore);
+        hitStores.clear();
         logger.info("The work is completed");
     }
 }
\ No newline at end of file
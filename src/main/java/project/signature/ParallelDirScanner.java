@@ -0,0 +1,195 @@
+package project.signature;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Класс ParallelDirScanner выполняет параллельное сканирование директорий на основе {@link ForkJoinPool}.
+ * Каждая поддиректория обрабатывается отдельной задачей, свободные потоки забирают задачи
+ * у занятых (work-stealing), а результаты задач объединяются без общих изменяемых полей.
+ * Порядок найденных файлов совпадает с порядком последовательного обхода {@link DirScanner#analyzeDirectory(File)}.
+ */
+public class ParallelDirScanner {
+
+    private static final Logger logger = LogManager.getLogger(ParallelDirScanner.class);
+
+    /**
+     * Уровень параллелизма (количество рабочих потоков).
+     */
+    private final int parallelism;
+
+    /**
+     * Создает сканер с уровнем параллелизма, равным количеству доступных процессоров.
+     */
+    public ParallelDirScanner() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Создает сканер с заданным уровнем параллелизма.
+     *
+     * @param parallelism Количество рабочих потоков.
+     * @throws IllegalArgumentException Если {@code parallelism} меньше 1.
+     */
+    public ParallelDirScanner(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Возвращает уровень параллелизма сканера.
+     *
+     * @return Количество рабочих потоков.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Параллельно анализирует указанную директорию и все ее поддиректории.
+     * Проверки корректности директории и итоговые сообщения совпадают с {@link DirScanner#analyzeDirectory(File)}.
+     *
+     * @param directory Директория для анализа.
+     * @return Результат сканирования.
+     */
+    public ScanResult scan(File directory) {
+        if (directory == null || !directory.exists() || !directory.isDirectory()) {
+            logger.error("The directory is incorrect");
+            return new ScanResult("Директория некорректная", 0, List.of());
+        }
+
+        if (!directory.canRead()) {
+            logger.error("Insufficient permissions to read the directory: {}", directory.getAbsolutePath());
+            return new ScanResult("Недостаточно прав для чтения", 0, List.of());
+        }
+
+        File[] files = directory.listFiles();
+        if (files == null || files.length == 0) {
+            return new ScanResult("Пустая папка", 0, List.of());
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            Hits hits = pool.invoke(new DirectoryTask(files, DirScanner.inspector()));
+            logger.info("Parallel scan of {} finished: {} executable files found", directory, hits.metadata.size());
+            return new ScanResult("OK", hits.metadata.size(), hits.metadata);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Найденные файлы одной задачи. Экземпляр принадлежит только своей задаче до ее завершения.
+     */
+    private static final class Hits {
+        private final List<String> metadata = new ArrayList<>();
+    }
+
+    /**
+     * Задача обхода одной директории. Файлы проверяются в текущем потоке,
+     * поддиректории запускаются отдельными задачами и объединяются в порядке листинга.
+     */
+    private static final class DirectoryTask extends RecursiveTask<Hits> {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Содержимое директории.
+         */
+        private final File[] files;
+
+        /**
+         * Проверка файлов с настройками, действовавшими на момент запуска сканирования.
+         */
+        private final FileInspector inspector;
+
+        /**
+         * Создает задачу для уже полученного содержимого директории.
+         *
+         * @param files     Содержимое директории.
+         * @param inspector Проверка файлов.
+         */
+        DirectoryTask(File[] files, FileInspector inspector) {
+            this.files = files;
+            this.inspector = inspector;
+        }
+
+        @Override
+        protected Hits compute() {
+            // Элемент списка — либо строка с метаданными файла, либо задача поддиректории
+            List<Object> parts = new ArrayList<>(files.length);
+            for (File file : files) {
+                if (file.isFile()) {
+                    String info = analyzeFile(file, inspector);
+                    if (info != null) {
+                        parts.add(info);
+                    }
+                } else if (file.isDirectory()) {
+                    File[] children = listDirectory(file);
+                    if (children != null && children.length > 0) {
+                        DirectoryTask task = new DirectoryTask(children, inspector);
+                        task.fork();
+                        parts.add(task);
+                    }
+                }
+            }
+
+            Hits hits = new Hits();
+            for (Object part : parts) {
+                if (part instanceof DirectoryTask task) {
+                    hits.metadata.addAll(task.join().metadata);
+                } else {
+                    hits.metadata.add((String) part);
+                }
+            }
+            return hits;
+        }
+    }
+
+    /**
+     * Возвращает содержимое поддиректории или {@code null}, если ее нельзя прочитать.
+     *
+     * @param directory Поддиректория.
+     * @return Содержимое директории или {@code null}.
+     */
+    private static File[] listDirectory(File directory) {
+        if (!directory.canRead()) {
+            ScanLog.events.debug("Insufficient permissions to read the directory: {}", directory);
+            return null;
+        }
+        return directory.listFiles();
+    }
+
+    /**
+     * Проверяет файл и возвращает его метаданные, если сигнатура найдена.
+     *
+     * @param file      Файл для анализа.
+     * @param inspector Проверка файлов.
+     * @return Строка с метаданными или {@code null}, если файл не подходит или не может быть прочитан.
+     */
+    private static String analyzeFile(File file, FileInspector inspector) {
+        if (!file.canRead()) {
+            ScanLog.events.debug("Access to the file is denied: {}", file);
+            return null;
+        }
+
+        try {
+            ScanHit hit = inspector.inspect(file);
+            return hit == null ? null : hit.describe();
+        } catch (IOException e) {
+            ScanLog.error("Error reading the file: {}", file, e);
+        } catch (RuntimeException e) {
+            ScanLog.error("Error analyzing the file: {}", file, e);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,748 @@
+package project.signature;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Класс ScanCli — консольный режим сканирования без графического интерфейса.
+ * JavaFX в этом режиме не инициализируется, поэтому сканер можно запускать на серверах
+ * без дисплея и из планировщика задач. Найденные файлы выводятся по мере обнаружения
+ * в формате JSON Lines или CSV в стандартный вывод или в файл; итоги сканирования
+ * и ошибки выводятся в стандартный поток ошибок. С параметром {@code --watch} после первого
+ * сканирования директории наблюдаются через {@link DirectoryWatcher}, и новые исполняемые файлы
+ * выводятся в течение секунд после появления. С параметрами {@code --workers} и {@code --listen}
+ * сканирование распределяется между процессами {@link ScanWorker} через {@link ScanCoordinator}.
+ * С параметром {@code --journal} ход сканирования сохраняется в {@link ScanJournal}, и прерванное
+ * сканирование продолжается с параметром {@code --resume}. С параметром {@code --time-budget} директории
+ * обходятся в порядке приоритета ({@link ScanPriority}), а по истечении времени выводятся найденные
+ * файлы и отчет о полноте обхода ({@link ScanCoverage}). С параметром {@code --serve} процесс не сканирует
+ * директории сам, а работает как локальная служба {@link ScanService}, принимающая задания по HTTP.
+ * <p>
+ * Код завершения: {@link #EXIT_CLEAN} — исполняемые файлы не найдены, {@link #EXIT_FOUND} — найдены,
+ * {@link #EXIT_ERROR} — ошибка в аргументах, некорректная директория или ошибка записи результатов.
+ */
+public class ScanCli {
+
+    /**
+     * Код завершения: исполняемые файлы не найдены.
+     */
+    public static final int EXIT_CLEAN = 0;
+
+    /**
+     * Код завершения: найден хотя бы один исполняемый файл.
+     */
+    public static final int EXIT_FOUND = 1;
+
+    /**
+     * Код завершения: ошибка.
+     */
+    public static final int EXIT_ERROR = 2;
+
+    /**
+     * Размер буфера вывода в символах.
+     */
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Справка по аргументам командной строки.
+     */
+    static final String USAGE = """
+            Usage: signature --cli [options] <directory>...
+                   signature --cli --serve <port> [--jobs <n>] [options]
+              -t, --threads <n>       number of scan threads (default: number of processors)
+                  --io-concurrency <n>
+                                      read file headers in inode order, n reads per device at a time
+              -f, --format <fmt>      output format: jsonl (default) or csv
+              -o, --output <file>     write results to a file instead of standard output
+                  --deep              search for embedded signatures in the whole file content
+                  --verify            check PE, ELF and Mach-O headers of matched files and drop
+                                      files whose header structure is invalid
+                  --entropy           measure the entropy of matched executables and their
+                                      sections and flag packed or encrypted files
+                  --archives <depth>  look inside ZIP/JAR/TAR/GZ archives up to the nesting depth
+                  --duplicates <file> write groups of identical executables (SHA-256) as JSON Lines
+                  --hash-all          hash every executable, not only files with equal sizes
+              -w, --watch             keep watching the directories and report new executables
+                  --workers <n>       split the scan across n local worker processes
+                  --listen <port>     also accept workers from other hosts on this port
+                                      (started with: java -cp <classpath> project.signature.ScanWorker
+                                      <host> <port> [threads]); the coordinator and the workers need
+                                      the same access token in SIGNATURE_SCAN_TOKEN; the connection
+                                      is not encrypted, so use it only on a trusted network
+                  --index <file>      reuse and update a scan index to skip unchanged files
+                  --serve <port>      run a local scan service on the port (0 - any free port):
+                                      POST /scan?root=<dir>[&verify=..][&entropy=..][&budget=..]
+                                      streams hits as JSON Lines, GET /jobs lists jobs,
+                                      DELETE /jobs/<id> cancels a job; requests need the header
+                                      Authorization: Bearer <token> with the token from
+                                      SIGNATURE_SCAN_TOKEN or the one printed at startup
+                  --jobs <n>          number of scan jobs the service runs at a time (default: 2);
+                                      --threads are shared equally between them
+                  --journal <file>    checkpoint the progress of the scan to a journal file, which
+                                      is deleted when the scan completes
+                  --resume            continue an interrupted scan from its --journal file without
+                                      reading the directories it had finished again
+                  --time-budget <duration>
+                                      stop after the given time (suffixes s, m, h, d) and report
+                                      which directories were not scanned; directories are scanned
+                                      in priority order: temp, downloads, startup, desktop,
+                                      recently modified and shallow directories first
+                  --prioritize <glob> scan matching directories and their subdirectories first
+                                      (repeatable)
+                  --recent <duration> treat directories modified within the period as recent
+                                      (default: 7d)
+                  --exclude <glob>    skip matching files and directories (repeatable); a glob
+                                      without '/' matches the name, otherwise the relative path
+                  --include <glob>    check only matching files (repeatable)
+                  --min-size <size>   skip smaller files (suffixes K, M, G)
+                  --max-size <size>   skip larger files (suffixes K, M, G)
+                  --max-depth <n>     descend at most n levels (1 - only the directory itself)
+              -x, --one-file-system   do not cross into other mounted file systems
+                  --symlinks <policy> follow (default), files (do not descend into linked
+                                      directories) or never; each file is read once per inode
+                  --skip-pseudo-fs    skip proc, sysfs and other pseudo file system mounts
+                  --signatures <file> use a signature file instead of the configured store
+                  --import <file>     import signatures (name=HEX[@offset] per line) into the store
+              -h, --help              print this help
+            Exit codes: 0 - nothing found, 1 - executables found, 2 - error""";
+
+    /**
+     * Разобранные аргументы командной строки.
+     */
+    static final class Options {
+        private final List<File> roots = new ArrayList<>();
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private int ioConcurrency;
+        private HitWriter.Format format = HitWriter.Format.JSONL;
+        private Path output;
+        private boolean deepScan;
+        private boolean verifyStructure;
+        private boolean analyzeEntropy;
+        private Duration timeBudget;
+        private ScanPriority priority;
+        private int archiveDepth;
+        private boolean watch;
+        private int workers;
+        private int listenPort = -1;
+        private int servePort = -1;
+        private int jobs;
+        private Path duplicates;
+        private boolean hashAll;
+        private Path index;
+        private Path journal;
+        private boolean resume;
+        private final ScanFilter filter = new ScanFilter();
+        private SymlinkPolicy symlinkPolicy = SymlinkPolicy.FOLLOW;
+        private Path signatures;
+        private Path importFile;
+        private boolean help;
+    }
+
+    /**
+     * Точка входа консольного режима.
+     *
+     * @param args Аргументы командной строки (см. {@link #USAGE}).
+     */
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Выполняет сканирование по аргументам командной строки.
+     *
+     * @param args Аргументы командной строки.
+     * @param out  Стандартный вывод для результатов.
+     * @param err  Поток для итогов и сообщений об ошибках.
+     * @return Код завершения.
+     */
+    static int run(String[] args, PrintStream out, PrintStream err) {
+        Options options;
+        try {
+            options = parse(args);
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return EXIT_ERROR;
+        }
+        if (options.help) {
+            out.println(USAGE);
+            return EXIT_CLEAN;
+        }
+
+        SignatureStore store = options.signatures != null
+                ? new SignatureStore(new FileSignatureRepository(options.signatures))
+                : SignatureStore.open();
+        try {
+            if (options.importFile != null) {
+                int count = store.importFrom(options.importFile);
+                err.printf("Imported %d signatures from %s%n", count, options.importFile);
+            }
+            store.refresh();
+        } catch (IOException | IllegalArgumentException e) {
+            err.println("Failed to load signatures: " + e.getMessage());
+            return EXIT_ERROR;
+        }
+        if (options.servePort >= 0) {
+            return serve(options, err);
+        }
+        if (options.roots.isEmpty()) {
+            return EXIT_CLEAN;
+        }
+
+        ScanIndex index = null;
+        if (options.index != null) {
+            index = ScanIndex.load(options.index, ScanIndex.currentVersion(options.deepScan, options.archiveDepth));
+        }
+
+        boolean failed = false;
+        long found = 0;
+        DuplicateFinder duplicates = options.duplicates == null ? null : new DuplicateFinder();
+        try (HitWriter writer = new HitWriter(openOutput(options, out), options.format)) {
+            if (duplicates != null) {
+                duplicates.setHashAll(options.hashAll);
+            }
+            if (isSharded(options)) {
+                ScanSummary summary = scanSharded(options, writer, duplicates, err);
+                if (summary == null) {
+                    failed = true;
+                } else {
+                    found += summary.hits();
+                    failed = summary.status() != ScanStatus.OK;
+                }
+            } else {
+                long deadline = options.timeBudget == null ? 0 : System.nanoTime() + options.timeBudget.toNanos();
+                for (File root : options.roots) {
+                    ScanJournal journal = null;
+                    if (options.journal != null) {
+                        try {
+                            journal = ScanJournal.open(options.journal, root.toPath(), options.resume);
+                        } catch (IOException e) {
+                            err.println("Failed to open the scan journal: " + e.getMessage());
+                            failed = true;
+                            continue;
+                        }
+                    }
+                    ScanSession session = new ScanSession(root);
+                    session.setParallelism(options.threads);
+                    session.setIoConcurrency(options.ioConcurrency);
+                    session.setDeepScan(options.deepScan);
+                    session.setVerifyStructure(options.verifyStructure);
+                    session.setAnalyzeEntropy(options.analyzeEntropy);
+                    session.setArchiveDepth(options.archiveDepth);
+                    session.setIndex(index);
+                    session.setFilter(options.filter);
+                    session.setSymlinkPolicy(options.symlinkPolicy);
+                    session.setJournal(journal);
+                    session.setPriority(options.priority);
+                    if (deadline != 0) {
+                        // Ограничение времени действует на все директории вместе
+                        session.setTimeBudget(Duration.ofNanos(Math.max(deadline - System.nanoTime(), 1)));
+                    }
+                    session.setHitListener(writer::write);
+                    if (duplicates != null) {
+                        duplicates.subscribeTo(session);
+                    }
+                    ScanSummary summary;
+                    try {
+                        summary = session.run();
+                    } finally {
+                        if (journal != null) {
+                            journal.close();
+                        }
+                    }
+                    writer.flush();
+
+                    found += summary.hits();
+                    err.printf("%s: %s, directories: %d, files: %d, found: %d, errors: %d, bytes read: %d, %d ms%n",
+                            root, summary.status(), summary.directories(), summary.files(), summary.hits(),
+                            summary.errors(), summary.bytesRead(), summary.elapsedMillis());
+                    if (session.getCoverage() != null) {
+                        err.print(session.getCoverage().describe());
+                    }
+                    if (summary.status() == ScanStatus.INVALID_DIRECTORY
+                            || summary.status() == ScanStatus.ACCESS_DENIED) {
+                        failed = true;
+                    } else if (index != null && summary.status() == ScanStatus.OK) {
+                        index.prune(root.toPath());
+                    }
+                }
+            }
+            if (duplicates != null && !writeDuplicates(duplicates, options.duplicates, err)) {
+                failed = true;
+            }
+            if (options.watch && !failed) {
+                if (index != null && !saveIndex(index, err)) {
+                    return EXIT_ERROR;
+                }
+                watch(options, writer, err);
+                return EXIT_CLEAN;
+            }
+        } catch (IOException | UncheckedIOException e) {
+            err.println("Failed to write results: " + e.getMessage());
+            return EXIT_ERROR;
+        } finally {
+            if (duplicates != null) {
+                duplicates.close();
+            }
+        }
+
+        if (index != null && !saveIndex(index, err)) {
+            failed = true;
+        }
+        if (failed) {
+            return EXIT_ERROR;
+        }
+        return found > 0 ? EXIT_FOUND : EXIT_CLEAN;
+    }
+
+    /**
+     * Проверяет, распределяется ли сканирование между процессами-исполнителями.
+     *
+     * @param options Разобранные аргументы.
+     * @return {@code true}, если заданы {@code --workers} или {@code --listen}.
+     */
+    private static boolean isSharded(Options options) {
+        return options.workers > 0 || options.listenPort >= 0;
+    }
+
+    /**
+     * Сканирует все директории через {@link ScanCoordinator} и локальные или удаленные исполнители.
+     *
+     * @param options    Разобранные аргументы.
+     * @param writer     Вывод результатов.
+     * @param duplicates Группировка найденных файлов или {@code null}.
+     * @param err        Поток для итогов и сообщений.
+     * @return Объединенные итоги или {@code null}, если исполнителей не удалось запустить
+     * или все они завершились, не закончив работу.
+     * @throws IOException Если не удалось записать результаты.
+     */
+    private static ScanSummary scanSharded(Options options, HitWriter writer, DuplicateFinder duplicates,
+                                           PrintStream err) throws IOException {
+        try (ScanCoordinator coordinator = new ScanCoordinator(options.roots)) {
+            coordinator.setDeepScan(options.deepScan);
+            coordinator.setVerifyStructure(options.verifyStructure);
+            coordinator.setAnalyzeEntropy(options.analyzeEntropy);
+            coordinator.setArchiveDepth(options.archiveDepth);
+            coordinator.setIoConcurrency(options.ioConcurrency);
+            coordinator.setHitListener(hit -> {
+                writer.write(hit);
+                if (duplicates != null) {
+                    duplicates.add(hit.path(), hit.size());
+                }
+            });
+            if (options.listenPort >= 0) {
+                String token = System.getenv(ShardProtocol.TOKEN_ENV);
+                if (token == null || token.isEmpty()) {
+                    err.println("--listen requires an access token in the " + ShardProtocol.TOKEN_ENV
+                            + " environment variable");
+                    return null;
+                }
+                coordinator.setToken(token);
+                coordinator.setBindAddress(new InetSocketAddress(0).getAddress());
+                coordinator.setPort(options.listenPort);
+            }
+            ScanSummary summary;
+            try {
+                int port = coordinator.start();
+                if (options.listenPort >= 0) {
+                    err.printf("Waiting for workers on port %d%n", port);
+                }
+                coordinator.launchLocalWorkers(options.workers, options.threads);
+                summary = coordinator.await();
+            } catch (IOException e) {
+                err.println("Sharded scan failed: " + e.getMessage());
+                return null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                err.println("Interrupted while waiting for workers");
+                return null;
+            }
+            writer.flush();
+            err.printf("%s: %s, units: %d, workers: %d, reassigned: %d, directories: %d, files: %d, found: %d, "
+                            + "errors: %d, bytes read: %d, %d ms%n", options.roots, summary.status(),
+                    coordinator.getUnitCount(), coordinator.getWorkerCount(), coordinator.getReassignedCount(),
+                    summary.directories(), summary.files(), summary.hits(), summary.errors(), summary.bytesRead(),
+                    summary.elapsedMillis());
+            return summary;
+        }
+    }
+
+    /**
+     * Дожидается вычисления хэшей и записывает группы одинаковых файлов в формате JSON Lines.
+     *
+     * @param duplicates Группировка найденных файлов.
+     * @param file       Файл отчета.
+     * @param err        Поток для итогов и сообщений об ошибках.
+     * @return {@code true}, если отчет записан.
+     */
+    private static boolean writeDuplicates(DuplicateFinder duplicates, Path file, PrintStream err) {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            List<DuplicateFinder.DuplicateGroup> groups = duplicates.await();
+            long copies = 0;
+            for (DuplicateFinder.DuplicateGroup group : groups) {
+                copies += group.paths().size() - 1;
+            }
+            DuplicateFinder.writeReport(writer, groups);
+            err.printf("Distinct executables: %d, redundant copies: %d, files hashed: %d%n",
+                    groups.size(), copies, duplicates.getHashedFiles());
+            return true;
+        } catch (IOException e) {
+            err.println("Failed to write the duplicate report: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            err.println("Interrupted while hashing files");
+        }
+        return false;
+    }
+
+    /**
+     * Сохраняет индекс сканирования.
+     *
+     * @param index Индекс сканирования.
+     * @param err   Поток для сообщений об ошибках.
+     * @return {@code true}, если индекс сохранен.
+     */
+    private static boolean saveIndex(ScanIndex index, PrintStream err) {
+        try {
+            index.save();
+            return true;
+        } catch (IOException e) {
+            err.println("Failed to save the scan index: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Наблюдает за директориями после первого сканирования и выводит новые найденные файлы сразу.
+     * Метод возвращает управление только при прерывании потока; при завершении процесса
+     * (например, по Ctrl+C) наблюдение останавливается, а вывод сбрасывается.
+     *
+     * @param options Разобранные аргументы.
+     * @param writer  Вывод результатов.
+     * @param err     Поток для сообщений.
+     * @throws IOException Если директорию не удалось зарегистрировать для наблюдения.
+     */
+    private static void watch(Options options, HitWriter writer, PrintStream err) throws IOException {
+        List<DirectoryWatcher> watchers = new ArrayList<>();
+        Runnable stop = () -> {
+            for (DirectoryWatcher watcher : watchers) {
+                try {
+                    watcher.close();
+                } catch (IOException e) {
+                    err.println("Failed to stop watching: " + e.getMessage());
+                }
+            }
+            try {
+                writer.flush();
+            } catch (IOException e) {
+                err.println("Failed to write results: " + e.getMessage());
+            }
+        };
+        Thread hook = new Thread(stop, "scan-cli-shutdown");
+        try {
+            for (File root : options.roots) {
+                DirectoryWatcher watcher = new DirectoryWatcher(root.toPath());
+                watcher.setDeepScan(options.deepScan);
+                watcher.setArchiveDepth(options.archiveDepth);
+                watcher.setVerifyStructure(options.verifyStructure);
+                watcher.setAnalyzeEntropy(options.analyzeEntropy);
+                watcher.setFilter(options.filter);
+                watcher.setHitListener(hit -> {
+                    writer.write(hit);
+                    try {
+                        writer.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                watcher.start();
+                watchers.add(watcher);
+            }
+            Runtime.getRuntime().addShutdownHook(hook);
+            err.println("Watching for changes, press Ctrl+C to stop");
+            new CountDownLatch(1).await();
+        } catch (IOException e) {
+            stop.run();
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Runtime.getRuntime().removeShutdownHook(hook);
+            stop.run();
+        }
+    }
+
+    /**
+     * Работает как локальная служба сканирования до завершения процесса (например, по Ctrl+C),
+     * после чего задания отменяются, а индекс, если он задан, сохраняется.
+     *
+     * @param options Разобранные аргументы.
+     * @param err     Поток для сообщений.
+     * @return Код завершения.
+     */
+    private static int serve(Options options, PrintStream err) {
+        ScanIndex index = options.index == null ? null
+                : ScanIndex.load(options.index, ScanIndex.currentVersion(options.deepScan, options.archiveDepth));
+        int jobs = options.jobs > 0 ? options.jobs : ScanService.DEFAULT_MAX_JOBS;
+        ScanService service = new ScanService();
+        service.setPort(options.servePort);
+        service.setMaxJobs(jobs);
+        service.setThreadsPerJob(Math.max(1, options.threads / jobs));
+        service.setDeepScan(options.deepScan);
+        service.setArchiveDepth(options.archiveDepth);
+        service.setVerifyStructure(options.verifyStructure);
+        service.setAnalyzeEntropy(options.analyzeEntropy);
+        service.setIndex(index);
+        String token = System.getenv(ShardProtocol.TOKEN_ENV);
+        if (token != null && !token.isEmpty()) {
+            service.setToken(token);
+        }
+        Runnable stop = () -> {
+            service.close();
+            if (index != null) {
+                saveIndex(index, err);
+            }
+        };
+        Thread hook = new Thread(stop, "scan-cli-shutdown");
+        try {
+            int port = service.start();
+            Runtime.getRuntime().addShutdownHook(hook);
+            err.printf("Serving scan jobs on port %d, press Ctrl+C to stop%n", port);
+            if (token == null || token.isEmpty()) {
+                err.printf("Access token: %s%n", service.getToken());
+            }
+            new CountDownLatch(1).await();
+        } catch (IOException e) {
+            err.println("Failed to start the scan service: " + e.getMessage());
+            service.close();
+            return EXIT_ERROR;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Runtime.getRuntime().removeShutdownHook(hook);
+            stop.run();
+        }
+        return EXIT_CLEAN;
+    }
+
+    /**
+     * Разбирает аргументы командной строки.
+     *
+     * @param args Аргументы командной строки.
+     * @return Разобранные аргументы.
+     * @throws IllegalArgumentException Если аргументы некорректны.
+     */
+    static Options parse(String[] args) {
+        Options options = new Options();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "-t", "--threads" -> {
+                    try {
+                        options.threads = Integer.parseInt(value(args, ++i, arg));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid number of threads: " + args[i]);
+                    }
+                    if (options.threads < 1) {
+                        throw new IllegalArgumentException("Invalid number of threads: " + args[i]);
+                    }
+                }
+                case "--io-concurrency" -> {
+                    try {
+                        options.ioConcurrency = Integer.parseInt(value(args, ++i, arg));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid I/O concurrency: " + args[i]);
+                    }
+                    if (options.ioConcurrency < 0) {
+                        throw new IllegalArgumentException("Invalid I/O concurrency: " + args[i]);
+                    }
+                }
+                case "--archives" -> {
+                    try {
+                        options.archiveDepth = Integer.parseInt(value(args, ++i, arg));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid archive depth: " + args[i]);
+                    }
+                    if (options.archiveDepth < 0) {
+                        throw new IllegalArgumentException("Invalid archive depth: " + args[i]);
+                    }
+                }
+                case "-f", "--format" -> options.format = HitWriter.Format.of(value(args, ++i, arg));
+                case "-o", "--output" -> options.output = Path.of(value(args, ++i, arg));
+                case "--deep" -> options.deepScan = true;
+                case "--verify" -> options.verifyStructure = true;
+                case "--entropy" -> options.analyzeEntropy = true;
+                case "-w", "--watch" -> options.watch = true;
+                case "--workers" -> {
+                    try {
+                        options.workers = Integer.parseInt(value(args, ++i, arg));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid number of workers: " + args[i]);
+                    }
+                    if (options.workers < 0) {
+                        throw new IllegalArgumentException("Invalid number of workers: " + args[i]);
+                    }
+                }
+                case "--listen" -> {
+                    try {
+                        options.listenPort = Integer.parseInt(value(args, ++i, arg));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid port: " + args[i]);
+                    }
+                    if (options.listenPort < 0 || options.listenPort > 0xFFFF) {
+                        throw new IllegalArgumentException("Invalid port: " + args[i]);
+                    }
+                }
+                case "--serve" -> {
+                    try {
+                        options.servePort = Integer.parseInt(value(args, ++i, arg));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid port: " + args[i]);
+                    }
+                    if (options.servePort < 0 || options.servePort > 0xFFFF) {
+                        throw new IllegalArgumentException("Invalid port: " + args[i]);
+                    }
+                }
+                case "--jobs" -> {
+                    try {
+                        options.jobs = Integer.parseInt(value(args, ++i, arg));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid number of jobs: " + args[i]);
+                    }
+                    if (options.jobs < 1) {
+                        throw new IllegalArgumentException("Invalid number of jobs: " + args[i]);
+                    }
+                }
+                case "--duplicates" -> options.duplicates = Path.of(value(args, ++i, arg));
+                case "--hash-all" -> options.hashAll = true;
+                case "--index" -> options.index = Path.of(value(args, ++i, arg));
+                case "--journal" -> options.journal = Path.of(value(args, ++i, arg));
+                case "--resume" -> options.resume = true;
+                case "--time-budget" -> options.timeBudget = ScanPriority.parseDuration(value(args, ++i, arg));
+                case "--prioritize" -> priority(options).addPattern(value(args, ++i, arg),
+                        ScanPriority.DEFAULT_PATTERN_WEIGHT);
+                case "--recent" -> priority(options).setRecent(ScanPriority.parseDuration(value(args, ++i, arg)),
+                        ScanPriority.DEFAULT_PATTERN_WEIGHT / 2);
+                case "--exclude" -> options.filter.addExclude(value(args, ++i, arg));
+                case "--include" -> options.filter.addInclude(value(args, ++i, arg));
+                case "--min-size" -> options.filter.setMinSize(ScanFilter.parseSize(value(args, ++i, arg)));
+                case "--max-size" -> options.filter.setMaxSize(ScanFilter.parseSize(value(args, ++i, arg)));
+                case "--max-depth" -> {
+                    try {
+                        options.filter.setMaxDepth(Integer.parseInt(value(args, ++i, arg)));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid depth: " + args[i]);
+                    }
+                }
+                case "-x", "--one-file-system" -> options.filter.setOneFileSystem(true);
+                case "--skip-pseudo-fs" -> options.filter.setSkipPseudoFileSystems(true);
+                case "--symlinks" -> options.symlinkPolicy = SymlinkPolicy.of(value(args, ++i, arg));
+                case "--signatures" -> options.signatures = Path.of(value(args, ++i, arg));
+                case "--import" -> options.importFile = Path.of(value(args, ++i, arg));
+                case "-h", "--help" -> options.help = true;
+                default -> {
+                    if (arg.startsWith("-")) {
+                        throw new IllegalArgumentException("Unknown option: " + arg);
+                    }
+                    options.roots.add(new File(arg));
+                }
+            }
+        }
+        if (options.hashAll && options.duplicates == null) {
+            throw new IllegalArgumentException("--hash-all requires --duplicates");
+        }
+        if (options.index != null && isSharded(options)) {
+            throw new IllegalArgumentException("--index cannot be used with --workers or --listen");
+        }
+        if (options.resume && options.journal == null) {
+            throw new IllegalArgumentException("--resume requires --journal");
+        }
+        if (options.journal != null && (isSharded(options) || options.roots.size() > 1)) {
+            throw new IllegalArgumentException("--journal can be used only with a single directory and without "
+                    + "--workers or --listen");
+        }
+        if ((options.timeBudget != null || options.priority != null) && isSharded(options)) {
+            throw new IllegalArgumentException("--time-budget, --prioritize and --recent cannot be used with "
+                    + "--workers or --listen");
+        }
+        if ((!options.filter.isEmpty() || options.symlinkPolicy != SymlinkPolicy.FOLLOW) && isSharded(options)) {
+            throw new IllegalArgumentException("Filters and --symlinks cannot be used with --workers or --listen");
+        }
+        if (options.jobs > 0 && options.servePort < 0) {
+            throw new IllegalArgumentException("--jobs requires --serve");
+        }
+        if (options.servePort >= 0 && (!options.roots.isEmpty() || options.watch || isSharded(options)
+                || options.journal != null || options.duplicates != null || options.output != null
+                || options.format != HitWriter.Format.JSONL || options.timeBudget != null || options.priority != null
+                || !options.filter.isEmpty() || options.symlinkPolicy != SymlinkPolicy.FOLLOW
+                || options.ioConcurrency > 0)) {
+            throw new IllegalArgumentException("--serve accepts only --jobs, --threads, --deep, --verify, --entropy, "
+                    + "--archives, --index and signature options; directories are sent with scan requests");
+        }
+        if (options.roots.isEmpty() && !options.help && options.importFile == null && options.servePort < 0) {
+            throw new IllegalArgumentException("No directory to scan");
+        }
+        return options;
+    }
+
+    /**
+     * Возвращает правила очередности, создавая правила по умолчанию при первом обращении.
+     *
+     * @param options Разобранные аргументы.
+     * @return Правила очередности.
+     */
+    private static ScanPriority priority(Options options) {
+        if (options.priority == null) {
+            options.priority = ScanPriority.defaults();
+        }
+        return options.priority;
+    }
+
+    /**
+     * Возвращает значение параметра.
+     *
+     * @param args  Аргументы командной строки.
+     * @param index Индекс значения.
+     * @param name  Название параметра.
+     * @return Значение параметра.
+     * @throws IllegalArgumentException Если значение отсутствует.
+     */
+    private static String value(String[] args, int index, String name) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + name);
+        }
+        return args[index];
+    }
+
+    /**
+     * Открывает буферизованный вывод результатов.
+     *
+     * @param options Разобранные аргументы.
+     * @param out     Стандартный вывод.
+     * @return Получатель результатов.
+     * @throws IOException Если не удалось открыть файл результатов.
+     */
+    private static Writer openOutput(Options options, PrintStream out) throws IOException {
+        if (options.output != null) {
+            return Files.newBufferedWriter(options.output, StandardCharsets.UTF_8);
+        }
+        // Стандартный вывод не закрывается вместе с получателем результатов
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8) {
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        }, OUTPUT_BUFFER_SIZE);
+    }
+}
@@ -0,0 +1,783 @@
+package project.signature;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Класс ScanCoordinator распределяет сканирование между несколькими процессами {@link ScanWorker}
+ * на этом или других узлах.
+ * <p>
+ * Корни сканирования разбиваются на единицы работы: верхние уровни дерева раскрываются
+ * (файлы самой директории — отдельная единица, каждая поддиректория — своя), пока единиц не станет
+ * {@link #setTargetUnits(int) достаточно} или не будет достигнута глубина {@value #MAX_SPLIT_DEPTH}.
+ * Единицы выдаются исполнителям по одной по мере освобождения, поэтому быстрые исполнители
+ * получают больше работы. Найденные файлы единицы накапливаются и передаются обработчику только
+ * после ее завершения; если исполнитель отключился, его текущая единица возвращается в начало очереди
+ * и выдается другому исполнителю без повторов в результатах. Единица, на которой отключились
+ * {@value #MAX_ATTEMPTS} исполнителя подряд, пропускается и учитывается как ошибка.
+ * <p>
+ * По умолчанию координатор принимает подключения только с локального адреса; для исполнителей
+ * на других узлах задается {@link #setBindAddress(InetAddress) адрес} и {@link #setPort(int) порт}.
+ * Исполнитель, не предъявивший {@link #setToken(String) токен доступа}, отключается до получения
+ * настроек и единиц работы. Токен не заменяет шифрование: с исполнителями на других узлах координатор
+ * используется только в доверенной сети.
+ */
+public final class ScanCoordinator implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(ScanCoordinator.class);
+
+    /**
+     * Желаемое количество единиц работы по умолчанию.
+     */
+    public static final int DEFAULT_TARGET_UNITS = 64;
+
+    /**
+     * Максимальная глубина раскрытия дерева при разбиении на единицы.
+     */
+    static final int MAX_SPLIT_DEPTH = 3;
+
+    /**
+     * Количество отключившихся исполнителей, после которого единица пропускается.
+     */
+    static final int MAX_ATTEMPTS = 3;
+
+    /**
+     * Длина случайного токена доступа в байтах.
+     */
+    private static final int TOKEN_BYTES = 24;
+
+    /**
+     * Интервал проверки очереди и состояния исполнителей в миллисекундах.
+     */
+    private static final long POLL_MILLIS = 100;
+
+    /**
+     * Время ожидания завершения локальных процессов при закрытии в секундах.
+     */
+    private static final long SHUTDOWN_SECONDS = 5;
+
+    /**
+     * Директория, ожидающая разбиения.
+     *
+     * @param path  Путь к директории.
+     * @param depth Глубина от корня сканирования.
+     */
+    private record Candidate(Path path, int depth) {
+    }
+
+    /**
+     * Корни сканирования.
+     */
+    private final List<File> roots;
+
+    /**
+     * Адрес, на котором принимаются подключения исполнителей.
+     */
+    private InetAddress bindAddress = InetAddress.getLoopbackAddress();
+
+    /**
+     * Порт для подключения исполнителей; 0 — свободный порт.
+     */
+    private int port;
+
+    /**
+     * Токен доступа исполнителей; создается случайным при запуске, если не задан.
+     */
+    private volatile String token;
+
+    /**
+     * Желаемое количество единиц работы.
+     */
+    private int targetUnits = DEFAULT_TARGET_UNITS;
+
+    /**
+     * Признак глубокого сканирования.
+     */
+    private boolean deepScan;
+
+    /**
+     * Глубина проверки архивов; 0 — архивы не проверяются.
+     */
+    private int archiveDepth;
+
+    /**
+     * Количество одновременных чтений с одного устройства у исполнителей; 0 — без упорядочивания.
+     */
+    private int ioConcurrency;
+
+    /**
+     * Признак проверки структуры заголовков найденных файлов у исполнителей.
+     */
+    private boolean verifyStructure;
+
+    /**
+     * Признак анализа энтропии найденных файлов у исполнителей.
+     */
+    private boolean analyzeEntropy;
+
+    /**
+     * Обработчик найденных файлов или {@code null}.
+     */
+    private Consumer<ScanHit> hitListener;
+
+    /**
+     * Единицы работы, ожидающие исполнителя.
+     */
+    private final BlockingDeque<ShardProtocol.WorkUnit> pending = new LinkedBlockingDeque<>();
+
+    /**
+     * Количество отключений исполнителей по номерам единиц.
+     */
+    private final Map<Integer, Integer> attempts = new ConcurrentHashMap<>();
+
+    /**
+     * Количество незавершенных единиц работы.
+     */
+    private final AtomicInteger remaining = new AtomicInteger();
+
+    /**
+     * Количество подключенных исполнителей.
+     */
+    private final AtomicInteger connected = new AtomicInteger();
+
+    /**
+     * Номер для имен потоков.
+     */
+    private final AtomicInteger threadNumber = new AtomicInteger();
+
+    /**
+     * Соединения с исполнителями.
+     */
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Локальные процессы-исполнители.
+     */
+    private final List<Process> processes = new CopyOnWriteArrayList<>();
+
+    private final LongAdder directories = new LongAdder();
+    private final LongAdder files = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder reassigned = new LongAdder();
+    private final LongAdder workers = new LongAdder();
+
+    /**
+     * Блокировка последовательной передачи найденных файлов обработчику.
+     */
+    private final Object hitLock = new Object();
+
+    /**
+     * Количество единиц работы после разбиения.
+     */
+    private volatile int unitCount;
+
+    /**
+     * Сокет для подключения исполнителей; {@code null} до запуска.
+     */
+    private ServerSocket server;
+
+    /**
+     * Время запуска по {@link System#nanoTime()}.
+     */
+    private long startNanos;
+
+    /**
+     * Признак остановки координатора.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Создает координатор сканирования.
+     *
+     * @param roots Корневые директории сканирования.
+     */
+    public ScanCoordinator(List<File> roots) {
+        this.roots = List.copyOf(roots);
+    }
+
+    /**
+     * Устанавливает адрес, на котором принимаются подключения исполнителей.
+     *
+     * @param bindAddress Адрес; например, {@code 0.0.0.0} для исполнителей на других узлах.
+     */
+    public void setBindAddress(InetAddress bindAddress) {
+        this.bindAddress = bindAddress;
+    }
+
+    /**
+     * Устанавливает токен доступа, который исполнители передают при подключении.
+     * Если токен не задан, при запуске создается случайный токен; его получают
+     * {@link #launchLocalWorkers(int, int) локальные исполнители}.
+     *
+     * @param token Токен доступа.
+     * @throws IllegalArgumentException Если токен пустой.
+     */
+    public void setToken(String token) {
+        if (token.isEmpty()) {
+            throw new IllegalArgumentException("The access token is empty");
+        }
+        this.token = token;
+    }
+
+    /**
+     * Возвращает токен доступа исполнителей.
+     *
+     * @return Токен доступа или {@code null}, если он не задан и координатор не запущен.
+     */
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * Устанавливает порт для подключения исполнителей.
+     *
+     * @param port Номер порта; 0 — любой свободный порт.
+     * @throws IllegalArgumentException Если номер порта вне диапазона.
+     */
+    public void setPort(int port) {
+        if (port < 0 || port > 0xFFFF) {
+            throw new IllegalArgumentException("Invalid port: " + port);
+        }
+        this.port = port;
+    }
+
+    /**
+     * Устанавливает желаемое количество единиц работы.
+     * Чем больше единиц, тем равномернее нагрузка и тем меньше работы повторяется
+     * при отключении исполнителя, но тем больше обменов сообщениями.
+     *
+     * @param targetUnits Количество единиц.
+     * @throws IllegalArgumentException Если {@code targetUnits} меньше 1.
+     */
+    public void setTargetUnits(int targetUnits) {
+        if (targetUnits < 1) {
+            throw new IllegalArgumentException("Target units must be positive: " + targetUnits);
+        }
+        this.targetUnits = targetUnits;
+    }
+
+    /**
+     * Включает или выключает глубокое сканирование у исполнителей.
+     *
+     * @param deepScan {@code true}, чтобы искать вложенные сигнатуры по всему содержимому файлов.
+     */
+    public void setDeepScan(boolean deepScan) {
+        this.deepScan = deepScan;
+    }
+
+    /**
+     * Устанавливает глубину проверки архивов у исполнителей.
+     *
+     * @param archiveDepth Глубина вложенности архивов; 0 — архивы не проверяются.
+     * @throws IllegalArgumentException Если глубина отрицательна.
+     */
+    public void setArchiveDepth(int archiveDepth) {
+        if (archiveDepth < 0) {
+            throw new IllegalArgumentException("Negative archive depth: " + archiveDepth);
+        }
+        this.archiveDepth = archiveDepth;
+    }
+
+    /**
+     * Устанавливает количество одновременных чтений с одного устройства у исполнителей
+     * (см. {@link ScanSession#setIoConcurrency(int)}).
+     *
+     * @param ioConcurrency Количество чтений; 0 — чтение в порядке листинга.
+     * @throws IllegalArgumentException Если значение отрицательно.
+     */
+    public void setIoConcurrency(int ioConcurrency) {
+        if (ioConcurrency < 0) {
+            throw new IllegalArgumentException("Negative I/O concurrency: " + ioConcurrency);
+        }
+        this.ioConcurrency = ioConcurrency;
+    }
+
+    /**
+     * Включает проверку структуры заголовков найденных файлов у исполнителей
+     * (см. {@link ScanSession#setVerifyStructure(boolean)}).
+     *
+     * @param verifyStructure {@code true}, чтобы проверять структуру заголовков.
+     */
+    public void setVerifyStructure(boolean verifyStructure) {
+        this.verifyStructure = verifyStructure;
+    }
+
+    /**
+     * Включает анализ энтропии найденных файлов у исполнителей
+     * (см. {@link ScanSession#setAnalyzeEntropy(boolean)}).
+     *
+     * @param analyzeEntropy {@code true}, чтобы анализировать энтропию.
+     */
+    public void setAnalyzeEntropy(boolean analyzeEntropy) {
+        this.analyzeEntropy = analyzeEntropy;
+    }
+
+    /**
+     * Устанавливает обработчик найденных файлов.
+     * Обработчик вызывается последовательно из потоков соединений с исполнителями.
+     *
+     * @param hitListener Обработчик или {@code null}.
+     */
+    public void setHitListener(Consumer<ScanHit> hitListener) {
+        this.hitListener = hitListener;
+    }
+
+    /**
+     * Разбивает корни сканирования на единицы работы и начинает принимать подключения исполнителей.
+     *
+     * @return Порт для подключения исполнителей.
+     * @throws IOException           Если сокет не удалось открыть.
+     * @throws IllegalStateException Если координатор уже запущен.
+     */
+    public synchronized int start() throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("The coordinator has already been started");
+        }
+        startNanos = System.nanoTime();
+        if (token == null) {
+            byte[] random = new byte[TOKEN_BYTES];
+            new SecureRandom().nextBytes(random);
+            token = Base64.getUrlEncoder().withoutPadding().encodeToString(random);
+        }
+        List<ShardProtocol.WorkUnit> units = split();
+        unitCount = units.size();
+        remaining.set(units.size());
+        pending.addAll(units);
+        logger.info("Scan of {} split into {} work units", roots, units.size());
+
+        server = new ServerSocket(port, 50, bindAddress);
+        Thread acceptor = new Thread(this::accept, "scan-coordinator-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        logger.info("Waiting for scan workers on {}:{}", bindAddress.getHostAddress(), server.getLocalPort());
+        return server.getLocalPort();
+    }
+
+    /**
+     * Запускает исполнителей в отдельных процессах этого узла.
+     * Процессы используют ту же среду Java и тот же путь к классам, что и текущий процесс.
+     *
+     * @param count       Количество процессов.
+     * @param parallelism Количество потоков обхода в каждом процессе.
+     * @throws IOException           Если процесс не удалось запустить.
+     * @throws IllegalStateException Если координатор не запущен.
+     */
+    public void launchLocalWorkers(int count, int parallelism) throws IOException {
+        int localPort = getPort();
+        if (localPort < 0) {
+            throw new IllegalStateException("The coordinator has not been started");
+        }
+        String host = bindAddress.isAnyLocalAddress()
+                ? InetAddress.getLoopbackAddress().getHostAddress() : bindAddress.getHostAddress();
+        for (int i = 0; i < count; i++) {
+            ProcessBuilder builder = new ProcessBuilder(
+                    Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                    "-cp", workerClassPath(),
+                    ScanWorker.class.getName(), host, String.valueOf(localPort), String.valueOf(parallelism));
+            builder.environment().put(ShardProtocol.TOKEN_ENV, token);
+            builder.inheritIO();
+            processes.add(builder.start());
+        }
+        logger.info("Started {} local scan workers", count);
+    }
+
+    /**
+     * Ожидает завершения всех единиц работы и возвращает объединенные итоги.
+     *
+     * @return Итоги сканирования всех корней.
+     * @throws InterruptedException  Если ожидание прервано.
+     * @throws IOException           Если все локальные процессы-исполнители завершились, не закончив работу.
+     * @throws IllegalStateException Если координатор не запущен.
+     */
+    public ScanSummary await() throws InterruptedException, IOException {
+        if (getPort() < 0) {
+            throw new IllegalStateException("The coordinator has not been started");
+        }
+        synchronized (remaining) {
+            while (remaining.get() > 0 && !closed) {
+                if (!processes.isEmpty() && connected.get() == 0 && processes.stream().noneMatch(Process::isAlive)) {
+                    throw new IOException("All scan workers have exited, " + remaining.get() + " work units left");
+                }
+                remaining.wait(POLL_MILLIS);
+            }
+        }
+
+        ScanStatus status = ScanStatus.OK;
+        if (closed && remaining.get() > 0) {
+            status = ScanStatus.CANCELLED;
+        } else if (unitCount == 0) {
+            status = ScanStatus.INVALID_DIRECTORY;
+        }
+        ScanSummary summary = new ScanSummary(status, directories.sum(), files.sum(), hits.sum(), errors.sum(),
+                bytesRead.sum(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        logger.info("Sharded scan of {} finished: status={}, units={}, workers={}, reassigned={}, directories={}, "
+                        + "files={}, hits={}, errors={}, bytes read={}, {} ms", roots, summary.status(), unitCount,
+                workers.sum(), reassigned.sum(), summary.directories(), summary.files(), summary.hits(),
+                summary.errors(), summary.bytesRead(), summary.elapsedMillis());
+        return summary;
+    }
+
+    /**
+     * Останавливает координатор: исполнители получают команду завершения, локальные процессы,
+     * не завершившиеся за {@value #SHUTDOWN_SECONDS} с, останавливаются принудительно.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (remaining) {
+            remaining.notifyAll();
+        }
+        try {
+            if (server != null) {
+                server.close();
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to close the coordinator socket: {}", e.getMessage());
+        }
+        for (Process process : processes) {
+            try {
+                if (!process.waitFor(SHUTDOWN_SECONDS, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                process.destroyForcibly();
+            }
+        }
+        for (Socket socket : sockets) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Соединение уже разорвано
+            }
+        }
+    }
+
+    /**
+     * Возвращает порт для подключения исполнителей.
+     *
+     * @return Номер порта или -1, если координатор не запущен.
+     */
+    public synchronized int getPort() {
+        return server == null ? -1 : server.getLocalPort();
+    }
+
+    /**
+     * Возвращает количество единиц работы после разбиения.
+     *
+     * @return Количество единиц.
+     */
+    public int getUnitCount() {
+        return unitCount;
+    }
+
+    /**
+     * Возвращает количество повторных выдач единиц после отключения исполнителей.
+     *
+     * @return Количество повторных выдач.
+     */
+    public long getReassignedCount() {
+        return reassigned.sum();
+    }
+
+    /**
+     * Возвращает количество исполнителей, подключавшихся к координатору.
+     *
+     * @return Количество исполнителей.
+     */
+    public long getWorkerCount() {
+        return workers.sum();
+    }
+
+    /**
+     * Разбивает корни сканирования на единицы работы, раскрывая дерево в ширину.
+     *
+     * @return Единицы работы.
+     */
+    private List<ShardProtocol.WorkUnit> split() {
+        Deque<Candidate> frontier = new ArrayDeque<>();
+        for (File root : roots) {
+            if (root == null || !root.isDirectory()) {
+                logger.error("The directory is incorrect: {}", root);
+                errors.increment();
+            } else {
+                frontier.add(new Candidate(root.toPath(), 0));
+            }
+        }
+
+        List<ShardProtocol.WorkUnit> units = new ArrayList<>();
+        while (!frontier.isEmpty() && units.size() + frontier.size() < targetUnits) {
+            Candidate candidate = frontier.poll();
+            List<Path> subdirectories = candidate.depth() < MAX_SPLIT_DEPTH ? subdirectories(candidate.path()) : null;
+            if (subdirectories == null) {
+                units.add(new ShardProtocol.WorkUnit(units.size(), candidate.path(), true));
+                continue;
+            }
+            units.add(new ShardProtocol.WorkUnit(units.size(), candidate.path(), false));
+            for (Path subdirectory : subdirectories) {
+                frontier.add(new Candidate(subdirectory, candidate.depth() + 1));
+            }
+        }
+        for (Candidate candidate : frontier) {
+            units.add(new ShardProtocol.WorkUnit(units.size(), candidate.path(), true));
+        }
+        return units;
+    }
+
+    /**
+     * Возвращает поддиректории директории (символические ссылки разыменовываются, как при обходе).
+     *
+     * @param directory Директория.
+     * @return Поддиректории или {@code null}, если директорию не удалось прочитать;
+     * тогда она выдается целиком, и ошибку учитывает исполнитель.
+     */
+    private static List<Path> subdirectories(Path directory) {
+        List<Path> result = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            for (Path path : stream) {
+                result.add(path);
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            return null;
+        }
+        return result;
+    }
+
+    /**
+     * Принимает подключения исполнителей до остановки координатора.
+     */
+    private void accept() {
+        while (!closed) {
+            try {
+                Socket socket = server.accept();
+                sockets.add(socket);
+                Thread thread = new Thread(() -> serve(socket), "scan-coordinator-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                if (!closed) {
+                    logger.error("Failed to accept a scan worker: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Обслуживает одного исполнителя: выдает единицы работы и принимает результаты.
+     * При разрыве соединения текущая единица возвращается в очередь.
+     *
+     * @param socket Соединение с исполнителем.
+     */
+    private void serve(Socket socket) {
+        connected.incrementAndGet();
+        String name = String.valueOf(socket.getRemoteSocketAddress());
+        ShardProtocol.WorkUnit current = null;
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            if (in.readByte() != ShardProtocol.HELLO) {
+                throw new IOException("The worker did not introduce itself");
+            }
+            int version = in.readInt();
+            if (version != ShardProtocol.VERSION) {
+                throw new IOException("Unsupported protocol version: " + version);
+            }
+            boolean authorized = MessageDigest.isEqual(in.readUTF().getBytes(StandardCharsets.UTF_8),
+                    token.getBytes(StandardCharsets.UTF_8));
+            name = in.readUTF() + " at " + name;
+            if (!authorized) {
+                throw new IOException("Invalid access token");
+            }
+            out.writeByte(ShardProtocol.CONFIG);
+            out.writeInt(ShardProtocol.VERSION);
+            out.writeBoolean(deepScan);
+            out.writeInt(archiveDepth);
+            out.writeInt(ioConcurrency);
+            out.writeBoolean(verifyStructure);
+            out.writeBoolean(analyzeEntropy);
+            ShardProtocol.writeSignatures(out, Signature.getRecords());
+            out.flush();
+            workers.increment();
+            logger.info("Scan worker connected: {}", name);
+
+            while ((current = nextUnit()) != null) {
+                ShardProtocol.writeUnit(out, current);
+                out.flush();
+                List<ScanHit> found = receive(in, current);
+                ShardProtocol.WorkUnit done = current;
+                current = null;
+                complete(done, found);
+            }
+            out.writeByte(ShardProtocol.STOP);
+            out.flush();
+        } catch (IOException e) {
+            if (!closed) {
+                logger.warn("Scan worker {} disconnected: {}", name, e.getMessage());
+            }
+        } finally {
+            sockets.remove(socket);
+            if (current != null) {
+                requeue(current);
+            }
+            connected.decrementAndGet();
+        }
+    }
+
+    /**
+     * Принимает найденные файлы и итоги единицы работы.
+     *
+     * @param in   Поток сообщений исполнителя.
+     * @param unit Выданная единица работы.
+     * @return Найденные файлы единицы; итоги учитываются в счетчиках.
+     * @throws IOException Если соединение разорвано или исполнитель нарушил протокол.
+     */
+    private List<ScanHit> receive(DataInputStream in, ShardProtocol.WorkUnit unit) throws IOException {
+        List<ScanHit> found = new ArrayList<>();
+        while (true) {
+            byte type = in.readByte();
+            int id = in.readInt();
+            if (id != unit.id()) {
+                throw new IOException("Message for unit " + id + " while unit " + unit.id() + " is assigned");
+            }
+            if (type == ShardProtocol.HIT) {
+                found.add(ShardProtocol.readHit(in));
+            } else if (type == ShardProtocol.DONE) {
+                ShardProtocol.UnitResult result = ShardProtocol.readResult(in, id);
+                directories.add(result.directories());
+                files.add(result.files());
+                errors.add(result.errors());
+                bytesRead.add(result.bytesRead());
+                return found;
+            } else {
+                throw new IOException("Unexpected message from the worker: " + type);
+            }
+        }
+    }
+
+    /**
+     * Возвращает следующую единицу работы, ожидая ее появления в очереди.
+     *
+     * @return Единица работы или {@code null}, если вся работа выполнена или координатор остановлен.
+     */
+    private ShardProtocol.WorkUnit nextUnit() {
+        while (remaining.get() > 0 && !closed) {
+            try {
+                ShardProtocol.WorkUnit unit = pending.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (unit != null) {
+                    return unit;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Передает найденные файлы завершенной единицы обработчику и уменьшает счетчик оставшихся единиц.
+     *
+     * @param unit  Завершенная единица работы.
+     * @param found Найденные файлы единицы.
+     */
+    private void complete(ShardProtocol.WorkUnit unit, List<ScanHit> found) {
+        synchronized (hitLock) {
+            for (ScanHit hit : found) {
+                hits.increment();
+                if (hitListener != null) {
+                    try {
+                        hitListener.accept(hit);
+                    } catch (RuntimeException e) {
+                        // Единица уже выполнена: ошибка обработчика не должна приводить к ее повторной выдаче
+                        logger.error("Failed to handle the hit {}: {}", hit.path(), e.getMessage());
+                        errors.increment();
+                    }
+                }
+            }
+        }
+        logger.debug("Work unit {} completed: {} hits", unit.id(), found.size());
+        finish();
+    }
+
+    /**
+     * Возвращает единицу отключившегося исполнителя в начало очереди
+     * или пропускает ее после {@value #MAX_ATTEMPTS} отключений.
+     *
+     * @param unit Незавершенная единица работы.
+     */
+    private void requeue(ShardProtocol.WorkUnit unit) {
+        int failures = attempts.merge(unit.id(), 1, Integer::sum);
+        if (failures >= MAX_ATTEMPTS) {
+            logger.error("Work unit {} ({}) was lost by {} workers and is skipped", unit.id(), unit.path(), failures);
+            errors.increment();
+            finish();
+            return;
+        }
+        logger.warn("Work unit {} ({}) is reassigned", unit.id(), unit.path());
+        reassigned.increment();
+        pending.addFirst(unit);
+    }
+
+    /**
+     * Отмечает завершение единицы работы и будит ожидающих, когда завершены все.
+     */
+    private void finish() {
+        if (remaining.decrementAndGet() == 0) {
+            synchronized (remaining) {
+                remaining.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Формирует путь к классам для процессов-исполнителей из путей текущего процесса.
+     * Классы приложения могут находиться и в пути к модулям, поэтому оба пути объединяются.
+     *
+     * @return Путь к классам.
+     */
+    private static String workerClassPath() {
+        List<String> parts = new ArrayList<>();
+        for (String property : new String[]{"jdk.module.path", "java.class.path"}) {
+            String value = System.getProperty(property);
+            if (value != null && !value.isEmpty()) {
+                parts.add(value);
+            }
+        }
+        return String.join(File.pathSeparator, parts);
+    }
+}
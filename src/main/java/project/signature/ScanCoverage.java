@@ -0,0 +1,66 @@
+package project.signature;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Отчет о полноте сканирования с очередностью обхода ({@link ScanSession#setPriority},
+ * {@link ScanSession#setTimeBudget}). Если время истекло, отчет показывает, какие директории
+ * проверены полностью, а какие не были достигнуты или были прерваны: содержимое последних,
+ * включая поддиректории, осталось непроверенным.
+ *
+ * @param complete            Признак полного обхода.
+ * @param budgetMillis        Ограничение времени в миллисекундах или 0, если оно не задано.
+ * @param elapsedMillis       Длительность сканирования в миллисекундах.
+ * @param directoriesScanned  Количество полностью проверенных директорий.
+ * @param directoriesPending  Количество директорий, которые не были достигнуты или были прерваны.
+ * @param rules               Полнота по правилам очередности.
+ * @param pendingPaths        Непроверенные директории с наибольшим приоритетом (не больше
+ *                            {@link #PENDING_LIMIT}).
+ */
+public record ScanCoverage(boolean complete, long budgetMillis, long elapsedMillis, long directoriesScanned,
+                           long directoriesPending, List<Rule> rules, List<Path> pendingPaths) {
+
+    /**
+     * Наибольшее количество непроверенных директорий в отчете.
+     */
+    public static final int PENDING_LIMIT = 20;
+
+    /**
+     * Полнота сканирования директорий, подходящих под одно правило очередности.
+     *
+     * @param name    Название правила (шаблон или период недавнего изменения).
+     * @param scanned Количество проверенных директорий.
+     * @param pending Количество непроверенных директорий.
+     */
+    public record Rule(String name, long scanned, long pending) {
+    }
+
+    /**
+     * Возвращает отчет в текстовом виде для консоли и журнала.
+     *
+     * @return Многострочный отчет.
+     */
+    public String describe() {
+        StringBuilder text = new StringBuilder();
+        text.append("coverage: ").append(complete ? "complete" : "partial");
+        if (budgetMillis > 0) {
+            text.append(", time budget ").append(budgetMillis).append(" ms");
+        }
+        text.append(", elapsed ").append(elapsedMillis).append(" ms").append(System.lineSeparator());
+        text.append("  directories scanned: ").append(directoriesScanned)
+                .append(", not scanned: ").append(directoriesPending).append(System.lineSeparator());
+        for (Rule rule : rules) {
+            text.append("  ").append(rule.name()).append(": scanned ").append(rule.scanned())
+                    .append(", not scanned ").append(rule.pending()).append(System.lineSeparator());
+        }
+        for (Path path : pendingPaths) {
+            text.append("  not scanned: ").append(path).append(System.lineSeparator());
+        }
+        if (directoriesPending > pendingPaths.size()) {
+            text.append("  ... and ").append(directoriesPending - pendingPaths.size())
+                    .append(" more directories").append(System.lineSeparator());
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,460 @@
+package project.signature;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Класс ScanFilter — правила отбора файлов и директорий для {@link ScanSession}.
+ * <p>
+ * Исключения (glob) применяются и к директориям, и к файлам: исключенная директория не читается вовсе,
+ * исключенный файл не открывается. Шаблон без {@code /} сравнивается с именем элемента
+ * ({@code node_modules}, {@code .git}, {@code *.iso}), шаблон с {@code /} — с путем относительно
+ * корня сканирования ({@code build/tmp/**}). Включения применяются только к файлам: если они заданы,
+ * проверяются лишь файлы, имя или относительный путь которых подходит хотя бы под одно из них.
+ * Кроме того, можно ограничить размер файлов, глубину обхода (как {@code find -maxdepth}),
+ * не переходить на другие файловые системы (как {@code find -xdev}) и пропускать точки монтирования
+ * служебных файловых систем ({@code proc}, {@code sysfs} и т. п.).
+ * <p>
+ * Правила задаются до начала сканирования; сессия компилирует их методом {@link #compile(Path)}:
+ * имена без подстановочных символов попадают в хэш-множество, остальные шаблоны — в
+ * {@link PathMatcher}, поэтому проверка элемента не требует обращений к диску, кроме чтения
+ * номера устройства директорий при {@link #setOneFileSystem(boolean)}.
+ */
+public final class ScanFilter {
+
+    private static final Logger logger = LogManager.getLogger(ScanFilter.class);
+
+    /**
+     * Типы служебных файловых систем, содержимое которых не хранится на диске.
+     */
+    static final Set<String> PSEUDO_FILE_SYSTEMS = Set.of("proc", "sysfs", "devtmpfs", "devpts", "cgroup",
+            "cgroup2", "debugfs", "tracefs", "securityfs", "pstore", "bpf", "configfs", "fusectl", "mqueue",
+            "hugetlbfs", "autofs", "binfmt_misc", "rpc_pipefs", "nsfs", "efivarfs");
+
+    /**
+     * Таблица монтирования Linux.
+     */
+    private static final Path MOUNTS = Path.of("/proc/self/mounts");
+
+    /**
+     * Шаблоны исключения.
+     */
+    private final List<String> excludes = new ArrayList<>();
+
+    /**
+     * Шаблоны включения файлов.
+     */
+    private final List<String> includes = new ArrayList<>();
+
+    /**
+     * Минимальный размер проверяемого файла в байтах.
+     */
+    private long minSize;
+
+    /**
+     * Максимальный размер проверяемого файла в байтах.
+     */
+    private long maxSize = Long.MAX_VALUE;
+
+    /**
+     * Максимальная глубина элементов относительно корня; {@link Integer#MAX_VALUE} — без ограничения.
+     */
+    private int maxDepth = Integer.MAX_VALUE;
+
+    /**
+     * Признак обхода только файловой системы корня.
+     */
+    private boolean oneFileSystem;
+
+    /**
+     * Признак пропуска точек монтирования служебных файловых систем.
+     */
+    private boolean skipPseudoFileSystems;
+
+    /**
+     * Добавляет шаблон исключения файлов и директорий.
+     *
+     * @param glob Шаблон glob (см. {@link FileSystem#getPathMatcher(String)}).
+     * @throws IllegalArgumentException Если шаблон пустой или некорректный.
+     */
+    public void addExclude(String glob) {
+        excludes.add(validate(glob));
+    }
+
+    /**
+     * Добавляет шаблон включения файлов.
+     *
+     * @param glob Шаблон glob (см. {@link FileSystem#getPathMatcher(String)}).
+     * @throws IllegalArgumentException Если шаблон пустой или некорректный.
+     */
+    public void addInclude(String glob) {
+        includes.add(validate(glob));
+    }
+
+    /**
+     * Устанавливает минимальный размер проверяемого файла.
+     *
+     * @param minSize Размер в байтах.
+     * @throws IllegalArgumentException Если размер отрицателен.
+     */
+    public void setMinSize(long minSize) {
+        if (minSize < 0) {
+            throw new IllegalArgumentException("Negative size: " + minSize);
+        }
+        this.minSize = minSize;
+    }
+
+    /**
+     * Устанавливает максимальный размер проверяемого файла.
+     *
+     * @param maxSize Размер в байтах.
+     * @throws IllegalArgumentException Если размер отрицателен.
+     */
+    public void setMaxSize(long maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("Negative size: " + maxSize);
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Ограничивает глубину обхода: элементы корня имеют глубину 1, элементы его поддиректорий — 2 и т. д.
+     *
+     * @param maxDepth Максимальная глубина проверяемых элементов.
+     * @throws IllegalArgumentException Если глубина меньше 1.
+     */
+    public void setMaxDepth(int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("Max depth must be positive: " + maxDepth);
+        }
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Включает или выключает обход только файловой системы корня.
+     *
+     * @param oneFileSystem {@code true}, чтобы не заходить в точки монтирования других файловых систем.
+     */
+    public void setOneFileSystem(boolean oneFileSystem) {
+        this.oneFileSystem = oneFileSystem;
+    }
+
+    /**
+     * Включает или выключает пропуск служебных файловых систем ({@link #PSEUDO_FILE_SYSTEMS}).
+     * Точки монтирования читаются один раз при компиляции правил из {@code /proc/self/mounts};
+     * на системах без этого файла правило не действует.
+     *
+     * @param skipPseudoFileSystems {@code true}, чтобы пропускать служебные файловые системы.
+     */
+    public void setSkipPseudoFileSystems(boolean skipPseudoFileSystems) {
+        this.skipPseudoFileSystems = skipPseudoFileSystems;
+    }
+
+    /**
+     * Проверяет, что ни одно правило не задано.
+     *
+     * @return {@code true}, если фильтр пропускает все файлы и директории.
+     */
+    public boolean isEmpty() {
+        return excludes.isEmpty() && includes.isEmpty() && minSize == 0 && maxSize == Long.MAX_VALUE
+                && maxDepth == Integer.MAX_VALUE && !oneFileSystem && !skipPseudoFileSystems;
+    }
+
+    /**
+     * Разбирает размер с необязательным суффиксом {@code K}, {@code M} или {@code G} (степени 1024).
+     *
+     * @param value Строка размера, например {@code 512}, {@code 64K} или {@code 2G}.
+     * @return Размер в байтах.
+     * @throws IllegalArgumentException Если строка некорректна.
+     */
+    public static long parseSize(String value) {
+        String text = value == null ? "" : value.trim().toUpperCase(Locale.ROOT);
+        int shift = 0;
+        if (text.endsWith("K")) {
+            shift = 10;
+        } else if (text.endsWith("M")) {
+            shift = 20;
+        } else if (text.endsWith("G")) {
+            shift = 30;
+        }
+        if (shift > 0) {
+            text = text.substring(0, text.length() - 1);
+        }
+        try {
+            long size = Long.parseLong(text);
+            if (size < 0 || size > Long.MAX_VALUE >> shift) {
+                throw new IllegalArgumentException("Invalid size: " + value);
+            }
+            return size << shift;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid size: " + value);
+        }
+    }
+
+    /**
+     * Компилирует правила для обхода заданного корня.
+     *
+     * @param root Корень сканирования.
+     * @return Скомпилированные правила.
+     */
+    Compiled compile(Path root) {
+        return new Compiled(this, root);
+    }
+
+    /**
+     * Проверяет шаблон glob.
+     *
+     * @param glob Шаблон.
+     * @return Шаблон без пробелов по краям.
+     * @throws IllegalArgumentException Если шаблон пустой или некорректный.
+     */
+    static String validate(String glob) {
+        if (glob == null || glob.isBlank()) {
+            throw new IllegalArgumentException("Empty pattern");
+        }
+        String pattern = glob.trim();
+        FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        return pattern;
+    }
+
+    /**
+     * Набор шаблонов, разделенный по способу сравнения. Используется и правилами очередности
+     * {@link ScanPriority}, чтобы шаблоны в обоих местах понимались одинаково.
+     */
+    static final class Patterns {
+        private final Set<String> names = new HashSet<>();
+        private final List<PathMatcher> nameMatchers = new ArrayList<>();
+        private final List<PathMatcher> pathMatchers = new ArrayList<>();
+
+        Patterns(List<String> globs) {
+            FileSystem fileSystem = FileSystems.getDefault();
+            for (String glob : globs) {
+                if (glob.indexOf('/') >= 0) {
+                    pathMatchers.add(fileSystem.getPathMatcher("glob:" + glob));
+                } else if (glob.chars().noneMatch(c -> "*?[]{}\\".indexOf(c) >= 0)) {
+                    names.add(glob);
+                } else {
+                    nameMatchers.add(fileSystem.getPathMatcher("glob:" + glob));
+                }
+            }
+        }
+
+        boolean isEmpty() {
+            return names.isEmpty() && nameMatchers.isEmpty() && pathMatchers.isEmpty();
+        }
+
+        /**
+         * Проверяет элемент по шаблонам.
+         *
+         * @param root Корень сканирования.
+         * @param path Путь к элементу.
+         * @return {@code true}, если элемент подходит хотя бы под один шаблон.
+         */
+        boolean matches(Path root, Path path) {
+            Path name = path.getFileName();
+            if (name == null) {
+                return false;
+            }
+            if (!names.isEmpty() && names.contains(name.toString())) {
+                return true;
+            }
+            for (PathMatcher matcher : nameMatchers) {
+                if (matcher.matches(name)) {
+                    return true;
+                }
+            }
+            if (!pathMatchers.isEmpty() && path.startsWith(root)) {
+                Path relative = root.relativize(path);
+                for (PathMatcher matcher : pathMatchers) {
+                    if (matcher.matches(relative)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Правила, скомпилированные для одного корня сканирования. Экземпляр неизменяем
+     * и используется потоками обхода без блокировок.
+     */
+    static final class Compiled {
+        private final Path root;
+        private final Patterns excludes;
+        private final Patterns includes;
+        private final long minSize;
+        private final long maxSize;
+        private final int maxDepth;
+        private final boolean oneFileSystem;
+
+        /**
+         * Номер устройства корня или -1, если номера устройств недоступны.
+         */
+        private final long rootDevice;
+
+        /**
+         * Хранилище корня для сравнения, если номера устройств недоступны.
+         */
+        private final FileStore rootStore;
+
+        /**
+         * Абсолютные пути точек монтирования служебных файловых систем.
+         */
+        private final Set<Path> pseudoMounts;
+
+        private Compiled(ScanFilter filter, Path root) {
+            this.root = root;
+            this.excludes = new Patterns(filter.excludes);
+            this.includes = new Patterns(filter.includes);
+            this.minSize = filter.minSize;
+            this.maxSize = filter.maxSize;
+            this.maxDepth = filter.maxDepth;
+            this.oneFileSystem = filter.oneFileSystem;
+            long device = -1;
+            FileStore store = null;
+            if (oneFileSystem) {
+                device = device(root);
+                if (device < 0) {
+                    try {
+                        store = Files.getFileStore(root);
+                    } catch (IOException e) {
+                        logger.warn("The file system of {} is unknown, other mounts are not skipped", root);
+                    }
+                }
+            }
+            this.rootDevice = device;
+            this.rootStore = store;
+            this.pseudoMounts = filter.skipPseudoFileSystems ? pseudoMounts() : Set.of();
+        }
+
+        /**
+         * Проверяет, нужно ли читать поддиректорию.
+         *
+         * @param path  Путь к директории.
+         * @param depth Глубина директории относительно корня (элементы корня — 1).
+         * @return {@code true}, если директорию нужно обойти.
+         */
+        boolean acceptDirectory(Path path, int depth) {
+            if (depth >= maxDepth || excludes.matches(root, path)) {
+                return false;
+            }
+            if (!pseudoMounts.isEmpty() && pseudoMounts.contains(path.toAbsolutePath())) {
+                return false;
+            }
+            if (oneFileSystem) {
+                if (rootDevice >= 0) {
+                    long device = device(path);
+                    return device < 0 || device == rootDevice;
+                }
+                if (rootStore != null) {
+                    try {
+                        return rootStore.equals(Files.getFileStore(path));
+                    } catch (IOException e) {
+                        return true;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Проверяет, нужно ли открывать файл.
+         *
+         * @param path  Путь к файлу.
+         * @param attr  Атрибуты файла, прочитанные при обходе.
+         * @param depth Глубина файла относительно корня.
+         * @return {@code true}, если файл нужно проверить.
+         */
+        boolean acceptFile(Path path, BasicFileAttributes attr, int depth) {
+            long size = attr.size();
+            if (depth > maxDepth || size < minSize || size > maxSize) {
+                return false;
+            }
+            if (excludes.matches(root, path)) {
+                return false;
+            }
+            return includes.isEmpty() || includes.matches(root, path);
+        }
+
+        /**
+         * Возвращает номер устройства директории.
+         *
+         * @param path Путь к директории.
+         * @return Номер устройства или -1, если атрибут {@code unix:dev} недоступен.
+         */
+        private static long device(Path path) {
+            try {
+                return (Long) Files.getAttribute(path, "unix:dev");
+            } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+                return -1;
+            }
+        }
+
+        /**
+         * Читает точки монтирования служебных файловых систем из таблицы монтирования.
+         *
+         * @return Абсолютные пути точек монтирования.
+         */
+        private static Set<Path> pseudoMounts() {
+            Set<Path> mounts = new HashSet<>();
+            if (!Files.isReadable(MOUNTS)) {
+                return mounts;
+            }
+            try (BufferedReader reader = Files.newBufferedReader(MOUNTS, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = line.split(" ");
+                    if (fields.length > 2 && PSEUDO_FILE_SYSTEMS.contains(fields[2])) {
+                        // Пробелы и другие символы в пути записываются восьмеричными escape-последовательностями
+                        mounts.add(Path.of(unescape(fields[1])));
+                    }
+                }
+            } catch (IOException e) {
+                logger.warn("Failed to read the mount table: {}", e.getMessage());
+            }
+            logger.debug("Pseudo file systems skipped: {}", mounts);
+            return mounts;
+        }
+
+        /**
+         * Раскрывает восьмеричные escape-последовательности ({@code \040}) пути из таблицы монтирования.
+         *
+         * @param value Путь из таблицы монтирования.
+         * @return Путь.
+         */
+        private static String unescape(String value) {
+            StringBuilder result = new StringBuilder(value.length());
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '\\' && i + 3 < value.length()) {
+                    try {
+                        result.append((char) Integer.parseInt(value.substring(i + 1, i + 4), 8));
+                        i += 3;
+                        continue;
+                    } catch (NumberFormatException e) {
+                        // Не escape-последовательность: символ сохраняется как есть
+                    }
+                }
+                result.append(c);
+            }
+            return result.toString();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package project.signature;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Найденный файл с совпадающей сигнатурой.
+ * Запись хранит структурированные данные о файле: даты хранятся числами, а не объектами
+ * {@link FileTime}, поэтому запись не удерживает атрибуты, прочитанные при обходе.
+ * Объекты дат и текстовое представление для пользователя создаются только при обращении
+ * к {@link #lastModifiedTime()} и другим методам дат или к {@link #describe()}.
+ *
+ * @param path          Путь к файлу.
+ * @param size          Размер файла в байтах.
+ * @param createdNanos  Дата создания в наносекундах от начала эпохи.
+ * @param accessedNanos Дата последнего использования в наносекундах от начала эпохи.
+ * @param modifiedNanos Дата последнего изменения в наносекундах от начала эпохи.
+ * @param symbolicLink  Признак символической ссылки.
+ * @param types         Названия сигнатур, совпавших с заголовком файла.
+ * @param embedded      Вложенные сигнатуры, найденные глубоким сканированием.
+ * @param archived      Сигнатуры файлов внутри архива (см. {@link ArchiveScanner}).
+ * @param aliasOf       Путь, по которому этот же физический файл был прочитан при сканировании, если запись
+ *                      описывает другой путь к нему (жесткую или символическую ссылку), иначе {@code null}.
+ * @param entropy       Результат анализа энтропии ({@link EntropyAnalyzer}) или {@code null}, если анализ
+ *                      не выполнялся.
+ */
+public record ScanHit(Path path, long size, long createdNanos, long accessedNanos,
+                      long modifiedNanos, boolean symbolicLink,
+                      List<String> types, List<DeepScanner.Match> embedded, List<ArchiveScanner.Match> archived,
+                      Path aliasOf, EntropyAnalyzer.Report entropy) {
+
+    /**
+     * Создает запись о файле, прочитанном по собственному пути.
+     *
+     * @param path          Путь к файлу.
+     * @param size          Размер файла в байтах.
+     * @param createdNanos  Дата создания в наносекундах от начала эпохи.
+     * @param accessedNanos Дата последнего использования в наносекундах от начала эпохи.
+     * @param modifiedNanos Дата последнего изменения в наносекундах от начала эпохи.
+     * @param symbolicLink  Признак символической ссылки.
+     * @param types         Названия сигнатур, совпавших с заголовком файла.
+     * @param embedded      Вложенные сигнатуры, найденные глубоким сканированием.
+     * @param archived      Сигнатуры файлов внутри архива.
+     */
+    public ScanHit(Path path, long size, long createdNanos, long accessedNanos, long modifiedNanos,
+                   boolean symbolicLink, List<String> types, List<DeepScanner.Match> embedded,
+                   List<ArchiveScanner.Match> archived) {
+        this(path, size, createdNanos, accessedNanos, modifiedNanos, symbolicLink, types, embedded, archived, null);
+    }
+
+    /**
+     * Создает запись о файле без результата анализа энтропии.
+     *
+     * @param path          Путь к файлу.
+     * @param size          Размер файла в байтах.
+     * @param createdNanos  Дата создания в наносекундах от начала эпохи.
+     * @param accessedNanos Дата последнего использования в наносекундах от начала эпохи.
+     * @param modifiedNanos Дата последнего изменения в наносекундах от начала эпохи.
+     * @param symbolicLink  Признак символической ссылки.
+     * @param types         Названия сигнатур, совпавших с заголовком файла.
+     * @param embedded      Вложенные сигнатуры, найденные глубоким сканированием.
+     * @param archived      Сигнатуры файлов внутри архива.
+     * @param aliasOf       Путь, по которому этот же файл был прочитан, или {@code null}.
+     */
+    public ScanHit(Path path, long size, long createdNanos, long accessedNanos, long modifiedNanos,
+                   boolean symbolicLink, List<String> types, List<DeepScanner.Match> embedded,
+                   List<ArchiveScanner.Match> archived, Path aliasOf) {
+        this(path, size, createdNanos, accessedNanos, modifiedNanos, symbolicLink, types, embedded, archived,
+                aliasOf, null);
+    }
+
+    /**
+     * Создает запись о найденном файле по его атрибутам.
+     *
+     * @param path     Путь к файлу.
+     * @param attr     Атрибуты файла.
+     * @param types    Названия сигнатур, совпавших с заголовком файла.
+     * @param embedded Вложенные сигнатуры, найденные глубоким сканированием.
+     * @return Запись о найденном файле.
+     */
+    public static ScanHit of(Path path, BasicFileAttributes attr, List<String> types,
+                             List<DeepScanner.Match> embedded) {
+        return of(path, attr, types, embedded, List.of());
+    }
+
+    /**
+     * Создает запись о найденном файле по его атрибутам, включая совпадения внутри архива.
+     *
+     * @param path     Путь к файлу.
+     * @param attr     Атрибуты файла.
+     * @param types    Названия сигнатур, совпавших с заголовком файла.
+     * @param embedded Вложенные сигнатуры, найденные глубоким сканированием.
+     * @param archived Сигнатуры файлов внутри архива.
+     * @return Запись о найденном файле.
+     */
+    public static ScanHit of(Path path, BasicFileAttributes attr, List<String> types,
+                             List<DeepScanner.Match> embedded, List<ArchiveScanner.Match> archived) {
+        return new ScanHit(path, attr.size(), nanos(attr.creationTime()), nanos(attr.lastAccessTime()),
+                nanos(attr.lastModifiedTime()), attr.isSymbolicLink(), List.copyOf(types), List.copyOf(embedded),
+                List.copyOf(archived));
+    }
+
+    /**
+     * Возвращает копию записи с признаком символической ссылки.
+     *
+     * @param symbolicLink Признак символической ссылки.
+     * @return Запись о том же файле.
+     */
+    public ScanHit withSymbolicLink(boolean symbolicLink) {
+        return new ScanHit(path, size, createdNanos, accessedNanos, modifiedNanos, symbolicLink,
+                types, embedded, archived, aliasOf, entropy);
+    }
+
+    /**
+     * Возвращает копию записи с результатом анализа энтропии.
+     *
+     * @param entropy Результат анализа энтропии.
+     * @return Запись о том же файле.
+     */
+    public ScanHit withEntropy(EntropyAnalyzer.Report entropy) {
+        return new ScanHit(path, size, createdNanos, accessedNanos, modifiedNanos, symbolicLink,
+                types, embedded, archived, aliasOf, entropy);
+    }
+
+    /**
+     * Возвращает запись о другом пути к этому же физическому файлу без повторного чтения.
+     *
+     * @param alias        Другой путь к файлу.
+     * @param symbolicLink Признак того, что другой путь — символическая ссылка.
+     * @return Запись с путем {@code alias}, ссылающаяся на путь этой записи.
+     */
+    public ScanHit aliasAt(Path alias, boolean symbolicLink) {
+        return new ScanHit(alias, size, createdNanos, accessedNanos, modifiedNanos, symbolicLink,
+                types, embedded, archived, path, entropy);
+    }
+
+    /**
+     * Возвращает дату создания файла.
+     *
+     * @return Дата создания.
+     */
+    public FileTime creationTime() {
+        return FileTime.from(createdNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Возвращает дату последнего использования файла.
+     *
+     * @return Дата последнего использования.
+     */
+    public FileTime lastAccessTime() {
+        return FileTime.from(accessedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Возвращает дату последнего изменения файла.
+     *
+     * @return Дата последнего изменения.
+     */
+    public FileTime lastModifiedTime() {
+        return FileTime.from(modifiedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Переводит дату файла в наносекунды от начала эпохи.
+     *
+     * @param time Дата файла.
+     * @return Количество наносекунд; даты за пределами диапазона {@code long} ограничиваются его границами.
+     */
+    private static long nanos(FileTime time) {
+        return time.to(TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Формирует текстовое описание файла в формате, используемом в {@link DirScanner#getMetadata()}.
+     *
+     * @return Строка с метаданными файла.
+     */
+    public String describe() {
+        StringBuilder result = new StringBuilder("→ Название файла -> " + path.getFileName() + "\n" +
+                "Полный путь -> " + path.toAbsolutePath() + "\n" +
+                "Дата создания -> " + creationTime() + "\n" +
+                "Дата последнего использования -> " + lastAccessTime() + "\n" +
+                "Дата последнего изменения -> " + lastModifiedTime() + "\n" +
+                "Символическая ссылка -> " + symbolicLink + "\n" +
+                "Размер -> " + size + " байт" + "\n");
+        if (aliasOf != null) {
+            result.append("Тот же файл, что и -> ").append(aliasOf.toAbsolutePath()).append("\n");
+        }
+        for (DeepScanner.Match match : embedded) {
+            result.append("Вложенная сигнатура -> ").append(match.name())
+                    .append(" (смещение ").append(match.offset()).append(")\n");
+        }
+        for (ArchiveScanner.Match match : archived) {
+            result.append("Файл в архиве -> ").append(match.entry())
+                    .append(" (").append(match.name()).append(")\n");
+        }
+        if (entropy != null) {
+            result.append(String.format("Энтропия -> %.2f бит/байт (наибольшая в окне %.2f)%n",
+                    entropy.entropy(), entropy.maxWindowEntropy()));
+            for (EntropyAnalyzer.Section section : entropy.sections()) {
+                result.append(String.format("Секция %s -> %.2f бит/байт, %d байт%n",
+                        section.name(), section.entropy(), section.size()));
+            }
+            if (entropy.packed()) {
+                result.append("Вероятно упакован или зашифрован -> ").append(entropy.reason()).append("\n");
+            }
+        }
+        return result.append("\n").toString();
+    }
+}
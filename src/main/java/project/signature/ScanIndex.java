@@ -0,0 +1,389 @@
+package project.signature;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Класс ScanIndex — сохраняемый на диске индекс результатов сканирования.
+ * Для каждого проверенного файла индекс хранит ключ файла ({@link BasicFileAttributes#fileKey()}),
+ * размер, время последнего изменения и результат проверки. При повторном сканировании файл,
+ * атрибуты которого не изменились, не открывается: результат берется из индекса.
+ * Индекс привязан к версии набора сигнатур ({@link #currentVersion()}); при ее изменении
+ * все записи сбрасываются и файлы проверяются заново.
+ * Методы поиска и записи безопасны для вызова из нескольких потоков.
+ * <p>
+ * Индекс, который хранится только в памяти ({@link #inMemory(String, int)}), ограничен количеством записей:
+ * при переполнении вытесняются записи, к которым дольше всего не обращались. Такой индекс не отслеживает
+ * посещенные файлы и не поддерживает {@link #prune(Path)}.
+ */
+public class ScanIndex {
+
+    private static final Logger logger = LogManager.getLogger(ScanIndex.class);
+
+    /**
+     * Признак файла индекса ("SIDX").
+     */
+    private static final int MAGIC = 0x53494458;
+
+    /**
+     * Версия формата файла индекса.
+     */
+    private static final int FORMAT = 4;
+
+    /**
+     * Запись индекса об одном файле.
+     *
+     * @param fileKey  Ключ файла в файловой системе (устройство и inode) или пустая строка.
+     * @param size     Размер файла в байтах.
+     * @param modified Время последнего изменения в миллисекундах.
+     * @param hit      Признак того, что в файле найдена сигнатура.
+     * @param types    Названия сигнатур, совпавших с заголовком файла.
+     * @param embedded Вложенные сигнатуры, найденные глубоким сканированием.
+     * @param archived Сигнатуры файлов внутри архива.
+     * @param entropy  Результат анализа энтропии или {@code null}, если файл не анализировался.
+     */
+    public record Entry(String fileKey, long size, long modified, boolean hit, List<String> types,
+                        List<DeepScanner.Match> embedded, List<ArchiveScanner.Match> archived,
+                        EntropyAnalyzer.Report entropy) {
+
+        /**
+         * Проверяет, соответствует ли запись текущим атрибутам файла.
+         *
+         * @param attr Атрибуты файла.
+         * @return {@code true}, если файл не изменился с момента записи.
+         */
+        boolean matches(BasicFileAttributes attr) {
+            return size == attr.size()
+                    && modified == attr.lastModifiedTime().toMillis()
+                    && fileKey.equals(fileKeyOf(attr));
+        }
+    }
+
+    /**
+     * Путь к файлу индекса или {@code null} для индекса, который хранится только в памяти.
+     */
+    private final Path file;
+
+    /**
+     * Версия набора сигнатур, для которой действительны записи.
+     */
+    private volatile String version;
+
+    /**
+     * Записи индекса: абсолютный путь -> запись.
+     */
+    private final Map<String, Entry> entries;
+
+    /**
+     * Пути файлов, проверенных или найденных в индексе в текущем сеансе,
+     * или {@code null}, если посещенные файлы не отслеживаются.
+     */
+    private final Set<String> visited;
+
+    private ScanIndex(Path file, String version) {
+        this.file = file;
+        this.version = version;
+        this.entries = new ConcurrentHashMap<>();
+        this.visited = ConcurrentHashMap.newKeySet();
+    }
+
+    private ScanIndex(String version, int capacity) {
+        this.file = null;
+        this.version = version;
+        this.entries = Collections.synchronizedMap(new RecentEntries(capacity));
+        this.visited = null;
+    }
+
+    /**
+     * Записи в порядке обращения, из которых вытесняются давно не использованные.
+     */
+    private static final class RecentEntries extends LinkedHashMap<String, Entry> {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Наибольшее количество записей.
+         */
+        private final int capacity;
+
+        RecentEntries(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    /**
+     * Возвращает версию текущего набора сигнатур с учетом режима глубокого сканирования {@link DirScanner}.
+     *
+     * @return Строка версии.
+     */
+    public static String currentVersion() {
+        return currentVersion(DirScanner.isDeepScan());
+    }
+
+    /**
+     * Возвращает версию текущего набора сигнатур для заданного режима сканирования.
+     *
+     * @param deepScan Признак глубокого сканирования.
+     * @return Строка версии.
+     */
+    public static String currentVersion(boolean deepScan) {
+        return currentVersion(deepScan, 0);
+    }
+
+    /**
+     * Возвращает версию текущего набора сигнатур для заданных режимов сканирования.
+     *
+     * @param deepScan     Признак глубокого сканирования.
+     * @param archiveDepth Глубина проверки архивов; 0 — архивы не проверяются.
+     * @return Строка версии.
+     */
+    public static String currentVersion(boolean deepScan, int archiveDepth) {
+        return Signature.getFingerprint() + (deepScan ? "+deep" : "")
+                + (archiveDepth > 0 ? "+archives" + archiveDepth : "");
+    }
+
+    /**
+     * Загружает индекс из файла. Если файл отсутствует, поврежден или создан для другой версии
+     * набора сигнатур, возвращается пустой индекс, который будет сохранен в тот же файл.
+     *
+     * @param file    Путь к файлу индекса.
+     * @param version Версия набора сигнатур (см. {@link #currentVersion()}).
+     * @return Загруженный индекс.
+     */
+    public static ScanIndex load(Path file, String version) {
+        ScanIndex index = new ScanIndex(file, version);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT) {
+                logger.warn("Unknown scan index format, starting a new index: {}", file);
+                return index;
+            }
+            String stored = in.readUTF();
+            if (!stored.equals(version)) {
+                logger.info("The signature set has changed, the scan index is reset: {}", file);
+                return index;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                String fileKey = in.readUTF();
+                long size = in.readLong();
+                long modified = in.readLong();
+                boolean hit = in.readBoolean();
+                int typeCount = in.readInt();
+                List<String> types = new ArrayList<>(typeCount);
+                for (int k = 0; k < typeCount; k++) {
+                    types.add(in.readUTF());
+                }
+                int embeddedCount = in.readInt();
+                List<DeepScanner.Match> embedded = new ArrayList<>(embeddedCount);
+                for (int k = 0; k < embeddedCount; k++) {
+                    embedded.add(new DeepScanner.Match(in.readUTF(), in.readLong()));
+                }
+                int archivedCount = in.readInt();
+                List<ArchiveScanner.Match> archived = new ArrayList<>(archivedCount);
+                for (int k = 0; k < archivedCount; k++) {
+                    archived.add(new ArchiveScanner.Match(in.readUTF(), in.readUTF()));
+                }
+                EntropyAnalyzer.Report entropy = ShardProtocol.readEntropy(in);
+                index.entries.put(path, new Entry(fileKey, size, modified, hit,
+                        List.copyOf(types), List.copyOf(embedded), List.copyOf(archived), entropy));
+            }
+            logger.info("Scan index loaded: {} entries", count);
+        } catch (NoSuchFileException e) {
+            logger.info("The scan index does not exist yet: {}", file);
+        } catch (IOException e) {
+            logger.warn("The scan index is damaged, starting a new index: {}", file, e);
+            index.entries.clear();
+        }
+        return index;
+    }
+
+    /**
+     * Создает пустой индекс, который хранится только в памяти и не сохраняется на диск.
+     * Используется как общий кэш результатов проверки файлов в {@link ScanService}.
+     *
+     * @param version  Версия набора сигнатур (см. {@link #currentVersion()}).
+     * @param capacity Наибольшее количество записей.
+     * @return Пустой индекс.
+     * @throws IllegalArgumentException Если {@code capacity} меньше 1.
+     */
+    static ScanIndex inMemory(String version, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Index capacity must be positive: " + capacity);
+        }
+        return new ScanIndex(version, capacity);
+    }
+
+    /**
+     * Сбрасывает индекс, если версия набора сигнатур изменилась после загрузки.
+     *
+     * @param currentVersion Текущая версия набора сигнатур.
+     */
+    public synchronized void revalidate(String currentVersion) {
+        if (!currentVersion.equals(version)) {
+            logger.info("The signature set has changed, the scan index is reset");
+            entries.clear();
+            if (visited != null) {
+                visited.clear();
+            }
+            version = currentVersion;
+        }
+    }
+
+    /**
+     * Возвращает запись о файле, если файл не изменился с момента последней проверки.
+     *
+     * @param path Путь к файлу.
+     * @param attr Текущие атрибуты файла.
+     * @return Запись индекса или {@code null}, если файл нужно проверить заново.
+     */
+    public Entry lookup(Path path, BasicFileAttributes attr) {
+        String key = path.toAbsolutePath().toString();
+        Entry entry = entries.get(key);
+        if (entry == null || !entry.matches(attr)) {
+            return null;
+        }
+        if (visited != null) {
+            visited.add(key);
+        }
+        return entry;
+    }
+
+    /**
+     * Сохраняет результат проверки файла.
+     *
+     * @param path Путь к файлу.
+     * @param attr Атрибуты файла на момент проверки.
+     * @param hit  Запись о найденном файле или {@code null}, если сигнатура не найдена.
+     */
+    public void record(Path path, BasicFileAttributes attr, ScanHit hit) {
+        String key = path.toAbsolutePath().toString();
+        entries.put(key, new Entry(fileKeyOf(attr), attr.size(), attr.lastModifiedTime().toMillis(),
+                hit != null, hit == null ? List.of() : hit.types(), hit == null ? List.of() : hit.embedded(),
+                hit == null ? List.of() : hit.archived(), hit == null ? null : hit.entropy()));
+        if (visited != null) {
+            visited.add(key);
+        }
+    }
+
+    /**
+     * Удаляет записи о файлах внутри директории, которые не встретились в текущем сеансе
+     * (например, удаленные файлы). Вызывается после полного сканирования директории.
+     *
+     * @param root Просканированная директория.
+     * @throws IllegalStateException Если индекс не отслеживает посещенные файлы.
+     */
+    public void prune(Path root) {
+        if (visited == null) {
+            throw new IllegalStateException("The scan index does not track visited files");
+        }
+        String prefix = root.toAbsolutePath().toString();
+        String directory = prefix.endsWith(File.separator) ? prefix : prefix + File.separator;
+        entries.keySet().removeIf(key -> key.startsWith(directory) && !visited.contains(key));
+        visited.clear();
+    }
+
+    /**
+     * Записывает индекс на диск. Запись выполняется во временный файл, который затем
+     * атомарно заменяет прежний индекс, поэтому сбой во время записи не повреждает индекс.
+     *
+     * @throws IOException           Если произошла ошибка при записи файла.
+     * @throws IllegalStateException Если индекс хранится только в памяти.
+     */
+    public synchronized void save() throws IOException {
+        if (file == null) {
+            throw new IllegalStateException("The scan index is kept in memory only");
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeUTF(version);
+            List<Map.Entry<String, Entry>> snapshot = new ArrayList<>(entries.entrySet());
+            out.writeInt(snapshot.size());
+            for (Map.Entry<String, Entry> item : snapshot) {
+                Entry entry = item.getValue();
+                out.writeUTF(item.getKey());
+                out.writeUTF(entry.fileKey());
+                out.writeLong(entry.size());
+                out.writeLong(entry.modified());
+                out.writeBoolean(entry.hit());
+                out.writeInt(entry.types().size());
+                for (String type : entry.types()) {
+                    out.writeUTF(type);
+                }
+                out.writeInt(entry.embedded().size());
+                for (DeepScanner.Match match : entry.embedded()) {
+                    out.writeUTF(match.name());
+                    out.writeLong(match.offset());
+                }
+                out.writeInt(entry.archived().size());
+                for (ArchiveScanner.Match match : entry.archived()) {
+                    out.writeUTF(match.name());
+                    out.writeUTF(match.entry());
+                }
+                ShardProtocol.writeEntropy(out, entry.entropy());
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.info("Scan index saved: {} entries", entries.size());
+    }
+
+    /**
+     * Возвращает количество записей в индексе.
+     *
+     * @return Количество записей.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Возвращает версию набора сигнатур, для которой действительны записи.
+     *
+     * @return Строка версии.
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Возвращает строковое представление ключа файла.
+     *
+     * @param attr Атрибуты файла.
+     * @return Ключ файла или пустая строка, если файловая система его не предоставляет.
+     */
+    private static String fileKeyOf(BasicFileAttributes attr) {
+        Object key = attr.fileKey();
+        return key == null ? "" : key.toString();
+    }
+}
@@ -0,0 +1,656 @@
+package project.signature;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Класс ScanJournal — журнал хода сканирования для продолжения прерванного обхода.
+ * Журнал дописывается в конец файла двумя видами записей: {@link #HIT} — найденный файл
+ * и {@link #DONE} — директория, все поддиректории и файлы которой проверены, вместе с количеством
+ * директорий и файлов в ней. Директория считается проверенной, когда закончен обход ее содержимого,
+ * все ее поддиректории проверены и завершилась проверка структуры найденных в ней файлов.
+ * Записи буферизуются и сбрасываются на диск не реже чем раз в {@link #setCheckpointInterval(long)}
+ * миллисекунд, поэтому после сбоя теряется только работа после последней контрольной точки;
+ * неполная последняя запись отбрасывается при чтении.
+ * <p>
+ * При продолжении ({@link #open(Path, Path, boolean)}) журнал сжимается: остаются только проверенные
+ * директории, не вложенные в другие проверенные, и найденные в них файлы. {@link ScanSession}
+ * восстанавливает счетчики, заново публикует найденные файлы ({@link #replay(Consumer)}) и при обходе
+ * пропускает проверенные директории, не открывая их. Файлы непроверенных директорий читаются заново,
+ * поэтому записи о них из прерванного сканирования отбрасываются. После успешного окончания
+ * сканирования журнал удаляется ({@link #complete()}).
+ * <p>
+ * Ошибка записи журнала не прерывает сканирование: она записывается в журнал приложения,
+ * и дальнейшие записи не выполняются. Методы синхронизированы.
+ */
+public final class ScanJournal implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger(ScanJournal.class);
+
+    /**
+     * Признак файла журнала ("SJRN").
+     */
+    private static final int MAGIC = 0x534A524E;
+
+    /**
+     * Версия формата файла журнала.
+     */
+    private static final int FORMAT = 2;
+
+    /**
+     * Запись о проверенной директории: путь относительно корня, количество директорий и файлов.
+     */
+    static final byte DONE = 1;
+
+    /**
+     * Запись о найденном файле в формате {@link ShardProtocol#writeHitFields}.
+     */
+    static final byte HIT = 2;
+
+    /**
+     * Интервал между контрольными точками по умолчанию в миллисекундах.
+     */
+    public static final long DEFAULT_CHECKPOINT_INTERVAL = 5000;
+
+    /**
+     * Размер буфера записи.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Количество директорий и файлов в проверенной директории, включая вложенные.
+     *
+     * @param directories Количество директорий, включая саму директорию.
+     * @param files       Количество файлов.
+     */
+    private record Subtree(long directories, long files) {
+    }
+
+    /**
+     * Ход проверки директории текущего сканирования.
+     */
+    private static final class Progress {
+
+        /**
+         * Родительская директория или {@code null} для корня.
+         */
+        private Path parent;
+
+        /**
+         * Количество незавершенных частей: обход содержимого, поддиректории и файлы на проверке структуры.
+         */
+        private int outstanding;
+
+        /**
+         * Количество директорий, включая саму директорию и проверенные поддиректории.
+         */
+        private long directories = 1;
+
+        /**
+         * Количество файлов директории и проверенных поддиректорий.
+         */
+        private long files;
+    }
+
+    /**
+     * Путь к файлу журнала.
+     */
+    private final Path file;
+
+    /**
+     * Корневая директория сканирования.
+     */
+    private final Path root;
+
+    /**
+     * Канал файла журнала.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Буферизованная запись в файл журнала.
+     */
+    private final DataOutputStream out;
+
+    /**
+     * Директории, проверенные при прерванном сканировании, по пути относительно корня.
+     */
+    private final NavigableMap<String, Subtree> completed;
+
+    /**
+     * Количество найденных файлов, восстановленных из журнала.
+     */
+    private final long restoredHits;
+
+    /**
+     * Ход проверки директорий текущего сканирования.
+     */
+    private final Map<Path, Progress> progress = new HashMap<>();
+
+    /**
+     * Интервал между контрольными точками в миллисекундах.
+     */
+    private long checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+
+    /**
+     * Время последней контрольной точки в наносекундах.
+     */
+    private long lastCheckpoint = System.nanoTime();
+
+    /**
+     * Признак остановки записи из-за ошибки или закрытия журнала.
+     */
+    private boolean stopped;
+
+    /**
+     * Признак закрытия журнала.
+     */
+    private boolean closed;
+
+    private ScanJournal(Path file, Path root, NavigableMap<String, Subtree> completed, long restoredHits)
+            throws IOException {
+        this.file = file;
+        this.root = root;
+        this.completed = completed;
+        this.restoredHits = restoredHits;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+    }
+
+    /**
+     * Открывает журнал сканирования директории.
+     *
+     * @param file   Файл журнала.
+     * @param root   Корневая директория сканирования в том виде, в котором она передана {@link ScanSession}.
+     * @param resume {@code true} — продолжить прерванное сканирование, если файл журнала существует;
+     *               {@code false} — начать новый журнал.
+     * @return Журнал.
+     * @throws IOException Если файл не удалось прочитать или создать, либо журнал относится
+     *                     к другой директории или имеет неизвестный формат.
+     */
+    public static ScanJournal open(Path file, Path root, boolean resume) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        String rootName = root.toAbsolutePath().normalize().toString();
+        NavigableMap<String, Subtree> completed = new TreeMap<>();
+        long hits = 0;
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeUTF(rootName);
+            if (resume && Files.exists(file)) {
+                readCompleted(file, rootName, completed);
+                for (Map.Entry<String, Subtree> entry : completed.entrySet()) {
+                    writeDone(out, entry.getKey(), entry.getValue());
+                }
+                hits = copyHits(file, root, completed, out);
+                logger.info("Resuming the scan of {}: {} directories and {} hits restored from {}",
+                        root, completed.size(), hits, file);
+            }
+        }
+        try (FileChannel written = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            written.force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new ScanJournal(file, root, completed, hits);
+    }
+
+    /**
+     * Читает проверенные директории из журнала, оставляя только не вложенные в другие проверенные.
+     * Чтение останавливается на первой неполной записи.
+     *
+     * @param file      Файл журнала.
+     * @param rootName  Абсолютный путь к корневой директории.
+     * @param completed Проверенные директории по пути относительно корня.
+     * @throws IOException Если журнал не удалось прочитать или он относится к другой директории.
+     */
+    private static void readCompleted(Path file, String rootName, NavigableMap<String, Subtree> completed)
+            throws IOException {
+        try (DataInputStream in = openRecords(file, rootName)) {
+            while (true) {
+                byte type = in.readByte();
+                if (type == DONE) {
+                    String directory = in.readUTF();
+                    Subtree subtree = new Subtree(in.readLong(), in.readLong());
+                    // Записи о поддиректориях предшествуют записи о директории и учтены в ней
+                    if (directory.isEmpty()) {
+                        completed.clear();
+                    } else {
+                        String prefix = directory + file.getFileSystem().getSeparator();
+                        completed.subMap(prefix, true, prefix + Character.MAX_VALUE, true).clear();
+                    }
+                    completed.put(directory, subtree);
+                } else if (type == HIT) {
+                    ShardProtocol.readHit(in);
+                } else {
+                    logger.warn("The scan journal {} contains an unknown record, the rest is ignored", file);
+                    return;
+                }
+            }
+        } catch (EOFException e) {
+            // Конец журнала или неполная запись, прерванная сбоем
+        }
+    }
+
+    /**
+     * Копирует из журнала записи о файлах, найденных в проверенных директориях.
+     *
+     * @param file      Файл журнала.
+     * @param root      Корневая директория сканирования.
+     * @param completed Проверенные директории.
+     * @param out       Сжатый журнал.
+     * @return Количество скопированных записей.
+     * @throws IOException Если журнал не удалось прочитать или записать.
+     */
+    private static long copyHits(Path file, Path root, NavigableMap<String, Subtree> completed, DataOutputStream out)
+            throws IOException {
+        long count = 0;
+        try (DataInputStream in = openRecords(file, root.toAbsolutePath().normalize().toString())) {
+            while (true) {
+                byte type = in.readByte();
+                if (type == DONE) {
+                    in.readUTF();
+                    in.readLong();
+                    in.readLong();
+                } else if (type == HIT) {
+                    ScanHit hit = ShardProtocol.readHit(in);
+                    if (isCompleted(root, completed, hit.path().getParent())) {
+                        out.writeByte(HIT);
+                        ShardProtocol.writeHitFields(out, hit);
+                        count++;
+                    }
+                } else {
+                    return count;
+                }
+            }
+        } catch (EOFException e) {
+            return count;
+        }
+    }
+
+    /**
+     * Открывает журнал для чтения записей и проверяет заголовок.
+     *
+     * @param file     Файл журнала.
+     * @param rootName Абсолютный путь к корневой директории.
+     * @return Поток, установленный на первую запись.
+     * @throws IOException Если журнал не удалось прочитать, формат неизвестен или директория другая.
+     */
+    private static DataInputStream openRecords(Path file, String rootName) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT) {
+                throw new IOException("Unknown scan journal format: " + file);
+            }
+            String stored = in.readUTF();
+            if (!stored.equals(rootName)) {
+                throw new IOException("The scan journal " + file + " belongs to another directory: " + stored);
+            }
+            return in;
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Проверяет, находится ли директория внутри проверенной директории.
+     *
+     * @param root      Корневая директория сканирования.
+     * @param completed Проверенные директории.
+     * @param directory Директория.
+     * @return {@code true}, если директория или одна из содержащих ее директорий проверена.
+     */
+    private static boolean isCompleted(Path root, NavigableMap<String, Subtree> completed, Path directory) {
+        if (directory == null || completed.isEmpty()) {
+            return false;
+        }
+        Path relative;
+        try {
+            relative = root.relativize(directory);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        if (completed.containsKey("")) {
+            return true;
+        }
+        for (Path current = relative; current != null; current = current.getParent()) {
+            if (completed.containsKey(current.toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Возвращает путь к файлу журнала.
+     *
+     * @return Путь к файлу.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Возвращает корневую директорию сканирования.
+     *
+     * @return Корневая директория.
+     */
+    public Path getRoot() {
+        return root;
+    }
+
+    /**
+     * Проверяет, продолжает ли журнал прерванное сканирование.
+     *
+     * @return {@code true}, если из журнала восстановлена хотя бы одна проверенная директория.
+     */
+    public synchronized boolean isResumed() {
+        return !completed.isEmpty();
+    }
+
+    /**
+     * Возвращает количество директорий, проверенных при прерванном сканировании.
+     *
+     * @return Количество директорий.
+     */
+    public synchronized long getRestoredDirectories() {
+        return completed.values().stream().mapToLong(Subtree::directories).sum();
+    }
+
+    /**
+     * Возвращает количество файлов, проверенных при прерванном сканировании.
+     *
+     * @return Количество файлов.
+     */
+    public synchronized long getRestoredFiles() {
+        return completed.values().stream().mapToLong(Subtree::files).sum();
+    }
+
+    /**
+     * Возвращает количество найденных файлов, восстановленных из журнала.
+     *
+     * @return Количество найденных файлов.
+     */
+    public long getRestoredHits() {
+        return restoredHits;
+    }
+
+    /**
+     * Устанавливает интервал между контрольными точками.
+     *
+     * @param checkpointInterval Интервал в миллисекундах; 0 — сбрасывать журнал на диск после каждой записи.
+     * @throws IllegalArgumentException Если интервал отрицателен.
+     */
+    public synchronized void setCheckpointInterval(long checkpointInterval) {
+        if (checkpointInterval < 0) {
+            throw new IllegalArgumentException("Checkpoint interval cannot be negative: " + checkpointInterval);
+        }
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    /**
+     * Передает найденные файлы, восстановленные из журнала, в порядке их записи.
+     *
+     * @param action Обработчик найденных файлов.
+     * @throws IOException Если журнал не удалось прочитать.
+     */
+    public void replay(Consumer<? super ScanHit> action) throws IOException {
+        if (restoredHits == 0) {
+            return;
+        }
+        try (InputStream stream = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(stream))) {
+            // Длина заголовка не хранится, поэтому записи читаются по порядку до конца сжатой части
+            in.readInt();
+            in.readInt();
+            in.readUTF();
+            long hits = 0;
+            while (hits < restoredHits) {
+                byte type = in.readByte();
+                if (type == DONE) {
+                    in.readUTF();
+                    in.readLong();
+                    in.readLong();
+                } else if (type == HIT) {
+                    action.accept(ShardProtocol.readHit(in));
+                    hits++;
+                } else {
+                    throw new IOException("Unknown scan journal record: " + type);
+                }
+            }
+        }
+    }
+
+    /**
+     * Проверяет, была ли директория проверена при прерванном сканировании.
+     *
+     * @param directory Директория.
+     * @return {@code true}, если директорию не нужно обходить.
+     */
+    public synchronized boolean isCompleted(Path directory) {
+        return isCompleted(root, completed, directory);
+    }
+
+    /**
+     * Пропускает поддиректорию, проверенную при прерванном сканировании, и учитывает ее количество
+     * директорий и файлов в родительской директории.
+     *
+     * @param parent    Директория, содержимое которой обходится.
+     * @param directory Поддиректория.
+     * @return {@code true}, если поддиректория проверена и не должна обходиться.
+     */
+    synchronized boolean adopt(Path parent, Path directory) {
+        if (completed.isEmpty()) {
+            return false;
+        }
+        Subtree subtree = completed.get(relative(directory));
+        if (subtree == null) {
+            return false;
+        }
+        Progress current = progress.computeIfAbsent(parent, key -> new Progress());
+        current.directories += subtree.directories();
+        current.files += subtree.files();
+        return true;
+    }
+
+    /**
+     * Отмечает начало проверки прочитанной директории.
+     *
+     * @param directory      Директория.
+     * @param parent         Родительская директория или {@code null} для корня.
+     * @param subdirectories Количество поддиректорий, которые будут обойдены.
+     * @param files          Количество файлов, которые будут проверены.
+     */
+    synchronized void listed(Path directory, Path parent, int subdirectories, int files) {
+        Progress current = progress.computeIfAbsent(directory, key -> new Progress());
+        current.parent = parent;
+        current.outstanding += 1 + subdirectories;
+        current.files += files;
+    }
+
+    /**
+     * Отмечает файл директории, переданный на проверку структуры.
+     *
+     * @param directory Директория файла.
+     */
+    synchronized void deferred(Path directory) {
+        Progress current = progress.get(directory);
+        if (current != null) {
+            current.outstanding++;
+        }
+    }
+
+    /**
+     * Отмечает завершение части проверки директории: обхода ее содержимого, поддиректории
+     * или проверки структуры файла. Директория, у которой не осталось незавершенных частей,
+     * записывается как проверенная, и завершение передается родительской директории.
+     *
+     * @param directory Директория.
+     */
+    synchronized void release(Path directory) {
+        Path current = directory;
+        while (current != null) {
+            Progress state = progress.get(current);
+            if (state == null || --state.outstanding > 0) {
+                break;
+            }
+            progress.remove(current);
+            String name = relative(current);
+            write(out -> writeDone(out, name, new Subtree(state.directories, state.files)));
+            Progress parent = state.parent == null ? null : progress.get(state.parent);
+            if (parent != null) {
+                parent.directories += state.directories;
+                parent.files += state.files;
+            }
+            current = state.parent;
+        }
+        checkpointIfDue();
+    }
+
+    /**
+     * Записывает найденный файл.
+     *
+     * @param hit Найденный файл.
+     */
+    synchronized void hitFound(ScanHit hit) {
+        write(out -> {
+            out.writeByte(HIT);
+            ShardProtocol.writeHitFields(out, hit);
+        });
+        checkpointIfDue();
+    }
+
+    /**
+     * Сбрасывает записанное на диск.
+     */
+    public synchronized void checkpoint() {
+        if (stopped) {
+            return;
+        }
+        try {
+            out.flush();
+            channel.force(false);
+            lastCheckpoint = System.nanoTime();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Отмечает успешное окончание сканирования: журнал закрывается и удаляется.
+     *
+     * @throws IOException Если файл журнала не удалось удалить.
+     */
+    public synchronized void complete() throws IOException {
+        close();
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Сбрасывает записанное на диск и закрывает журнал; дальнейшие записи не выполняются.
+     *
+     * @throws IOException Если файл не удалось закрыть.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        checkpoint();
+        closed = true;
+        stopped = true;
+        channel.close();
+    }
+
+    /**
+     * Запись в журнал.
+     */
+    private interface Record {
+        void writeTo(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Записывает запись в буфер; после ошибки записи журнал больше не пишется.
+     *
+     * @param record Запись.
+     */
+    private void write(Record record) {
+        if (stopped) {
+            return;
+        }
+        try {
+            record.writeTo(out);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Сбрасывает журнал на диск, если с последней контрольной точки прошел заданный интервал.
+     */
+    private void checkpointIfDue() {
+        if (System.nanoTime() - lastCheckpoint >= checkpointInterval * 1_000_000) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Останавливает запись журнала после ошибки.
+     *
+     * @param e Ошибка записи.
+     */
+    private void fail(IOException e) {
+        stopped = true;
+        logger.error("Failed to write the scan journal {}, checkpoints are stopped", file, e);
+    }
+
+    /**
+     * Возвращает путь директории относительно корня для записи в журнал.
+     *
+     * @param directory Директория.
+     * @return Относительный путь; пустая строка для корня.
+     */
+    private String relative(Path directory) {
+        return root.relativize(directory).toString();
+    }
+
+    /**
+     * Записывает запись о проверенной директории.
+     *
+     * @param out       Поток записи.
+     * @param directory Путь директории относительно корня.
+     * @param subtree   Количество директорий и файлов.
+     * @throws IOException Если запись не удалась.
+     */
+    private static void writeDone(DataOutputStream out, String directory, Subtree subtree) throws IOException {
+        out.writeByte(DONE);
+        out.writeUTF(directory);
+        out.writeLong(subtree.directories());
+        out.writeLong(subtree.files());
+    }
+}
@@ -0,0 +1,45 @@
+package project.signature;
+
+import java.io.File;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Класс ScanLog — журнал событий сканирования отдельных файлов и директорий.
+ * События пишутся в отдельный логгер {@value #NAME}, уровень которого задается системным свойством
+ * {@code signature.scan.log.level} (см. {@code log4j2.xml}): DEBUG — найденные файлы и ошибки чтения,
+ * TRACE — ошибки чтения со стеком вызовов. По умолчанию события отдельных файлов не пишутся,
+ * а по каждому сканированию выводится одна итоговая запись.
+ * Сообщения параметризованы и не форматируются, если уровень отключен.
+ */
+final class ScanLog {
+
+    /**
+     * Имя логгера событий сканирования.
+     */
+    static final String NAME = "project.signature.scan";
+
+    /**
+     * Логгер событий сканирования.
+     */
+    static final Logger events = LogManager.getLogger(NAME);
+
+    private ScanLog() {
+    }
+
+    /**
+     * Записывает ошибку чтения файла или директории.
+     *
+     * @param message Сообщение с одним параметром — путем к файлу.
+     * @param file    Файл или директория.
+     * @param e       Ошибка.
+     */
+    static void error(String message, File file, Exception e) {
+        if (events.isTraceEnabled()) {
+            events.trace(message, file, e);
+        } else if (events.isDebugEnabled()) {
+            events.debug(message + " ({})", file, e.toString());
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package project.signature;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Класс ScanMetrics — счетчики и гистограммы длительностей одного сканирования.
+ * Счетчики основаны на {@link LongAdder}, гистограммы — на {@link LatencyHistogram},
+ * поэтому запись из многих потоков обходится без блокировок и не требует отключения в работе.
+ * На время сканирования показатели регистрируются в платформенном {@link MBeanServer}
+ * под именем {@code project.signature:type=ScanSession,id=N}.
+ */
+public class ScanMetrics implements ScanMetricsMXBean {
+
+    private static final Logger logger = LogManager.getLogger(ScanMetrics.class);
+
+    /**
+     * Домен имен JMX.
+     */
+    static final String JMX_DOMAIN = "project.signature";
+
+    /**
+     * Номер для имени JMX.
+     */
+    private static final AtomicInteger sessionNumber = new AtomicInteger();
+
+    /**
+     * Корневая директория сканирования.
+     */
+    private final String root;
+
+    private final LongAdder directories = new LongAdder();
+    private final LongAdder files = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder aliases = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder packed = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+
+    private final LatencyHistogram directoryListing = new LatencyHistogram();
+    private final LatencyHistogram headerRead = new LatencyHistogram();
+    private final LatencyHistogram deepScan = new LatencyHistogram();
+    private final LatencyHistogram attributeRead = new LatencyHistogram();
+    private final LatencyHistogram structureCheck = new LatencyHistogram();
+    private final LatencyHistogram entropyAnalysis = new LatencyHistogram();
+
+    /**
+     * Время начала и окончания сканирования по {@link System#nanoTime()}; 0 — еще не наступило.
+     */
+    private volatile long startNanos;
+    private volatile long finishNanos;
+
+    /**
+     * Имя, под которым показатели зарегистрированы в JMX, или {@code null}.
+     */
+    private ObjectName objectName;
+
+    /**
+     * Создает пустые показатели.
+     *
+     * @param root Корневая директория сканирования (для отображения).
+     */
+    public ScanMetrics(String root) {
+        this.root = root;
+    }
+
+    /**
+     * Отмечает начало сканирования.
+     */
+    void start() {
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * Отмечает окончание сканирования.
+     */
+    void finish() {
+        finishNanos = System.nanoTime();
+    }
+
+    /**
+     * Учитывает просмотренную директорию.
+     */
+    void directoryVisited() {
+        directories.increment();
+    }
+
+    /**
+     * Учитывает проверенный файл.
+     */
+    void fileChecked() {
+        files.increment();
+    }
+
+    /**
+     * Учитывает директории и файлы, проверенные при прерванном сканировании (см. {@link ScanJournal}).
+     *
+     * @param directories Количество директорий.
+     * @param files       Количество файлов.
+     */
+    void restored(long directories, long files) {
+        this.directories.add(directories);
+        this.files.add(files);
+    }
+
+    /**
+     * Учитывает найденный файл.
+     */
+    void hitFound() {
+        hits.increment();
+    }
+
+    /**
+     * Учитывает ошибку чтения.
+     */
+    void errorOccurred() {
+        errors.increment();
+    }
+
+    /**
+     * Учитывает файл или директорию, пропущенные по правилам {@link ScanFilter}.
+     */
+    void entrySkipped() {
+        skipped.increment();
+    }
+
+    /**
+     * Учитывает повторный путь к уже посещенной директории или прочитанному файлу.
+     */
+    void aliasFound() {
+        aliases.increment();
+    }
+
+    /**
+     * Учитывает файл, совпавший с сигнатурой, но отклоненный проверкой структуры {@link StructureVerifier}.
+     */
+    void candidateRejected() {
+        rejected.increment();
+    }
+
+    /**
+     * Учитывает прочитанные из файла байты.
+     *
+     * @param count Количество байт.
+     */
+    void bytesRead(long count) {
+        bytesRead.add(count);
+    }
+
+    /**
+     * Записывает длительность чтения содержимого директории.
+     *
+     * @param startNanos Время начала операции по {@link System#nanoTime()}.
+     */
+    void directoryListed(long startNanos) {
+        directoryListing.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Записывает длительность открытия файла и чтения заголовка.
+     *
+     * @param startNanos Время начала операции по {@link System#nanoTime()}.
+     */
+    void headerRead(long startNanos) {
+        headerRead.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Записывает длительность глубокого сканирования файла.
+     *
+     * @param startNanos Время начала операции по {@link System#nanoTime()}.
+     */
+    void deepScanned(long startNanos) {
+        deepScan.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Записывает длительность чтения атрибутов файла.
+     *
+     * @param startNanos Время начала операции по {@link System#nanoTime()}.
+     */
+    void attributesRead(long startNanos) {
+        attributeRead.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Записывает длительность проверки структуры заголовка.
+     *
+     * @param startNanos Время начала операции по {@link System#nanoTime()}.
+     */
+    void structureVerified(long startNanos) {
+        structureCheck.record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Записывает длительность анализа энтропии и прочитанные при нем байты.
+     *
+     * @param startNanos Время начала операции по {@link System#nanoTime()}.
+     * @param bytes      Количество прочитанных байт.
+     * @param packed     Признак вероятно упакованного файла.
+     */
+    void entropyAnalyzed(long startNanos, long bytes, boolean packed) {
+        entropyAnalysis.record(System.nanoTime() - startNanos);
+        bytesRead.add(bytes);
+        if (packed) {
+            this.packed.increment();
+        }
+    }
+
+    @Override
+    public String getRoot() {
+        return root;
+    }
+
+    @Override
+    public long getDirectories() {
+        return directories.sum();
+    }
+
+    @Override
+    public long getFiles() {
+        return files.sum();
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    @Override
+    public long getAliases() {
+        return aliases.sum();
+    }
+
+    @Override
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public long getPacked() {
+        return packed.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getElapsedMillis() {
+        long start = startNanos;
+        if (start == 0) {
+            return 0;
+        }
+        long finish = finishNanos;
+        return ((finish == 0 ? System.nanoTime() : finish) - start) / 1_000_000;
+    }
+
+    @Override
+    public double getFilesPerSecond() {
+        long millis = getElapsedMillis();
+        return millis == 0 ? 0 : getFiles() * 1000.0 / millis;
+    }
+
+    @Override
+    public LatencySnapshot getDirectoryListing() {
+        return directoryListing.snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getHeaderRead() {
+        return headerRead.snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getDeepScan() {
+        return deepScan.snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getAttributeRead() {
+        return attributeRead.snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getStructureCheck() {
+        return structureCheck.snapshot();
+    }
+
+    @Override
+    public LatencySnapshot getEntropyAnalysis() {
+        return entropyAnalysis.snapshot();
+    }
+
+    /**
+     * Регистрирует показатели в платформенном {@link MBeanServer}.
+     * Ошибка регистрации не прерывает сканирование и только записывается в журнал.
+     */
+    synchronized void register() {
+        if (objectName != null) {
+            return;
+        }
+        try {
+            ObjectName name = new ObjectName(JMX_DOMAIN + ":type=ScanSession,id=" + sessionNumber.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            objectName = name;
+        } catch (JMException e) {
+            logger.warn("Unable to register scan metrics in JMX: {}", e.toString());
+        }
+    }
+
+    /**
+     * Удаляет показатели из платформенного {@link MBeanServer}.
+     */
+    synchronized void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            logger.warn("Unable to unregister scan metrics from JMX: {}", e.toString());
+        }
+        objectName = null;
+    }
+
+    /**
+     * Возвращает имя, под которым показатели зарегистрированы в JMX.
+     *
+     * @return Имя JMX или {@code null}, если показатели не зарегистрированы.
+     */
+    public synchronized ObjectName getObjectName() {
+        return objectName;
+    }
+
+    /**
+     * Возвращает многострочную сводку длительностей операций для журнала.
+     *
+     * @return Сводка показателей.
+     */
+    public String describeLatencies() {
+        return "directory listing: " + getDirectoryListing()
+                + System.lineSeparator() + "header read: " + getHeaderRead()
+                + System.lineSeparator() + "deep scan: " + getDeepScan()
+                + System.lineSeparator() + "attribute read: " + getAttributeRead()
+                + System.lineSeparator() + "structure check: " + getStructureCheck()
+                + System.lineSeparator() + "entropy analysis: " + getEntropyAnalysis();
+    }
+}
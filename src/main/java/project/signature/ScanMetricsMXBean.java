@@ -0,0 +1,99 @@
+package project.signature;
+
+/**
+ * Интерфейс управления ScanMetricsMXBean — показатели сканирования, доступные через JMX
+ * (например, в JConsole) во время работы {@link ScanSession}.
+ */
+public interface ScanMetricsMXBean {
+
+    /**
+     * @return Корневая директория сканирования.
+     */
+    String getRoot();
+
+    /**
+     * @return Количество просмотренных директорий.
+     */
+    long getDirectories();
+
+    /**
+     * @return Количество проверенных файлов.
+     */
+    long getFiles();
+
+    /**
+     * @return Количество найденных файлов.
+     */
+    long getHits();
+
+    /**
+     * @return Количество ошибок чтения.
+     */
+    long getErrors();
+
+    /**
+     * @return Количество файлов и директорий, пропущенных по правилам {@link ScanFilter}.
+     */
+    long getSkipped();
+
+    /**
+     * @return Количество повторных путей к уже посещенным директориям и прочитанным файлам
+     * (жесткие и символические ссылки, повторно смонтированные директории).
+     */
+    long getAliases();
+
+    /**
+     * @return Количество файлов, совпавших с сигнатурой, но отклоненных проверкой структуры заголовка.
+     */
+    long getRejected();
+
+    /**
+     * @return Количество найденных файлов, которые анализ энтропии счел упакованными или зашифрованными.
+     */
+    long getPacked();
+
+    /**
+     * @return Количество байт, прочитанных из файлов.
+     */
+    long getBytesRead();
+
+    /**
+     * @return Время с начала сканирования в миллисекундах.
+     */
+    long getElapsedMillis();
+
+    /**
+     * @return Средняя скорость проверки файлов в секунду.
+     */
+    double getFilesPerSecond();
+
+    /**
+     * @return Длительность чтения содержимого директорий.
+     */
+    LatencySnapshot getDirectoryListing();
+
+    /**
+     * @return Длительность открытия файла и чтения заголовка.
+     */
+    LatencySnapshot getHeaderRead();
+
+    /**
+     * @return Длительность глубокого сканирования содержимого файла.
+     */
+    LatencySnapshot getDeepScan();
+
+    /**
+     * @return Длительность чтения атрибутов файла.
+     */
+    LatencySnapshot getAttributeRead();
+
+    /**
+     * @return Длительность проверки структуры заголовка найденного файла.
+     */
+    LatencySnapshot getStructureCheck();
+
+    /**
+     * @return Длительность анализа энтропии найденного файла.
+     */
+    LatencySnapshot getEntropyAnalysis();
+}
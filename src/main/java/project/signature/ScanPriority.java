@@ -0,0 +1,269 @@
+package project.signature;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Класс ScanPriority — правила очередности обхода директорий для {@link ScanSession#setPriority}.
+ * При сканировании с ограничением времени директории обходятся не в порядке вложенности,
+ * а из очереди с приоритетом, чтобы за отведенное время проверить места, куда исполняемые файлы
+ * попадают чаще всего. Приоритет директории складывается из весов правил:
+ * <ul>
+ *     <li>шаблон glob (как в {@link ScanFilter}: без {@code /} — имя, иначе путь относительно корня);
+ *     вес шаблона распространяется на все поддиректории подходящей директории;</li>
+ *     <li>недавнее изменение директории (появление или удаление файлов меняет время ее изменения);</li>
+ *     <li>штраф за каждый уровень вложенности, поэтому неглубокие директории проверяются раньше.</li>
+ * </ul>
+ * Директории с равным приоритетом обходятся в порядке обнаружения, то есть в ширину.
+ * <p>
+ * Правила задаются до начала сканирования и компилируются сессией методом {@link #compile(Path)}.
+ */
+public final class ScanPriority {
+
+    /**
+     * Вес шаблона по умолчанию.
+     */
+    public static final int DEFAULT_PATTERN_WEIGHT = 100;
+
+    /**
+     * Наибольшее количество шаблонов: каждому правилу отводится бит в {@link Rank#rules()}.
+     */
+    static final int MAX_PATTERNS = 62;
+
+    /**
+     * Шаблоны и веса.
+     */
+    private final List<String> patterns = new ArrayList<>();
+    private final List<Integer> weights = new ArrayList<>();
+
+    /**
+     * Период, в течение которого изменение директории считается недавним; {@code null} — правило не действует.
+     */
+    private Duration recentWindow;
+
+    /**
+     * Вес недавнего изменения.
+     */
+    private int recentWeight;
+
+    /**
+     * Штраф за уровень вложенности.
+     */
+    private int depthPenalty;
+
+    /**
+     * Возвращает правила по умолчанию: временные директории, загрузки и автозагрузка,
+     * рабочий стол, директории, измененные за последнюю неделю, и штраф 5 за уровень вложенности.
+     *
+     * @return Правила очередности.
+     */
+    public static ScanPriority defaults() {
+        ScanPriority priority = new ScanPriority();
+        priority.addPattern("{tmp,temp,Temp,TEMP,Tmp}", DEFAULT_PATTERN_WEIGHT);
+        priority.addPattern("{Downloads,downloads,Загрузки}", DEFAULT_PATTERN_WEIGHT);
+        priority.addPattern("{Startup,Автозагрузка}", DEFAULT_PATTERN_WEIGHT);
+        priority.addPattern("{Desktop,Рабочий стол}", DEFAULT_PATTERN_WEIGHT / 2);
+        priority.setRecent(Duration.ofDays(7), 50);
+        priority.setDepthPenalty(5);
+        return priority;
+    }
+
+    /**
+     * Добавляет шаблон директорий, которые нужно проверить раньше.
+     *
+     * @param glob   Шаблон glob.
+     * @param weight Вес шаблона; отрицательный вес откладывает подходящие директории.
+     * @throws IllegalArgumentException Если шаблон пустой или некорректный либо шаблонов слишком много.
+     */
+    public void addPattern(String glob, int weight) {
+        if (patterns.size() == MAX_PATTERNS) {
+            throw new IllegalArgumentException("Too many priority patterns, at most " + MAX_PATTERNS);
+        }
+        patterns.add(ScanFilter.validate(glob));
+        weights.add(weight);
+    }
+
+    /**
+     * Устанавливает правило недавнего изменения директории.
+     *
+     * @param window Период; {@code null} или нулевой период выключают правило.
+     * @param weight Вес правила.
+     * @throws IllegalArgumentException Если период отрицателен.
+     */
+    public void setRecent(Duration window, int weight) {
+        if (window != null && window.isNegative()) {
+            throw new IllegalArgumentException("Negative period: " + window);
+        }
+        this.recentWindow = window == null || window.isZero() ? null : window;
+        this.recentWeight = weight;
+    }
+
+    /**
+     * Устанавливает штраф за каждый уровень вложенности.
+     *
+     * @param depthPenalty Штраф; 0 — глубина не учитывается.
+     * @throws IllegalArgumentException Если штраф отрицателен.
+     */
+    public void setDepthPenalty(int depthPenalty) {
+        if (depthPenalty < 0) {
+            throw new IllegalArgumentException("Negative depth penalty: " + depthPenalty);
+        }
+        this.depthPenalty = depthPenalty;
+    }
+
+    /**
+     * Разбирает длительность с необязательным суффиксом {@code s}, {@code m}, {@code h} или {@code d};
+     * число без суффикса — секунды.
+     *
+     * @param value Строка длительности, например {@code 90}, {@code 15m} или {@code 7d}.
+     * @return Длительность.
+     * @throws IllegalArgumentException Если строка некорректна или длительность не положительна.
+     */
+    public static Duration parseDuration(String value) {
+        String text = value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+        long unit = 1;
+        if (text.endsWith("s")) {
+            text = text.substring(0, text.length() - 1);
+        } else if (text.endsWith("m")) {
+            unit = 60;
+            text = text.substring(0, text.length() - 1);
+        } else if (text.endsWith("h")) {
+            unit = 3600;
+            text = text.substring(0, text.length() - 1);
+        } else if (text.endsWith("d")) {
+            unit = 86400;
+            text = text.substring(0, text.length() - 1);
+        }
+        try {
+            long amount = Long.parseLong(text);
+            if (amount <= 0 || amount > Long.MAX_VALUE / unit / 1000) {
+                throw new IllegalArgumentException("Invalid duration: " + value);
+            }
+            return Duration.ofSeconds(amount * unit);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid duration: " + value);
+        }
+    }
+
+    /**
+     * Компилирует правила для обхода заданного корня; недавние изменения отсчитываются от текущего времени.
+     *
+     * @param root Корень сканирования.
+     * @return Скомпилированные правила.
+     */
+    Compiled compile(Path root) {
+        return new Compiled(this, root, System.currentTimeMillis());
+    }
+
+    /**
+     * Возвращает длительность в виде {@code 7d}, {@code 12h}, {@code 30m} или {@code 45s}.
+     *
+     * @param duration Длительность.
+     * @return Строка.
+     */
+    static String format(Duration duration) {
+        long seconds = duration.getSeconds();
+        if (seconds > 0 && seconds % 86400 == 0) {
+            return seconds / 86400 + "d";
+        }
+        if (seconds > 0 && seconds % 3600 == 0) {
+            return seconds / 3600 + "h";
+        }
+        if (seconds > 0 && seconds % 60 == 0) {
+            return seconds / 60 + "m";
+        }
+        return seconds + "s";
+    }
+
+    /**
+     * Приоритет директории.
+     *
+     * @param score Сумма весов правил; большее значение обходится раньше.
+     * @param rules Биты правил, под которые подходит директория, в порядке {@link Compiled#ruleNames()}.
+     */
+    record Rank(int score, long rules) {
+    }
+
+    /**
+     * Правила, скомпилированные для одного корня сканирования. Экземпляр неизменяем
+     * и используется потоками обхода без блокировок.
+     */
+    static final class Compiled {
+        private final Path root;
+        private final ScanFilter.Patterns[] patterns;
+        private final int[] weights;
+        private final long recentSince;
+        private final int recentWeight;
+        private final int depthPenalty;
+
+        /**
+         * Названия правил в порядке битов.
+         */
+        private final List<String> ruleNames;
+
+        private Compiled(ScanPriority priority, Path root, long now) {
+            this.root = root;
+            int count = priority.patterns.size();
+            this.patterns = new ScanFilter.Patterns[count];
+            this.weights = new int[count];
+            List<String> names = new ArrayList<>(priority.patterns);
+            for (int i = 0; i < count; i++) {
+                patterns[i] = new ScanFilter.Patterns(List.of(priority.patterns.get(i)));
+                weights[i] = priority.weights.get(i);
+            }
+            if (priority.recentWindow != null) {
+                this.recentSince = now - priority.recentWindow.toMillis();
+                this.recentWeight = priority.recentWeight;
+                names.add("modified within " + format(priority.recentWindow));
+            } else {
+                this.recentSince = Long.MAX_VALUE;
+                this.recentWeight = 0;
+            }
+            this.depthPenalty = priority.depthPenalty;
+            this.ruleNames = List.copyOf(names);
+        }
+
+        /**
+         * Возвращает названия правил: шаблоны и, если задано, правило недавнего изменения.
+         *
+         * @return Названия правил.
+         */
+        List<String> ruleNames() {
+            return ruleNames;
+        }
+
+        /**
+         * Вычисляет приоритет директории.
+         *
+         * @param path   Путь к директории.
+         * @param attr   Атрибуты директории.
+         * @param depth  Глубина директории относительно корня.
+         * @param parent Приоритет родительской директории или {@code null} для корня.
+         * @return Приоритет.
+         */
+        Rank rank(Path path, BasicFileAttributes attr, int depth, Rank parent) {
+            long patternMask = (1L << patterns.length) - 1;
+            long rules = parent == null ? 0 : parent.rules() & patternMask;
+            for (int i = 0; i < patterns.length; i++) {
+                if ((rules & 1L << i) == 0 && patterns[i].matches(root, path)) {
+                    rules |= 1L << i;
+                }
+            }
+            int score = 0;
+            for (int i = 0; i < patterns.length; i++) {
+                if ((rules & 1L << i) != 0) {
+                    score += weights[i];
+                }
+            }
+            if (attr.lastModifiedTime().toMillis() >= recentSince) {
+                rules |= 1L << patterns.length;
+                score += recentWeight;
+            }
+            return new Rank(score - depthPenalty * depth, rules);
+        }
+    }
+}
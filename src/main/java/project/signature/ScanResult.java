@@ -0,0 +1,69 @@
+package project.signature;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Класс ScanResult содержит результат сканирования директории: итоговое сообщение,
+ * количество найденных файлов и их метаданные.
+ * В отличие от статических полей {@link DirScanner}, результат принадлежит одному сканированию
+ * и может безопасно передаваться между потоками после его завершения.
+ */
+public class ScanResult {
+
+    /**
+     * Строка с итоговым сообщением сканирования (те же значения, что и у {@link DirScanner#getString()}).
+     */
+    private final String answer;
+
+    /**
+     * Количество найденных файлов с совпадающей сигнатурой.
+     */
+    private final int cnt;
+
+    /**
+     * Метаданные найденных файлов в порядке обхода.
+     */
+    private final List<String> metadata;
+
+    /**
+     * Создает результат сканирования.
+     *
+     * @param answer   Итоговое сообщение сканирования.
+     * @param cnt      Количество найденных файлов.
+     * @param metadata Метаданные найденных файлов.
+     */
+    public ScanResult(String answer, int cnt, List<String> metadata) {
+        this.answer = answer;
+        this.cnt = cnt;
+        this.metadata = Collections.unmodifiableList(new ArrayList<>(metadata));
+    }
+
+    /**
+     * Возвращает итоговое сообщение сканирования.
+     *
+     * @return Строка с результатом анализа.
+     */
+    public String getString() {
+        return answer;
+    }
+
+    /**
+     * Возвращает количество найденных файлов.
+     *
+     * @return Количество найденных файлов.
+     */
+    public int getCnt() {
+        return cnt;
+    }
+
+    /**
+     * Возвращает неизменяемый список метаданных найденных файлов.
+     *
+     * @return Список строк с метаданными.
+     */
+    public List<String> getMetadata() {
+        return metadata;
+    }
+}
@@ -0,0 +1,941 @@
+package project.signature;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Класс ScanService — локальная служба сканирования, которая принимает задания по HTTP
+ * и выполняет их в одном долгоживущем процессе вместо запуска отдельного процесса на каждое сканирование.
+ * <p>
+ * Протокол:
+ * <ul>
+ *     <li>{@code POST /scan?root=<директория>[&verify=true|false][&entropy=true|false][&budget=<длительность>]}
+ *     — сканирует директорию; найденные файлы передаются клиенту по мере обнаружения в формате JSON Lines
+ *     (как {@link HitWriter}), последняя строка — итоги {@code {"summary":{...}}}. Номер задания
+ *     возвращается в заголовке {@value #JOB_HEADER}. Если клиент отключился, сканирование отменяется;</li>
+ *     <li>{@code GET /jobs} — выполняющиеся и ожидающие задания со счетчиками;</li>
+ *     <li>{@code DELETE /jobs/<номер>} — отменяет задание.</li>
+ * </ul>
+ * Задания выполняются в общем ограниченном пуле: одновременно выполняется не больше
+ * {@link #setMaxJobs(int) заданных} заданий, каждое в {@link #setThreadsPerJob(int) равном} количестве потоков;
+ * остальные ожидают в очереди в порядке поступления, а при переполнении очереди служба отвечает 503.
+ * Все задания используют один скомпилированный набор сигнатур ({@link Signature#getMatcher()})
+ * и один {@link ScanIndex} как кэш результатов проверки файлов: файл, не изменившийся с последней
+ * проверки в любом задании, повторно не читается. Индекс, создаваемый службой, хранит не больше
+ * {@link #setIndexCapacity(int) заданного} количества записей и вытесняет давно не использованные,
+ * поэтому записи об удаленных файлах не удаляются, а со временем вытесняются
+ * ({@link ScanIndex#prune(Path)} сбрасывал бы общий для заданий признак посещения).
+ * <p>
+ * По умолчанию служба принимает подключения только с локального адреса.
+ * Каждый запрос должен содержать заголовок {@code Authorization: Bearer <токен>}; токен задается
+ * {@link #setToken(String)} (в командной строке — переменной окружения {@value ShardProtocol#TOKEN_ENV})
+ * или создается случайным при запуске. Служба на локальном адресе также отклоняет запросы, в заголовке
+ * {@code Host} которых указан не локальный адрес, чтобы страница в браузере не могла обратиться к ней
+ * через подмену DNS.
+ */
+public final class ScanService implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(ScanService.class);
+
+    /**
+     * Количество одновременно выполняемых заданий по умолчанию.
+     */
+    public static final int DEFAULT_MAX_JOBS = 2;
+
+    /**
+     * Количество заданий, ожидающих в очереди, по умолчанию.
+     */
+    public static final int DEFAULT_QUEUE_LIMIT = 16;
+
+    /**
+     * Наибольшее количество записей в индексе, создаваемом службой, по умолчанию.
+     */
+    public static final int DEFAULT_INDEX_CAPACITY = 1 << 20;
+
+    /**
+     * Заголовок ответа с номером задания.
+     */
+    static final String JOB_HEADER = "X-Scan-Job";
+
+    /**
+     * Префикс заголовка {@code Authorization} с токеном доступа.
+     */
+    private static final String BEARER = "Bearer ";
+
+    /**
+     * Длина случайного токена доступа в байтах.
+     */
+    private static final int TOKEN_BYTES = 24;
+
+    /**
+     * Время ожидания завершения заданий при закрытии в секундах.
+     */
+    private static final int SHUTDOWN_SECONDS = 5;
+
+    /**
+     * Состояние задания.
+     */
+    private enum State {
+        QUEUED, RUNNING, CANCELLED
+    }
+
+    /**
+     * Адрес, на котором принимаются подключения.
+     */
+    private InetAddress bindAddress = InetAddress.getLoopbackAddress();
+
+    /**
+     * Порт; 0 — свободный порт.
+     */
+    private int port;
+
+    /**
+     * Токен доступа клиентов; создается случайным при запуске, если не задан.
+     */
+    private volatile String token;
+
+    /**
+     * Количество одновременно выполняемых заданий.
+     */
+    private int maxJobs = DEFAULT_MAX_JOBS;
+
+    /**
+     * Количество заданий, ожидающих в очереди.
+     */
+    private int queueLimit = DEFAULT_QUEUE_LIMIT;
+
+    /**
+     * Количество потоков обхода каждого задания.
+     */
+    private int threadsPerJob = Math.max(1, Runtime.getRuntime().availableProcessors() / DEFAULT_MAX_JOBS);
+
+    /**
+     * Признак глубокого сканирования.
+     */
+    private boolean deepScan;
+
+    /**
+     * Глубина проверки архивов; 0 — архивы не проверяются.
+     */
+    private int archiveDepth;
+
+    /**
+     * Проверка структуры заголовков, если задание не указало иное.
+     */
+    private boolean verifyStructure;
+
+    /**
+     * Анализ энтропии, если задание не указало иное.
+     */
+    private boolean analyzeEntropy;
+
+    /**
+     * Наибольшее количество записей в индексе, создаваемом службой.
+     */
+    private int indexCapacity = DEFAULT_INDEX_CAPACITY;
+
+    /**
+     * Общий индекс результатов; {@code null} до запуска — создается индекс в памяти.
+     */
+    private ScanIndex index;
+
+    /**
+     * Обработчик найденных файлов всех заданий или {@code null}.
+     */
+    private Consumer<ScanHit> hitListener;
+
+    /**
+     * Выполняющиеся и ожидающие задания по номерам.
+     */
+    private final Map<Long, Job> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * Номер следующего задания.
+     */
+    private final AtomicLong nextId = new AtomicLong();
+
+    /**
+     * Номер для имен потоков.
+     */
+    private final AtomicInteger threadNumber = new AtomicInteger();
+
+    /**
+     * HTTP-сервер; {@code null} до запуска.
+     */
+    private HttpServer server;
+
+    /**
+     * Пул выполнения заданий.
+     */
+    private ThreadPoolExecutor executor;
+
+    /**
+     * Пул обработки запросов.
+     */
+    private ExecutorService exchanges;
+
+    /**
+     * Признак остановки службы.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Задание сканирования одной директории.
+     */
+    private final class Job implements Runnable {
+        private final long id;
+        private final Path root;
+        private final ScanSession session;
+        private final Writer out;
+        private final HitWriter writer;
+        private final AtomicReference<State> state = new AtomicReference<>(State.QUEUED);
+
+        /**
+         * Открывается после отправки заголовков ответа: до этого найденные файлы некуда передавать.
+         */
+        private final CountDownLatch streaming = new CountDownLatch(1);
+
+        /**
+         * Итоги; {@code null}, если задание отменено до начала.
+         */
+        private final CompletableFuture<ScanSummary> result = new CompletableFuture<>();
+
+        /**
+         * Признак отключения клиента.
+         */
+        private volatile boolean disconnected;
+
+        Job(long id, Path root, ScanSession session, OutputStream body) throws IOException {
+            this.id = id;
+            this.root = root;
+            this.session = session;
+            this.out = new BufferedWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8));
+            this.writer = new HitWriter(out, HitWriter.Format.JSONL);
+            session.setHitListener(this::deliver);
+        }
+
+        @Override
+        public void run() {
+            try {
+                streaming.await();
+                if (state.compareAndSet(State.QUEUED, State.RUNNING)) {
+                    result.complete(session.run());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result.complete(null);
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            } catch (Error e) {
+                // Клиент получает сообщение об ошибке, а сама ошибка передается потоку пула
+                result.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        /**
+         * Передает найденный файл обработчику службы и клиенту.
+         *
+         * @param hit Найденный файл.
+         */
+        private void deliver(ScanHit hit) {
+            if (hitListener != null) {
+                hitListener.accept(hit);
+            }
+            if (disconnected) {
+                return;
+            }
+            try {
+                writer.write(hit);
+                writer.flush();
+            } catch (IOException | UncheckedIOException e) {
+                disconnected = true;
+                logger.info("The client of scan job {} has disconnected, the scan is cancelled", id);
+                session.cancel();
+            }
+        }
+
+        /**
+         * Отменяет задание: ожидающее задание удаляется из очереди, выполняющееся останавливается
+         * после проверки текущих файлов.
+         */
+        void cancel() {
+            if (state.compareAndSet(State.QUEUED, State.CANCELLED)) {
+                executor.remove(this);
+                streaming.countDown();
+                result.complete(null);
+            } else {
+                session.cancel();
+            }
+        }
+    }
+
+    /**
+     * Устанавливает адрес, на котором принимаются подключения.
+     *
+     * @param bindAddress Адрес.
+     */
+    public void setBindAddress(InetAddress bindAddress) {
+        this.bindAddress = bindAddress;
+    }
+
+    /**
+     * Устанавливает порт.
+     *
+     * @param port Номер порта; 0 — любой свободный порт.
+     * @throws IllegalArgumentException Если номер порта вне диапазона.
+     */
+    public void setPort(int port) {
+        if (port < 0 || port > 0xFFFF) {
+            throw new IllegalArgumentException("Invalid port: " + port);
+        }
+        this.port = port;
+    }
+
+    /**
+     * Устанавливает токен доступа, который клиенты передают в заголовке {@code Authorization}.
+     * Если токен не задан, при запуске создается случайный токен (см. {@link #getToken()}).
+     *
+     * @param token Токен доступа.
+     * @throws IllegalArgumentException Если токен пустой.
+     */
+    public void setToken(String token) {
+        if (token.isEmpty()) {
+            throw new IllegalArgumentException("The access token is empty");
+        }
+        this.token = token;
+    }
+
+    /**
+     * Возвращает токен доступа клиентов.
+     *
+     * @return Токен доступа или {@code null}, если он не задан и служба не запущена.
+     */
+    public String getToken() {
+        return token;
+    }
+
+    /**
+     * Устанавливает количество одновременно выполняемых заданий.
+     *
+     * @param maxJobs Количество заданий.
+     * @throws IllegalArgumentException Если {@code maxJobs} меньше 1.
+     */
+    public void setMaxJobs(int maxJobs) {
+        if (maxJobs < 1) {
+            throw new IllegalArgumentException("Number of jobs must be positive: " + maxJobs);
+        }
+        this.maxJobs = maxJobs;
+    }
+
+    /**
+     * Устанавливает количество заданий, ожидающих в очереди; следующие задания отклоняются.
+     *
+     * @param queueLimit Количество заданий; 0 — задания не ожидают.
+     * @throws IllegalArgumentException Если значение отрицательно.
+     */
+    public void setQueueLimit(int queueLimit) {
+        if (queueLimit < 0) {
+            throw new IllegalArgumentException("Negative queue limit: " + queueLimit);
+        }
+        this.queueLimit = queueLimit;
+    }
+
+    /**
+     * Устанавливает количество потоков обхода каждого задания (см. {@link ScanSession#setParallelism(int)}).
+     *
+     * @param threadsPerJob Количество потоков.
+     * @throws IllegalArgumentException Если {@code threadsPerJob} меньше 1.
+     */
+    public void setThreadsPerJob(int threadsPerJob) {
+        if (threadsPerJob < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + threadsPerJob);
+        }
+        this.threadsPerJob = threadsPerJob;
+    }
+
+    /**
+     * Включает или выключает глубокое сканирование во всех заданиях.
+     *
+     * @param deepScan {@code true}, чтобы искать вложенные сигнатуры по всему содержимому файлов.
+     */
+    public void setDeepScan(boolean deepScan) {
+        this.deepScan = deepScan;
+    }
+
+    /**
+     * Устанавливает глубину проверки архивов во всех заданиях.
+     *
+     * @param archiveDepth Глубина вложенности архивов; 0 — архивы не проверяются.
+     * @throws IllegalArgumentException Если глубина отрицательна.
+     */
+    public void setArchiveDepth(int archiveDepth) {
+        if (archiveDepth < 0) {
+            throw new IllegalArgumentException("Negative archive depth: " + archiveDepth);
+        }
+        this.archiveDepth = archiveDepth;
+    }
+
+    /**
+     * Устанавливает проверку структуры заголовков для заданий без параметра {@code verify}.
+     *
+     * @param verifyStructure {@code true}, чтобы проверять структуру заголовков.
+     */
+    public void setVerifyStructure(boolean verifyStructure) {
+        this.verifyStructure = verifyStructure;
+    }
+
+    /**
+     * Устанавливает анализ энтропии для заданий без параметра {@code entropy}.
+     *
+     * @param analyzeEntropy {@code true}, чтобы анализировать энтропию.
+     */
+    public void setAnalyzeEntropy(boolean analyzeEntropy) {
+        this.analyzeEntropy = analyzeEntropy;
+    }
+
+    /**
+     * Устанавливает наибольшее количество записей в индексе, который создается при запуске,
+     * если общий индекс не задан.
+     *
+     * @param indexCapacity Количество записей.
+     * @throws IllegalArgumentException Если {@code indexCapacity} меньше 1.
+     */
+    public void setIndexCapacity(int indexCapacity) {
+        if (indexCapacity < 1) {
+            throw new IllegalArgumentException("Index capacity must be positive: " + indexCapacity);
+        }
+        this.indexCapacity = indexCapacity;
+    }
+
+    /**
+     * Устанавливает общий индекс результатов, например загруженный из файла.
+     * Если индекс не задан, при запуске создается индекс, который хранится только в памяти
+     * и ограничен {@link #setIndexCapacity(int) количеством записей}.
+     *
+     * @param index Индекс или {@code null}.
+     */
+    public void setIndex(ScanIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Возвращает общий индекс результатов.
+     *
+     * @return Индекс или {@code null} до запуска, если он не задан.
+     */
+    public ScanIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Устанавливает обработчик найденных файлов всех заданий, вызываемый перед передачей файла клиенту.
+     * Обработчик вызывается из потоков заданий и должен быть потокобезопасным.
+     *
+     * @param hitListener Обработчик или {@code null}.
+     */
+    public void setHitListener(Consumer<ScanHit> hitListener) {
+        this.hitListener = hitListener;
+    }
+
+    /**
+     * Начинает принимать задания.
+     *
+     * @return Порт службы.
+     * @throws IOException           Если сокет не удалось открыть.
+     * @throws IllegalStateException Если служба уже запущена.
+     */
+    public synchronized int start() throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("The scan service has already been started");
+        }
+        if (index == null) {
+            index = ScanIndex.inMemory(ScanIndex.currentVersion(deepScan, archiveDepth), indexCapacity);
+        }
+        if (token == null) {
+            byte[] random = new byte[TOKEN_BYTES];
+            new SecureRandom().nextBytes(random);
+            token = Base64.getUrlEncoder().withoutPadding().encodeToString(random);
+        }
+        executor = new ThreadPoolExecutor(maxJobs, maxJobs, 0, TimeUnit.MILLISECONDS,
+                queueLimit > 0 ? new LinkedBlockingQueue<>(queueLimit) : new SynchronousQueue<>(),
+                threadFactory("scan-service-job-"));
+        // Потоков запросов хватает на все задания и очередь, поэтому запросы состояния и отмены не ожидают
+        exchanges = Executors.newFixedThreadPool(maxJobs + queueLimit + 2, threadFactory("scan-service-http-"));
+        server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+        server.createContext("/scan", this::handleScan);
+        server.createContext("/jobs", this::handleJobs);
+        server.setExecutor(exchanges);
+        server.start();
+        int localPort = server.getAddress().getPort();
+        logger.info("Scan service started on {}:{}: {} jobs at a time, {} threads per job, {} queued", bindAddress
+                .getHostAddress(), localPort, maxJobs, threadsPerJob, queueLimit);
+        return localPort;
+    }
+
+    /**
+     * Возвращает порт службы.
+     *
+     * @return Номер порта или -1, если служба не запущена.
+     */
+    public synchronized int getPort() {
+        return server == null ? -1 : server.getAddress().getPort();
+    }
+
+    /**
+     * Возвращает количество выполняющихся и ожидающих заданий.
+     *
+     * @return Количество заданий.
+     */
+    public int getJobCount() {
+        return jobs.size();
+    }
+
+    /**
+     * Останавливает службу: задания отменяются, клиенты получают итоги, новые задания не принимаются.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        jobs.values().forEach(Job::cancel);
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(SHUTDOWN_SECONDS, TimeUnit.SECONDS)) {
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                executor.shutdownNow();
+            }
+        }
+        if (server != null) {
+            server.stop(0);
+            exchanges.shutdownNow();
+            logger.info("Scan service stopped");
+        }
+    }
+
+    /**
+     * Обрабатывает запрос на сканирование.
+     *
+     * @param exchange Запрос.
+     * @throws IOException Если ответ не удалось отправить.
+     */
+    private void handleScan(HttpExchange exchange) throws IOException {
+        try {
+            if (!authorize(exchange)) {
+                return;
+            }
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                sendText(exchange, 405, "Use POST to submit a scan job");
+                return;
+            }
+            Job job;
+            try {
+                job = createJob(parseQuery(exchange.getRequestURI().getRawQuery()), exchange.getResponseBody());
+            } catch (IllegalArgumentException e) {
+                sendText(exchange, 400, e.getMessage());
+                return;
+            }
+            jobs.put(job.id, job);
+            try {
+                if (closed) {
+                    throw new RejectedExecutionException();
+                }
+                executor.execute(job);
+            } catch (RejectedExecutionException e) {
+                jobs.remove(job.id);
+                sendText(exchange, 503, "Too many scan jobs, try again later");
+                return;
+            }
+            logger.info("Scan job {} for {} accepted", job.id, job.root);
+            try {
+                stream(exchange, job);
+            } finally {
+                jobs.remove(job.id);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Создает задание по параметрам запроса.
+     *
+     * @param query Параметры запроса.
+     * @param body  Поток ответа.
+     * @return Задание.
+     * @throws IllegalArgumentException Если параметры некорректны.
+     * @throws IOException              Если поток ответа недоступен.
+     */
+    private Job createJob(Map<String, String> query, OutputStream body) throws IOException {
+        for (String name : query.keySet()) {
+            if (!List.of("root", "verify", "entropy", "budget").contains(name)) {
+                throw new IllegalArgumentException("Unknown parameter: " + name);
+            }
+        }
+        String value = query.get("root");
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("Missing parameter: root");
+        }
+        Path root;
+        try {
+            root = Path.of(value).toAbsolutePath().normalize();
+        } catch (InvalidPathException e) {
+            throw new IllegalArgumentException("Invalid path: " + value);
+        }
+        if (!Files.isDirectory(root)) {
+            throw new IllegalArgumentException("Not a directory: " + root);
+        }
+        ScanSession session = new ScanSession(root.toFile());
+        session.setParallelism(threadsPerJob);
+        session.setDeepScan(deepScan);
+        session.setArchiveDepth(archiveDepth);
+        session.setVerifyStructure(parseBoolean(query, "verify", verifyStructure));
+        session.setAnalyzeEntropy(parseBoolean(query, "entropy", analyzeEntropy));
+        if (query.containsKey("budget")) {
+            Duration budget = ScanPriority.parseDuration(query.get("budget"));
+            session.setTimeBudget(budget);
+        }
+        // Набор сигнатур мог обновиться после запуска службы
+        index.revalidate(ScanIndex.currentVersion(deepScan, archiveDepth));
+        session.setIndex(index);
+        return new Job(nextId.incrementAndGet(), root, session, body);
+    }
+
+    /**
+     * Передает клиенту найденные файлы задания и итоги.
+     *
+     * @param exchange Запрос.
+     * @param job      Принятое задание.
+     */
+    private void stream(HttpExchange exchange, Job job) {
+        try {
+            exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson; charset=utf-8");
+            exchange.getResponseHeaders().set(JOB_HEADER, String.valueOf(job.id));
+            exchange.sendResponseHeaders(200, 0);
+        } catch (IOException e) {
+            job.disconnected = true;
+            job.cancel();
+        } finally {
+            job.streaming.countDown();
+        }
+
+        StringBuilder line = new StringBuilder(256);
+        try {
+            ScanSummary summary = job.result.get();
+            appendSummary(line, job, summary);
+        } catch (ExecutionException e) {
+            logger.error("Scan job {} for {} failed", job.id, job.root, e.getCause());
+            line.append("{\"error\":");
+            HitWriter.appendJsonString(line, String.valueOf(e.getCause().getMessage()));
+            line.append("}\n");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.cancel();
+            return;
+        }
+        // Задание закончено: после получения итогов клиент не должен найти его в списке
+        jobs.remove(job.id);
+        if (job.disconnected) {
+            return;
+        }
+        try {
+            job.out.write(line.toString());
+            job.writer.close();
+        } catch (IOException e) {
+            logger.info("The client of scan job {} has disconnected before the summary", job.id);
+        }
+    }
+
+    /**
+     * Добавляет строку итогов задания.
+     *
+     * @param line    Строка ответа.
+     * @param job     Задание.
+     * @param summary Итоги или {@code null}, если задание отменено до начала.
+     */
+    private static void appendSummary(StringBuilder line, Job job, ScanSummary summary) {
+        line.append("{\"summary\":{\"job\":").append(job.id).append(",\"root\":");
+        HitWriter.appendJsonString(line, job.root.toString());
+        line.append(",\"status\":");
+        HitWriter.appendJsonString(line, summary == null ? ScanStatus.CANCELLED.name() : summary.status().name());
+        line.append(",\"directories\":").append(summary == null ? 0 : summary.directories());
+        line.append(",\"files\":").append(summary == null ? 0 : summary.files());
+        line.append(",\"hits\":").append(summary == null ? 0 : summary.hits());
+        line.append(",\"errors\":").append(summary == null ? 0 : summary.errors());
+        line.append(",\"bytesRead\":").append(summary == null ? 0 : summary.bytesRead());
+        line.append(",\"elapsedMillis\":").append(summary == null ? 0 : summary.elapsedMillis());
+        ScanCoverage coverage = job.session.getCoverage();
+        if (coverage != null) {
+            line.append(",\"coverage\":{\"complete\":").append(coverage.complete())
+                    .append(",\"directoriesScanned\":").append(coverage.directoriesScanned())
+                    .append(",\"directoriesPending\":").append(coverage.directoriesPending()).append('}');
+        }
+        line.append("}}\n");
+    }
+
+    /**
+     * Обрабатывает запросы списка заданий и отмены задания.
+     *
+     * @param exchange Запрос.
+     * @throws IOException Если ответ не удалось отправить.
+     */
+    private void handleJobs(HttpExchange exchange) throws IOException {
+        try {
+            if (!authorize(exchange)) {
+                return;
+            }
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            if (path.equals("/jobs") || path.equals("/jobs/")) {
+                if (!"GET".equals(method)) {
+                    exchange.getResponseHeaders().set("Allow", "GET");
+                    sendText(exchange, 405, "Use GET to list scan jobs");
+                    return;
+                }
+                listJobs(exchange);
+                return;
+            }
+            if (!"DELETE".equals(method)) {
+                exchange.getResponseHeaders().set("Allow", "DELETE");
+                sendText(exchange, 405, "Use DELETE to cancel a scan job");
+                return;
+            }
+            Job job = null;
+            try {
+                job = jobs.get(Long.parseLong(path.substring("/jobs/".length())));
+            } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+                // Некорректный номер обрабатывается как неизвестное задание
+            }
+            if (job == null) {
+                sendText(exchange, 404, "Unknown scan job: " + path);
+                return;
+            }
+            logger.info("Scan job {} for {} cancelled by request", job.id, job.root);
+            job.cancel();
+            exchange.sendResponseHeaders(204, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Отправляет список заданий в формате JSON.
+     *
+     * @param exchange Запрос.
+     * @throws IOException Если ответ не удалось отправить.
+     */
+    private void listJobs(HttpExchange exchange) throws IOException {
+        List<Job> snapshot = new ArrayList<>(jobs.values());
+        snapshot.sort(Comparator.comparingLong(job -> job.id));
+        StringBuilder json = new StringBuilder("{\"jobs\":[");
+        for (int i = 0; i < snapshot.size(); i++) {
+            Job job = snapshot.get(i);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(job.id).append(",\"root\":");
+            HitWriter.appendJsonString(json, job.root.toString());
+            json.append(",\"state\":");
+            HitWriter.appendJsonString(json, job.state.get().name());
+            json.append(",\"directories\":").append(job.session.getDirectoryCount())
+                    .append(",\"files\":").append(job.session.getFileCount())
+                    .append(",\"hits\":").append(job.session.getHitCount())
+                    .append(",\"errors\":").append(job.session.getErrorCount()).append('}');
+        }
+        json.append("]}\n");
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    /**
+     * Проверяет заголовки {@code Host} и {@code Authorization} запроса и отвечает отказом,
+     * если запрос не разрешен.
+     *
+     * @param exchange Запрос.
+     * @return {@code true}, если запрос разрешен.
+     * @throws IOException Если ответ не удалось отправить.
+     */
+    private boolean authorize(HttpExchange exchange) throws IOException {
+        String host = exchange.getRequestHeaders().getFirst("Host");
+        if (bindAddress.isLoopbackAddress() && !isLoopbackHost(host)) {
+            logger.warn("Scan service request from {} for host {} rejected", exchange.getRemoteAddress(), host);
+            sendText(exchange, 403, "The scan service accepts only requests to a loopback host");
+            return false;
+        }
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        if (authorization == null || !authorization.startsWith(BEARER)
+                || !MessageDigest.isEqual(authorization.substring(BEARER.length()).getBytes(StandardCharsets.UTF_8),
+                token.getBytes(StandardCharsets.UTF_8))) {
+            logger.warn("Scan service request from {} without a valid access token rejected",
+                    exchange.getRemoteAddress());
+            exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+            sendText(exchange, 401, "Missing or invalid access token");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Проверяет, указан ли в заголовке {@code Host} локальный адрес. Имена, кроме {@code localhost},
+     * не разрешаются через DNS: принимаются только адреса, записанные цифрами.
+     *
+     * @param host Значение заголовка {@code Host} или {@code null}.
+     * @return {@code true}, если указан локальный адрес.
+     */
+    private static boolean isLoopbackHost(String host) {
+        if (host == null) {
+            return false;
+        }
+        String name = host.trim();
+        if (name.startsWith("[")) {
+            int end = name.indexOf(']');
+            if (end < 0) {
+                return false;
+            }
+            name = name.substring(1, end);
+        } else if (name.lastIndexOf(':') >= 0) {
+            name = name.substring(0, name.lastIndexOf(':'));
+        }
+        if (name.equalsIgnoreCase("localhost")) {
+            return true;
+        }
+        if (!name.matches("\\d{1,3}(\\.\\d{1,3}){3}|[0-9A-Fa-f:.]*:[0-9A-Fa-f:.]*")) {
+            return false;
+        }
+        try {
+            return InetAddress.getByName(name).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Отправляет текстовый ответ.
+     *
+     * @param exchange Запрос.
+     * @param code     Код ответа.
+     * @param message  Текст ответа.
+     * @throws IOException Если ответ не удалось отправить.
+     */
+    private static void sendText(HttpExchange exchange, int code, String message) throws IOException {
+        byte[] bytes = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(code, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    /**
+     * Разбирает параметры запроса.
+     *
+     * @param rawQuery Строка параметров в кодировке URL или {@code null}.
+     * @return Параметры по названиям.
+     * @throws IllegalArgumentException Если параметр повторяется или закодирован некорректно.
+     */
+    static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int separator = pair.indexOf('=');
+            String name = URLDecoder.decode(separator < 0 ? pair : pair.substring(0, separator),
+                    StandardCharsets.UTF_8);
+            String value = separator < 0 ? "" : URLDecoder.decode(pair.substring(separator + 1),
+                    StandardCharsets.UTF_8);
+            if (query.put(name, value) != null) {
+                throw new IllegalArgumentException("Duplicate parameter: " + name);
+            }
+        }
+        return query;
+    }
+
+    /**
+     * Возвращает логический параметр запроса.
+     *
+     * @param query        Параметры запроса.
+     * @param name         Название параметра.
+     * @param defaultValue Значение, если параметр не задан.
+     * @return Значение параметра.
+     * @throws IllegalArgumentException Если значение не {@code true} и не {@code false}.
+     */
+    private static boolean parseBoolean(Map<String, String> query, String name, boolean defaultValue) {
+        String value = query.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        return switch (value) {
+            case "true", "" -> true;
+            case "false" -> false;
+            default -> throw new IllegalArgumentException("Invalid value of " + name + ": " + value);
+        };
+    }
+
+    /**
+     * Создает фабрику потоков-демонов.
+     *
+     * @param prefix Префикс имен потоков.
+     * @return Фабрика потоков.
+     */
+    private ThreadFactory threadFactory(String prefix) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
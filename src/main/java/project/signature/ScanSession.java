@@ -0,0 +1,1745 @@
+package project.signature;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Класс ScanSession — одно сканирование директории со своими настройками и счетчиками.
+ * В отличие от статического {@link DirScanner}, несколько сессий могут выполняться одновременно.
+ * Найденные файлы публикуются по мере обнаружения в виде {@link ScanHit}:
+ * подписчикам {@link Flow.Subscriber} через {@link SubmissionPublisher} с ограниченным буфером
+ * (если подписчик не успевает, обход приостанавливается) и синхронному обработчику
+ * {@link #setHitListener(Consumer)}. Результаты не накапливаются в сессии, поэтому потребление
+ * памяти не зависит от количества найденных файлов: запоминаются только найденные файлы, к которым
+ * могут вести другие пути, и не больше {@link #setVisitedLimit(long) предела множества посещенных}.
+ * <p>
+ * Счетчики и длительности операций собираются в {@link ScanMetrics}, которые на время
+ * сканирования доступны через JMX, а по окончании записываются в журнал.
+ * <p>
+ * Символические ссылки обрабатываются по правилу {@link SymlinkPolicy}. Посещенные директории и файлы
+ * запоминаются по устройству и inode в {@link FileKeySet}, поэтому циклы из ссылок и повторно
+ * смонтированные директории обходятся один раз, а файл с несколькими жесткими ссылками читается
+ * один раз: для остальных его путей публикуются записи {@link ScanHit#aliasOf()} после обхода.
+ * Если множество посещенных достигло предела, циклы по-прежнему обнаруживаются сравнением
+ * с предками директории, а повторные пути к новым файлам читаются как отдельные файлы.
+ * <p>
+ * При включенной проверке структуры ({@link #setVerifyStructure(boolean)}) обнаружение идет в два этапа:
+ * потоки обхода только сопоставляют заголовки с сигнатурами, а совпавшие файлы пакетами передаются
+ * отдельному пулу, который проверяет заголовки PE, ELF и Mach-O ({@link StructureVerifier})
+ * и публикует только подтвержденные файлы.
+ * <p>
+ * С журналом ({@link #setJournal(ScanJournal)}) сессия записывает найденные файлы и проверенные директории.
+ * Сессия с журналом прерванного сканирования сначала заново публикует сохраненные в нем найденные файлы,
+ * а затем обходит только директории, проверка которых не была закончена.
+ * <p>
+ * С правилами очередности ({@link #setPriority(ScanPriority)}) или ограничением времени
+ * ({@link #setTimeBudget(Duration)}) директории обходятся из очереди с приоритетом, а по истечении
+ * времени сканирование останавливается с состоянием {@link ScanStatus#TIME_LIMIT}; найденные к этому
+ * моменту файлы уже опубликованы, а полнота обхода описывается отчетом {@link #getCoverage()}.
+ * <p>
+ * Настройки задаются до запуска; сессия может быть запущена только один раз.
+ */
+public class ScanSession implements Flow.Publisher<ScanHit> {
+
+    private static final Logger logger = LogManager.getLogger(ScanSession.class);
+
+    /**
+     * Номер для имени потока сессии.
+     */
+    private static final AtomicInteger threadNumber = new AtomicInteger();
+
+    /**
+     * Количество файлов в одном пакете проверки структуры.
+     */
+    static final int VERIFY_BATCH = 32;
+
+    /**
+     * Время ожидания директории в очереди с приоритетом, после которого поток обхода
+     * проверяет отмену и окончание обхода, в миллисекундах.
+     */
+    private static final long QUEUE_POLL_MILLIS = 10;
+
+    /**
+     * Запись в {@link #aliases} о файле, проверка которого не закончена и других путей к которому не встречено.
+     */
+    private static final List<Alias> NO_ALIASES = List.of();
+
+    /**
+     * Корневая директория сканирования.
+     */
+    private final File root;
+
+    /**
+     * Количество рабочих потоков; 1 — последовательный обход в порядке листинга директорий.
+     */
+    private int parallelism = 1;
+
+    /**
+     * Количество одновременных чтений заголовков с одного устройства; 0 — чтение в потоке обхода.
+     */
+    private int ioConcurrency;
+
+    /**
+     * Признак глубокого сканирования.
+     */
+    private boolean deepScan;
+
+    /**
+     * Глубина проверки архивов; 0 — архивы не проверяются.
+     */
+    private int archiveDepth;
+
+    /**
+     * Индекс результатов предыдущих сканирований или {@code null}.
+     */
+    private ScanIndex index;
+
+    /**
+     * Правила отбора файлов и директорий или {@code null}.
+     */
+    private ScanFilter filter;
+
+    /**
+     * Правила отбора, скомпилированные для корня при запуске, или {@code null}, если правил нет.
+     */
+    private ScanFilter.Compiled rules;
+
+    /**
+     * Глубина корня сессии относительно корня, для которого скомпилированы правила.
+     */
+    private int baseDepth;
+
+    /**
+     * Правило обработки символических ссылок.
+     */
+    private SymlinkPolicy symlinkPolicy = SymlinkPolicy.FOLLOW;
+
+    /**
+     * Предел количества записей в множестве посещенных; 0 — повторные пути не отслеживаются.
+     */
+    private long visitedLimit = FileKeySet.DEFAULT_LIMIT;
+
+    /**
+     * Посещенные директории и файлы или {@code null}, если повторные пути не отслеживаются.
+     */
+    private FileKeySet visited;
+
+    /**
+     * Найденные файлы по ключу, чтобы публиковать записи о других путях к ним без повторного чтения.
+     * Содержит файлы, другие пути к которым уже встречены, а также файлы с несколькими жесткими ссылками
+     * и прочитанные по символической ссылке, пока их не больше {@link #visitedLimit}.
+     */
+    private final Map<FileKeySet.FileKey, ScanHit> hitsByKey = new ConcurrentHashMap<>();
+
+    /**
+     * Количество файлов в {@link #hitsByKey}, запомненных до появления других путей к ним.
+     */
+    private final AtomicLong retainedHits = new AtomicLong();
+
+    /**
+     * Признак того, что найденные файлы перестали запоминаться и повторные пути к файлам читались заново.
+     */
+    private volatile boolean hitsSaturated;
+
+    /**
+     * Файлы, проверка которых не закончена, и найденные файлы с другими путями к ним по ключу файла.
+     * Другие пути к файлу без совпадений отбрасываются по окончании его проверки.
+     */
+    private final Map<FileKeySet.FileKey, List<Alias>> aliases = new ConcurrentHashMap<>();
+
+    /**
+     * Количество путей в {@link #aliases}; не превышает {@link #visitedLimit}.
+     */
+    private final AtomicLong pendingAliases = new AtomicLong();
+
+    /**
+     * Признак того, что {@link #aliases} заполнено и повторные пути к файлам читались заново.
+     */
+    private volatile boolean aliasesSaturated;
+
+    /**
+     * Признак проверки структуры заголовков найденных файлов.
+     */
+    private boolean verifyStructure;
+
+    /**
+     * Признак анализа энтропии найденных исполняемых файлов.
+     */
+    private boolean analyzeEntropy;
+
+    /**
+     * Пул проверки структуры или {@code null}, если проверка выключена.
+     */
+    private ThreadPoolExecutor verifier;
+
+    /**
+     * Файлы, ожидающие проверки структуры; передаются пулу пакетами по {@link #VERIFY_BATCH}.
+     */
+    private List<Candidate> pending = new ArrayList<>();
+
+    /**
+     * Блокировка накопления пакета проверки.
+     */
+    private final Object pendingLock = new Object();
+
+    /**
+     * Первая ошибка обработчика найденных файлов в пуле проверки.
+     */
+    private final AtomicReference<RuntimeException> verifierFailure = new AtomicReference<>();
+
+    /**
+     * Правила очередности обхода или {@code null}.
+     */
+    private ScanPriority priority;
+
+    /**
+     * Ограничение времени сканирования в наносекундах; 0 — без ограничения.
+     */
+    private long timeBudgetNanos;
+
+    /**
+     * Признак остановки сканирования по истечении времени.
+     */
+    private volatile boolean expired;
+
+    /**
+     * Отчет о полноте обхода с очередностью или {@code null}.
+     */
+    private volatile ScanCoverage coverage;
+
+    /**
+     * Журнал хода сканирования или {@code null}.
+     */
+    private ScanJournal journal;
+
+    /**
+     * Размер буфера каждого подписчика.
+     */
+    private int bufferSize = Flow.defaultBufferSize();
+
+    /**
+     * Синхронный обработчик найденных файлов или {@code null}.
+     */
+    private Consumer<? super ScanHit> hitListener;
+
+    /**
+     * Издатель найденных файлов; создается при первой подписке.
+     */
+    private SubmissionPublisher<ScanHit> publisher;
+
+    /**
+     * Проверка файлов с настройками сессии; создается при запуске.
+     */
+    private volatile FileInspector inspector;
+
+    /**
+     * Планировщик чтения заголовков или {@code null}, если файлы читаются в потоке обхода.
+     */
+    private IoScheduler scheduler;
+
+    /**
+     * Признак запуска сессии.
+     */
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    /**
+     * Признак отмены сканирования.
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * Счетчики и длительности операций сессии.
+     */
+    private final ScanMetrics metrics;
+
+    /**
+     * Создает сессию сканирования директории.
+     *
+     * @param root Корневая директория сканирования.
+     */
+    public ScanSession(File root) {
+        this.root = root;
+        this.metrics = new ScanMetrics(root == null ? null : root.getAbsolutePath());
+    }
+
+    /**
+     * Возвращает корневую директорию сканирования.
+     *
+     * @return Корневая директория.
+     */
+    public File getRoot() {
+        return root;
+    }
+
+    /**
+     * Устанавливает количество рабочих потоков.
+     * При значении больше 1 поддиректории обрабатываются параллельно в {@link ForkJoinPool},
+     * и порядок публикации найденных файлов не определен.
+     *
+     * @param parallelism Количество рабочих потоков.
+     * @throws IllegalArgumentException Если {@code parallelism} меньше 1.
+     */
+    public void setParallelism(int parallelism) {
+        checkNotStarted();
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Включает упорядоченное чтение заголовков для жестких дисков и сетевых файловых систем
+     * (см. {@link IoScheduler}): файлы каждой директории проверяются в порядке inode пулом потоков
+     * своего устройства, ограничивающим количество одновременных чтений. Найденные файлы
+     * публикуются в потоке обхода после проверки всех файлов директории.
+     *
+     * @param ioConcurrency Количество одновременных чтений с одного устройства; 0 — выключено.
+     * @throws IllegalArgumentException Если значение отрицательно.
+     */
+    public void setIoConcurrency(int ioConcurrency) {
+        checkNotStarted();
+        if (ioConcurrency < 0) {
+            throw new IllegalArgumentException("I/O concurrency must not be negative: " + ioConcurrency);
+        }
+        this.ioConcurrency = ioConcurrency;
+    }
+
+    /**
+     * Включает или выключает глубокое сканирование (см. {@link FileInspector}).
+     *
+     * @param deepScan {@code true}, чтобы искать вложенные сигнатуры.
+     */
+    public void setDeepScan(boolean deepScan) {
+        checkNotStarted();
+        this.deepScan = deepScan;
+    }
+
+    /**
+     * Устанавливает глубину проверки содержимого архивов ZIP, JAR, TAR и GZIP (см. {@link ArchiveScanner}).
+     *
+     * @param archiveDepth Глубина вложенности архивов; 0 — архивы не проверяются.
+     * @throws IllegalArgumentException Если глубина отрицательна.
+     */
+    public void setArchiveDepth(int archiveDepth) {
+        checkNotStarted();
+        if (archiveDepth < 0) {
+            throw new IllegalArgumentException("Negative archive depth: " + archiveDepth);
+        }
+        this.archiveDepth = archiveDepth;
+    }
+
+    /**
+     * Устанавливает правила отбора файлов и директорий. Исключенные поддиректории не читаются,
+     * исключенные файлы не открываются; и те, и другие учитываются в {@link ScanMetrics#getSkipped()}.
+     *
+     * @param filter Правила отбора или {@code null}.
+     */
+    public void setFilter(ScanFilter filter) {
+        checkNotStarted();
+        this.filter = filter;
+    }
+
+    /**
+     * Устанавливает правила, уже скомпилированные для одного из предков корня сессии,
+     * чтобы шаблоны путей и глубина отсчитывались от того же корня, что и при первом сканировании
+     * (например, при повторном сканировании поддиректории в {@link DirectoryWatcher}).
+     *
+     * @param rules     Скомпилированные правила или {@code null}.
+     * @param baseDepth Глубина корня сессии относительно корня правил.
+     */
+    void setRules(ScanFilter.Compiled rules, int baseDepth) {
+        checkNotStarted();
+        this.rules = rules;
+        this.baseDepth = baseDepth;
+    }
+
+    /**
+     * Устанавливает правило обработки символических ссылок.
+     *
+     * @param symlinkPolicy Правило обработки ссылок.
+     */
+    public void setSymlinkPolicy(SymlinkPolicy symlinkPolicy) {
+        checkNotStarted();
+        this.symlinkPolicy = Objects.requireNonNull(symlinkPolicy);
+    }
+
+    /**
+     * Устанавливает предел количества директорий и файлов, запоминаемых для распознавания
+     * повторных путей к ним. Каждая запись занимает в среднем 11–21 байт (см. {@link FileKeySet}).
+     *
+     * @param visitedLimit Предел количества записей; 0 — повторные пути к файлам не распознаются,
+     *                     циклы обнаруживаются только сравнением с предками директории.
+     * @throws IllegalArgumentException Если предел отрицателен.
+     */
+    public void setVisitedLimit(long visitedLimit) {
+        checkNotStarted();
+        if (visitedLimit < 0) {
+            throw new IllegalArgumentException("Visited limit must not be negative: " + visitedLimit);
+        }
+        this.visitedLimit = visitedLimit;
+    }
+
+    /**
+     * Включает проверку структуры заголовков PE, ELF и Mach-O у файлов, совпавших с сигнатурами
+     * (см. {@link StructureVerifier}). Файлы с поврежденным заголовком не публикуются и учитываются
+     * в {@link ScanMetrics#getRejected()}. Проверка выполняется отдельным пулом потоков,
+     * из которого и вызывается обработчик подтвержденных файлов.
+     *
+     * @param verifyStructure {@code true}, чтобы проверять структуру заголовков.
+     */
+    public void setVerifyStructure(boolean verifyStructure) {
+        checkNotStarted();
+        this.verifyStructure = verifyStructure;
+    }
+
+    /**
+     * Включает анализ энтропии файлов, совпавших с сигнатурами заголовка (см. {@link EntropyAnalyzer}).
+     * Результат сохраняется в {@link ScanHit#entropy()} и в индексе, вероятно упакованные файлы
+     * учитываются в {@link ScanMetrics#getPacked()}. При включенной проверке структуры анализ
+     * выполняется в пуле проверки только для подтвержденных файлов, иначе — в потоке чтения файла.
+     *
+     * @param analyzeEntropy {@code true}, чтобы анализировать энтропию.
+     */
+    public void setAnalyzeEntropy(boolean analyzeEntropy) {
+        checkNotStarted();
+        this.analyzeEntropy = analyzeEntropy;
+    }
+
+    /**
+     * Включает обход директорий в порядке приоритета по заданным правилам.
+     *
+     * @param priority Правила очередности или {@code null} для обычного обхода
+     *                 (при ограничении времени используются {@link ScanPriority#defaults()}).
+     */
+    public void setPriority(ScanPriority priority) {
+        checkNotStarted();
+        this.priority = priority;
+    }
+
+    /**
+     * Ограничивает время сканирования. Обход идет в порядке приоритета (см. {@link #setPriority});
+     * по истечении времени потоки обхода заканчивают чтение текущих файлов, файлы, ожидающие проверки
+     * структуры, проверяются, и сканирование завершается с состоянием {@link ScanStatus#TIME_LIMIT}.
+     *
+     * @param budget Ограничение времени или {@code null}, чтобы снять ограничение.
+     * @throws IllegalArgumentException Если ограничение не положительно.
+     */
+    public void setTimeBudget(Duration budget) {
+        checkNotStarted();
+        if (budget != null && (budget.isNegative() || budget.isZero())) {
+            throw new IllegalArgumentException("Time budget must be positive: " + budget);
+        }
+        this.timeBudgetNanos = budget == null ? 0 : budget.toNanos();
+    }
+
+    /**
+     * Возвращает отчет о полноте обхода с очередностью.
+     *
+     * @return Отчет или {@code null}, если сканирование не закончено или шло без очередности.
+     */
+    public ScanCoverage getCoverage() {
+        return coverage;
+    }
+
+    /**
+     * Устанавливает журнал хода сканирования. Если журнал продолжает прерванное сканирование,
+     * проверенные директории не обходятся, а найденные в них файлы публикуются из журнала.
+     * Журнал закрывается вызывающим; после успешного окончания сканирования сессия удаляет его
+     * ({@link ScanJournal#complete()}), иначе сбрасывает на диск.
+     *
+     * @param journal Журнал, открытый для корневой директории сессии, или {@code null}.
+     */
+    public void setJournal(ScanJournal journal) {
+        checkNotStarted();
+        this.journal = journal;
+    }
+
+    /**
+     * Устанавливает индекс результатов предыдущих сканирований.
+     *
+     * @param index Индекс или {@code null}.
+     */
+    public void setIndex(ScanIndex index) {
+        checkNotStarted();
+        this.index = index;
+    }
+
+    /**
+     * Возвращает индекс результатов предыдущих сканирований.
+     *
+     * @return Индекс или {@code null}.
+     */
+    public ScanIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Устанавливает размер буфера каждого подписчика. Когда буфер подписчика заполнен,
+     * обход ожидает, пока подписчик запросит следующие элементы.
+     *
+     * @param bufferSize Размер буфера.
+     * @throws IllegalArgumentException Если размер не положителен.
+     */
+    public void setBufferSize(int bufferSize) {
+        checkNotStarted();
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Устанавливает обработчик, вызываемый для каждого найденного файла в потоке обхода
+     * (при проверке структуры — в потоке пула проверки).
+     * Обработчик должен быть быстрым и, при {@code parallelism > 1} или проверке структуры, потокобезопасным.
+     *
+     * @param hitListener Обработчик или {@code null}.
+     */
+    public void setHitListener(Consumer<? super ScanHit> hitListener) {
+        checkNotStarted();
+        this.hitListener = hitListener;
+    }
+
+    /**
+     * Подписывает получателя на найденные файлы. Подписка должна быть оформлена до запуска:
+     * найденные ранее файлы повторно не публикуются. По завершении обхода подписчик
+     * получает {@link Flow.Subscriber#onComplete()}.
+     *
+     * @param subscriber Подписчик.
+     */
+    @Override
+    public synchronized void subscribe(Flow.Subscriber<? super ScanHit> subscriber) {
+        if (publisher == null) {
+            publisher = new SubmissionPublisher<>(ForkJoinPool.commonPool(), bufferSize);
+        }
+        publisher.subscribe(subscriber);
+    }
+
+    /**
+     * Выполняет сканирование в текущем потоке.
+     *
+     * @return Итоги сканирования.
+     * @throws IllegalStateException Если сессия уже была запущена.
+     */
+    public ScanSummary run() {
+        if (!started.compareAndSet(false, true)) {
+            throw new IllegalStateException("The scan session has already been started");
+        }
+        inspector = new FileInspector(deepScan, archiveDepth, index, metrics);
+        if (rules == null && filter != null && !filter.isEmpty() && root != null) {
+            rules = filter.compile(root.toPath());
+        }
+        scheduler = ioConcurrency > 0 ? new IoScheduler(ioConcurrency) : null;
+        visited = visitedLimit > 0 ? new FileKeySet(visitedLimit) : null;
+        verifier = verifyStructure ? createVerifier() : null;
+        PriorityWalk priorityWalk = root != null && (priority != null || timeBudgetNanos > 0)
+                ? new PriorityWalk(priority != null ? priority : ScanPriority.defaults()) : null;
+        metrics.start();
+        metrics.register();
+        ScheduledExecutorService timer = timeBudgetNanos > 0 ? startTimer() : null;
+        ScanStatus status = ScanStatus.OK;
+        boolean finished = false;
+        try {
+            if (journal != null) {
+                restore();
+            }
+            status = walkRoot(priorityWalk);
+            if (timer != null) {
+                // Ограничение времени действует на обход; уже прочитанные файлы проверяются до конца
+                timer.shutdownNow();
+            }
+            finishVerification();
+            publishAliases();
+            if (cancelled) {
+                status = expired ? ScanStatus.TIME_LIMIT : ScanStatus.CANCELLED;
+            }
+            finished = !cancelled && status != ScanStatus.INVALID_DIRECTORY && status != ScanStatus.ACCESS_DENIED;
+        } catch (RuntimeException e) {
+            closePublisher(e);
+            throw e;
+        } finally {
+            if (timer != null) {
+                timer.shutdownNow();
+            }
+            if (journal != null) {
+                finishJournal(finished);
+            }
+            if (scheduler != null) {
+                scheduler.close();
+            }
+            if (verifier != null) {
+                verifier.shutdownNow();
+            }
+            metrics.finish();
+            metrics.unregister();
+        }
+        closePublisher(null);
+        if (visited != null && visited.isSaturated()) {
+            logger.warn("The visited set of {} reached {} entries; later paths to the same files were read again",
+                    root, visitedLimit);
+        }
+        if (aliasesSaturated) {
+            logger.warn("The pending paths to the same files in {} reached {} entries; later paths were read again",
+                    root, visitedLimit);
+        }
+        if (hitsSaturated) {
+            logger.warn("The hits with other paths in {} reached {} entries; later paths to them were read again",
+                    root, visitedLimit);
+        }
+
+        ScanSummary summary = new ScanSummary(status, metrics.getDirectories(), metrics.getFiles(), metrics.getHits(),
+                metrics.getErrors(), metrics.getBytesRead(), metrics.getElapsedMillis());
+        logger.info("Scan of {} finished: status={}, directories={}, files={}, hits={}, errors={}, bytes read={}, {} ms",
+                root, summary.status(), summary.directories(), summary.files(), summary.hits(), summary.errors(),
+                summary.bytesRead(), summary.elapsedMillis());
+        logger.info("Scan of {} latencies:{}{}", root, System.lineSeparator(), metrics.describeLatencies());
+        if (priorityWalk != null) {
+            coverage = priorityWalk.coverage(!cancelled);
+            logger.info("Scan of {} {}", root, coverage.describe());
+        }
+        return summary;
+    }
+
+    /**
+     * Запускает сканирование в отдельном потоке.
+     *
+     * @return Итоги сканирования, доступные после его завершения.
+     * @throws IllegalStateException Если сессия уже была запущена.
+     */
+    public CompletableFuture<ScanSummary> start() {
+        if (started.get()) {
+            throw new IllegalStateException("The scan session has already been started");
+        }
+        CompletableFuture<ScanSummary> result = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                result.complete(run());
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            } catch (Error e) {
+                // Ожидающие результата получают ошибку, а сама ошибка передается потоку сессии
+                result.completeExceptionally(e);
+                throw e;
+            }
+        }, "scan-session-" + threadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        thread.start();
+        return result;
+    }
+
+    /**
+     * Отменяет сканирование. Обход останавливается после проверки текущих файлов,
+     * а итоговое состояние будет {@link ScanStatus#CANCELLED}.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Проверяет, было ли сканирование отменено.
+     *
+     * @return {@code true}, если вызван {@link #cancel()}.
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Возвращает количество запомненных других путей к файлам, ожидающих публикации.
+     *
+     * @return Количество путей.
+     */
+    long getPendingAliases() {
+        return pendingAliases.get();
+    }
+
+    /**
+     * Возвращает количество запомненных найденных файлов, к которым могут вести другие пути.
+     *
+     * @return Количество файлов.
+     */
+    int getRetainedHits() {
+        return hitsByKey.size();
+    }
+
+    /**
+     * Возвращает счетчики и длительности операций сессии.
+     *
+     * @return Показатели сканирования.
+     */
+    public ScanMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Возвращает количество просмотренных директорий на текущий момент.
+     *
+     * @return Количество директорий.
+     */
+    public long getDirectoryCount() {
+        return metrics.getDirectories();
+    }
+
+    /**
+     * Возвращает количество проверенных файлов на текущий момент.
+     *
+     * @return Количество файлов.
+     */
+    public long getFileCount() {
+        return metrics.getFiles();
+    }
+
+    /**
+     * Возвращает количество найденных файлов на текущий момент.
+     *
+     * @return Количество найденных файлов.
+     */
+    public long getHitCount() {
+        return metrics.getHits();
+    }
+
+    /**
+     * Возвращает количество байт, прочитанных из файлов на текущий момент.
+     *
+     * @return Количество прочитанных байт.
+     */
+    public long getBytesRead() {
+        return metrics.getBytesRead();
+    }
+
+    /**
+     * Возвращает количество ошибок чтения на текущий момент.
+     *
+     * @return Количество ошибок.
+     */
+    public long getErrorCount() {
+        return metrics.getErrors();
+    }
+
+    /**
+     * Запускает поток, который останавливает сканирование по истечении отведенного времени.
+     *
+     * @return Планировщик с запланированной остановкой.
+     */
+    private ScheduledExecutorService startTimer() {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "scan-timer-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.schedule(() -> {
+            if (!cancelled) {
+                expired = true;
+                cancelled = true;
+                logger.info("The time budget of {} ms is exhausted, stopping the scan of {}",
+                        TimeUnit.NANOSECONDS.toMillis(timeBudgetNanos), root);
+            }
+        }, timeBudgetNanos, TimeUnit.NANOSECONDS);
+        return timer;
+    }
+
+    /**
+     * Проверяет корневую директорию и запускает обход.
+     *
+     * @param priorityWalk Обход с очередностью или {@code null} для обычного обхода.
+     * @return Итоговое состояние сканирования.
+     */
+    private ScanStatus walkRoot(PriorityWalk priorityWalk) {
+        if (root == null || !root.exists() || !root.isDirectory()) {
+            logger.error("The directory is incorrect");
+            return ScanStatus.INVALID_DIRECTORY;
+        }
+
+        if (!root.canRead()) {
+            logger.error("Insufficient permissions to read the directory: {}", root.getAbsolutePath());
+            return ScanStatus.ACCESS_DENIED;
+        }
+
+        Path rootPath = root.toPath();
+        BasicFileAttributes attr;
+        try {
+            attr = Files.readAttributes(rootPath, BasicFileAttributes.class);
+        } catch (IOException e) {
+            logger.error("The directory is incorrect");
+            return ScanStatus.INVALID_DIRECTORY;
+        }
+        if (journal != null && journal.isCompleted(rootPath)) {
+            // Сканирование было прервано после проверки всех директорий
+            return ScanStatus.OK;
+        }
+        Entry rootEntry = new Entry(rootPath, attr, baseDepth, false, FileKeySet.FileKey.of(attr), null);
+        if (visited != null && rootEntry.key() != null) {
+            visited.add(rootEntry.key());
+        }
+        List<Entry> children = listDirectory(rootEntry);
+        if (children == null || children.isEmpty()) {
+            if (children != null) {
+                walked(rootEntry);
+            }
+            return ScanStatus.EMPTY;
+        }
+
+        if (priorityWalk != null) {
+            priorityWalk.walk(rootEntry, children);
+        } else if (parallelism == 1) {
+            walk(rootEntry, children);
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.invoke(new DirectoryTask(rootEntry, children));
+            } finally {
+                pool.shutdown();
+            }
+        }
+        return ScanStatus.OK;
+    }
+
+    /**
+     * Элемент директории с атрибутами, прочитанными при ее обходе.
+     * Атрибуты используются и для выбора между файлом и поддиректорией, и при проверке файла,
+     * поэтому для каждого элемента они читаются один раз (для символической ссылки — дважды:
+     * саму ссылку и объект, на который она указывает).
+     *
+     * @param path   Путь к элементу.
+     * @param attr   Атрибуты элемента (символические ссылки разыменовываются).
+     * @param depth  Глубина элемента относительно корня (элементы корня — 1).
+     * @param link   Признак символической ссылки.
+     * @param key    Ключ файла или {@code null}, если файловая система его не предоставляет.
+     * @param parent Директория, содержащая элемент, или {@code null} для корня.
+     */
+    private record Entry(Path path, BasicFileAttributes attr, int depth, boolean link, FileKeySet.FileKey key,
+                         Entry parent) {
+    }
+
+    /**
+     * Файл, совпавший с сигнатурой и ожидающий проверки структуры.
+     *
+     * @param entry Файл с атрибутами из обхода.
+     * @param hit   Запись о файле по результатам сопоставления заголовка.
+     */
+    private record Candidate(Entry entry, ScanHit hit) {
+    }
+
+    /**
+     * Другой путь к уже встреченному файлу.
+     *
+     * @param path         Путь.
+     * @param symbolicLink Признак символической ссылки.
+     */
+    private record Alias(Path path, boolean symbolicLink) {
+    }
+
+
+    /**
+     * Последовательно обходит содержимое директории в порядке листинга.
+     *
+     * @param directory Директория.
+     * @param children  Содержимое директории.
+     */
+    private void walk(Entry directory, List<Entry> children) {
+        for (Entry entry : scheduler == null ? children : analyzeBatch(children)) {
+            if (cancelled) {
+                return;
+            }
+            if (entry.attr().isRegularFile()) {
+                analyzeFile(entry);
+            } else if (entry.attr().isDirectory()) {
+                List<Entry> nested = listDirectory(entry);
+                if (nested != null) {
+                    walk(entry, nested);
+                }
+            }
+        }
+        walked(directory);
+    }
+
+    /**
+     * Задача обхода одной директории: файлы проверяются в текущем потоке,
+     * поддиректории обрабатываются отдельными задачами.
+     */
+    private final class DirectoryTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Директория.
+         */
+        private final Entry directory;
+
+        /**
+         * Содержимое директории.
+         */
+        private final List<Entry> children;
+
+        DirectoryTask(Entry directory, List<Entry> children) {
+            this.directory = directory;
+            this.children = children;
+        }
+
+        @Override
+        protected void compute() {
+            List<DirectoryTask> subtasks = new ArrayList<>();
+            for (Entry entry : scheduler == null ? children : analyzeBatch(children)) {
+                if (cancelled) {
+                    break;
+                }
+                if (entry.attr().isRegularFile()) {
+                    analyzeFile(entry);
+                } else if (entry.attr().isDirectory()) {
+                    List<Entry> nested = listDirectory(entry);
+                    if (nested != null && nested.isEmpty()) {
+                        walked(entry);
+                    } else if (nested != null) {
+                        DirectoryTask task = new DirectoryTask(entry, nested);
+                        task.fork();
+                        subtasks.add(task);
+                    }
+                }
+            }
+            walked(directory);
+            for (DirectoryTask task : subtasks) {
+                task.join();
+            }
+        }
+    }
+
+    /**
+     * Директория в очереди обхода с приоритетом.
+     *
+     * @param entry    Директория.
+     * @param rank     Приоритет директории.
+     * @param sequence Порядковый номер обнаружения; при равном приоритете раньше обходится обнаруженная раньше.
+     */
+    private record Queued(Entry entry, ScanPriority.Rank rank, long sequence) implements Comparable<Queued> {
+
+        @Override
+        public int compareTo(Queued other) {
+            int order = Integer.compare(other.rank.score(), rank.score());
+            return order != 0 ? order : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * Обход директорий из очереди с приоритетом. Директория читается, когда до нее доходит очередь:
+     * ее поддиректории с вычисленным приоритетом добавляются в очередь, а файлы проверяются
+     * в том же потоке. Потоки обхода берут из очереди директорию с наибольшим приоритетом,
+     * пока очередь не опустеет и все начатые директории не будут обойдены или пока сканирование
+     * не будет отменено. Оставшиеся в очереди и прерванные директории попадают в отчет о полноте.
+     */
+    private final class PriorityWalk {
+
+        /**
+         * Скомпилированные правила очередности.
+         */
+        private final ScanPriority.Compiled rules;
+
+        /**
+         * Директории, ожидающие обхода.
+         */
+        private final PriorityBlockingQueue<Queued> queue = new PriorityBlockingQueue<>();
+
+        /**
+         * Количество директорий в очереди и в обработке.
+         */
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        /**
+         * Счетчик порядка обнаружения директорий.
+         */
+        private final AtomicLong sequence = new AtomicLong();
+
+        /**
+         * Количество полностью обойденных директорий всего и по правилам.
+         */
+        private final AtomicLong scanned = new AtomicLong();
+        private final AtomicLongArray scannedByRule;
+
+        /**
+         * Директории, обход которых прерван отменой.
+         */
+        private final ConcurrentLinkedQueue<Queued> interrupted = new ConcurrentLinkedQueue<>();
+
+        /**
+         * Первая ошибка в потоках обхода.
+         */
+        private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+        PriorityWalk(ScanPriority priority) {
+            this.rules = priority.compile(root.toPath());
+            this.scannedByRule = new AtomicLongArray(rules.ruleNames().size());
+        }
+
+        /**
+         * Обходит дерево от корня.
+         *
+         * @param directory Корневая директория.
+         * @param children  Содержимое корневой директории.
+         * @throws RuntimeException Если обработчик найденных файлов завершился с ошибкой.
+         */
+        void walk(Entry directory, List<Entry> children) {
+            Queued start = new Queued(directory, rules.rank(directory.path(), directory.attr(), directory.depth(),
+                    null), sequence.getAndIncrement());
+            outstanding.incrementAndGet();
+            if (parallelism == 1) {
+                process(start, children);
+                drain();
+                return;
+            }
+            // Потоки обхода начинают с поддиректорий корня, пока текущий поток проверяет файлы корня
+            List<Thread> threads = new ArrayList<>(parallelism);
+            for (int i = 0; i < parallelism; i++) {
+                Thread thread = new Thread(() -> {
+                    try {
+                        drain();
+                    } catch (RuntimeException e) {
+                        failure.compareAndSet(null, e);
+                        cancelled = true;
+                    }
+                }, "scan-walk-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                thread.start();
+                threads.add(thread);
+            }
+            try {
+                process(start, children);
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+                cancelled = true;
+            }
+            try {
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancelled = true;
+            }
+            RuntimeException error = failure.get();
+            if (error != null) {
+                throw error;
+            }
+        }
+
+        /**
+         * Берет директории из очереди, пока обход не закончен и не отменен.
+         */
+        private void drain() {
+            while (!cancelled && outstanding.get() > 0) {
+                Queued next;
+                try {
+                    next = queue.poll(QUEUE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    cancelled = true;
+                    return;
+                }
+                if (next == null) {
+                    continue;
+                }
+                List<Entry> children = listDirectory(next.entry());
+                if (children == null) {
+                    outstanding.decrementAndGet();
+                } else {
+                    process(next, children);
+                }
+            }
+        }
+
+        /**
+         * Ставит поддиректории в очередь и проверяет файлы директории.
+         *
+         * @param directory Директория из очереди.
+         * @param children  Содержимое директории.
+         */
+        private void process(Queued directory, List<Entry> children) {
+            try {
+                List<Entry> files = new ArrayList<>(children.size());
+                for (Entry entry : children) {
+                    if (entry.attr().isDirectory()) {
+                        outstanding.incrementAndGet();
+                        queue.add(new Queued(entry, rules.rank(entry.path(), entry.attr(), entry.depth(),
+                                directory.rank()), sequence.getAndIncrement()));
+                    } else {
+                        files.add(entry);
+                    }
+                }
+                for (Entry entry : scheduler == null ? files : analyzeBatch(files)) {
+                    if (cancelled) {
+                        break;
+                    }
+                    if (entry.attr().isRegularFile()) {
+                        analyzeFile(entry);
+                    }
+                }
+                // После отмены директория считается прерванной: часть ее файлов могла остаться непроверенной
+                if (!cancelled) {
+                    scanned.incrementAndGet();
+                    long matched = directory.rank().rules();
+                    for (int i = 0; i < scannedByRule.length(); i++) {
+                        if ((matched & 1L << i) != 0) {
+                            scannedByRule.incrementAndGet(i);
+                        }
+                    }
+                    walked(directory.entry());
+                } else {
+                    interrupted.add(directory);
+                }
+            } finally {
+                outstanding.decrementAndGet();
+            }
+        }
+
+        /**
+         * Формирует отчет о полноте обхода из оставшихся в очереди и прерванных директорий.
+         *
+         * @param complete Признак полного обхода.
+         * @return Отчет.
+         */
+        ScanCoverage coverage(boolean complete) {
+            List<Queued> pending = new ArrayList<>(interrupted);
+            queue.drainTo(pending);
+            Collections.sort(pending);
+            long[] pendingByRule = new long[scannedByRule.length()];
+            for (Queued directory : pending) {
+                for (int i = 0; i < pendingByRule.length; i++) {
+                    if ((directory.rank().rules() & 1L << i) != 0) {
+                        pendingByRule[i]++;
+                    }
+                }
+            }
+            List<ScanCoverage.Rule> byRule = new ArrayList<>(pendingByRule.length);
+            for (int i = 0; i < pendingByRule.length; i++) {
+                byRule.add(new ScanCoverage.Rule(rules.ruleNames().get(i), scannedByRule.get(i), pendingByRule[i]));
+            }
+            List<Path> paths = new ArrayList<>();
+            for (Queued directory : pending.subList(0, Math.min(pending.size(), ScanCoverage.PENDING_LIMIT))) {
+                paths.add(directory.entry().path());
+            }
+            return new ScanCoverage(complete && pending.isEmpty(), TimeUnit.NANOSECONDS.toMillis(timeBudgetNanos),
+                    metrics.getElapsedMillis(), scanned.get(), pending.size(), List.copyOf(byRule),
+                    List.copyOf(paths));
+        }
+    }
+
+    /**
+     * Возвращает содержимое директории вместе с атрибутами элементов
+     * или {@code null}, если директорию нельзя прочитать.
+     * Элементы, атрибуты которых не читаются (например, битые символические ссылки), пропускаются,
+     * как и элементы, отброшенные правилами отбора или правилом обработки ссылок,
+     * и повторные пути к уже встреченным директориям и файлам.
+     *
+     * @param parent Директория.
+     * @return Содержимое директории или {@code null}.
+     */
+    private List<Entry> listDirectory(Entry parent) {
+        Path directory = parent.path();
+        List<Path> paths = new ArrayList<>();
+        long start = System.nanoTime();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                paths.add(path);
+            }
+        } catch (AccessDeniedException e) {
+            ScanLog.events.debug("Insufficient permissions to read the directory: {}", directory);
+            metrics.errorOccurred();
+            abandoned(parent);
+            return null;
+        } catch (IOException | DirectoryIteratorException e) {
+            ScanLog.events.debug("Error listing the directory: {}", directory);
+            metrics.errorOccurred();
+            abandoned(parent);
+            return null;
+        }
+        metrics.directoryListed(start);
+        metrics.directoryVisited();
+
+        List<Entry> children = new ArrayList<>(paths.size());
+        for (Path path : paths) {
+            start = System.nanoTime();
+            BasicFileAttributes attr;
+            boolean link;
+            try {
+                attr = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                link = attr.isSymbolicLink();
+                if (link && symlinkPolicy != SymlinkPolicy.NEVER) {
+                    attr = Files.readAttributes(path, BasicFileAttributes.class);
+                }
+                metrics.attributesRead(start);
+            } catch (IOException e) {
+                // Элемент удален во время обхода или ссылается на несуществующий файл
+                continue;
+            }
+            if (link && (symlinkPolicy == SymlinkPolicy.NEVER
+                    || symlinkPolicy == SymlinkPolicy.FILES && attr.isDirectory())) {
+                metrics.entrySkipped();
+                continue;
+            }
+            FileKeySet.FileKey key = attr.isDirectory() || attr.isRegularFile() ? FileKeySet.FileKey.of(attr) : null;
+            Entry entry = new Entry(path, attr, parent.depth() + 1, link, key, parent);
+            if (rules != null && !accept(entry)) {
+                metrics.entrySkipped();
+            } else if (journal != null && attr.isDirectory() && journal.adopt(directory, path)) {
+                ScanLog.events.debug("The directory was checked before the scan was interrupted: {}", path);
+            } else if (firstVisit(entry)) {
+                children.add(entry);
+            }
+        }
+        if (journal != null) {
+            int subdirectories = 0;
+            int files = 0;
+            for (Entry entry : children) {
+                if (entry.attr().isDirectory()) {
+                    subdirectories++;
+                } else if (entry.attr().isRegularFile()) {
+                    files++;
+                }
+            }
+            journal.listed(directory, parent.parent() == null ? null : parent.parent().path(), subdirectories, files);
+        }
+        return children;
+    }
+
+    /**
+     * Отмечает в журнале окончание обхода содержимого директории.
+     * После отмены обход не отмечается, чтобы при продолжении директория была обойдена заново.
+     *
+     * @param directory Директория.
+     */
+    private void walked(Entry directory) {
+        if (journal != null && !cancelled) {
+            journal.release(directory.path());
+        }
+    }
+
+    /**
+     * Отмечает в журнале директорию, которую не удалось прочитать, как обойденную часть родительской.
+     *
+     * @param directory Директория.
+     */
+    private void abandoned(Entry directory) {
+        if (journal != null && !cancelled && directory.parent() != null) {
+            journal.release(directory.parent().path());
+        }
+    }
+
+    /**
+     * Запоминает директорию или файл как посещенные.
+     * Для повторного пути к директории (цикл из ссылок или повторное монтирование) обход не продолжается;
+     * повторный путь к найденному файлу публикуется без повторного чтения, а повторный путь к файлу,
+     * проверка которого еще не закончена, запоминается до ее окончания. Если запомненных путей
+     * {@link #visitedLimit столько же}, сколько допускает множество посещенных, путь читается заново.
+     * Символическая ссылка на проверенный файл, который не был запомнен, также читается заново,
+     * как и любой повторный путь после того, как найденные файлы перестали запоминаться.
+     *
+     * @param entry Элемент директории.
+     * @return {@code true}, если элемент встречен впервые, его ключ неизвестен или его нужно прочитать заново.
+     */
+    private boolean firstVisit(Entry entry) {
+        FileKeySet.FileKey key = entry.key();
+        if (key == null) {
+            return true;
+        }
+        if (entry.attr().isDirectory()) {
+            boolean loop = (visited == null || visited.isSaturated()) && isAncestor(entry);
+            if (loop || visited != null && !visited.add(key)) {
+                ScanLog.events.debug("The directory has already been visited: {}", entry.path());
+                metrics.aliasFound();
+                return false;
+            }
+            return true;
+        }
+        if (visited == null) {
+            return true;
+        }
+        if (visited.add(key)) {
+            aliases.putIfAbsent(key, NO_ALIASES);
+            return true;
+        }
+        if (pendingAliases.incrementAndGet() > visitedLimit) {
+            pendingAliases.decrementAndGet();
+            aliasesSaturated = true;
+            return true;
+        }
+        Alias alias = new Alias(entry.path(), entry.link());
+        // Запись файла удаляется по окончании проверки, поэтому путь либо попадает в список,
+        // либо файл уже проверен и запись о найденном файле доступна
+        if (aliases.computeIfPresent(key, (k, pending) -> withAlias(pending, alias)) == null) {
+            pendingAliases.decrementAndGet();
+            ScanHit hit = hitsByKey.get(key);
+            if (hit != null) {
+                publish(hit.aliasAt(alias.path(), alias.symbolicLink()));
+            } else if (entry.link() || hitsSaturated) {
+                // Файл мог быть найден, но не запомнен
+                return true;
+            }
+        }
+        metrics.aliasFound();
+        return false;
+    }
+
+    /**
+     * Добавляет путь в список других путей к файлу.
+     *
+     * @param pending Список путей или {@link #NO_ALIASES}.
+     * @param alias   Путь к файлу.
+     * @return Список с добавленным путем.
+     */
+    private static List<Alias> withAlias(List<Alias> pending, Alias alias) {
+        List<Alias> list = pending == NO_ALIASES ? new ArrayList<>() : pending;
+        list.add(alias);
+        return list;
+    }
+
+    /**
+     * Проверяет, совпадает ли директория с одной из директорий, в которых она находится.
+     *
+     * @param entry Директория.
+     * @return {@code true}, если директория — собственный предок (цикл из ссылок).
+     */
+    private static boolean isAncestor(Entry entry) {
+        for (Entry ancestor = entry.parent(); ancestor != null; ancestor = ancestor.parent()) {
+            if (entry.key().equals(ancestor.key())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Проверяет элемент директории по правилам отбора.
+     *
+     * @param entry Элемент директории.
+     * @return {@code true}, если поддиректорию нужно обойти или файл нужно проверить.
+     */
+    private boolean accept(Entry entry) {
+        if (entry.attr().isDirectory()) {
+            return rules.acceptDirectory(entry.path(), entry.depth());
+        }
+        if (entry.attr().isRegularFile()) {
+            return rules.acceptFile(entry.path(), entry.attr(), entry.depth());
+        }
+        return true;
+    }
+
+    /**
+     * Проверяет все файлы директории через {@link IoScheduler} и публикует найденные.
+     *
+     * @param children Содержимое директории.
+     * @return Остальные элементы директории (поддиректории и специальные файлы).
+     */
+    private List<Entry> analyzeBatch(List<Entry> children) {
+        List<Entry> regular = new ArrayList<>();
+        List<Entry> other = new ArrayList<>();
+        for (Entry entry : children) {
+            (entry.attr().isRegularFile() ? regular : other).add(entry);
+        }
+        if (!regular.isEmpty() && !cancelled) {
+            try {
+                for (ScanHit hit : scheduler.inspect(regular, Entry::key,
+                        entry -> cancelled ? null : route(entry, inspectFile(entry)))) {
+                    publish(hit);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancelled = true;
+            }
+        }
+        return other;
+    }
+
+    /**
+     * Проверяет файл и публикует запись о нем, если сигнатура найдена.
+     *
+     * @param entry Файл для анализа с атрибутами из обхода.
+     */
+    private void analyzeFile(Entry entry) {
+        ScanHit hit = route(entry, inspectFile(entry));
+        if (hit != null) {
+            publish(hit);
+        }
+    }
+
+    /**
+     * Проверяет файл и учитывает его в счетчиках.
+     * Права на чтение отдельно не проверяются: отказ в доступе обнаруживается при открытии файла.
+     *
+     * @param entry Файл для анализа с атрибутами из обхода.
+     * @return Запись о найденном файле или {@code null}, если сигнатура не найдена или файл не прочитан.
+     */
+    private ScanHit inspectFile(Entry entry) {
+        metrics.fileChecked();
+        try {
+            ScanHit hit = inspector.inspect(entry.path(), entry.attr());
+            return hit != null && entry.link() ? hit.withSymbolicLink(true) : hit;
+        } catch (AccessDeniedException e) {
+            ScanLog.events.debug("Access to the file is denied: {}", entry.path());
+        } catch (IOException e) {
+            ScanLog.error("Error reading the file: {}", entry.path().toFile(), e);
+        } catch (RuntimeException e) {
+            ScanLog.error("Error analyzing the file: {}", entry.path().toFile(), e);
+        }
+        metrics.errorOccurred();
+        return null;
+    }
+
+    /**
+     * Определяет дальнейшую обработку найденного файла: файл, совпавший с сигнатурой заголовка,
+     * при включенной проверке структуры откладывается до проверки, остальные публикуются сразу.
+     *
+     * @param entry Файл с атрибутами из обхода.
+     * @param hit   Запись о файле или {@code null}.
+     * @return Запись для немедленной публикации или {@code null}.
+     */
+    private ScanHit route(Entry entry, ScanHit hit) {
+        if (hit == null) {
+            inspected(entry, null);
+            return null;
+        }
+        if (verifier != null && !hit.types().isEmpty()) {
+            if (journal != null) {
+                journal.deferred(entry.parent().path());
+            }
+            verifyLater(new Candidate(entry, hit));
+            return null;
+        }
+        hit = analyze(entry, hit, hit);
+        inspected(entry, hit);
+        return hit;
+    }
+
+    /**
+     * Анализирует энтропию найденного файла, если анализ включен, и сохраняет результат анализа в индексе
+     * вместе с записью, полученной при чтении заголовка.
+     *
+     * @param entry   Файл с атрибутами из обхода.
+     * @param hit     Запись о файле.
+     * @param indexed Запись о файле, сохраненная в индексе при чтении заголовка.
+     * @return Запись с результатом анализа или та же запись.
+     */
+    private ScanHit analyze(Entry entry, ScanHit hit, ScanHit indexed) {
+        if (!analyzeEntropy) {
+            return hit;
+        }
+        ScanHit analyzed = EntropyAnalyzer.analyze(hit, metrics);
+        if (analyzed != hit && index != null) {
+            index.record(entry.path(), entry.attr(), indexed.withEntropy(analyzed.entropy()));
+        }
+        return analyzed;
+    }
+
+    /**
+     * Отмечает окончание проверки файла. Найденный файл запоминается по ключу, если другие пути к нему
+     * уже встречены или еще могут встретиться, чтобы публиковать записи о них; другие пути к файлу
+     * без совпадений отбрасываются.
+     *
+     * @param entry Файл с атрибутами из обхода.
+     * @param hit   Запись о файле или {@code null}, если файл не найден.
+     */
+    private void inspected(Entry entry, ScanHit hit) {
+        if (visited == null || entry.key() == null) {
+            return;
+        }
+        if (hit != null) {
+            // Файл запоминается до удаления записи, чтобы пути, встреченные после нее, нашли его
+            boolean retained = mayHaveAliases(entry) && retain();
+            if (retained) {
+                hitsByKey.put(entry.key(), hit);
+            }
+            // Пути, встреченные во время проверки, публикуются после обхода
+            if (!aliases.remove(entry.key(), NO_ALIASES) && !retained) {
+                hitsByKey.put(entry.key(), hit);
+            }
+            return;
+        }
+        List<Alias> dropped = aliases.remove(entry.key());
+        if (dropped != null) {
+            pendingAliases.addAndGet(-dropped.size());
+        }
+    }
+
+    /**
+     * Проверяет, могут ли к файлу вести другие пути: у файла несколько жестких ссылок
+     * (или их количество неизвестно), либо он прочитан по символической ссылке.
+     *
+     * @param entry Файл с атрибутами из обхода.
+     * @return {@code true}, если файл нужно запомнить.
+     */
+    private static boolean mayHaveAliases(Entry entry) {
+        if (entry.link()) {
+            return true;
+        }
+        try {
+            return (Integer) Files.getAttribute(entry.path(), "unix:nlink", LinkOption.NOFOLLOW_LINKS) != 1;
+        } catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Учитывает запомненный найденный файл, если их меньше {@link #visitedLimit}.
+     *
+     * @return {@code true}, если файл можно запомнить.
+     */
+    private boolean retain() {
+        if (retainedHits.incrementAndGet() > visitedLimit) {
+            retainedHits.decrementAndGet();
+            hitsSaturated = true;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Создает пул проверки структуры. Очередь пула ограничена: если проверка не успевает,
+     * пакет проверяется в потоке обхода, что замедляет обход вместо накопления файлов в памяти.
+     *
+     * @return Пул проверки.
+     */
+    private ThreadPoolExecutor createVerifier() {
+        int threads = Math.max(1, (parallelism + 1) / 2);
+        AtomicInteger number = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 2), runnable -> {
+            Thread thread = new Thread(runnable, "scan-verify-" + number.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Добавляет файл в пакет проверки структуры и передает заполненный пакет пулу.
+     *
+     * @param candidate Файл, ожидающий проверки.
+     */
+    private void verifyLater(Candidate candidate) {
+        List<Candidate> batch = null;
+        synchronized (pendingLock) {
+            pending.add(candidate);
+            if (pending.size() >= VERIFY_BATCH) {
+                batch = pending;
+                pending = new ArrayList<>();
+            }
+        }
+        if (batch != null) {
+            List<Candidate> submitted = batch;
+            verifier.execute(() -> verifyBatch(submitted));
+        }
+    }
+
+    /**
+     * Передает пулу неполный последний пакет и ожидает окончания проверки.
+     *
+     * @throws RuntimeException Если обработчик найденных файлов завершился с ошибкой в пуле проверки.
+     */
+    private void finishVerification() {
+        if (verifier == null) {
+            return;
+        }
+        List<Candidate> batch;
+        synchronized (pendingLock) {
+            batch = pending;
+            pending = new ArrayList<>();
+        }
+        if (!batch.isEmpty()) {
+            verifier.execute(() -> verifyBatch(batch));
+        }
+        verifier.shutdown();
+        try {
+            verifier.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelled = true;
+        }
+        RuntimeException failure = verifierFailure.get();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Проверяет структуру файлов пакета и публикует подтвержденные.
+     *
+     * @param batch Пакет файлов.
+     */
+    private void verifyBatch(List<Candidate> batch) {
+        try {
+            for (Candidate candidate : batch) {
+                // По истечении времени уже прочитанные файлы проверяются, чтобы не потерять найденное
+                if (cancelled && !expired) {
+                    return;
+                }
+                ScanHit hit = verify(candidate);
+                inspected(candidate.entry(), hit);
+                if (hit != null) {
+                    publish(hit);
+                }
+                walked(candidate.entry().parent());
+            }
+        } catch (RuntimeException e) {
+            verifierFailure.compareAndSet(null, e);
+            cancelled = true;
+        }
+    }
+
+    /**
+     * Проверяет структуру заголовка файла и анализирует энтропию подтвержденного файла.
+     * Результат проверки не сохраняется в индексе: версия индекса не зависит от проверки структуры,
+     * поэтому в нем остается запись о совпадении заголовка, а файл проверяется заново при каждом
+     * сканировании с проверкой.
+     *
+     * @param candidate Файл, ожидающий проверки.
+     * @return Запись для публикации или {@code null}.
+     */
+    private ScanHit verify(Candidate candidate) {
+        ScanHit hit = StructureVerifier.confirm(candidate.hit(), metrics);
+        return hit == null ? null : analyze(candidate.entry(), hit, candidate.hit());
+    }
+
+    /**
+     * Публикует записи о других путях к найденным файлам, встреченных до проверки самих файлов.
+     */
+    private void publishAliases() {
+        for (Map.Entry<FileKeySet.FileKey, List<Alias>> entry : aliases.entrySet()) {
+            ScanHit hit = hitsByKey.get(entry.getKey());
+            if (hit != null) {
+                for (Alias alias : entry.getValue()) {
+                    publish(hit.aliasAt(alias.path(), alias.symbolicLink()));
+                }
+            }
+        }
+        aliases.clear();
+        pendingAliases.set(0);
+        hitsByKey.clear();
+        retainedHits.set(0);
+    }
+
+    /**
+     * Восстанавливает из журнала счетчики и найденные файлы прерванного сканирования.
+     *
+     * @throws UncheckedIOException Если журнал не удалось прочитать.
+     */
+    private void restore() {
+        metrics.restored(journal.getRestoredDirectories(), journal.getRestoredFiles());
+        try {
+            journal.replay(this::deliver);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (journal.isResumed()) {
+            logger.info("Scan of {} resumed: {} directories, {} files and {} hits restored", root,
+                    journal.getRestoredDirectories(), journal.getRestoredFiles(), journal.getRestoredHits());
+        }
+    }
+
+    /**
+     * Удаляет журнал после успешного окончания сканирования или сбрасывает его на диск,
+     * если сканирование прервано.
+     *
+     * @param finished Признак окончания обхода без отмены.
+     */
+    private void finishJournal(boolean finished) {
+        if (!finished) {
+            journal.checkpoint();
+            return;
+        }
+        try {
+            journal.complete();
+        } catch (IOException e) {
+            logger.warn("Failed to delete the scan journal {}", journal.getFile(), e);
+        }
+    }
+
+    /**
+     * Записывает найденный файл в журнал и передает его обработчику и подписчикам.
+     *
+     * @param hit Найденный файл.
+     */
+    private void publish(ScanHit hit) {
+        if (journal != null) {
+            journal.hitFound(hit);
+        }
+        deliver(hit);
+    }
+
+    /**
+     * Передает найденный файл обработчику и подписчикам.
+     * Если буфер подписчика заполнен, метод ожидает освобождения места.
+     *
+     * @param hit Найденный файл.
+     */
+    private void deliver(ScanHit hit) {
+        metrics.hitFound();
+        if (hitListener != null) {
+            hitListener.accept(hit);
+        }
+        SubmissionPublisher<ScanHit> current;
+        synchronized (this) {
+            current = publisher;
+        }
+        if (current != null) {
+            current.submit(hit);
+        }
+    }
+
+    /**
+     * Завершает публикацию найденных файлов.
+     *
+     * @param error Ошибка, прервавшая сканирование, или {@code null}.
+     */
+    private synchronized void closePublisher(Throwable error) {
+        if (publisher != null) {
+            if (error == null) {
+                publisher.close();
+            } else {
+                publisher.closeExceptionally(error);
+            }
+        }
+    }
+
+    /**
+     * Проверяет, что сессия еще не запущена.
+     *
+     * @throws IllegalStateException Если сессия уже запущена.
+     */
+    private void checkNotStarted() {
+        if (started.get()) {
+            throw new IllegalStateException("The scan session has already been started");
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package project.signature;
+
+/**
+ * Итоговое состояние сканирования директории.
+ */
+public enum ScanStatus {
+    /**
+     * Сканирование завершено.
+     */
+    OK("OK"),
+    /**
+     * Выбранная директория пустая.
+     */
+    EMPTY("Пустая папка"),
+    /**
+     * Недостаточно прав для чтения выбранной директории.
+     */
+    ACCESS_DENIED("Недостаточно прав для чтения"),
+    /**
+     * Директория не существует или не является директорией.
+     */
+    INVALID_DIRECTORY("Директория некорректная"),
+    /**
+     * Сканирование отменено до завершения.
+     */
+    CANCELLED("Сканирование отменено"),
+    /**
+     * Сканирование остановлено по истечении отведенного времени (см. {@link ScanSession#setTimeBudget}).
+     */
+    TIME_LIMIT("Время сканирования истекло");
+
+    /**
+     * Сообщение для пользователя (совпадает со значениями {@link DirScanner#getString()}).
+     */
+    private final String message;
+
+    ScanStatus(String message) {
+        this.message = message;
+    }
+
+    /**
+     * Возвращает сообщение для пользователя.
+     *
+     * @return Строка с результатом сканирования.
+     */
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,16 @@
+package project.signature;
+
+/**
+ * Итоги сканирования директории.
+ *
+ * @param status        Итоговое состояние сканирования.
+ * @param directories   Количество просмотренных директорий.
+ * @param files         Количество проверенных файлов.
+ * @param hits          Количество найденных файлов с совпадающей сигнатурой.
+ * @param errors        Количество файлов и директорий, которые не удалось прочитать.
+ * @param bytesRead     Количество байт, прочитанных из файлов.
+ * @param elapsedMillis Длительность сканирования в миллисекундах.
+ */
+public record ScanSummary(ScanStatus status, long directories, long files, long hits, long errors,
+                          long bytesRead, long elapsedMillis) {
+}
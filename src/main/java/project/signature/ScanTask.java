@@ -0,0 +1,199 @@
+package project.signature;
+
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyLongProperty;
+import javafx.beans.property.ReadOnlyLongWrapper;
+import javafx.concurrent.Task;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Класс ScanTask выполняет {@link ScanSession} в фоновом потоке JavaFX.
+ * Найденные файлы записываются в {@link HitStore} на диске, а количество найденных файлов и сообщение
+ * о ходе сканирования (файлов в секунду, прочитано байт, найдено файлов) передаются в поток JavaFX
+ * не чаще одного раза за {@link #UPDATE_INTERVAL_MILLIS}, поэтому ни интерфейс, ни объем памяти
+ * не зависят от количества найденных файлов: интерфейс читает из хранилища только отображаемую страницу.
+ * Отмена задачи ({@link #cancel()}) отменяет сессию сканирования.
+ * <p>
+ * Состояние задачи меняется на {@code CANCELLED} сразу при отмене, а потоки сессии еще проверяют
+ * текущие файлы и пишут в хранилище и журнал. Поэтому хранилище и журнал закрываются по
+ * {@link #whenFinished(Runnable) окончанию} задачи, а не по изменению ее состояния.
+ */
+public class ScanTask extends Task<ScanSummary> {
+
+    private static final Logger logger = LogManager.getLogger(ScanTask.class);
+
+    /**
+     * Интервал обновления интерфейса в миллисекундах.
+     */
+    static final long UPDATE_INTERVAL_MILLIS = 250;
+
+    /**
+     * Сессия сканирования.
+     */
+    private final ScanSession session;
+
+    /**
+     * Хранилище найденных файлов.
+     */
+    private final HitStore hits;
+
+    /**
+     * Количество найденных файлов, переданное в поток JavaFX.
+     */
+    private final ReadOnlyLongWrapper hitCount = new ReadOnlyLongWrapper();
+
+    /**
+     * Признак того, что задача начала выполняться или отменена до начала.
+     */
+    private final AtomicBoolean started = new AtomicBoolean();
+
+    /**
+     * Завершается, когда сессия сканирования закончила работу или задача отменена до начала.
+     */
+    private final CompletableFuture<Void> finished = new CompletableFuture<>();
+
+    /**
+     * Создает задачу для сессии сканирования. Сессия не должна быть запущена.
+     *
+     * @param session Сессия сканирования.
+     * @param hits    Хранилище, в которое записываются найденные файлы; закрывается вызывающей стороной.
+     */
+    public ScanTask(ScanSession session, HitStore hits) {
+        this.session = session;
+        this.hits = hits;
+        session.setHitListener(hits::add);
+    }
+
+    /**
+     * Возвращает хранилище найденных файлов, пополняемое по ходу сканирования.
+     *
+     * @return Хранилище найденных файлов.
+     */
+    public HitStore getHits() {
+        return hits;
+    }
+
+    /**
+     * Возвращает количество найденных файлов, обновляемое в потоке JavaFX по ходу сканирования.
+     *
+     * @return Количество найденных файлов в хранилище.
+     */
+    public ReadOnlyLongProperty hitCountProperty() {
+        return hitCount.getReadOnlyProperty();
+    }
+
+    /**
+     * Возвращает сессию сканирования.
+     *
+     * @return Сессия сканирования.
+     */
+    public ScanSession getSession() {
+        return session;
+    }
+
+    /**
+     * Выполняет действие в потоке JavaFX после окончания задачи: сессия сканирования вернула итоги
+     * или завершилась с ошибкой, либо задача отменена до начала. Если задача уже закончилась,
+     * действие выполняется сразу.
+     *
+     * @param action Действие.
+     */
+    public void whenFinished(Runnable action) {
+        finished.thenRun(() -> Platform.runLater(action));
+    }
+
+    /**
+     * Проверяет, закончилась ли задача (см. {@link #whenFinished(Runnable)}).
+     *
+     * @return {@code true}, если сессия сканирования больше не пишет в хранилище и журнал.
+     */
+    public boolean isFinished() {
+        return finished.isDone();
+    }
+
+    @Override
+    protected ScanSummary call() throws Exception {
+        if (!started.compareAndSet(false, true)) {
+            return null;
+        }
+        try {
+            return scan();
+        } finally {
+            finished.complete(null);
+        }
+    }
+
+    /**
+     * Выполняет сессию сканирования, передавая ход сканирования в поток JavaFX, и сохраняет индекс.
+     *
+     * @return Итоги сканирования.
+     * @throws Exception Если сессия завершилась с ошибкой.
+     */
+    private ScanSummary scan() throws Exception {
+        long startTime = System.nanoTime();
+        CompletableFuture<ScanSummary> result = session.start();
+        ScanSummary summary = null;
+        while (summary == null) {
+            if (isCancelled()) {
+                session.cancel();
+            }
+            try {
+                summary = result.get(UPDATE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                publishProgress(startTime);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+        publishProgress(startTime);
+
+        ScanIndex index = session.getIndex();
+        if (index != null && summary.status() == ScanStatus.OK) {
+            index.prune(session.getRoot().toPath());
+            try {
+                index.save();
+            } catch (IOException e) {
+                logger.error("Failed to save the scan index", e);
+            }
+        }
+        return summary;
+    }
+
+    @Override
+    protected void cancelled() {
+        session.cancel();
+        if (started.compareAndSet(false, true)) {
+            // Задача отменена до начала, и сессия не запускалась
+            finished.complete(null);
+        }
+    }
+
+    /**
+     * Передает количество найденных файлов и сообщение о ходе сканирования в поток JavaFX.
+     *
+     * @param startTime Время начала сканирования в наносекундах.
+     */
+    private void publishProgress(long startTime) {
+        long count = hits.size();
+        if (count != hitCount.get()) {
+            Platform.runLater(() -> hitCount.set(count));
+        }
+
+        double seconds = Math.max((System.nanoTime() - startTime) / 1e9, 1e-3);
+        long files = session.getFileCount();
+        updateMessage(String.format("Проверено файлов: %d (%.0f в секунду), прочитано: %d байт, найдено: %d",
+                files, files / seconds, session.getBytesRead(), session.getHitCount()));
+    }
+}
@@ -0,0 +1,326 @@
+package project.signature;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Класс ScanWorker — процесс-исполнитель распределенного сканирования.
+ * Исполнитель подключается к {@link ScanCoordinator}, получает от него настройки и набор сигнатур,
+ * а затем по одной обрабатывает единицы работы (поддиректории), передавая найденные файлы
+ * и итоги каждой единицы обратно координатору. Исполнитель завершается по команде координатора
+ * или при разрыве соединения.
+ * <p>
+ * Запуск на другом узле: {@code java -cp <classpath> project.signature.ScanWorker <host> <port> [threads]};
+ * токен доступа координатора передается в переменной окружения {@value ShardProtocol#TOKEN_ENV}.
+ * Пути к директориям передаются как есть, поэтому на всех узлах сканируемый том должен быть
+ * смонтирован по одному и тому же пути.
+ */
+public final class ScanWorker {
+
+    private static final Logger logger = LogManager.getLogger(ScanWorker.class);
+
+    /**
+     * Время ожидания подключения к координатору в миллисекундах.
+     */
+    static final int CONNECT_TIMEOUT_MILLIS = 10_000;
+
+    /**
+     * Адрес координатора.
+     */
+    private final String host;
+
+    /**
+     * Порт координатора.
+     */
+    private final int port;
+
+    /**
+     * Количество потоков обхода внутри одной единицы работы.
+     */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Признак глубокого сканирования, полученный от координатора.
+     */
+    private boolean deepScan;
+
+    /**
+     * Глубина проверки архивов, полученная от координатора.
+     */
+    private int archiveDepth;
+
+    /**
+     * Количество одновременных чтений с одного устройства, полученное от координатора; 0 — без упорядочивания.
+     */
+    private int ioConcurrency;
+
+    /**
+     * Признак проверки структуры заголовков, полученный от координатора.
+     */
+    private boolean verifyStructure;
+
+    /**
+     * Признак анализа энтропии, полученный от координатора.
+     */
+    private boolean analyzeEntropy;
+
+    /**
+     * Токен доступа к координатору.
+     */
+    private String token;
+
+    /**
+     * Создает исполнителя.
+     *
+     * @param host Адрес координатора.
+     * @param port Порт координатора.
+     */
+    public ScanWorker(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Точка входа процесса-исполнителя.
+     *
+     * @param args Адрес и порт координатора, необязательно — количество потоков обхода.
+     */
+    public static void main(String[] args) {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: ScanWorker <host> <port> [threads]");
+            System.exit(ScanCli.EXIT_ERROR);
+        }
+        String token = System.getenv(ShardProtocol.TOKEN_ENV);
+        if (token == null || token.isEmpty()) {
+            System.err.println("The access token must be set in the " + ShardProtocol.TOKEN_ENV
+                    + " environment variable");
+            System.exit(ScanCli.EXIT_ERROR);
+        }
+        try {
+            ScanWorker worker = new ScanWorker(args[0], Integer.parseInt(args[1]));
+            worker.setToken(token);
+            if (args.length == 3) {
+                worker.setParallelism(Integer.parseInt(args[2]));
+            }
+            worker.run();
+        } catch (IOException | IllegalArgumentException e) {
+            logger.error("Scan worker failed: {}", e.getMessage());
+            System.exit(ScanCli.EXIT_ERROR);
+        }
+        System.exit(ScanCli.EXIT_CLEAN);
+    }
+
+    /**
+     * Устанавливает количество потоков обхода внутри одной единицы работы.
+     *
+     * @param parallelism Количество потоков.
+     * @throws IllegalArgumentException Если {@code parallelism} меньше 1.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Устанавливает токен доступа к координатору (см. {@link ScanCoordinator#getToken()}).
+     *
+     * @param token Токен доступа.
+     * @throws IllegalArgumentException Если токен пустой.
+     */
+    public void setToken(String token) {
+        if (token.isEmpty()) {
+            throw new IllegalArgumentException("The access token is empty");
+        }
+        this.token = token;
+    }
+
+    /**
+     * Подключается к координатору и обрабатывает единицы работы до команды завершения.
+     *
+     * @return Количество обработанных единиц.
+     * @throws IOException           Если соединение разорвано или координатор нарушил протокол.
+     * @throws IllegalStateException Если токен доступа не установлен.
+     */
+    public int run() throws IOException {
+        if (token == null) {
+            throw new IllegalStateException("The access token has not been set");
+        }
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            out.writeByte(ShardProtocol.HELLO);
+            out.writeInt(ShardProtocol.VERSION);
+            out.writeUTF(token);
+            out.writeUTF("pid " + ProcessHandle.current().pid());
+            out.flush();
+            configure(in);
+            logger.info("Scan worker connected to {}:{}", host, port);
+
+            int units = 0;
+            while (true) {
+                byte type = in.readByte();
+                if (type == ShardProtocol.STOP) {
+                    logger.info("Scan worker finished: {} units", units);
+                    return units;
+                }
+                if (type != ShardProtocol.UNIT) {
+                    throw new IOException("Unexpected message from the coordinator: " + type);
+                }
+                ShardProtocol.WorkUnit unit = ShardProtocol.readUnit(in);
+                ShardProtocol.UnitResult result = unit.recursive() ? scanTree(unit, out) : scanFiles(unit, out);
+                synchronized (out) {
+                    ShardProtocol.writeResult(out, result);
+                    out.flush();
+                }
+                units++;
+            }
+        }
+    }
+
+    /**
+     * Читает настройки сканирования и устанавливает полученный набор сигнатур.
+     *
+     * @param in Поток сообщений координатора.
+     * @throws IOException Если сообщение некорректно или версия протокола не совпадает.
+     */
+    private void configure(DataInputStream in) throws IOException {
+        if (in.readByte() != ShardProtocol.CONFIG) {
+            throw new IOException("The coordinator did not send the configuration");
+        }
+        int version = in.readInt();
+        if (version != ShardProtocol.VERSION) {
+            throw new IOException("Unsupported protocol version: " + version);
+        }
+        deepScan = in.readBoolean();
+        archiveDepth = in.readInt();
+        ioConcurrency = in.readInt();
+        verifyStructure = in.readBoolean();
+        analyzeEntropy = in.readBoolean();
+        Signature.replaceAll(ShardProtocol.readSignatures(in));
+    }
+
+    /**
+     * Обходит директорию единицы работы целиком с помощью {@link ScanSession}.
+     *
+     * @param unit Единица работы.
+     * @param out  Поток сообщений координатору.
+     * @return Итоги единицы.
+     * @throws IOException Если соединение с координатором разорвано.
+     */
+    private ShardProtocol.UnitResult scanTree(ShardProtocol.WorkUnit unit, DataOutputStream out) throws IOException {
+        ScanSession session = new ScanSession(unit.path().toFile());
+        session.setParallelism(parallelism);
+        session.setIoConcurrency(ioConcurrency);
+        session.setDeepScan(deepScan);
+        session.setArchiveDepth(archiveDepth);
+        session.setVerifyStructure(verifyStructure);
+        session.setAnalyzeEntropy(analyzeEntropy);
+        session.setHitListener(hit -> send(out, unit.id(), hit));
+        ScanSummary summary;
+        try {
+            summary = session.run();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        long errors = summary.errors();
+        if (summary.status() == ScanStatus.INVALID_DIRECTORY || summary.status() == ScanStatus.ACCESS_DENIED) {
+            // Директория удалена или стала недоступной после разбиения на единицы
+            errors++;
+        }
+        return new ShardProtocol.UnitResult(unit.id(), summary.directories(), summary.files(), errors,
+                summary.bytesRead());
+    }
+
+    /**
+     * Проверяет только файлы в самой директории единицы работы, не заходя в поддиректории.
+     *
+     * @param unit Единица работы.
+     * @param out  Поток сообщений координатору.
+     * @return Итоги единицы.
+     * @throws IOException Если соединение с координатором разорвано.
+     */
+    private ShardProtocol.UnitResult scanFiles(ShardProtocol.WorkUnit unit, DataOutputStream out)
+            throws IOException {
+        FileInspector inspector = new FileInspector(deepScan, archiveDepth, null,
+                new ScanMetrics(unit.path().toString()));
+        long directories = 0;
+        long files = 0;
+        long errors = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(unit.path())) {
+            directories++;
+            for (Path path : stream) {
+                BasicFileAttributes attr;
+                try {
+                    attr = Files.readAttributes(path, BasicFileAttributes.class);
+                } catch (IOException e) {
+                    // Элемент удален во время обхода или ссылается на несуществующий файл
+                    continue;
+                }
+                if (!attr.isRegularFile()) {
+                    continue;
+                }
+                files++;
+                ScanHit hit;
+                try {
+                    hit = inspector.inspect(path, attr);
+                } catch (IOException | RuntimeException e) {
+                    ScanLog.events.debug("Error reading the file: {}", path);
+                    errors++;
+                    continue;
+                }
+                if (hit != null && verifyStructure && !hit.types().isEmpty()) {
+                    hit = StructureVerifier.confirm(hit, inspector.getMetrics());
+                }
+                if (hit != null && analyzeEntropy) {
+                    hit = EntropyAnalyzer.analyze(hit, inspector.getMetrics());
+                }
+                if (hit != null) {
+                    synchronized (out) {
+                        ShardProtocol.writeHit(out, unit.id(), hit);
+                    }
+                }
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            ScanLog.events.debug("Error listing the directory: {}", unit.path());
+            errors++;
+        }
+        return new ShardProtocol.UnitResult(unit.id(), directories, files, errors, inspector.getBytesRead());
+    }
+
+    /**
+     * Передает найденный файл координатору.
+     *
+     * @param out  Поток сообщений координатору.
+     * @param unit Номер единицы работы.
+     * @param hit  Найденный файл.
+     * @throws UncheckedIOException Если соединение разорвано.
+     */
+    private static void send(DataOutputStream out, int unit, ScanHit hit) {
+        synchronized (out) {
+            try {
+                ShardProtocol.writeHit(out, unit, hit);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
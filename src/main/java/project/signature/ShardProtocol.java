@@ -0,0 +1,317 @@
+package project.signature;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Класс ShardProtocol описывает двоичный протокол между {@link ScanCoordinator} и {@link ScanWorker}.
+ * Каждое сообщение начинается с байта типа, за которым следуют поля в формате
+ * {@link DataOutput}; строки передаются в модифицированной UTF-8.
+ * <p>
+ * Координатор отправляет {@link #CONFIG} сразу после подключения исполнителя, затем
+ * по одному {@link #UNIT} и в конце {@link #STOP}. Исполнитель начинает с {@link #HELLO},
+ * передает найденные файлы единицы сообщениями {@link #HIT} и завершает ее сообщением {@link #DONE};
+ * оба сообщения начинаются с номера единицы, который проверяется координатором.
+ * <p>
+ * Исполнитель подтверждает право на подключение общим токеном доступа в {@link #HELLO}; исполнители
+ * на других узлах получают его из переменной окружения {@value #TOKEN_ENV}. Токен защищает только
+ * от подключения посторонних процессов: соединение не шифруется, и токен, пути и найденные файлы
+ * передаются открытым текстом, поэтому координатор с исполнителями на других узлах запускается
+ * только в доверенной сети.
+ */
+final class ShardProtocol {
+
+    /**
+     * Версия протокола; исполнитель другой версии отключается.
+     */
+    static final int VERSION = 5;
+
+    /**
+     * Переменная окружения с токеном доступа исполнителей к координатору.
+     */
+    static final String TOKEN_ENV = "SIGNATURE_SCAN_TOKEN";
+
+    /**
+     * Настройки сканирования и набор сигнатур: версия, глубокое сканирование, глубина архивов,
+     * количество одновременных чтений с устройства, проверка структуры заголовков, анализ энтропии, сигнатуры.
+     */
+    static final byte CONFIG = 1;
+
+    /**
+     * Единица работы: номер, путь к директории, признак рекурсивного обхода.
+     */
+    static final byte UNIT = 2;
+
+    /**
+     * Работа закончена, исполнитель должен завершиться.
+     */
+    static final byte STOP = 3;
+
+    /**
+     * Приветствие исполнителя: версия протокола, токен доступа и имя исполнителя.
+     */
+    static final byte HELLO = 10;
+
+    /**
+     * Найденный файл: номер единицы и запись {@link ScanHit}.
+     */
+    static final byte HIT = 11;
+
+    /**
+     * Единица обработана: номер и счетчики директорий, файлов, ошибок и прочитанных байт.
+     */
+    static final byte DONE = 12;
+
+    /**
+     * Единица работы — поддиректория одного из корней сканирования.
+     *
+     * @param id        Номер единицы.
+     * @param path      Путь к директории.
+     * @param recursive {@code true} — директория обходится целиком, {@code false} — проверяются
+     *                  только файлы в ней самой (поддиректории выделены в отдельные единицы).
+     */
+    record WorkUnit(int id, Path path, boolean recursive) {
+    }
+
+    /**
+     * Итоги обработки единицы работы.
+     *
+     * @param id          Номер единицы.
+     * @param directories Количество просмотренных директорий.
+     * @param files       Количество проверенных файлов.
+     * @param errors      Количество ошибок чтения.
+     * @param bytesRead   Количество прочитанных байт.
+     */
+    record UnitResult(int id, long directories, long files, long errors, long bytesRead) {
+    }
+
+    private ShardProtocol() {
+    }
+
+    /**
+     * Записывает единицу работы.
+     *
+     * @param out  Поток сообщений.
+     * @param unit Единица работы.
+     * @throws IOException Если запись не удалась.
+     */
+    static void writeUnit(DataOutput out, WorkUnit unit) throws IOException {
+        out.writeByte(UNIT);
+        out.writeInt(unit.id());
+        out.writeUTF(unit.path().toString());
+        out.writeBoolean(unit.recursive());
+    }
+
+    /**
+     * Читает единицу работы после байта типа.
+     *
+     * @param in Поток сообщений.
+     * @return Единица работы.
+     * @throws IOException Если чтение не удалось.
+     */
+    static WorkUnit readUnit(DataInput in) throws IOException {
+        return new WorkUnit(in.readInt(), Path.of(in.readUTF()), in.readBoolean());
+    }
+
+    /**
+     * Записывает итоги единицы работы.
+     *
+     * @param out    Поток сообщений.
+     * @param result Итоги единицы.
+     * @throws IOException Если запись не удалась.
+     */
+    static void writeResult(DataOutput out, UnitResult result) throws IOException {
+        out.writeByte(DONE);
+        out.writeInt(result.id());
+        out.writeLong(result.directories());
+        out.writeLong(result.files());
+        out.writeLong(result.errors());
+        out.writeLong(result.bytesRead());
+    }
+
+    /**
+     * Читает итоги единицы работы после байта типа и номера единицы.
+     *
+     * @param in Поток сообщений.
+     * @param id Номер единицы.
+     * @return Итоги единицы.
+     * @throws IOException Если чтение не удалось.
+     */
+    static UnitResult readResult(DataInput in, int id) throws IOException {
+        return new UnitResult(id, in.readLong(), in.readLong(), in.readLong(), in.readLong());
+    }
+
+    /**
+     * Записывает набор сигнатур.
+     *
+     * @param out     Поток сообщений.
+     * @param records Сигнатуры.
+     * @throws IOException Если запись не удалась.
+     */
+    static void writeSignatures(DataOutput out, List<SignatureRecord> records) throws IOException {
+        out.writeInt(records.size());
+        for (SignatureRecord record : records) {
+            out.writeUTF(record.name());
+            out.writeUTF(record.hex());
+            out.writeInt(record.offset());
+        }
+    }
+
+    /**
+     * Читает набор сигнатур.
+     *
+     * @param in Поток сообщений.
+     * @return Сигнатуры.
+     * @throws IOException Если чтение не удалось или сигнатура некорректна.
+     */
+    static List<SignatureRecord> readSignatures(DataInput in) throws IOException {
+        int count = in.readInt();
+        List<SignatureRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            try {
+                records.add(new SignatureRecord(in.readUTF(), in.readUTF(), in.readInt()));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid signature received: " + e.getMessage(), e);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Записывает найденный файл.
+     *
+     * @param out  Поток сообщений.
+     * @param unit Номер единицы работы.
+     * @param hit  Найденный файл.
+     * @throws IOException Если запись не удалась.
+     */
+    static void writeHit(DataOutput out, int unit, ScanHit hit) throws IOException {
+        out.writeByte(HIT);
+        out.writeInt(unit);
+        writeHitFields(out, hit);
+    }
+
+    /**
+     * Записывает поля найденного файла без типа сообщения; в том же формате файлы хранит {@link HitStore}.
+     *
+     * @param out Поток данных.
+     * @param hit Найденный файл.
+     * @throws IOException Если запись не удалась.
+     */
+    static void writeHitFields(DataOutput out, ScanHit hit) throws IOException {
+        out.writeUTF(hit.path().toString());
+        out.writeLong(hit.size());
+        out.writeLong(hit.createdNanos());
+        out.writeLong(hit.accessedNanos());
+        out.writeLong(hit.modifiedNanos());
+        out.writeBoolean(hit.symbolicLink());
+        out.writeInt(hit.types().size());
+        for (String type : hit.types()) {
+            out.writeUTF(type);
+        }
+        out.writeInt(hit.embedded().size());
+        for (DeepScanner.Match match : hit.embedded()) {
+            out.writeUTF(match.name());
+            out.writeLong(match.offset());
+        }
+        out.writeInt(hit.archived().size());
+        for (ArchiveScanner.Match match : hit.archived()) {
+            out.writeUTF(match.name());
+            out.writeUTF(match.entry());
+        }
+        out.writeBoolean(hit.aliasOf() != null);
+        if (hit.aliasOf() != null) {
+            out.writeUTF(hit.aliasOf().toString());
+        }
+        writeEntropy(out, hit.entropy());
+    }
+
+    /**
+     * Записывает результат анализа энтропии; в том же формате его хранит {@link ScanIndex}.
+     *
+     * @param out    Поток данных.
+     * @param report Результат анализа или {@code null}.
+     * @throws IOException Если запись не удалась.
+     */
+    static void writeEntropy(DataOutput out, EntropyAnalyzer.Report report) throws IOException {
+        out.writeBoolean(report != null);
+        if (report == null) {
+            return;
+        }
+        out.writeDouble(report.entropy());
+        out.writeDouble(report.maxWindowEntropy());
+        out.writeDouble(report.highEntropyShare());
+        out.writeInt(report.sections().size());
+        for (EntropyAnalyzer.Section section : report.sections()) {
+            out.writeUTF(section.name());
+            out.writeLong(section.offset());
+            out.writeLong(section.size());
+            out.writeBoolean(section.executable());
+            out.writeDouble(section.entropy());
+        }
+        out.writeBoolean(report.packed());
+        out.writeUTF(report.reason());
+    }
+
+    /**
+     * Читает результат анализа энтропии (поля {@link #writeEntropy}).
+     *
+     * @param in Поток данных.
+     * @return Результат анализа или {@code null}.
+     * @throws IOException Если чтение не удалось.
+     */
+    static EntropyAnalyzer.Report readEntropy(DataInput in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        double entropy = in.readDouble();
+        double maxWindow = in.readDouble();
+        double highShare = in.readDouble();
+        int count = in.readInt();
+        List<EntropyAnalyzer.Section> sections = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            sections.add(new EntropyAnalyzer.Section(in.readUTF(), in.readLong(), in.readLong(), in.readBoolean(),
+                    in.readDouble()));
+        }
+        return new EntropyAnalyzer.Report(entropy, maxWindow, highShare, List.copyOf(sections), in.readBoolean(),
+                in.readUTF());
+    }
+
+    /**
+     * Читает найденный файл после байта типа и номера единицы (поля {@link #writeHitFields}).
+     *
+     * @param in Поток сообщений.
+     * @return Найденный файл.
+     * @throws IOException Если чтение не удалось.
+     */
+    static ScanHit readHit(DataInput in) throws IOException {
+        Path path = Path.of(in.readUTF());
+        long size = in.readLong();
+        long created = in.readLong();
+        long accessed = in.readLong();
+        long modified = in.readLong();
+        boolean symbolicLink = in.readBoolean();
+        int count = in.readInt();
+        List<String> types = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            types.add(in.readUTF());
+        }
+        count = in.readInt();
+        List<DeepScanner.Match> embedded = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            embedded.add(new DeepScanner.Match(in.readUTF(), in.readLong()));
+        }
+        count = in.readInt();
+        List<ArchiveScanner.Match> archived = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            archived.add(new ArchiveScanner.Match(in.readUTF(), in.readUTF()));
+        }
+        Path aliasOf = in.readBoolean() ? Path.of(in.readUTF()) : null;
+        return new ScanHit(path, size, created, accessed, modified, symbolicLink,
+                List.copyOf(types), List.copyOf(embedded), List.copyOf(archived), aliasOf, readEntropy(in));
+    }
+}
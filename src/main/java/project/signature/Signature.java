@@ -1,11 +1,21 @@
 package project.signature;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * Класс Signature хранит и управляет коллекцией сигнатур файлов.
  * Сигнатура файла представляет собой последовательность байт в начале файла,
  * которая идентифицирует его тип или формат.
+ * Для проверки файлов коллекция компилируется в {@link SignatureMatcher}.
+ * Постоянное хранение сигнатур обеспечивает {@link SignatureStore}, загружающий их в эту коллекцию.
  */
 public class Signature {
     /**
@@ -15,7 +25,36 @@ public class Signature {
      */
     private static final HashMap<String, String> extensions = new HashMap<>();
 
+    /**
+     * Смещения сигнатур от начала файла в байтах.
+     * Ключ - расширение файла, значение - смещение (например, "tar" -> 257).
+     * Сигнатуры без записи в этой коллекции проверяются с начала файла.
+     */
+    private static final HashMap<String, Integer> offsets = new HashMap<>();
+
+    /**
+     * Скомпилированный набор сигнатур; {@code null}, если коллекция изменилась после последней компиляции.
+     */
+    private static volatile SignatureMatcher matcher;
+
+    /**
+     * Автомат для глубокого сканирования; {@code null}, если коллекция изменилась после последнего построения.
+     */
+    private static volatile SignatureAutomaton automaton;
+
+    /**
+     * Отпечаток текущего набора сигнатур; {@code null}, если коллекция изменилась после последнего вычисления.
+     */
+    private static volatile String fingerprint;
+
     static {
+        addDefaults();
+    }
+
+    /**
+     * Добавляет встроенные сигнатуры, доступные и без постоянного хранилища.
+     */
+    private static void addDefaults() {
         addSignature("exe", "4D5A");
     }
 
@@ -25,17 +64,187 @@ public class Signature {
      *
      * @param name      Расширение файла (например, "jpg").
      * @param extension Сигнатура файла в шестнадцатеричном формате (например, "FFD8").
+     * @throws IllegalArgumentException Если сигнатура не является корректной шестнадцатеричной строкой.
      */
     public static void addSignature(String name, String extension) {
+        addSignature(name, extension, 0);
+    }
+
+    /**
+     * Добавляет новую сигнатуру, расположенную на заданном смещении от начала файла.
+     * Если сигнатура для данного расширения уже существует, она будет перезаписана.
+     *
+     * @param name      Расширение файла (например, "tar").
+     * @param extension Сигнатура файла в шестнадцатеричном формате (например, "7573746172").
+     * @param offset    Смещение сигнатуры от начала файла в байтах (например, 257).
+     * @throws IllegalArgumentException Если сигнатура не является корректной шестнадцатеричной строкой
+     *                                  или смещение отрицательно.
+     */
+    public static synchronized void addSignature(String name, String extension, int offset) {
+        parseHex(extension);
+        if (offset < 0) {
+            throw new IllegalArgumentException("Negative signature offset: " + offset);
+        }
         extensions.put(name, extension);
+        if (offset == 0) {
+            offsets.remove(name);
+        } else {
+            offsets.put(name, offset);
+        }
+        matcher = null;
+        automaton = null;
+        fingerprint = null;
+    }
+
+    /**
+     * Заменяет коллекцию встроенными сигнатурами и сигнатурами из хранилища.
+     * Скомпилированный набор сбрасывается один раз для всей коллекции.
+     *
+     * @param records Сигнатуры из хранилища; при совпадении названий заменяют встроенные.
+     */
+    public static synchronized void replaceAll(Collection<SignatureRecord> records) {
+        extensions.clear();
+        offsets.clear();
+        addDefaults();
+        for (SignatureRecord record : records) {
+            extensions.put(record.name(), record.hex());
+            if (record.offset() == 0) {
+                offsets.remove(record.name());
+            } else {
+                offsets.put(record.name(), record.offset());
+            }
+        }
+        matcher = null;
+        automaton = null;
+        fingerprint = null;
+    }
+
+    /**
+     * Возвращает неизменяемый снимок всех зарегистрированных сигнатур файлов.
+     * Сигнатуры добавляются только через {@link #addSignature(String, String)},
+     * чтобы изменения попадали в {@link #getMatcher()}.
+     *
+     * @return Неизменяемый снимок сигнатур файлов по названиям.
+     */
+    public static synchronized Map<String, String> getExtensions() {
+        return Map.copyOf(extensions);
+    }
+
+    /**
+     * Возвращает снимок коллекции в виде записей хранилища, отсортированных по названию.
+     * Снимок используется для передачи текущего набора сигнатур в другие процессы
+     * (см. {@link ScanCoordinator}).
+     *
+     * @return Неизменяемый список записей.
+     */
+    public static synchronized List<SignatureRecord> getRecords() {
+        List<SignatureRecord> records = new ArrayList<>(extensions.size());
+        for (Map.Entry<String, String> entry : new TreeMap<>(extensions).entrySet()) {
+            records.add(new SignatureRecord(entry.getKey(), entry.getValue(), getOffset(entry.getKey())));
+        }
+        return List.copyOf(records);
+    }
+
+    /**
+     * Возвращает смещение сигнатуры от начала файла.
+     *
+     * @param name Расширение файла.
+     * @return Смещение в байтах; 0, если сигнатура проверяется с начала файла.
+     */
+    public static synchronized int getOffset(String name) {
+        return offsets.getOrDefault(name, 0);
+    }
+
+    /**
+     * Возвращает скомпилированный набор сигнатур.
+     * Набор компилируется заново только после изменения коллекции.
+     *
+     * @return Неизменяемый скомпилированный набор сигнатур.
+     */
+    public static SignatureMatcher getMatcher() {
+        SignatureMatcher current = matcher;
+        if (current == null) {
+            synchronized (Signature.class) {
+                current = matcher;
+                if (current == null) {
+                    current = SignatureMatcher.compile(extensions, offsets);
+                    matcher = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Возвращает автомат Ахо-Корасик для поиска сигнатур по всему содержимому файла.
+     * Автомат строится заново только после изменения коллекции.
+     *
+     * @return Неизменяемый автомат сигнатур.
+     */
+    public static SignatureAutomaton getAutomaton() {
+        SignatureAutomaton current = automaton;
+        if (current == null) {
+            synchronized (Signature.class) {
+                current = automaton;
+                if (current == null) {
+                    current = SignatureAutomaton.compile(extensions, offsets);
+                    automaton = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Возвращает отпечаток набора сигнатур — SHA-256 от отсортированных названий, байт и смещений.
+     * Отпечаток не зависит от порядка добавления сигнатур и регистра шестнадцатеричных цифр,
+     * поэтому может использоваться как версия набора между запусками приложения.
+     *
+     * @return Отпечаток в шестнадцатеричном формате.
+     */
+    public static synchronized String getFingerprint() {
+        if (fingerprint == null) {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                for (Map.Entry<String, String> entry : new TreeMap<>(extensions).entrySet()) {
+                    String line = entry.getKey() + "=" + entry.getValue().replace(" ", "").toUpperCase()
+                            + "@" + getOffset(entry.getKey()) + "\n";
+                    digest.update(line.getBytes(StandardCharsets.UTF_8));
+                }
+                StringBuilder hex = new StringBuilder();
+                for (byte b : digest.digest()) {
+                    hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+                }
+                fingerprint = hex.toString();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+        }
+        return fingerprint;
     }
 
     /**
-     * Возвращает HashMap, содержащий все зарегистрированные сигнатуры файлов.
+     * Преобразует шестнадцатеричную строку в массив байт.
+     * Регистр символов не учитывается, пробелы между байтами допускаются.
      *
-     * @return HashMap с сигнатурами файлов.
+     * @param hex Шестнадцатеричная строка (например, "4D5A" или "7F 45 4C 46").
+     * @return Массив байт.
+     * @throws IllegalArgumentException Если строка пустая, содержит нечетное число цифр или недопустимые символы.
      */
-    public static HashMap<String, String> getExtensions() {
-        return extensions;
+    static byte[] parseHex(String hex) {
+        String digits = hex == null ? "" : hex.replace(" ", "");
+        if (digits.isEmpty() || digits.length() % 2 != 0) {
+            throw new IllegalArgumentException("Invalid signature: " + hex);
+        }
+        byte[] bytes = new byte[digits.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(digits.charAt(2 * i), 16);
+            int low = Character.digit(digits.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Invalid signature: " + hex);
+            }
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return bytes;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,259 @@
+package project.signature;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Класс SignatureAutomaton — автомат Ахо-Корасик, построенный по набору сигнатур.
+ * В отличие от {@link SignatureMatcher}, который проверяет только заголовок файла,
+ * автомат находит все вхождения всех сигнатур в произвольном месте потока байт за один проход.
+ * Переходы хранятся в полной таблице на 256 значений байта, поэтому обработка одного байта —
+ * это одно чтение из массива. Экземпляр неизменяем и безопасен для использования из нескольких потоков.
+ */
+public final class SignatureAutomaton {
+
+    /**
+     * Начальное состояние автомата.
+     */
+    public static final int ROOT = 0;
+
+    /**
+     * Названия сигнатур; индекс в массиве является идентификатором сигнатуры.
+     */
+    private final String[] names;
+
+    /**
+     * Длины сигнатур в байтах.
+     */
+    private final int[] lengths;
+
+    /**
+     * Смещения сигнатур от начала вложенного объекта (например, 257 для "ustar").
+     */
+    private final int[] offsets;
+
+    /**
+     * Таблица переходов: {@code next[state * 256 + byte]} — следующее состояние.
+     */
+    private final int[] next;
+
+    /**
+     * Начало списка сигнатур, заканчивающихся в состоянии: сигнатуры состояния {@code s} находятся
+     * в {@link #outIds} с индекса {@code outStart[s]} до {@code outStart[s + 1]}.
+     */
+    private final int[] outStart;
+
+    /**
+     * Идентификаторы сигнатур, сгруппированные по состояниям (с учетом суффиксных ссылок).
+     */
+    private final int[] outIds;
+
+    private SignatureAutomaton(String[] names, int[] lengths, int[] offsets, int[] next,
+                               int[] outStart, int[] outIds) {
+        this.names = names;
+        this.lengths = lengths;
+        this.offsets = offsets;
+        this.next = next;
+        this.outStart = outStart;
+        this.outIds = outIds;
+    }
+
+    /**
+     * Строит автомат по набору сигнатур.
+     *
+     * @param signatures Сигнатуры: название -> байты в шестнадцатеричном формате.
+     * @param offsets    Смещения сигнатур; отсутствующее значение означает смещение 0.
+     * @return Построенный автомат.
+     * @throws IllegalArgumentException Если сигнатура не является корректной шестнадцатеричной строкой.
+     */
+    public static SignatureAutomaton compile(Map<String, String> signatures, Map<String, Integer> offsets) {
+        TreeMap<String, String> sorted = new TreeMap<>(signatures);
+        String[] names = sorted.keySet().toArray(new String[0]);
+        byte[][] patterns = new byte[names.length][];
+        int[] lengths = new int[names.length];
+        int[] patternOffsets = new int[names.length];
+        int maxStates = 1;
+        for (int i = 0; i < names.length; i++) {
+            patterns[i] = Signature.parseHex(sorted.get(names[i]));
+            lengths[i] = patterns[i].length;
+            patternOffsets[i] = offsets.getOrDefault(names[i], 0);
+            maxStates += patterns[i].length;
+        }
+
+        // Префиксное дерево; -1 означает отсутствие перехода до построения полной таблицы
+        int[] next = new int[maxStates * 256];
+        Arrays.fill(next, -1);
+        int[] ownOutput = new int[maxStates];
+        Arrays.fill(ownOutput, -1);
+        int[] chained = new int[names.length];
+        Arrays.fill(chained, -1);
+        int states = 1;
+        for (int id = 0; id < names.length; id++) {
+            int state = ROOT;
+            for (byte b : patterns[id]) {
+                int index = state * 256 + (b & 0xFF);
+                if (next[index] < 0) {
+                    next[index] = states++;
+                }
+                state = next[index];
+            }
+            // Несколько сигнатур с одинаковыми байтами образуют цепочку
+            chained[id] = ownOutput[state];
+            ownOutput[state] = id;
+        }
+
+        // Обход в ширину: суффиксные ссылки и достройка переходов до полной таблицы
+        int[] fail = new int[states];
+        int[] order = new int[states];
+        int ordered = 0;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int b = 0; b < 256; b++) {
+            int child = next[b];
+            if (child < 0) {
+                next[b] = ROOT;
+            } else {
+                fail[child] = ROOT;
+                queue.add(child);
+            }
+        }
+        order[ordered++] = ROOT;
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            order[ordered++] = state;
+            for (int b = 0; b < 256; b++) {
+                int index = state * 256 + b;
+                int child = next[index];
+                if (child < 0) {
+                    next[index] = next[fail[state] * 256 + b];
+                } else {
+                    fail[child] = next[fail[state] * 256 + b];
+                    queue.add(child);
+                }
+            }
+        }
+
+        // Выходы состояния — собственные сигнатуры и выходы по суффиксной ссылке
+        int[] outCount = new int[states];
+        for (int i = 0; i < ordered; i++) {
+            int state = order[i];
+            int count = state == ROOT ? 0 : outCount[fail[state]];
+            for (int id = ownOutput[state]; id >= 0; id = chained[id]) {
+                count++;
+            }
+            outCount[state] = count;
+        }
+        int[] outStart = new int[states + 1];
+        for (int state = 0; state < states; state++) {
+            outStart[state + 1] = outStart[state] + outCount[state];
+        }
+        int[] outIds = new int[outStart[states]];
+        for (int i = 0; i < ordered; i++) {
+            int state = order[i];
+            int position = outStart[state];
+            for (int id = ownOutput[state]; id >= 0; id = chained[id]) {
+                outIds[position++] = id;
+            }
+            if (state != ROOT) {
+                int suffix = fail[state];
+                for (int k = outStart[suffix]; k < outStart[suffix + 1]; k++) {
+                    outIds[position++] = outIds[k];
+                }
+            }
+        }
+
+        return new SignatureAutomaton(names, lengths, patternOffsets,
+                Arrays.copyOf(next, states * 256), outStart, outIds);
+    }
+
+    /**
+     * Выполняет переход автомата по одному байту.
+     *
+     * @param state Текущее состояние.
+     * @param b     Очередной байт.
+     * @return Следующее состояние.
+     */
+    public int step(int state, byte b) {
+        return next[state * 256 + (b & 0xFF)];
+    }
+
+    /**
+     * Проверяет, заканчивается ли в данном состоянии хотя бы одна сигнатура.
+     *
+     * @param state Состояние автомата.
+     * @return {@code true}, если состояние содержит найденные сигнатуры.
+     */
+    public boolean isMatch(int state) {
+        return outStart[state] != outStart[state + 1];
+    }
+
+    /**
+     * Возвращает индекс первой сигнатуры, заканчивающейся в состоянии, в общем списке выходов.
+     *
+     * @param state Состояние автомата.
+     * @return Начальный индекс для {@link #outputId(int)}.
+     */
+    public int outputStart(int state) {
+        return outStart[state];
+    }
+
+    /**
+     * Возвращает индекс, следующий за последней сигнатурой состояния.
+     *
+     * @param state Состояние автомата.
+     * @return Конечный индекс (не включительно) для {@link #outputId(int)}.
+     */
+    public int outputEnd(int state) {
+        return outStart[state + 1];
+    }
+
+    /**
+     * Возвращает идентификатор сигнатуры по индексу в общем списке выходов.
+     *
+     * @param index Индекс от {@link #outputStart(int)} до {@link #outputEnd(int)}.
+     * @return Идентификатор сигнатуры.
+     */
+    public int outputId(int index) {
+        return outIds[index];
+    }
+
+    /**
+     * Возвращает название сигнатуры по ее идентификатору.
+     *
+     * @param id Идентификатор сигнатуры.
+     * @return Название сигнатуры.
+     */
+    public String getName(int id) {
+        return names[id];
+    }
+
+    /**
+     * Возвращает длину сигнатуры в байтах.
+     *
+     * @param id Идентификатор сигнатуры.
+     * @return Длина сигнатуры.
+     */
+    public int getLength(int id) {
+        return lengths[id];
+    }
+
+    /**
+     * Возвращает смещение сигнатуры от начала объекта, который она идентифицирует.
+     *
+     * @param id Идентификатор сигнатуры.
+     * @return Смещение в байтах.
+     */
+    public int getOffset(int id) {
+        return offsets[id];
+    }
+
+    /**
+     * Возвращает количество сигнатур в автомате.
+     *
+     * @return Количество сигнатур.
+     */
+    public int size() {
+        return names.length;
+    }
+}
@@ -0,0 +1,230 @@
+package project.signature;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Класс SignatureMatcher — скомпилированное неизменяемое представление набора сигнатур.
+ * Сигнатуры группируются по смещению, и для каждого смещения строится префиксное дерево (trie)
+ * с таблицей переходов на 256 значений байта. Сопоставление заголовка файла выполняется
+ * за один проход по каждому дереву без выделения памяти, поэтому стоимость проверки
+ * зависит от длины сигнатур, а не от их количества.
+ * Экземпляр безопасен для использования из нескольких потоков.
+ */
+public final class SignatureMatcher {
+
+    /**
+     * Названия сигнатур; индекс в массиве является идентификатором сигнатуры.
+     */
+    private final String[] names;
+
+    /**
+     * Различные смещения сигнатур в порядке возрастания.
+     */
+    private final int[] offsets;
+
+    /**
+     * Корневой узел дерева для каждого смещения из {@link #offsets}.
+     */
+    private final int[] roots;
+
+    /**
+     * Таблица переходов: {@code next[node * 256 + byte]} — следующий узел или 0, если перехода нет.
+     */
+    private final int[] next;
+
+    /**
+     * Начало списка сигнатур, заканчивающихся в узле: сигнатуры узла {@code n} находятся
+     * в {@link #outIds} с индекса {@code outStart[n]} до {@code outStart[n + 1]}.
+     */
+    private final int[] outStart;
+
+    /**
+     * Идентификаторы сигнатур, сгруппированные по узлам.
+     */
+    private final int[] outIds;
+
+    /**
+     * Количество байт от начала файла, достаточное для проверки всех сигнатур.
+     */
+    private final int headerLength;
+
+    private SignatureMatcher(String[] names, int[] offsets, int[] roots, int[] next,
+                             int[] outStart, int[] outIds, int headerLength) {
+        this.names = names;
+        this.offsets = offsets;
+        this.roots = roots;
+        this.next = next;
+        this.outStart = outStart;
+        this.outIds = outIds;
+        this.headerLength = headerLength;
+    }
+
+    /**
+     * Компилирует набор сигнатур.
+     *
+     * @param signatures Сигнатуры: название -> байты в шестнадцатеричном формате (например, "exe" -> "4D5A").
+     * @param offsets    Смещения сигнатур от начала файла; отсутствующее значение означает смещение 0.
+     * @return Скомпилированный набор сигнатур.
+     * @throws IllegalArgumentException Если сигнатура не является корректной шестнадцатеричной строкой
+     *                                  или смещение отрицательно.
+     */
+    public static SignatureMatcher compile(Map<String, String> signatures, Map<String, Integer> offsets) {
+        // Сортировка по названию делает идентификаторы сигнатур стабильными
+        TreeMap<String, String> sorted = new TreeMap<>(signatures);
+        String[] names = sorted.keySet().toArray(new String[0]);
+        byte[][] patterns = new byte[names.length][];
+        int[] patternOffsets = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            patterns[i] = Signature.parseHex(sorted.get(names[i]));
+            patternOffsets[i] = offsets.getOrDefault(names[i], 0);
+            if (patternOffsets[i] < 0) {
+                throw new IllegalArgumentException("Negative signature offset: " + names[i]);
+            }
+        }
+
+        int[] distinct = Arrays.stream(patternOffsets).distinct().sorted().toArray();
+
+        // Узел 0 не используется, чтобы значение 0 в таблице переходов означало отсутствие перехода
+        int nodeCount = 1 + distinct.length;
+        for (byte[] pattern : patterns) {
+            nodeCount += pattern.length;
+        }
+        int[] next = new int[nodeCount * 256];
+        int[] roots = new int[distinct.length];
+        int nodes = 1;
+        for (int i = 0; i < distinct.length; i++) {
+            roots[i] = nodes++;
+        }
+
+        List<List<Integer>> outputs = new ArrayList<>();
+        for (int i = 0; i < nodeCount; i++) {
+            outputs.add(null);
+        }
+        int headerLength = 0;
+        for (int id = 0; id < names.length; id++) {
+            int node = roots[Arrays.binarySearch(distinct, patternOffsets[id])];
+            for (byte b : patterns[id]) {
+                int index = node * 256 + (b & 0xFF);
+                if (next[index] == 0) {
+                    next[index] = nodes++;
+                }
+                node = next[index];
+            }
+            if (outputs.get(node) == null) {
+                outputs.set(node, new ArrayList<>());
+            }
+            outputs.get(node).add(id);
+            headerLength = Math.max(headerLength, patternOffsets[id] + patterns[id].length);
+        }
+
+        int[] outStart = new int[nodes + 1];
+        int[] outIds = new int[names.length];
+        int position = 0;
+        for (int node = 0; node < nodes; node++) {
+            outStart[node] = position;
+            List<Integer> ids = outputs.get(node);
+            if (ids != null) {
+                for (int id : ids) {
+                    outIds[position++] = id;
+                }
+            }
+        }
+        outStart[nodes] = position;
+
+        return new SignatureMatcher(names, distinct, roots, Arrays.copyOf(next, nodes * 256),
+                outStart, outIds, headerLength);
+    }
+
+    /**
+     * Находит все сигнатуры, совпадающие с заголовком файла.
+     * Идентификаторы найденных сигнатур записываются в {@code out}; если массив слишком мал,
+     * лишние идентификаторы не записываются, но учитываются в возвращаемом значении.
+     *
+     * @param header Первые байты файла.
+     * @param length Количество прочитанных байт в {@code header}.
+     * @param out    Массив для идентификаторов найденных сигнатур.
+     * @return Количество найденных сигнатур.
+     */
+    public int match(byte[] header, int length, int[] out) {
+        int count = 0;
+        for (int i = 0; i < offsets.length; i++) {
+            int offset = offsets[i];
+            if (offset >= length) {
+                break;
+            }
+            int node = roots[i];
+            for (int pos = offset; pos < length; pos++) {
+                node = next[node * 256 + (header[pos] & 0xFF)];
+                if (node == 0) {
+                    break;
+                }
+                for (int k = outStart[node]; k < outStart[node + 1]; k++) {
+                    if (count < out.length) {
+                        out[count] = outIds[k];
+                    }
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Проверяет, совпадает ли заголовок файла хотя бы с одной сигнатурой.
+     *
+     * @param header Первые байты файла.
+     * @param length Количество прочитанных байт в {@code header}.
+     * @return {@code true}, если найдена хотя бы одна сигнатура.
+     */
+    public boolean matches(byte[] header, int length) {
+        for (int i = 0; i < offsets.length; i++) {
+            int offset = offsets[i];
+            if (offset >= length) {
+                break;
+            }
+            int node = roots[i];
+            for (int pos = offset; pos < length; pos++) {
+                node = next[node * 256 + (header[pos] & 0xFF)];
+                if (node == 0) {
+                    break;
+                }
+                if (outStart[node] != outStart[node + 1]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Возвращает название сигнатуры по ее идентификатору.
+     *
+     * @param id Идентификатор сигнатуры, полученный из {@link #match(byte[], int, int[])}.
+     * @return Название сигнатуры (например, "exe").
+     */
+    public String getName(int id) {
+        return names[id];
+    }
+
+    /**
+     * Возвращает количество сигнатур в наборе.
+     *
+     * @return Количество сигнатур.
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * Возвращает количество байт от начала файла, которое нужно прочитать для проверки всех сигнатур.
+     *
+     * @return Длина заголовка в байтах.
+     */
+    public int getHeaderLength() {
+        return headerLength;
+    }
+}
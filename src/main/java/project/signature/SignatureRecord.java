@@ -0,0 +1,101 @@
+package project.signature;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Запись хранилища сигнатур: название, байты в шестнадцатеричном формате и смещение от начала файла.
+ * <p>
+ * Текстовый формат записи — одна строка {@code название=HEX[@смещение]}, например
+ * {@code elf=7F 45 4C 46} или {@code tar=7573746172@257}. Пустые строки и строки,
+ * начинающиеся с {@code #}, при чтении пропускаются.
+ *
+ * @param name   Название сигнатуры (расширение файла).
+ * @param hex    Сигнатура в шестнадцатеричном формате.
+ * @param offset Смещение сигнатуры от начала файла в байтах.
+ */
+public record SignatureRecord(String name, String hex, int offset) {
+
+    /**
+     * Проверяет корректность записи.
+     *
+     * @throws IllegalArgumentException Если название пустое или содержит '=',
+     *                                  сигнатура некорректна или смещение отрицательно.
+     */
+    public SignatureRecord {
+        if (name == null || name.isBlank() || name.indexOf('=') >= 0) {
+            throw new IllegalArgumentException("Invalid signature name: " + name);
+        }
+        Signature.parseHex(hex);
+        if (offset < 0) {
+            throw new IllegalArgumentException("Negative signature offset: " + offset);
+        }
+        name = name.trim();
+        hex = hex.trim();
+    }
+
+    /**
+     * Разбирает запись из строки текстового формата.
+     *
+     * @param line Строка вида {@code название=HEX[@смещение]}.
+     * @return Запись хранилища.
+     * @throws IllegalArgumentException Если строка не соответствует формату.
+     */
+    public static SignatureRecord parse(String line) {
+        int separator = line.indexOf('=');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Expected name=HEX[@offset]: " + line);
+        }
+        String name = line.substring(0, separator);
+        String value = line.substring(separator + 1);
+        int offset = 0;
+        int at = value.indexOf('@');
+        if (at >= 0) {
+            try {
+                offset = Integer.parseInt(value.substring(at + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid signature offset: " + line);
+            }
+            value = value.substring(0, at);
+        }
+        return new SignatureRecord(name, value, offset);
+    }
+
+    /**
+     * Читает записи текстового формата. Пустые строки и комментарии пропускаются.
+     *
+     * @param reader Источник строк.
+     * @return Записи в порядке чтения.
+     * @throws IOException              Если произошла ошибка чтения.
+     * @throws IllegalArgumentException Если строка не соответствует формату; сообщение содержит номер строки.
+     */
+    public static List<SignatureRecord> readAll(BufferedReader reader) throws IOException {
+        List<SignatureRecord> records = new ArrayList<>();
+        String line;
+        int number = 0;
+        while ((line = reader.readLine()) != null) {
+            number++;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            try {
+                records.add(parse(trimmed));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Line " + number + ": " + e.getMessage(), e);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Возвращает запись в текстовом формате.
+     *
+     * @return Строка вида {@code название=HEX[@смещение]}.
+     */
+    public String format() {
+        return offset == 0 ? name + "=" + hex : name + "=" + hex + "@" + offset;
+    }
+}
@@ -0,0 +1,50 @@
+package project.signature;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Интерфейс SignatureRepository — постоянное хранилище сигнатур.
+ * Каждое изменение хранилища увеличивает его версию, поэтому {@link SignatureStore}
+ * перечитывает сигнатуры только тогда, когда версия отличается от загруженной.
+ * Реализации должны быть безопасны для вызова из нескольких потоков.
+ */
+public interface SignatureRepository {
+
+    /**
+     * Возвращает текущую версию хранилища.
+     *
+     * @return Версия; 0 для пустого хранилища, в которое еще ничего не записывалось.
+     * @throws IOException Если хранилище недоступно.
+     */
+    long getVersion() throws IOException;
+
+    /**
+     * Загружает все сигнатуры хранилища.
+     *
+     * @return Сигнатуры, упорядоченные по названию.
+     * @throws IOException Если хранилище недоступно.
+     */
+    List<SignatureRecord> loadAll() throws IOException;
+
+    /**
+     * Добавляет или заменяет (по названию) одну сигнатуру.
+     *
+     * @param record Сигнатура.
+     * @return Версия хранилища после изменения.
+     * @throws IOException Если хранилище недоступно.
+     */
+    default long save(SignatureRecord record) throws IOException {
+        return saveAll(List.of(record));
+    }
+
+    /**
+     * Добавляет или заменяет (по названию) набор сигнатур одним изменением.
+     *
+     * @param records Сигнатуры.
+     * @return Версия хранилища после изменения.
+     * @throws IOException Если хранилище недоступно.
+     */
+    long saveAll(Collection<SignatureRecord> records) throws IOException;
+}
@@ -0,0 +1,127 @@
+package project.signature;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Класс SignatureStore связывает постоянное {@link SignatureRepository} с реестром {@link Signature}.
+ * Сигнатуры хранилища загружаются в реестр, который компилирует их в {@link SignatureMatcher}
+ * и {@link SignatureAutomaton}; проверка файлов работает только с этим снимком в памяти
+ * и к хранилищу не обращается. {@link #refresh()} сравнивает версию хранилища с загруженной
+ * и перечитывает сигнатуры только при ее изменении.
+ */
+public class SignatureStore {
+
+    private static final Logger logger = LogManager.getLogger(SignatureStore.class);
+
+    /**
+     * Путь к файлу хранилища по умолчанию.
+     */
+    static final Path DEFAULT_FILE = Path.of(System.getProperty("user.home"), ".signature", "signatures.txt");
+
+    /**
+     * Постоянное хранилище сигнатур.
+     */
+    private final SignatureRepository repository;
+
+    /**
+     * Версия хранилища, загруженная в реестр; -1, если загрузки еще не было.
+     */
+    private long loadedVersion = -1;
+
+    /**
+     * Создает связь реестра с хранилищем. Сигнатуры загружаются при первом {@link #refresh()}.
+     *
+     * @param repository Постоянное хранилище сигнатур.
+     */
+    public SignatureStore(SignatureRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Открывает хранилище, заданное системными свойствами: базу данных, если задано
+     * {@code signature.db.url} (с {@code signature.db.user} и {@code signature.db.password}),
+     * иначе файл {@code signature.db.file} или {@link #DEFAULT_FILE}.
+     *
+     * @return Связь реестра с хранилищем.
+     */
+    public static SignatureStore open() {
+        String url = System.getProperty("signature.db.url");
+        if (url != null && !url.isBlank()) {
+            logger.info("Using the signature database: {}", url);
+            return new SignatureStore(new JdbcSignatureRepository(url,
+                    System.getProperty("signature.db.user"), System.getProperty("signature.db.password")));
+        }
+        String file = System.getProperty("signature.db.file");
+        return new SignatureStore(new FileSignatureRepository(file == null ? DEFAULT_FILE : Path.of(file)));
+    }
+
+    /**
+     * Возвращает постоянное хранилище сигнатур.
+     *
+     * @return Хранилище.
+     */
+    public SignatureRepository getRepository() {
+        return repository;
+    }
+
+    /**
+     * Загружает сигнатуры хранилища в реестр, если версия хранилища изменилась.
+     *
+     * @return {@code true}, если реестр был обновлен.
+     * @throws IOException Если хранилище недоступно.
+     */
+    public synchronized boolean refresh() throws IOException {
+        long version = repository.getVersion();
+        if (version == loadedVersion) {
+            return false;
+        }
+        List<SignatureRecord> records = repository.loadAll();
+        Signature.replaceAll(records);
+        loadedVersion = version;
+        logger.info("Signatures loaded: {}, version {}", records.size(), version);
+        return true;
+    }
+
+    /**
+     * Сохраняет сигнатуру в хранилище и добавляет ее в реестр.
+     *
+     * @param record Сигнатура.
+     * @throws IOException Если хранилище недоступно.
+     */
+    public synchronized void add(SignatureRecord record) throws IOException {
+        long version = repository.save(record);
+        Signature.addSignature(record.name(), record.hex(), record.offset());
+        // Если хранилище менял кто-то еще, снимок будет перечитан при следующем обновлении
+        if (version == loadedVersion + 1) {
+            loadedVersion = version;
+        }
+    }
+
+    /**
+     * Импортирует сигнатуры из текстового файла формата {@link SignatureRecord} одним изменением
+     * хранилища и обновляет реестр.
+     *
+     * @param file Текстовый файл с сигнатурами.
+     * @return Количество импортированных записей.
+     * @throws IOException              Если файл или хранилище недоступны.
+     * @throws IllegalArgumentException Если строка файла не соответствует формату.
+     */
+    public int importFrom(Path file) throws IOException {
+        List<SignatureRecord> records;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            records = SignatureRecord.readAll(reader);
+        }
+        repository.saveAll(records);
+        refresh();
+        logger.info("Signatures imported from {}: {}", file, records.size());
+        return records.size();
+    }
+}
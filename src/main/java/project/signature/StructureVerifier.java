@@ -0,0 +1,300 @@
+package project.signature;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Класс StructureVerifier — второй этап проверки найденных файлов.
+ * Совпадение короткой сигнатуры (например, {@code 4D5A}) с началом файла еще не означает,
+ * что файл исполняемый: так начинается и обычный текст. Для файлов, начинающихся с магического числа
+ * PE/MZ, ELF или Mach-O, проверяются согласованность заголовка и его положение относительно размера файла:
+ * <ul>
+ *     <li>MZ — смещение {@code e_lfanew} указывает на {@code PE\0\0} с допустимым заголовком COFF,
+ *     на заголовок NE/LE/LX или же корректен заголовок DOS;</li>
+ *     <li>ELF — класс, порядок байт, версия, тип файла и размер заголовка;</li>
+ *     <li>Mach-O — тип файла и размер команд загрузки; для универсального файла — количество архитектур
+ *     и положение первой из них.</li>
+ * </ul>
+ * Каждая проверка выполняется одним или двумя позиционными чтениями в буфер потока.
+ * Файлы с другим началом (сигнатуры прочих форматов) считаются корректными.
+ * <p>
+ * Те же проверки применяются к вложенным объектам, найденным глубоким сканированием
+ * ({@link #verifyEmbedded}), относительно смещения вложенного объекта.
+ */
+final class StructureVerifier {
+
+    /**
+     * Количество байт начала файла, читаемых первым чтением.
+     */
+    static final int PROBE_LENGTH = 64;
+
+    /**
+     * Количество байт, читаемых по смещению {@code e_lfanew}: подпись PE, заголовок COFF и поле Magic.
+     */
+    private static final int PE_HEADER_LENGTH = 26;
+
+    /**
+     * Наибольшее количество секций PE, допускаемое загрузчиком Windows.
+     */
+    private static final int PE_MAX_SECTIONS = 96;
+
+    /**
+     * Наибольшее количество архитектур в универсальном файле Mach-O; у файлов классов Java
+     * на этом месте номер версии не меньше 45.
+     */
+    private static final int FAT_MAX_ARCHITECTURES = 30;
+
+    /**
+     * Наименьшая длина сигнатуры вложенного объекта другого формата, который принимается без проверки
+     * структуры. Двухбайтовая сигнатура встречается в случайных данных примерно раз на 64 КиБ.
+     */
+    static final int MIN_EMBEDDED_LENGTH = 4;
+
+    /**
+     * Буфер потока для позиционных чтений.
+     */
+    private static final ThreadLocal<ByteBuffer> BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocate(PROBE_LENGTH));
+
+    private StructureVerifier() {
+    }
+
+    /**
+     * Проверяет структуру заголовка найденного файла и записывает длительность проверки в показатели.
+     * Если файл прочитать не удалось, запись сохраняется: ошибка чтения не говорит о том,
+     * что файл не исполняемый.
+     *
+     * @param hit     Запись о файле, совпавшем с сигнатурами заголовка.
+     * @param metrics Показатели сканирования.
+     * @return Та же запись, если структура корректна; запись без сигнатур заголовка, если структура
+     * повреждена, но в файле-архиве найдены исполняемые файлы; иначе {@code null}.
+     */
+    static ScanHit confirm(ScanHit hit, ScanMetrics metrics) {
+        long start = System.nanoTime();
+        boolean valid;
+        try {
+            valid = verify(hit.path(), hit.size());
+        } catch (IOException e) {
+            ScanLog.events.debug("Unable to check the file structure: {}", hit.path());
+            valid = true;
+        }
+        metrics.structureVerified(start);
+        if (valid) {
+            return hit;
+        }
+        metrics.candidateRejected();
+        ScanLog.events.debug("The file does not have a valid executable structure: {}", hit.path());
+        return hit.archived().isEmpty() ? null : new ScanHit(hit.path(), hit.size(), hit.createdNanos(),
+                hit.accessedNanos(), hit.modifiedNanos(), hit.symbolicLink(), List.of(), hit.embedded(),
+                hit.archived(), hit.aliasOf(), hit.entropy());
+    }
+
+    /**
+     * Проверяет структуру заголовка файла.
+     *
+     * @param path Путь к файлу.
+     * @param size Размер файла в байтах.
+     * @return {@code false}, если файл начинается с магического числа PE/MZ, ELF или Mach-O,
+     * но его заголовок поврежден или не помещается в файл; иначе {@code true}.
+     * @throws IOException Если файл не удалось прочитать.
+     */
+    static boolean verify(Path path, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return verifyHeader(channel, 0, size, true, true);
+        }
+    }
+
+    /**
+     * Проверяет структуру вложенного объекта, найденного глубоким сканированием. В отличие от начала файла,
+     * заголовок MZ внутри файла принимается только при наличии расширенного заголовка PE, NE, LE или LX
+     * по смещению {@code e_lfanew} от начала вложенного объекта: заголовок DOS слишком короткий, чтобы
+     * отличить его от случайных данных. Объекты других форматов принимаются, если длина их сигнатуры
+     * не меньше {@link #MIN_EMBEDDED_LENGTH}.
+     *
+     * @param channel Открытый файл.
+     * @param offset  Смещение вложенного объекта от начала файла.
+     * @param length  Длина найденной сигнатуры в байтах.
+     * @return {@code true}, если вложенный объект принят.
+     * @throws IOException Если файл не удалось прочитать.
+     */
+    static boolean verifyEmbedded(FileChannel channel, long offset, int length) throws IOException {
+        return verifyHeader(channel, offset, channel.size() - offset, false, length >= MIN_EMBEDDED_LENGTH);
+    }
+
+    /**
+     * Проверяет заголовок объекта, начинающегося с заданного смещения.
+     *
+     * @param channel Открытый файл.
+     * @param base    Смещение начала объекта в файле.
+     * @param size    Размер объекта: количество байт от его начала до конца файла.
+     * @param dos     {@code true}, чтобы принимать заголовок MZ без расширенного заголовка.
+     * @param other   Результат для объектов, не начинающихся с магического числа PE/MZ, ELF или Mach-O.
+     * @return {@code true}, если заголовок корректен.
+     * @throws IOException Если файл не удалось прочитать.
+     */
+    private static boolean verifyHeader(FileChannel channel, long base, long size, boolean dos, boolean other)
+            throws IOException {
+        ByteBuffer buffer = read(channel, base, PROBE_LENGTH).order(ByteOrder.BIG_ENDIAN);
+        if (buffer.remaining() >= 2 && buffer.getShort(0) == 0x4D5A) {
+            return verifyMz(channel, buffer, base, size, dos);
+        }
+        if (buffer.remaining() < 4) {
+            return other;
+        }
+        int magic = buffer.getInt(0);
+        return switch (magic) {
+            case 0x7F454C46 -> verifyElf(buffer, size);
+            case 0xFEEDFACE, 0xFEEDFACF -> verifyMachO(buffer.order(ByteOrder.BIG_ENDIAN), magic, size);
+            case 0xCEFAEDFE, 0xCFFAEDFE -> verifyMachO(buffer.order(ByteOrder.LITTLE_ENDIAN),
+                    Integer.reverseBytes(magic), size);
+            case 0xCAFEBABE -> verifyFat(buffer, size);
+            default -> other;
+        };
+    }
+
+    /**
+     * Проверяет исполняемый файл DOS/Windows.
+     *
+     * @param channel Открытый файл.
+     * @param buffer  Начало объекта.
+     * @param base    Смещение начала объекта в файле.
+     * @param size    Размер объекта.
+     * @param dos     {@code true}, чтобы принимать заголовок DOS без расширенного заголовка.
+     * @return {@code true}, если заголовок корректен.
+     * @throws IOException Если файл не удалось прочитать.
+     */
+    private static boolean verifyMz(FileChannel channel, ByteBuffer buffer, long base, long size, boolean dos)
+            throws IOException {
+        if (buffer.remaining() < PROBE_LENGTH) {
+            return false;
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        // Заголовок DOS разбирается до второго чтения, которое использует тот же буфер
+        int lastPage = Short.toUnsignedInt(buffer.getShort(2));
+        int pages = Short.toUnsignedInt(buffer.getShort(4));
+        int relocations = Short.toUnsignedInt(buffer.getShort(6));
+        int headerSize = Short.toUnsignedInt(buffer.getShort(8)) * 16;
+        int relocationTable = Short.toUnsignedInt(buffer.getShort(0x18));
+        long imageSize = (pages - 1L) * 512 + (lastPage == 0 ? 512 : lastPage);
+        boolean valid = dos && pages > 0 && lastPage < 512 && imageSize <= size
+                && headerSize >= 0x1C && headerSize <= imageSize
+                && (relocations == 0 || relocationTable >= 0x1C && relocationTable + relocations * 4L <= headerSize);
+
+        long lfanew = Integer.toUnsignedLong(buffer.getInt(0x3C));
+        if (lfanew >= 4 && lfanew + PE_HEADER_LENGTH <= size) {
+            ByteBuffer header = read(channel, base + lfanew, PE_HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.remaining() == PE_HEADER_LENGTH && header.getInt(0) == 0x00004550) {
+                int sections = Short.toUnsignedInt(header.getShort(6));
+                int optionalHeader = Short.toUnsignedInt(header.getShort(20));
+                int optionalMagic = Short.toUnsignedInt(header.getShort(24));
+                return sections > 0 && sections <= PE_MAX_SECTIONS
+                        && (optionalHeader == 0 || optionalMagic == 0x10B || optionalMagic == 0x20B
+                        || optionalMagic == 0x107);
+            }
+            int signature = Short.toUnsignedInt(header.order(ByteOrder.BIG_ENDIAN).getShort(0));
+            if (signature == 0x4E45 || signature == 0x4C45 || signature == 0x4C58) {
+                // NE, LE и LX: 16-битные Windows, VxD и OS/2
+                return true;
+            }
+        }
+        // Исполняемый файл DOS без расширенного заголовка
+        return valid;
+    }
+
+    /**
+     * Проверяет заголовок ELF.
+     *
+     * @param buffer Начало файла.
+     * @param size   Размер файла.
+     * @return {@code true}, если заголовок корректен.
+     */
+    private static boolean verifyElf(ByteBuffer buffer, long size) {
+        int elfClass = buffer.get(4);
+        int data = buffer.get(5);
+        if (elfClass != 1 && elfClass != 2 || data != 1 && data != 2 || buffer.get(6) != 1) {
+            return false;
+        }
+        boolean wide = elfClass == 2;
+        int headerSize = wide ? 64 : 52;
+        if (buffer.remaining() < headerSize || size < headerSize) {
+            return false;
+        }
+        buffer.order(data == 1 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        int type = Short.toUnsignedInt(buffer.getShort(0x10));
+        long programHeaders = wide ? buffer.getLong(0x20) : Integer.toUnsignedLong(buffer.getInt(0x1C));
+        long sectionHeaders = wide ? buffer.getLong(0x28) : Integer.toUnsignedLong(buffer.getInt(0x20));
+        int declaredSize = Short.toUnsignedInt(buffer.getShort(wide ? 0x34 : 0x28));
+        return type >= 1 && type <= 4 && buffer.getInt(0x14) == 1 && declaredSize == headerSize
+                && programHeaders >= 0 && programHeaders <= size && sectionHeaders >= 0 && sectionHeaders <= size;
+    }
+
+    /**
+     * Проверяет заголовок Mach-O.
+     *
+     * @param buffer Начало файла с порядком байт файла.
+     * @param magic  Магическое число в порядке байт файла.
+     * @param size   Размер файла.
+     * @return {@code true}, если заголовок корректен.
+     */
+    private static boolean verifyMachO(ByteBuffer buffer, int magic, long size) {
+        int headerSize = magic == 0xFEEDFACF ? 32 : 28;
+        if (buffer.remaining() < headerSize) {
+            return false;
+        }
+        int fileType = buffer.getInt(12);
+        long commands = Integer.toUnsignedLong(buffer.getInt(16));
+        long commandsSize = Integer.toUnsignedLong(buffer.getInt(20));
+        return fileType >= 1 && fileType <= 0xD && commands > 0 && commandsSize >= commands * 8
+                && headerSize + commandsSize <= size;
+    }
+
+    /**
+     * Проверяет заголовок универсального файла Mach-O. Файлы классов Java с тем же магическим числом
+     * считаются корректными.
+     *
+     * @param buffer Начало файла.
+     * @param size   Размер файла.
+     * @return {@code true}, если заголовок корректен или файл не является универсальным файлом Mach-O.
+     */
+    private static boolean verifyFat(ByteBuffer buffer, long size) {
+        if (buffer.remaining() < 8) {
+            return true;
+        }
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        int architectures = buffer.getInt(4);
+        if (architectures < 1 || architectures > FAT_MAX_ARCHITECTURES) {
+            return true;
+        }
+        if (buffer.remaining() < 28) {
+            return false;
+        }
+        long offset = Integer.toUnsignedLong(buffer.getInt(16));
+        long length = Integer.toUnsignedLong(buffer.getInt(20));
+        return offset >= 8 + 20L * architectures && offset + length <= size;
+    }
+
+    /**
+     * Читает часть файла в буфер потока позиционным чтением.
+     *
+     * @param channel  Открытый файл.
+     * @param position Смещение в файле.
+     * @param length   Количество байт (не больше {@link #PROBE_LENGTH}).
+     * @return Буфер с прочитанными байтами от позиции 0 до {@code limit}.
+     * @throws IOException Если файл не удалось прочитать.
+     */
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = BUFFER.get();
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                break;
+            }
+        }
+        return buffer.flip();
+    }
+}
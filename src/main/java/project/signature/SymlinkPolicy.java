@@ -0,0 +1,38 @@
+package project.signature;
+
+/**
+ * Правило обработки символических ссылок при обходе директорий в {@link ScanSession}.
+ * Независимо от правила каждая директория и каждый физический файл посещаются один раз:
+ * повторные пути к ним определяются по ключу файла (устройство и inode), поэтому ссылки,
+ * образующие цикл, не приводят к бесконечному обходу.
+ */
+public enum SymlinkPolicy {
+    /**
+     * Ссылки на файлы и на директории разыменовываются; директории по ссылкам обходятся.
+     */
+    FOLLOW,
+    /**
+     * Разыменовываются только ссылки на файлы; ссылки на директории пропускаются.
+     */
+    FILES,
+    /**
+     * Символические ссылки пропускаются.
+     */
+    NEVER;
+
+    /**
+     * Возвращает правило по названию без учета регистра ("follow", "files", "never").
+     *
+     * @param name Название правила.
+     * @return Правило обработки ссылок.
+     * @throws IllegalArgumentException Если правило не поддерживается.
+     */
+    public static SymlinkPolicy of(String name) {
+        return switch (name.toLowerCase()) {
+            case "follow" -> FOLLOW;
+            case "files" -> FILES;
+            case "never" -> NEVER;
+            default -> throw new IllegalArgumentException("Unknown symlink policy: " + name);
+        };
+    }
+}
@@ -0,0 +1,224 @@
+package project.signature;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тестовый класс для {@link ArchiveScanner}.
+ * Проверяет поиск сигнатур в элементах архивов ZIP, TAR и GZIP, вложенные архивы
+ * и ограничения объема распаковки.
+ */
+class ArchiveScannerTest {
+
+    /**
+     * Временная директория, создаваемая JUnit Jupiter перед каждым тестовым методом.
+     */
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Заголовок исполняемого файла.
+     */
+    private static final byte[] EXE = {'M', 'Z', (byte) 0x90, 0};
+
+    /**
+     * Набор из одной сигнатуры исполняемого файла.
+     */
+    private static final SignatureMatcher MATCHER = SignatureMatcher.compile(Map.of("exe", "4D5A"), Map.of());
+
+    /**
+     * Создает архив ZIP в памяти.
+     *
+     * @param entries Имена и содержимое элементов, чередующиеся.
+     * @return Содержимое архива.
+     * @throws IOException Если возникает ошибка записи.
+     */
+    private static byte[] zip(Object... entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(bytes)) {
+            for (int i = 0; i < entries.length; i += 2) {
+                out.putNextEntry(new ZipEntry((String) entries[i]));
+                out.write((byte[]) entries[i + 1]);
+                out.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Создает архив TAR (ustar) в памяти.
+     *
+     * @param entries Имена и содержимое элементов, чередующиеся.
+     * @return Содержимое архива.
+     */
+    private static byte[] tar(Object... entries) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (int i = 0; i < entries.length; i += 2) {
+            byte[] data = (byte[]) entries[i + 1];
+            byte[] header = new byte[512];
+            byte[] name = ((String) entries[i]).getBytes(StandardCharsets.UTF_8);
+            System.arraycopy(name, 0, header, 0, name.length);
+            byte[] size = String.format("%011o", data.length).getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(size, 0, header, 124, size.length);
+            header[156] = '0';
+            System.arraycopy("ustar".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 5);
+            bytes.writeBytes(header);
+            bytes.writeBytes(data);
+            bytes.writeBytes(new byte[(512 - data.length % 512) % 512]);
+        }
+        bytes.writeBytes(new byte[1024]);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Сжимает данные в формате GZIP.
+     *
+     * @param data Данные.
+     * @return Сжатые данные.
+     * @throws IOException Если возникает ошибка записи.
+     */
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Записывает архив во временную директорию и проверяет его.
+     *
+     * @param name     Имя файла архива.
+     * @param content  Содержимое архива.
+     * @param depth    Глубина вложенности.
+     * @param maxBytes Ограничение объема распаковки.
+     * @return Найденные совпадения.
+     * @throws IOException Если возникает ошибка при работе с файлом.
+     */
+    private List<ArchiveScanner.Match> scan(String name, byte[] content, int depth, long maxBytes) throws IOException {
+        Path file = tempDir.resolve(name);
+        Files.write(file, content);
+        byte[] header = Files.readAllBytes(file);
+        ArchiveScanner.Format format = ArchiveScanner.detect(header, header.length);
+        assertNotNull(format);
+        return new ArchiveScanner(MATCHER, depth, maxBytes, 1000).scan(file, format);
+    }
+
+    /**
+     * Проверяет поиск исполняемых файлов в элементах архивов ZIP, TAR и TAR.GZ.
+     *
+     * @throws IOException Если возникает ошибка при работе с файлами.
+     */
+    @Test
+    void testFindsExecutablesInArchives() throws IOException {
+        assertEquals(List.of(new ArchiveScanner.Match("exe", "bin/tool.exe")),
+                scan("a.zip", zip("readme.txt", "text".getBytes(), "bin/tool.exe", EXE), 1, 1 << 20));
+        assertEquals(List.of(new ArchiveScanner.Match("exe", "setup.exe")),
+                scan("a.tar", tar("doc.txt", new byte[700], "setup.exe", EXE), 1, 1 << 20));
+        assertEquals(List.of(new ArchiveScanner.Match("exe", "a.tar!/setup.exe")),
+                scan("a.tar.gz", gzip(tar("setup.exe", EXE)), 2, 1 << 20));
+    }
+
+    /**
+     * Проверяет вложенные архивы и ограничение глубины вложенности.
+     *
+     * @throws IOException Если возникает ошибка при работе с файлами.
+     */
+    @Test
+    void testNestedArchives() throws IOException {
+        byte[] inner = zip("payload.exe", EXE);
+        byte[] outer = zip("lib/inner.jar", inner, "lib/pack.tgz", gzip(tar("x/run.exe", EXE)));
+
+        assertEquals(List.of(new ArchiveScanner.Match("exe", "lib/inner.jar!/payload.exe"),
+                        new ArchiveScanner.Match("exe", "lib/pack.tgz!/pack.tar!/x/run.exe")),
+                scan("outer.zip", outer, 3, 1 << 20));
+        assertEquals(List.of(new ArchiveScanner.Match("exe", "lib/inner.jar!/payload.exe")),
+                scan("outer2.zip", outer, 2, 1 << 20));
+        assertEquals(List.of(), scan("outer3.zip", outer, 1, 1 << 20));
+    }
+
+    /**
+     * Проверяет, что хорошо сжимаемый элемент вложенного архива не распаковывается сверх ограничения,
+     * а проверка завершается без ошибки с найденными до этого совпадениями.
+     *
+     * @throws IOException Если возникает ошибка при работе с файлами.
+     */
+    @Test
+    void testDecompressionLimit() throws IOException {
+        byte[] bomb = zip("first.exe", EXE, "zeros.bin", new byte[8 << 20], "last.exe", EXE);
+        List<ArchiveScanner.Match> matches = scan("bomb.zip", zip("inner.zip", bomb), 2, 1 << 20);
+
+        assertEquals(List.of(new ArchiveScanner.Match("exe", "inner.zip!/first.exe")), matches);
+    }
+
+    /**
+     * Проверяет, что сканирование с проверкой архивов находит архив с исполняемым файлом,
+     * а обычное сканирование — нет.
+     *
+     * @throws IOException Если возникает ошибка при работе с файлами.
+     */
+    @Test
+    void testSessionWithArchives() throws IOException {
+        Files.write(tempDir.resolve("bundle.jar"), zip("META-INF/MANIFEST.MF", "Manifest".getBytes(), "a.exe", EXE));
+        Files.write(tempDir.resolve("plain.zip"), zip("a.txt", "text".getBytes()));
+
+        List<ScanHit> hits = new ArrayList<>();
+        ScanSession session = new ScanSession(tempDir.toFile());
+        session.setArchiveDepth(ArchiveScanner.DEFAULT_MAX_DEPTH);
+        session.setHitListener(hits::add);
+        session.run();
+
+        assertEquals(1, hits.size());
+        assertEquals(tempDir.resolve("bundle.jar"), hits.get(0).path());
+        assertEquals(List.of(new ArchiveScanner.Match("exe", "a.exe")), hits.get(0).archived());
+        assertTrue(hits.get(0).describe().contains("Файл в архиве -> a.exe (exe)"));
+
+        ScanSession plain = new ScanSession(tempDir.toFile());
+        assertEquals(0, plain.run().hits());
+    }
+
+    /**
+     * Проверяет, что файл с заголовком ZIP, который не удалось прочитать как архив, не считается ошибкой:
+     * вложенный исполняемый файл находится глубоким сканированием, а результат записывается в индекс.
+     *
+     * @throws IOException Если возникает ошибка при работе с файлами.
+     */
+    @Test
+    void testDamagedArchive() throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        content.write(new byte[]{'P', 'K', 3, 4});
+        content.write(new byte[1024]);
+        content.write(StructureVerifierTest.pe(2));
+        Files.write(tempDir.resolve("damaged.zip"), content.toByteArray());
+        Files.write(tempDir.resolve("broken.zip"), new byte[]{'P', 'K', 3, 4, 1, 2, 3});
+
+        ScanIndex index = ScanIndex.inMemory(ScanIndex.currentVersion(true, 1), 16);
+        List<ScanHit> hits = new ArrayList<>();
+        ScanSession session = new ScanSession(tempDir.toFile());
+        session.setArchiveDepth(1);
+        session.setDeepScan(true);
+        session.setIndex(index);
+        session.setHitListener(hits::add);
+        session.run();
+
+        assertEquals(0, session.getMetrics().getErrors());
+        assertEquals(1, hits.size());
+        assertEquals(tempDir.resolve("damaged.zip"), hits.get(0).path());
+        assertEquals(List.of(new DeepScanner.Match("exe", 1028)), hits.get(0).embedded());
+        assertEquals(2, index.size());
+    }
+}
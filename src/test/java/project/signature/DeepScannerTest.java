@@ -0,0 +1,106 @@
+package project.signature;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тестовый класс для {@link DeepScanner}.
+ * Проверяет поиск вложенных сигнатур по всему содержимому файла, в том числе на границах окон отображения.
+ */
+class DeepScannerTest {
+
+    /**
+     * Временная директория, создаваемая JUnit Jupiter перед каждым тестовым методом.
+     */
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Автомат с пересекающимися сигнатурами и сигнатурой со смещением.
+     */
+    private final SignatureAutomaton automaton = SignatureAutomaton.compile(
+            Map.of("pe", "50450000", "elf", "7F454C46", "e", "4500", "tar", "7573746172"),
+            Map.of("tar", 257));
+
+    /**
+     * Тестирует, что сигнатуры находятся с правильными смещениями, включая сигнатуру,
+     * пересекающую границу окна, и вложенные друг в друга сигнатуры.
+     *
+     * @throws IOException Если возникает ошибка при работе с временным файлом.
+     */
+    @Test
+    void testScan_MatchesAcrossWindows() throws IOException {
+        byte[] content = new byte[1000];
+        System.arraycopy(new byte[]{'P', 'E', 0, 0}, 0, content, 14, 4);
+        System.arraycopy(new byte[]{0x7F, 'E', 'L', 'F'}, 0, content, 500, 4);
+        System.arraycopy("ustar".getBytes(), 0, content, 257 + 300, 5);
+        Path file = Files.write(tempDir.resolve("data.bin"), content);
+
+        List<DeepScanner.Match> matches = new DeepScanner(automaton, 16).scan(file, 100);
+
+        assertEquals(List.of(
+                new DeepScanner.Match("e", 15),
+                new DeepScanner.Match("pe", 14),
+                new DeepScanner.Match("elf", 500),
+                new DeepScanner.Match("tar", 300)), matches);
+    }
+
+    /**
+     * Тестирует ограничение количества возвращаемых вхождений и сканирование пустого файла.
+     *
+     * @throws IOException Если возникает ошибка при работе с временным файлом.
+     */
+    @Test
+    void testScan_LimitAndEmptyFile() throws IOException {
+        byte[] content = new byte[64];
+        for (int i = 0; i < content.length; i += 4) {
+            System.arraycopy(new byte[]{'P', 'E', 0, 0}, 0, content, i, 4);
+        }
+        Path file = Files.write(tempDir.resolve("many.bin"), content);
+        assertEquals(3, new DeepScanner(automaton, 7).scan(file, 3).size());
+
+        Path empty = Files.createFile(tempDir.resolve("empty.bin"));
+        assertTrue(new DeepScanner(automaton, 7).scan(empty, 10).isEmpty());
+    }
+
+    /**
+     * Тестирует режим глубокого сканирования {@link FileInspector}: файл с вложенным исполняемым файлом
+     * попадает в метаданные с указанием смещения, а случайные байты {@code MZ} без заголовка PE
+     * вложенным файлом не считаются.
+     *
+     * @throws IOException Если возникает ошибка при работе с временным файлом.
+     */
+    @Test
+    void testFileInspector_DeepScan() throws IOException {
+        ByteBuffer content = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+        content.put(0, (byte) 'D');
+        content.put(100, (byte) 'M').put(101, (byte) 'Z');
+        content.putInt(100 + 0x3C, 0x80);
+        content.putInt(100 + 0x80, 0x00004550);
+        content.putShort(100 + 0x86, (short) 3);
+        content.putShort(100 + 0x94, (short) 0xE0);
+        content.putShort(100 + 0x98, (short) 0x20B);
+        Path file = Files.write(tempDir.resolve("installer.dat"), content.array());
+
+        assertNull(new FileInspector(false, null).inspect(file.toFile()));
+        ScanHit hit = new FileInspector(true, null).inspect(file.toFile());
+        assertNotNull(hit);
+        assertEquals(List.of(new DeepScanner.Match("exe", 100)), hit.embedded());
+        assertTrue(hit.describe().contains("exe (смещение 100)"));
+
+        // Те же байты MZ, но e_lfanew указывает на данные без подписи PE
+        content.putInt(100 + 0x80, 0);
+        Path random = Files.write(tempDir.resolve("random.dat"), content.array());
+        assertNull(new FileInspector(true, null).inspect(random.toFile()));
+    }
+}
@@ -0,0 +1,177 @@
+package project.signature;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тестовый класс для {@link DirectoryWatcher}.
+ * Проверяет обнаружение новых исполняемых файлов и новых поддиректорий по событиям файловой системы.
+ */
+class DirectoryWatcherTest {
+
+    /**
+     * Время ожидания события в секундах.
+     */
+    private static final long TIMEOUT_SECONDS = 20;
+
+    /**
+     * Временная директория, создаваемая JUnit Jupiter перед каждым тестовым методом.
+     */
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Проверяет, что новые и измененные файлы проверяются по событиям, а обычные файлы не попадают в результаты.
+     *
+     * @throws Exception Если возникает ошибка при создании файлов или ожидании событий.
+     */
+    @Test
+    void testDetectsNewFiles() throws Exception {
+        Path existing = Files.createDirectory(tempDir.resolve("existing"));
+        BlockingQueue<ScanHit> hits = new LinkedBlockingQueue<>();
+        try (DirectoryWatcher watcher = new DirectoryWatcher(tempDir)) {
+            watcher.setDebounceMillis(100);
+            watcher.setHitListener(hits::add);
+            watcher.start();
+
+            Files.write(tempDir.resolve("plain.txt"), new byte[]{'t', 'x', 't'});
+            Files.write(existing.resolve("dropped.exe"), new byte[]{'M', 'Z', 0});
+
+            ScanHit hit = hits.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            assertNotNull(hit);
+            assertEquals(existing.resolve("dropped.exe"), hit.path());
+            assertEquals(List.of("exe"), hit.types());
+            assertTrue(watcher.getCheckedFileCount() >= 1);
+        }
+        assertNull(hits.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Проверяет, что файлы в новой поддиректории находятся ее повторным сканированием,
+     * а последующие изменения в ней отслеживаются.
+     *
+     * @throws Exception Если возникает ошибка при создании файлов или ожидании событий.
+     */
+    @Test
+    void testNewDirectoryIsScannedAndWatched() throws Exception {
+        BlockingQueue<ScanHit> hits = new LinkedBlockingQueue<>();
+        try (DirectoryWatcher watcher = new DirectoryWatcher(tempDir)) {
+            watcher.setDebounceMillis(100);
+            watcher.setHitListener(hits::add);
+            watcher.start();
+
+            Path nested = Files.createDirectories(tempDir.resolve("a").resolve("b"));
+            Files.write(nested.resolve("first.exe"), new byte[]{'M', 'Z'});
+            assertEquals(nested.resolve("first.exe"), hits.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS).path());
+            assertTrue(watcher.getRescanCount() >= 1);
+
+            Files.write(nested.resolve("second.exe"), new byte[]{'M', 'Z'});
+            Set<Path> found = new HashSet<>();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+            while (!found.contains(nested.resolve("second.exe")) && System.nanoTime() < deadline) {
+                ScanHit hit = hits.poll(100, TimeUnit.MILLISECONDS);
+                if (hit != null) {
+                    found.add(hit.path());
+                }
+            }
+            assertTrue(found.contains(nested.resolve("second.exe")));
+        }
+    }
+
+    /**
+     * Проверяет, что проверка структуры и анализ энтропии применяются и к файлам из событий,
+     * и при повторном сканировании новой поддиректории: файлы с поврежденным заголовком не публикуются.
+     *
+     * @throws Exception Если возникает ошибка при создании файлов или ожидании событий.
+     */
+    @Test
+    void testVerifyAndEntropy() throws Exception {
+        byte[] text = "MZ and some text after it, long enough to fill the DOS header of a file"
+                .getBytes(StandardCharsets.US_ASCII);
+        BlockingQueue<ScanHit> hits = new LinkedBlockingQueue<>();
+        try (DirectoryWatcher watcher = new DirectoryWatcher(tempDir)) {
+            watcher.setDebounceMillis(100);
+            watcher.setVerifyStructure(true);
+            watcher.setAnalyzeEntropy(true);
+            watcher.setHitListener(hits::add);
+            watcher.start();
+
+            Files.write(tempDir.resolve("note.exe"), text);
+            Files.write(tempDir.resolve("app.exe"), StructureVerifierTest.pe(2));
+            ScanHit hit = hits.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            assertNotNull(hit);
+            assertEquals(tempDir.resolve("app.exe"), hit.path());
+            assertNotNull(hit.entropy());
+
+            Path nested = Files.createDirectories(tempDir.resolve("nested"));
+            Files.write(nested.resolve("note.exe"), text);
+            Files.write(nested.resolve("app.exe"), StructureVerifierTest.pe(2));
+            hit = hits.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            assertNotNull(hit);
+            assertEquals(nested.resolve("app.exe"), hit.path());
+            assertNotNull(hit.entropy());
+        }
+        assertNull(hits.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Проверяет, что ошибка при повторном сканировании новой поддиректории не останавливает наблюдение.
+     *
+     * @throws Exception Если возникает ошибка при создании файлов или ожидании событий.
+     */
+    @Test
+    void testRescanErrorDoesNotStopWatching() throws Exception {
+        Path staging = Files.createDirectory(tempDir.resolve("staging"));
+        Files.write(staging.resolve("broken.exe"), new byte[]{'M', 'Z'});
+        BlockingQueue<ScanHit> hits = new LinkedBlockingQueue<>();
+        try (DirectoryWatcher watcher = new DirectoryWatcher(tempDir)) {
+            watcher.setDebounceMillis(100);
+            watcher.setHitListener(hit -> {
+                if (hit.path().getFileName().toString().equals("broken.exe")) {
+                    throw new IllegalStateException("listener failed");
+                }
+                hits.add(hit);
+            });
+            watcher.start();
+
+            // Директория с файлом появляется целиком, поэтому файл находится повторным сканированием
+            Files.move(staging, tempDir.resolve("nested"));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+            while (watcher.getRescanCount() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(50);
+            }
+            assertTrue(watcher.getRescanCount() >= 1);
+
+            Files.write(tempDir.resolve("after.exe"), new byte[]{'M', 'Z'});
+            ScanHit hit = hits.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            assertNotNull(hit);
+            assertEquals(tempDir.resolve("after.exe"), hit.path());
+        }
+    }
+
+    /**
+     * Проверяет, что настройки нельзя менять после запуска.
+     *
+     * @throws IOException Если директорию не удалось зарегистрировать.
+     */
+    @Test
+    void testSettingsAfterStart() throws IOException {
+        try (DirectoryWatcher watcher = new DirectoryWatcher(tempDir)) {
+            watcher.start();
+            assertThrows(IllegalStateException.class, () -> watcher.setDebounceMillis(10));
+        }
+    }
+}
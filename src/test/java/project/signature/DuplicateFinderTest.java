@@ -0,0 +1,113 @@
+package project.signature;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тестовый класс для {@link DuplicateFinder}.
+ * Проверяет группировку одинаковых исполняемых файлов и то, что хэш вычисляется
+ * только для файлов с совпадающими размерами.
+ */
+class DuplicateFinderTest {
+
+    /**
+     * Временная директория, создаваемая JUnit Jupiter перед каждым тестовым методом.
+     */
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Создает пять копий одного установщика, два разных файла одного размера и один файл уникального размера.
+     *
+     * @throws IOException Если возникает ошибка при создании файлов.
+     */
+    private void createFiles() throws IOException {
+        byte[] installer = {'M', 'Z', 1, 2, 3, 4, 5, 6};
+        for (int i = 0; i < 5; i++) {
+            Path dir = Files.createDirectories(tempDir.resolve("share" + i));
+            Files.write(dir.resolve("setup.exe"), installer);
+        }
+        Files.write(tempDir.resolve("b1.exe"), new byte[]{'M', 'Z', 9, 9});
+        Files.write(tempDir.resolve("b2.exe"), new byte[]{'M', 'Z', 8, 8});
+        Files.write(tempDir.resolve("unique.exe"), new byte[]{'M', 'Z', 7});
+        Files.write(tempDir.resolve("note.txt"), new byte[]{'t', 'x', 't'});
+    }
+
+    /**
+     * Выполняет сканирование с группировкой найденных файлов.
+     *
+     * @param finder      Группировка.
+     * @param parallelism Количество потоков обхода.
+     * @return Группы файлов.
+     * @throws InterruptedException Если ожидание прервано.
+     */
+    private List<DuplicateFinder.DuplicateGroup> scan(DuplicateFinder finder, int parallelism)
+            throws InterruptedException {
+        ScanSession session = new ScanSession(tempDir.toFile());
+        session.setParallelism(parallelism);
+        finder.subscribeTo(session);
+        session.run();
+        return finder.await();
+    }
+
+    /**
+     * Проверяет группы одинаковых файлов и то, что файл уникального размера не хэшируется.
+     *
+     * @throws Exception Если возникает ошибка при создании файлов или ожидании.
+     */
+    @Test
+    void testGroupsIdenticalBinaries() throws Exception {
+        createFiles();
+        List<DuplicateFinder.DuplicateGroup> groups;
+        try (DuplicateFinder finder = new DuplicateFinder(3)) {
+            groups = scan(finder, 4);
+            assertEquals(7, finder.getHashedFiles());
+        }
+
+        assertEquals(4, groups.size());
+        DuplicateFinder.DuplicateGroup installers = groups.get(0);
+        assertEquals(5, installers.paths().size());
+        assertEquals(8, installers.size());
+        assertEquals(64, installers.sha256().length());
+        assertEquals(Set.of("setup.exe"),
+                installers.paths().stream().map(path -> path.getFileName().toString()).collect(Collectors.toSet()));
+
+        DuplicateFinder.DuplicateGroup unique = groups.stream()
+                .filter(group -> group.paths().contains(tempDir.resolve("unique.exe"))).findFirst().orElseThrow();
+        assertNull(unique.sha256());
+        assertEquals(2, groups.stream().filter(group -> group.size() == 4).count());
+    }
+
+    /**
+     * Проверяет вычисление хэша всех файлов и запись отчета.
+     *
+     * @throws Exception Если возникает ошибка при создании файлов или ожидании.
+     */
+    @Test
+    void testHashAllAndReport() throws Exception {
+        createFiles();
+        List<DuplicateFinder.DuplicateGroup> groups;
+        try (DuplicateFinder finder = new DuplicateFinder(2)) {
+            finder.setHashAll(true);
+            groups = scan(finder, 1);
+            assertEquals(8, finder.getHashedFiles());
+        }
+        assertTrue(groups.stream().allMatch(group -> group.sha256() != null));
+
+        StringWriter report = new StringWriter();
+        DuplicateFinder.writeReport(report, groups);
+        String[] lines = report.toString().split("\n");
+        assertEquals(4, lines.length);
+        assertTrue(lines[0].contains("\"count\":5"), lines[0]);
+    }
+}
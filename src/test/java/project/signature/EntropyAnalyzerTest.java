@@ -0,0 +1,307 @@
+package project.signature;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тестовый класс для {@link EntropyAnalyzer}.
+ * Проверяет энтропию файла и скользящего окна, разбор секций PE и ELF, признаки упаковки
+ * и анализ найденных файлов при сканировании.
+ */
+class EntropyAnalyzerTest {
+
+    /**
+     * Временная директория, создаваемая JUnit Jupiter перед каждым тестовым методом.
+     */
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Возвращает случайные байты с постоянным начальным значением генератора.
+     *
+     * @param length Количество байт.
+     * @param seed   Начальное значение генератора.
+     * @return Байты.
+     */
+    private static byte[] random(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Вычисляет энтропию части массива прямым подсчетом.
+     *
+     * @param bytes  Байты.
+     * @param from   Начало части.
+     * @param length Длина части.
+     * @return Энтропия в битах на байт.
+     */
+    private static double entropy(byte[] bytes, int from, int length) {
+        long[] counts = new long[256];
+        for (int i = from; i < from + length; i++) {
+            counts[bytes[i] & 0xFF]++;
+        }
+        return EntropyAnalyzer.entropy(counts, length);
+    }
+
+    /**
+     * Создает файл PE с заданными секциями; данные секций располагаются друг за другом с 0x400.
+     *
+     * @param names      Названия секций.
+     * @param data       Данные секций.
+     * @param executable Признаки исполняемых секций.
+     * @return Содержимое файла.
+     */
+    private static byte[] pe(List<String> names, List<byte[]> data, List<Boolean> executable) {
+        int size = 0x400 + data.stream().mapToInt(d -> d.length).sum();
+        ByteBuffer file = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        file.put(0, (byte) 'M').put(1, (byte) 'Z').putInt(0x3C, 0x80);
+        file.putInt(0x80, 0x00004550).putShort(0x84, (short) 0x14C).putShort(0x86, (short) names.size());
+        int offset = 0x400;
+        for (int i = 0; i < names.size(); i++) {
+            int entry = 0x80 + 24 + i * 40;
+            byte[] name = names.get(i).getBytes(StandardCharsets.US_ASCII);
+            file.put(entry, name);
+            file.putInt(entry + 16, data.get(i).length);
+            file.putInt(entry + 20, offset);
+            file.putInt(entry + 36, executable.get(i) ? 0x60000020 : 0xC0000040);
+            file.put(offset, data.get(i));
+            offset += data.get(i).length;
+        }
+        return file.array();
+    }
+
+    /**
+     * Возвращает данные, похожие на машинный код: байты из небольшого набора значений.
+     *
+     * @param length Количество байт.
+     * @return Байты с энтропией около 5 бит на байт.
+     */
+    private static byte[] code(int length) {
+        Random random = new Random(7);
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (0x40 + random.nextInt(32));
+        }
+        return bytes;
+    }
+
+    /**
+     * Тестирует энтропию файла и окон по сравнению с прямым подсчетом для файлов
+     * разной длины, включая файл короче окна и пустой файл.
+     *
+     * @throws IOException Если возникает ошибка при работе с файлами.
+     */
+    @Test
+    void testFileAndWindowEntropy() throws IOException {
+        for (int size : new int[]{0, 100, 2048, 4096, 5000, 3 * 4096 + 17, 40000}) {
+            byte[] bytes = new byte[size];
+            // Первая половина файла состоит из нулей, вторая — из случайных байт
+            System.arraycopy(random(size - size / 2, size), 0, bytes, size / 2, size - size / 2);
+            Path file = Files.write(tempDir.resolve("file" + size), bytes);
+
+            EntropyAnalyzer.Report report = EntropyAnalyzer.analyze(file);
+            assertEquals(size == 0 ? 0 : entropy(bytes, 0, size), report.entropy(), 1e-9, "size " + size);
+
+            int half = EntropyAnalyzer.WINDOW / 2;
+            double max = 0;
+            int windows = 0;
+            int high = 0;
+            for (int start = 0; start + half < size || start == 0 && size > 0; start += half) {
+                double window = entropy(bytes, start, Math.min(EntropyAnalyzer.WINDOW, size - start));
+                max = Math.max(max, window);
+                windows++;
+                if (window >= EntropyAnalyzer.HIGH_WINDOW_ENTROPY) {
+                    high++;
+                }
+            }
+            assertEquals(max, report.maxWindowEntropy(), 1e-9, "size " + size);
+            assertEquals(windows == 0 ? 0 : (double) high / windows, report.highEntropyShare(), 1e-9, "size " + size);
+            assertTrue(report.sections().isEmpty());
+        }
+    }
+
+    /**
+     * Тестирует признак упаковки файлов без таблицы секций: текст и случайные данные.
+     *
+     * @throws IOException Если возникает ошибка при работе с файлами.
+     */
+    @Test
+    void testFilesWithoutSections() throws IOException {
+        Path text = Files.writeString(tempDir.resolve("text.txt"),
+                "The quick brown fox jumps over the lazy dog. ".repeat(1000));
+        EntropyAnalyzer.Report plain = EntropyAnalyzer.analyze(text);
+        assertTrue(plain.entropy() < 5);
+        assertFalse(plain.packed());
+        assertEquals("", plain.reason());
+
+        Path encrypted = Files.write(tempDir.resolve("random.bin"), random(100_000, 1));
+        EntropyAnalyzer.Report report = EntropyAnalyzer.analyze(encrypted);
+        assertTrue(report.entropy() > 7.9);
+        assertEquals(1.0, report.highEntropyShare());
+        assertTrue(report.packed());
+        assertEquals("high entropy file", report.reason());
+    }
+
+    /**
+     * Тестирует разбор секций PE и признаки упаковки: обычный файл, файл со сжатой
+     * исполняемой секцией и файл с секциями UPX.
+     *
+     * @throws IOException Если возникает ошибка при работе с файлами.
+     */
+    @Test
+    void testPeSections() throws IOException {
+        byte[] text = code(8192);
+        byte[] data = random(8192, 2);
+        Path normal = Files.write(tempDir.resolve("normal.exe"),
+                pe(List.of(".text", ".data"), List.of(text, data), List.of(true, false)));
+        EntropyAnalyzer.Report report = EntropyAnalyzer.analyze(normal);
+        assertEquals(2, report.sections().size());
+        EntropyAnalyzer.Section section = report.sections().get(0);
+        assertEquals(".text", section.name());
+        assertEquals(0x400, section.offset());
+        assertEquals(8192, section.size());
+        assertTrue(section.executable());
+        assertEquals(entropy(text, 0, text.length), section.entropy(), 1e-9);
+        assertFalse(report.sections().get(1).executable());
+        assertEquals(entropy(data, 0, data.length), report.sections().get(1).entropy(), 1e-9);
+        // Сжатые данные в неисполняемой секции не делают файл упакованным
+        assertFalse(report.packed());
+
+        Path compressed = Files.write(tempDir.resolve("compressed.exe"),
+                pe(List.of(".text", ".data"), List.of(random(8192, 3), code(1024)), List.of(true, false)));
+        EntropyAnalyzer.Report packed = EntropyAnalyzer.analyze(compressed);
+        assertTrue(packed.packed());
+        assertEquals("high entropy section .text", packed.reason());
+
+        Path upx = Files.write(tempDir.resolve("upx.exe"),
+                pe(List.of("UPX0", "UPX1"), List.of(code(1024), code(4096)), List.of(true, true)));
+        EntropyAnalyzer.Report upxReport = EntropyAnalyzer.analyze(upx);
+        assertTrue(upxReport.packed());
+        assertEquals("UPX", upxReport.reason());
+    }
+
+    /**
+     * Тестирует разбор секций 64-битного ELF с таблицей названий секций.
+     *
+     * @throws IOException Если возникает ошибка при работе с файлами.
+     */
+    @Test
+    void testElfSections() throws IOException {
+        byte[] names = "\0.text\0.shstrtab\0.bss\0".getBytes(StandardCharsets.US_ASCII);
+        byte[] text = random(4096, 4);
+        int namesOffset = 0x100 + text.length;
+        int table = namesOffset + names.length;
+        ByteBuffer file = ByteBuffer.allocate(table + 4 * 64).order(ByteOrder.LITTLE_ENDIAN);
+        file.putInt(0, 0x464C457F).put(4, (byte) 2).put(5, (byte) 1).put(6, (byte) 1);
+        file.putShort(0x10, (short) 2).putInt(0x14, 1).putLong(0x28, table).putShort(0x34, (short) 64);
+        file.putShort(0x3A, (short) 64).putShort(0x3C, (short) 4).putShort(0x3E, (short) 2);
+        file.put(0x100, text).put(namesOffset, names);
+        // 0 — пустая секция, 1 — .text, 2 — .shstrtab, 3 — .bss без данных в файле
+        file.putInt(table + 64, 1).putInt(table + 64 + 4, 1).putLong(table + 64 + 8, 0x6)
+                .putLong(table + 64 + 0x18, 0x100).putLong(table + 64 + 0x20, text.length);
+        file.putInt(table + 128, 7).putInt(table + 128 + 4, 3)
+                .putLong(table + 128 + 0x18, namesOffset).putLong(table + 128 + 0x20, names.length);
+        file.putInt(table + 192, 17).putInt(table + 192 + 4, 8).putLong(table + 192 + 8, 0x3)
+                .putLong(table + 192 + 0x18, 0x100).putLong(table + 192 + 0x20, 65536);
+        Path elf = Files.write(tempDir.resolve("program"), file.array());
+
+        EntropyAnalyzer.Report report = EntropyAnalyzer.analyze(elf);
+        List<String> sections = new ArrayList<>();
+        report.sections().forEach(section -> sections.add(section.name()));
+        assertEquals(List.of(".text", ".shstrtab"), sections);
+        assertTrue(report.sections().get(0).executable());
+        assertEquals(entropy(text, 0, text.length), report.sections().get(0).entropy(), 1e-9);
+        assertFalse(report.sections().get(1).executable());
+        assertTrue(report.packed());
+        assertEquals("high entropy section .text", report.reason());
+    }
+
+    /**
+     * Тестирует анализ найденных файлов при сканировании с проверкой структуры и без нее:
+     * анализируются только файлы с сигнатурой заголовка, упакованные учитываются в показателях.
+     *
+     * @throws IOException Если возникает ошибка при работе с файлами.
+     */
+    @Test
+    void testScanSessionAnalyzesHits() throws IOException {
+        Path root = Files.createDirectories(tempDir.resolve("root"));
+        Files.write(root.resolve("packed.exe"),
+                pe(List.of("UPX0", "UPX1"), List.of(code(1024), random(8192, 5)), List.of(true, true)));
+        Files.write(root.resolve("normal.exe"),
+                pe(List.of(".text"), List.of(code(8192)), List.of(true)));
+        Files.writeString(root.resolve("notes.txt"), "plain text");
+
+        for (boolean verify : new boolean[]{false, true}) {
+            ScanSession session = new ScanSession(root.toFile());
+            session.setParallelism(2);
+            session.setVerifyStructure(verify);
+            session.setAnalyzeEntropy(true);
+            List<ScanHit> hits = new CopyOnWriteArrayList<>();
+            session.setHitListener(hits::add);
+            session.run();
+
+            assertEquals(2, hits.size());
+            for (ScanHit hit : hits) {
+                assertNotNull(hit.entropy(), hit.path().toString());
+                assertEquals(hit.path().endsWith("packed.exe"), hit.entropy().packed());
+            }
+            assertEquals(1, session.getMetrics().getPacked());
+            assertEquals(2, session.getMetrics().getEntropyAnalysis().getCount());
+        }
+    }
+
+    /**
+     * Тестирует сканирование 64-битного ELF с некорректным смещением таблицы названий секций:
+     * файл не анализируется, а сканирование не прерывается.
+     *
+     * @throws IOException Если возникает ошибка при работе с файлами.
+     */
+    @Test
+    void testMalformedElfDoesNotAbortScan() throws IOException {
+        Path root = Files.createDirectories(tempDir.resolve("root"));
+        int table = 0x100;
+        ByteBuffer file = ByteBuffer.allocate(table + 2 * 64).order(ByteOrder.LITTLE_ENDIAN);
+        file.putInt(0, 0x464C457F).put(4, (byte) 2).put(5, (byte) 1).put(6, (byte) 1);
+        file.putShort(0x10, (short) 2).putInt(0x14, 1).putLong(0x28, table).putShort(0x34, (short) 64);
+        file.putShort(0x3A, (short) 64).putShort(0x3C, (short) 2).putShort(0x3E, (short) 1);
+        file.putInt(table + 64, 1).putInt(table + 64 + 4, 3)
+                .putLong(table + 64 + 0x18, 0x8000000000000000L).putLong(table + 64 + 0x20, 16);
+        Path elf = Files.write(root.resolve("program"), file.array());
+        Files.write(root.resolve("normal.exe"), pe(List.of(".text"), List.of(code(8192)), List.of(true)));
+
+        assertTrue(EntropyAnalyzer.analyze(elf).sections().isEmpty());
+        Signature.replaceAll(List.of(new SignatureRecord("elf", "7F454C46", 0)));
+        try {
+            for (int parallelism : new int[]{1, 4}) {
+                ScanSession session = new ScanSession(root.toFile());
+                session.setParallelism(parallelism);
+                session.setAnalyzeEntropy(true);
+                List<ScanHit> hits = new CopyOnWriteArrayList<>();
+                session.setHitListener(hits::add);
+                session.run();
+
+                assertEquals(2, hits.size());
+                for (ScanHit hit : hits) {
+                    assertNotNull(hit.entropy(), hit.path().toString());
+                }
+            }
+        } finally {
+            Signature.replaceAll(List.of());
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package project.signature;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тестовый класс для {@link FileKeySet}.
+ * Проверяет распознавание повторных ключей, хранение неупаковываемых ключей, предел количества записей
+ * и получение ключа из атрибутов файла.
+ */
+class FileKeySetTest {
+
+    /**
+     * Временная директория, создаваемая JUnit Jupiter перед каждым тестовым методом.
+     */
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Тестирует добавление большого количества ключей из нескольких потоков с расширением таблиц.
+     */
+    @Test
+    void testAddAndRepeat() {
+        FileKeySet set = new FileKeySet(FileKeySet.DEFAULT_LIMIT);
+        long added = IntStream.range(0, 100_000).parallel()
+                .filter(i -> set.add(new FileKeySet.FileKey(i % 3, i)))
+                .count();
+        assertEquals(100_000, added);
+        assertEquals(100_000, set.size());
+        for (int i = 0; i < 100_000; i += 7) {
+            assertFalse(set.add(new FileKeySet.FileKey(i % 3, i)));
+        }
+        assertTrue(set.add(new FileKeySet.FileKey(1, 0)));
+
+        // Ключи, не помещающиеся в упакованное представление; (0, 0) добавлен в цикле
+        assertFalse(set.add(new FileKeySet.FileKey(0, 0)));
+        assertTrue(set.add(new FileKeySet.FileKey(2, 1L << 44)));
+        assertFalse(set.add(new FileKeySet.FileKey(2, 1L << 44)));
+        assertTrue(set.add(new FileKeySet.FileKey(1L << 32, 5)));
+        assertFalse(set.add(new FileKeySet.FileKey(1L << 32, 5)));
+        assertTrue(set.add(new FileKeySet.FileKey(5, -1)));
+        assertFalse(set.add(new FileKeySet.FileKey(5, -1)));
+        assertFalse(set.isSaturated());
+    }
+
+    /**
+     * Тестирует, что после достижения предела новые ключи не сохраняются, а сохраненные распознаются.
+     */
+    @Test
+    void testLimit() {
+        FileKeySet set = new FileKeySet(3);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(set.add(new FileKeySet.FileKey(1, i)));
+        }
+        assertFalse(set.isSaturated());
+        assertTrue(set.add(new FileKeySet.FileKey(1, 3)));
+        assertTrue(set.add(new FileKeySet.FileKey(1, 3)));
+        assertTrue(set.isSaturated());
+        assertFalse(set.add(new FileKeySet.FileKey(1, 2)));
+        assertEquals(3, set.size());
+        assertThrows(IllegalArgumentException.class, () -> new FileKeySet(0));
+    }
+
+    /**
+     * Тестирует, что жесткие ссылки на один файл дают одинаковый ключ, а разные файлы — разные.
+     *
+     * @throws IOException Если возникает ошибка при создании файлов.
+     */
+    @Test
+    void testKeyFromAttributes() throws IOException {
+        Path file = Files.write(tempDir.resolve("a.exe"), new byte[]{'M', 'Z'});
+        Path other = Files.write(tempDir.resolve("b.exe"), new byte[]{'M', 'Z'});
+        Path link;
+        try {
+            link = Files.createLink(tempDir.resolve("c.exe"), file);
+        } catch (UnsupportedOperationException | IOException e) {
+            return;
+        }
+        FileKeySet.FileKey key = FileKeySet.FileKey.of(Files.readAttributes(file, BasicFileAttributes.class));
+        if (key == null) {
+            // Файловая система не предоставляет ключи файлов
+            return;
+        }
+        assertEquals(key, FileKeySet.FileKey.of(Files.readAttributes(link, BasicFileAttributes.class)));
+        assertNotEquals(key, FileKeySet.FileKey.of(Files.readAttributes(other, BasicFileAttributes.class)));
+        assertEquals(Files.getAttribute(file, "unix:ino"), key.inode());
+    }
+}
@@ -0,0 +1,97 @@
+package project.signature;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тестовый класс для {@link HitStore}.
+ * Проверяет произвольный доступ к записям, постраничное чтение и удаление файлов временного хранилища.
+ */
+class HitStoreTest {
+
+    /**
+     * Временная директория, создаваемая JUnit Jupiter перед каждым тестовым методом.
+     */
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Создает запись о найденном файле с номером.
+     *
+     * @param i Номер записи.
+     * @return Найденный файл.
+     */
+    private ScanHit hit(int i) {
+        Path path = tempDir.resolve("dir" + (i % 10)).resolve("file" + i + ".exe");
+        List<DeepScanner.Match> embedded = i % 3 == 0 ? List.of(new DeepScanner.Match("ELF", i * 16L)) : List.of();
+        List<ArchiveScanner.Match> archived = i % 5 == 0
+                ? List.of(new ArchiveScanner.Match("EXE", "inner/" + i + ".exe")) : List.of();
+        return new ScanHit(path, i * 100L, i, i + 1L, i + 2L, i % 2 == 0, List.of("EXE"), embedded, archived,
+                i % 7 == 0 ? tempDir.resolve("original" + i) : null);
+    }
+
+    /**
+     * Тестирует чтение записей по номеру и страницами при буфере меньше одной записи
+     * и при записях, еще находящихся в буфере.
+     *
+     * @throws IOException Если возникает ошибка при работе с файлами.
+     */
+    @Test
+    void testAddAndRead() throws IOException {
+        for (int bufferSize : new int[]{16, HitStore.DEFAULT_BUFFER_SIZE}) {
+            try (HitStore store = new HitStore(tempDir.resolve("store" + bufferSize), bufferSize)) {
+                for (int i = 0; i < 1000; i++) {
+                    store.add(hit(i));
+                    if (i % 100 == 0) {
+                        // Чтение между добавлениями заставляет повторно отображать выросший файл
+                        assertEquals(hit(i), store.get(i));
+                    }
+                }
+                assertEquals(1000, store.size());
+                for (int i = 999; i >= 0; i -= 37) {
+                    assertEquals(hit(i), store.get(i));
+                }
+                assertEquals(List.of(hit(500), hit(501), hit(502)), store.page(500, 3));
+                assertEquals(List.of(hit(998), hit(999)), store.page(998, 100));
+                assertTrue(store.page(1000, 100).isEmpty());
+                assertThrows(IndexOutOfBoundsException.class, () -> store.get(1000));
+                assertThrows(IllegalArgumentException.class, () -> store.page(-1, 10));
+
+                List<ScanHit> all = new ArrayList<>();
+                store.forEach(all::add);
+                assertEquals(1000, all.size());
+                assertEquals(hit(777), all.get(777));
+            }
+        }
+        assertThrows(IllegalArgumentException.class, () -> new HitStore(tempDir.resolve("small"), 4));
+    }
+
+    /**
+     * Тестирует, что закрытое временное хранилище удаляет свои файлы и больше не принимает записи.
+     *
+     * @throws IOException Если возникает ошибка при работе с файлами.
+     */
+    @Test
+    void testTemporaryStoreIsDeleted() throws IOException {
+        HitStore store = HitStore.createTemporary();
+        store.add(hit(1));
+        store.close();
+        store.close();
+        assertThrows(IllegalStateException.class, () -> store.add(hit(2)));
+        assertThrows(IllegalStateException.class, () -> store.get(0));
+
+        HitStore kept = new HitStore(tempDir.resolve("kept"), 64);
+        kept.add(hit(1));
+        kept.close();
+        assertTrue(Files.size(tempDir.resolve("kept").resolve("hits.dat")) > 0);
+        assertEquals(Long.BYTES, Files.size(tempDir.resolve("kept").resolve("hits.idx")));
+    }
+}
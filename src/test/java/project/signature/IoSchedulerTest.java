@@ -0,0 +1,122 @@
+package project.signature;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тестовый класс для {@link IoScheduler} и упорядоченного чтения в {@link ScanSession}.
+ * Проверяет порядок чтения по inode и совпадение результатов с обычным сканированием.
+ */
+class IoSchedulerTest {
+
+    /**
+     * Временная директория, создаваемая JUnit Jupiter перед каждым тестовым методом.
+     */
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Проверяет, что при одном чтении на устройство файлы читаются в порядке номеров inode,
+     * а найденные файлы возвращаются в том же порядке.
+     *
+     * @throws Exception Если возникает ошибка при создании файлов.
+     */
+    @Test
+    void testReadsInInodeOrder() throws Exception {
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Path file = tempDir.resolve("f" + i + ".bin");
+            Files.write(file, new byte[]{'M', 'Z'});
+            files.add(file.toFile());
+        }
+        Collections.shuffle(files);
+
+        List<File> order = new CopyOnWriteArrayList<>();
+        List<ScanHit> hits;
+        try (IoScheduler scheduler = new IoScheduler(1)) {
+            hits = scheduler.inspect(files, IoSchedulerTest::key, file -> {
+                order.add(file);
+                return new ScanHit(file.toPath(), 0, 0, 0, 0, false, List.of("exe"), List.of(), List.of());
+            });
+        }
+
+        List<File> expected = new ArrayList<>(files);
+        if (key(files.get(0)) != null) {
+            expected.sort(Comparator.comparingLong(file -> key(file).inode()));
+        }
+        assertEquals(expected, order);
+        assertEquals(expected, hits.stream().map(hit -> hit.path().toFile()).collect(Collectors.toList()));
+    }
+
+    /**
+     * Проверяет, что упорядоченное чтение находит те же файлы, что и обычное сканирование.
+     *
+     * @throws IOException Если возникает ошибка при создании файлов.
+     */
+    @Test
+    void testSessionWithOrderedReads() throws IOException {
+        for (int i = 0; i < 30; i++) {
+            Path dir = Files.createDirectories(tempDir.resolve("d" + (i % 4)));
+            Files.write(dir.resolve("f" + i + ".exe"), new byte[]{'M', 'Z', 1});
+            Files.write(dir.resolve("f" + i + ".txt"), new byte[]{'t', 'x', 't'});
+        }
+
+        Set<Path> plain = collect(tempDir, 0, 1);
+        Set<Path> ordered = collect(tempDir, 2, 1);
+        Set<Path> orderedParallel = collect(tempDir, 3, 4);
+
+        assertEquals(30, plain.size());
+        assertEquals(plain, ordered);
+        assertEquals(plain, orderedParallel);
+    }
+
+    /**
+     * Сканирует директорию и возвращает пути найденных файлов.
+     *
+     * @param root          Корневая директория.
+     * @param ioConcurrency Количество одновременных чтений с устройства.
+     * @param parallelism   Количество потоков обхода.
+     * @return Пути найденных файлов.
+     */
+    private static Set<Path> collect(Path root, int ioConcurrency, int parallelism) {
+        Set<Path> paths = ConcurrentHashMap.newKeySet();
+        ScanSession session = new ScanSession(root.toFile());
+        session.setIoConcurrency(ioConcurrency);
+        session.setParallelism(parallelism);
+        session.setHitListener(hit -> paths.add(hit.path()));
+        ScanSummary summary = session.run();
+        assertEquals(60, summary.files());
+        return paths;
+    }
+
+    /**
+     * Возвращает ключ файла, как при обходе в {@link ScanSession}.
+     *
+     * @param file Файл.
+     * @return Ключ файла или {@code null}, если файловая система его не предоставляет
+     * (тогда сохраняется порядок листинга).
+     */
+    private static FileKeySet.FileKey key(File file) {
+        try {
+            return FileKeySet.FileKey.of(Files.readAttributes(file.toPath(), BasicFileAttributes.class));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package project.signature;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тестовый класс для {@link ParallelDirScanner}.
+ * Проверяет, что параллельный обход дает тот же результат, что и последовательный {@link DirScanner}.
+ */
+class ParallelDirScannerTest {
+
+    /**
+     * Временная директория, создаваемая JUnit Jupiter перед каждым тестовым методом.
+     */
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Сбрасывает статическое состояние {@link DirScanner} перед каждым тестом.
+     */
+    @BeforeEach
+    void setUp() {
+        DirScanner.resetToZeroCnt();
+        DirScanner.getMetadata().clear();
+    }
+
+    /**
+     * Тестирует, что параллельное сканирование дерева директорий находит те же файлы
+     * в том же порядке, что и {@link DirScanner#analyzeDirectory(java.io.File)}.
+     *
+     * @throws IOException Если возникает ошибка при создании временных файлов.
+     */
+    @Test
+    void testScan_SameResultAsSequential() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            Path dir = Files.createDirectories(tempDir.resolve("dir" + i).resolve("sub"));
+            Files.write(dir.resolve("a" + i + ".exe"), new byte[]{'M', 'Z', 0, 0});
+            Files.write(dir.getParent().resolve("b" + i + ".txt"), new byte[]{'t', 'x', 't'});
+            Files.write(dir.getParent().resolve("c" + i + ".bin"), new byte[]{'M', 'Z'});
+        }
+        Files.write(tempDir.resolve("root.exe"), new byte[]{'M', 'Z'});
+        // Дата доступа берется из атрибутов, прочитанных при обходе, то есть до чтения заголовка;
+        // первое чтение обновляет ее (relatime), поэтому файлы читаются заранее
+        try (Stream<Path> files = Files.walk(tempDir)) {
+            for (Path file : files.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                Files.readAllBytes(file);
+            }
+        }
+
+        DirScanner.analyzeDirectory(tempDir.toFile());
+        ScanResult result = new ParallelDirScanner(4).scan(tempDir.toFile());
+
+        assertEquals(11, result.getCnt());
+        assertEquals(DirScanner.getCnt(), result.getCnt());
+        assertEquals(DirScanner.getMetadata(), result.getMetadata());
+        assertEquals("OK", result.getString());
+    }
+
+    /**
+     * Тестирует параллельное сканирование пустой и некорректной директории.
+     */
+    @Test
+    void testScan_EmptyAndIncorrectDirectory() {
+        ParallelDirScanner scanner = new ParallelDirScanner(2);
+        assertEquals("Пустая папка", scanner.scan(tempDir.toFile()).getString());
+        assertEquals("Директория некорректная", scanner.scan(null).getString());
+        assertEquals(0, scanner.scan(tempDir.resolve("nonexistent").toFile()).getCnt());
+    }
+
+    /**
+     * Тестирует, что недопустимый уровень параллелизма отклоняется.
+     */
+    @Test
+    void testConstructor_InvalidParallelism() {
+        assertThrows(IllegalArgumentException.class, () -> new ParallelDirScanner(0));
+    }
+}
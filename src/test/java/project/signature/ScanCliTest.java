@@ -0,0 +1,113 @@
+package project.signature;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тестовый класс для {@link ScanCli}.
+ * Проверяет вывод результатов в форматах JSON Lines и CSV и коды завершения.
+ */
+class ScanCliTest {
+
+    /**
+     * Временная директория, создаваемая JUnit Jupiter перед каждым тестовым методом.
+     */
+    @TempDir
+    Path tempDir;
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    /**
+     * Запускает консольный режим с перехватом вывода.
+     *
+     * @param args Аргументы командной строки.
+     * @return Код завершения.
+     */
+    private int run(String... args) {
+        return ScanCli.run(args, new PrintStream(out, true, StandardCharsets.UTF_8),
+                new PrintStream(err, true, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Возвращает строки стандартного вывода.
+     *
+     * @return Строки вывода.
+     */
+    private List<String> outputLines() {
+        return out.toString(StandardCharsets.UTF_8).lines().toList();
+    }
+
+    /**
+     * Тестирует вывод в формате JSON Lines и код завершения при найденных файлах.
+     *
+     * @throws IOException Если возникает ошибка при создании временных файлов.
+     */
+    @Test
+    void testRun_JsonLines() throws IOException {
+        Files.write(Files.createDirectories(tempDir.resolve("sub")).resolve("a \"b\".exe"), new byte[]{'M', 'Z'});
+        Files.write(tempDir.resolve("c.txt"), new byte[]{'t'});
+
+        assertEquals(ScanCli.EXIT_FOUND, run("-t", "2", tempDir.toString()));
+
+        List<String> lines = outputLines();
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).startsWith("{\"path\":\""));
+        assertTrue(lines.get(0).contains("a \\\"b\\\".exe"));
+        assertTrue(lines.get(0).contains("\"types\":[\"exe\"]"));
+
+        assertEquals(ScanCli.EXIT_FOUND, run("--time-budget", "1m", "--prioritize", "sub", tempDir.toString()));
+        assertEquals(2, outputLines().size());
+        assertTrue(err.toString(StandardCharsets.UTF_8).contains("coverage: complete, time budget "));
+    }
+
+    /**
+     * Тестирует вывод в формате CSV в файл и код завершения при отсутствии найденных файлов.
+     *
+     * @throws IOException Если возникает ошибка при работе с временными файлами.
+     */
+    @Test
+    void testRun_CsvToFile() throws IOException {
+        Path root = Files.createDirectories(tempDir.resolve("root"));
+        Files.write(root.resolve("c.txt"), new byte[]{'t'});
+        Path output = tempDir.resolve("result.csv");
+
+        assertEquals(ScanCli.EXIT_CLEAN, run("--format", "csv", "-o", output.toString(), root.toString()));
+        assertEquals(List.of(HitWriter.CSV_HEADER), Files.readAllLines(output));
+
+        Files.write(root.resolve("x,y.exe"), new byte[]{'M', 'Z'});
+        assertEquals(ScanCli.EXIT_FOUND, run("--format", "csv", "-o", output.toString(), root.toString()));
+        List<String> lines = Files.readAllLines(output);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(1).startsWith("\"" + root.resolve("x,y.exe") + "\","));
+    }
+
+    /**
+     * Тестирует код завершения при некорректных аргументах и некорректной директории.
+     */
+    @Test
+    void testRun_Errors() {
+        assertEquals(ScanCli.EXIT_ERROR, run());
+        assertEquals(ScanCli.EXIT_ERROR, run("--threads", "zero", tempDir.toString()));
+        assertEquals(ScanCli.EXIT_ERROR, run("--format", "xml", tempDir.toString()));
+        assertEquals(ScanCli.EXIT_ERROR, run(tempDir.resolve("missing").toString()));
+        assertEquals(ScanCli.EXIT_ERROR, run("--resume", tempDir.toString()));
+        assertEquals(ScanCli.EXIT_ERROR, run("--journal", tempDir.resolve("j").toString(), "--workers", "2",
+                tempDir.toString()));
+        assertEquals(ScanCli.EXIT_ERROR, run("--time-budget", "0", tempDir.toString()));
+        assertEquals(ScanCli.EXIT_ERROR, run("--time-budget", "5m", "--workers", "2", tempDir.toString()));
+        assertEquals(ScanCli.EXIT_ERROR, run("--jobs", "2", tempDir.toString()));
+        assertEquals(ScanCli.EXIT_ERROR, run("--serve", "0", tempDir.toString()));
+        assertEquals(ScanCli.EXIT_CLEAN, run("--help"));
+    }
+}
@@ -0,0 +1,198 @@
+package project.signature;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тестовый класс для {@link ScanCoordinator} и {@link ScanWorker}.
+ * Проверяет, что распределенное сканирование находит те же файлы, что и {@link ScanSession},
+ * что работа отключившегося исполнителя выдается другому без повторов в результатах
+ * и что исполнитель без токена доступа отключается.
+ */
+class ScanCoordinatorTest {
+
+    /**
+     * Временная директория, создаваемая JUnit Jupiter перед каждым тестовым методом.
+     */
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Создает дерево директорий с исполняемыми и обычными файлами на нескольких уровнях.
+     *
+     * @throws IOException Если возникает ошибка при создании файлов.
+     */
+    private void createTree() throws IOException {
+        Files.write(tempDir.resolve("root.exe"), new byte[]{'M', 'Z'});
+        for (int i = 0; i < 30; i++) {
+            Path dir = Files.createDirectories(tempDir.resolve("d" + (i % 4)).resolve("s" + (i % 3)));
+            Files.write(dir.resolve("f" + i + ".exe"), new byte[]{'M', 'Z', 1});
+            Files.write(dir.resolve("f" + i + ".txt"), new byte[]{'t', 'x', 't'});
+        }
+    }
+
+    /**
+     * Сканирует дерево в текущем процессе для сравнения.
+     *
+     * @param hits Получатель найденных файлов.
+     * @return Итоги сканирования.
+     */
+    private ScanSummary scanLocally(List<ScanHit> hits) {
+        ScanSession session = new ScanSession(tempDir.toFile());
+        session.setHitListener(hits::add);
+        return session.run();
+    }
+
+    /**
+     * Возвращает пути найденных файлов.
+     *
+     * @param hits Найденные файлы.
+     * @return Множество путей.
+     */
+    private static Set<Path> paths(List<ScanHit> hits) {
+        return hits.stream().map(ScanHit::path).collect(Collectors.toSet());
+    }
+
+    /**
+     * Тестирует сканирование двумя локальными процессами-исполнителями:
+     * счетчики и найденные файлы совпадают со сканированием в одном процессе.
+     *
+     * @throws Exception Если возникает ошибка при создании файлов или запуске процессов.
+     */
+    @Test
+    void testLocalWorkerProcesses() throws Exception {
+        createTree();
+        List<ScanHit> expected = new CopyOnWriteArrayList<>();
+        ScanSummary local = scanLocally(expected);
+
+        List<ScanHit> hits = new CopyOnWriteArrayList<>();
+        ScanSummary summary;
+        try (ScanCoordinator coordinator = new ScanCoordinator(List.of(tempDir.toFile()))) {
+            coordinator.setTargetUnits(8);
+            coordinator.setHitListener(hits::add);
+            coordinator.start();
+            coordinator.launchLocalWorkers(2, 1);
+            summary = coordinator.await();
+
+            assertTrue(coordinator.getUnitCount() >= 8);
+            assertEquals(2, coordinator.getWorkerCount());
+        }
+
+        assertEquals(ScanStatus.OK, summary.status());
+        assertEquals(local.directories(), summary.directories());
+        assertEquals(local.files(), summary.files());
+        assertEquals(31, summary.hits());
+        assertEquals(expected.size(), hits.size());
+        assertEquals(paths(expected), paths(hits));
+    }
+
+    /**
+     * Тестирует, что единица работы исполнителя, отключившегося до ее завершения,
+     * выдается другому исполнителю, а найденные файлы не повторяются.
+     *
+     * @throws Exception Если возникает ошибка при создании файлов или соединении.
+     */
+    @Test
+    void testLostWorkerUnitIsReassigned() throws Exception {
+        createTree();
+        List<ScanHit> expected = new CopyOnWriteArrayList<>();
+        ScanSummary local = scanLocally(expected);
+
+        List<ScanHit> hits = new CopyOnWriteArrayList<>();
+        try (ScanCoordinator coordinator = new ScanCoordinator(List.of(tempDir.toFile()))) {
+            coordinator.setTargetUnits(4);
+            coordinator.setHitListener(hits::add);
+            int port = coordinator.start();
+
+            // Исполнитель получает единицу, передает часть результата и отключается
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                out.writeByte(ShardProtocol.HELLO);
+                out.writeInt(ShardProtocol.VERSION);
+                out.writeUTF(coordinator.getToken());
+                out.writeUTF("test");
+                out.flush();
+                assertEquals(ShardProtocol.CONFIG, in.readByte());
+                in.readInt();
+                in.readBoolean();
+                in.readInt();
+                in.readInt();
+                in.readBoolean();
+                in.readBoolean();
+                ShardProtocol.readSignatures(in);
+                assertEquals(ShardProtocol.UNIT, in.readByte());
+                ShardProtocol.WorkUnit unit = ShardProtocol.readUnit(in);
+                ShardProtocol.writeHit(out, unit.id(), expected.get(0));
+                out.flush();
+            }
+
+            ScanWorker worker = new ScanWorker(InetAddress.getLoopbackAddress().getHostAddress(), port);
+            worker.setParallelism(2);
+            worker.setToken(coordinator.getToken());
+            CompletableFuture<Integer> units = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return worker.run();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            ScanSummary summary = coordinator.await();
+
+            assertEquals(coordinator.getUnitCount(), units.get(10, TimeUnit.SECONDS));
+            assertEquals(1, coordinator.getReassignedCount());
+            assertEquals(local.directories(), summary.directories());
+            assertEquals(local.files(), summary.files());
+            assertEquals(expected.size(), hits.size());
+            assertEquals(paths(expected), paths(hits));
+        }
+    }
+
+    /**
+     * Тестирует, что исполнитель с неверным токеном доступа отключается, не получив настроек,
+     * а исполнитель без токена не подключается.
+     *
+     * @throws Exception Если возникает ошибка при создании файлов или соединении.
+     */
+    @Test
+    void testWorkerWithoutTokenIsRejected() throws Exception {
+        createTree();
+        try (ScanCoordinator coordinator = new ScanCoordinator(List.of(tempDir.toFile()))) {
+            int port = coordinator.start();
+            assertNotNull(coordinator.getToken());
+
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                out.writeByte(ShardProtocol.HELLO);
+                out.writeInt(ShardProtocol.VERSION);
+                out.writeUTF("wrong");
+                out.writeUTF("test");
+                out.flush();
+                assertEquals(-1, in.read());
+            }
+            assertEquals(0, coordinator.getWorkerCount());
+
+            ScanWorker worker = new ScanWorker(InetAddress.getLoopbackAddress().getHostAddress(), port);
+            assertThrows(IllegalStateException.class, worker::run);
+            assertThrows(IllegalArgumentException.class, () -> worker.setToken(""));
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package project.signature;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тестовый класс для {@link ScanFilter}.
+ * Проверяет исключение поддеревьев и файлов по шаблонам, включения, ограничения размера и глубины.
+ */
+class ScanFilterTest {
+
+    /**
+     * Временная директория, создаваемая JUnit Jupiter перед каждым тестовым методом.
+     */
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Создает исполняемый файл заданного размера.
+     *
+     * @param file Путь к файлу.
+     * @param size Размер файла в байтах (не меньше 2).
+     * @throws IOException Если возникает ошибка при создании файла.
+     */
+    private static void executable(Path file, int size) throws IOException {
+        Files.createDirectories(file.getParent());
+        byte[] content = new byte[size];
+        content[0] = 'M';
+        content[1] = 'Z';
+        Files.write(file, content);
+    }
+
+    /**
+     * Сканирует временную директорию с заданными правилами.
+     *
+     * @param filter Правила отбора.
+     * @param hits   Получатель найденных файлов.
+     * @return Итоги сканирования.
+     */
+    private ScanSession scan(ScanFilter filter, List<ScanHit> hits) {
+        ScanSession session = new ScanSession(tempDir.toFile());
+        session.setFilter(filter);
+        session.setHitListener(hits::add);
+        session.run();
+        return session;
+    }
+
+    /**
+     * Возвращает пути найденных файлов относительно временной директории.
+     *
+     * @param hits Найденные файлы.
+     * @return Множество относительных путей с разделителем {@code /}.
+     */
+    private Set<String> relative(List<ScanHit> hits) {
+        return hits.stream()
+                .map(hit -> tempDir.relativize(hit.path()).toString().replace('\\', '/'))
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Тестирует, что исключенные директории не читаются, а исключенные и не включенные файлы не открываются.
+     *
+     * @throws IOException Если возникает ошибка при создании файлов.
+     */
+    @Test
+    void testExcludeAndInclude() throws IOException {
+        executable(tempDir.resolve("app.exe"), 2);
+        executable(tempDir.resolve("image.iso"), 2);
+        executable(tempDir.resolve("lib.dll"), 2);
+        executable(tempDir.resolve("node_modules/pkg/a.exe"), 2);
+        executable(tempDir.resolve(".git/objects/b.exe"), 2);
+        executable(tempDir.resolve("build/tmp/c.exe"), 2);
+        executable(tempDir.resolve("build/out/d.exe"), 2);
+
+        ScanFilter filter = new ScanFilter();
+        filter.addExclude("node_modules");
+        filter.addExclude(".git");
+        filter.addExclude("*.iso");
+        filter.addExclude("build/tmp");
+        filter.addInclude("*.exe");
+        List<ScanHit> hits = new CopyOnWriteArrayList<>();
+        ScanSession session = scan(filter, hits);
+
+        assertEquals(Set.of("app.exe", "build/out/d.exe"), relative(hits));
+        ScanMetrics metrics = session.getMetrics();
+        // Прочитаны корень, build и build/out; исключенные поддеревья не листаются
+        assertEquals(3, metrics.getDirectories());
+        assertEquals(2, metrics.getFiles());
+        // image.iso, lib.dll, node_modules, .git и build/tmp
+        assertEquals(5, metrics.getSkipped());
+    }
+
+    /**
+     * Тестирует ограничения размера файлов и глубины обхода.
+     *
+     * @throws IOException Если возникает ошибка при создании файлов.
+     */
+    @Test
+    void testSizeAndDepth() throws IOException {
+        executable(tempDir.resolve("small.exe"), 2);
+        executable(tempDir.resolve("medium.exe"), 2048);
+        executable(tempDir.resolve("large.exe"), 8192);
+        executable(tempDir.resolve("a/medium.exe"), 2048);
+        executable(tempDir.resolve("a/b/medium.exe"), 2048);
+
+        ScanFilter filter = new ScanFilter();
+        filter.setMinSize(ScanFilter.parseSize("1K"));
+        filter.setMaxSize(4096);
+        filter.setMaxDepth(2);
+        List<ScanHit> hits = new CopyOnWriteArrayList<>();
+        scan(filter, hits);
+
+        assertEquals(Set.of("medium.exe", "a/medium.exe"), relative(hits));
+    }
+
+    /**
+     * Тестирует разбор размеров и отклонение некорректных правил.
+     */
+    @Test
+    void testParseSizeAndValidation() {
+        assertEquals(512, ScanFilter.parseSize("512"));
+        assertEquals(64 * 1024, ScanFilter.parseSize("64k"));
+        assertEquals(2L << 30, ScanFilter.parseSize("2G"));
+        assertThrows(IllegalArgumentException.class, () -> ScanFilter.parseSize("-1"));
+        assertThrows(IllegalArgumentException.class, () -> ScanFilter.parseSize("1T"));
+
+        ScanFilter filter = new ScanFilter();
+        assertTrue(filter.isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> filter.addExclude(" "));
+        assertThrows(IllegalArgumentException.class, () -> filter.addExclude("[a"));
+        assertThrows(IllegalArgumentException.class, () -> filter.setMaxDepth(0));
+        filter.setOneFileSystem(true);
+        assertFalse(filter.isEmpty());
+    }
+}
@@ -0,0 +1,180 @@
+package project.signature;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тестовый класс для {@link ScanIndex}.
+ * Проверяет сохранение индекса на диск, проверку актуальности записей и сброс при смене набора сигнатур.
+ */
+class ScanIndexTest {
+
+    /**
+     * Временная директория, создаваемая JUnit Jupiter перед каждым тестовым методом.
+     */
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Сбрасывает статическое состояние {@link DirScanner} перед каждым тестом.
+     */
+    @BeforeEach
+    void setUp() {
+        DirScanner.resetToZeroCnt();
+        DirScanner.getMetadata().clear();
+    }
+
+    /**
+     * Отключает индекс после каждого теста, чтобы он не влиял на другие тесты.
+     */
+    @AfterEach
+    void tearDown() {
+        DirScanner.setIndex(null);
+    }
+
+    /**
+     * Возвращает атрибуты файла.
+     *
+     * @param path Путь к файлу.
+     * @return Атрибуты файла.
+     * @throws IOException Если возникает ошибка при чтении атрибутов.
+     */
+    private static BasicFileAttributes attributes(Path path) throws IOException {
+        return Files.readAttributes(path, BasicFileAttributes.class);
+    }
+
+    /**
+     * Возвращает полные пути файлов из метаданных (время доступа в метаданных меняется при чтении файла).
+     *
+     * @param metadata Метаданные найденных файлов.
+     * @return Строки с полными путями.
+     */
+    private static List<String> paths(List<String> metadata) {
+        return metadata.stream().map(info -> info.lines()
+                .filter(line -> line.startsWith("Полный путь")).findFirst().orElse("")).toList();
+    }
+
+    /**
+     * Тестирует, что индекс после сохранения и загрузки возвращает записи о неизмененных файлах
+     * и не возвращает запись об измененном файле.
+     *
+     * @throws IOException Если возникает ошибка при работе с временными файлами.
+     */
+    @Test
+    void testSaveAndLoad() throws IOException {
+        Path exe = Files.write(tempDir.resolve("a.exe"), new byte[]{'M', 'Z'});
+        Path txt = Files.write(tempDir.resolve("b.txt"), new byte[]{'t'});
+        Path indexFile = tempDir.resolve("index").resolve("scan-index.bin");
+
+        ScanIndex index = ScanIndex.load(indexFile, "v1");
+        index.record(exe, attributes(exe), ScanHit.of(exe, attributes(exe), List.of("exe"), List.of()));
+        index.record(txt, attributes(txt), null);
+        index.save();
+
+        ScanIndex loaded = ScanIndex.load(indexFile, "v1");
+        assertEquals(2, loaded.size());
+        assertTrue(loaded.lookup(exe, attributes(exe)).hit());
+        assertEquals(List.of("exe"), loaded.lookup(exe, attributes(exe)).types());
+        assertFalse(loaded.lookup(txt, attributes(txt)).hit());
+
+        Files.write(txt, new byte[]{'t', 'x'});
+        assertNull(loaded.lookup(txt, attributes(txt)));
+        Files.setLastModifiedTime(exe, FileTime.fromMillis(attributes(exe).lastModifiedTime().toMillis() + 5000));
+        assertNull(loaded.lookup(exe, attributes(exe)));
+    }
+
+    /**
+     * Тестирует, что индекс, сохраненный для другой версии набора сигнатур, загружается пустым
+     * и что {@link ScanIndex#revalidate(String)} сбрасывает записи при смене версии.
+     *
+     * @throws IOException Если возникает ошибка при работе с временными файлами.
+     */
+    @Test
+    void testVersionChange() throws IOException {
+        Path exe = Files.write(tempDir.resolve("a.exe"), new byte[]{'M', 'Z'});
+        Path indexFile = tempDir.resolve("scan-index.bin");
+        ScanIndex index = ScanIndex.load(indexFile, "v1");
+        index.record(exe, attributes(exe), ScanHit.of(exe, attributes(exe), List.of("exe"), List.of()));
+        index.save();
+
+        assertEquals(0, ScanIndex.load(indexFile, "v2").size());
+
+        ScanIndex loaded = ScanIndex.load(indexFile, "v1");
+        loaded.revalidate("v1");
+        assertEquals(1, loaded.size());
+        loaded.revalidate("v2");
+        assertEquals(0, loaded.size());
+        assertEquals("v2", loaded.getVersion());
+    }
+
+    /**
+     * Тестирует повторное сканирование директории с индексом: результат совпадает с первым сканированием,
+     * а записи об удаленных файлах удаляются из индекса.
+     *
+     * @throws IOException Если возникает ошибка при работе с временными файлами.
+     */
+    @Test
+    void testRescanWithIndex() throws IOException {
+        Path root = Files.createDirectories(tempDir.resolve("root"));
+        Files.write(root.resolve("a.exe"), new byte[]{'M', 'Z'});
+        Path removed = Files.write(root.resolve("b.exe"), new byte[]{'M', 'Z'});
+        Files.write(root.resolve("c.txt"), new byte[]{'t'});
+
+        ScanIndex index = ScanIndex.load(tempDir.resolve("scan-index.bin"), ScanIndex.currentVersion());
+        DirScanner.setIndex(index);
+        DirScanner.analyzeDirectory(root.toFile());
+        index.prune(root);
+        List<String> first = paths(DirScanner.getMetadata());
+        assertEquals(2, DirScanner.getCnt());
+        assertEquals(3, index.size());
+
+        DirScanner.resetToZeroCnt();
+        DirScanner.getMetadata().clear();
+        DirScanner.analyzeDirectory(root.toFile());
+        index.prune(root);
+        assertEquals(first, paths(DirScanner.getMetadata()));
+        assertEquals(2, DirScanner.getCnt());
+
+        Files.delete(removed);
+        DirScanner.analyzeDirectory(root.toFile());
+        index.prune(root);
+        assertEquals(2, index.size());
+    }
+
+    /**
+     * Тестирует индекс в памяти: при переполнении вытесняется запись, к которой дольше всего
+     * не обращались, а удаление записей о непосещенных файлах не поддерживается.
+     *
+     * @throws IOException Если возникает ошибка при работе с временными файлами.
+     */
+    @Test
+    void testInMemoryCapacity() throws IOException {
+        Path a = Files.write(tempDir.resolve("a.exe"), new byte[]{'M', 'Z'});
+        Path b = Files.write(tempDir.resolve("b.exe"), new byte[]{'M', 'Z'});
+        Path c = Files.write(tempDir.resolve("c.txt"), new byte[]{'t'});
+        ScanIndex index = ScanIndex.inMemory("v1", 2);
+
+        index.record(a, attributes(a), null);
+        index.record(b, attributes(b), null);
+        assertNotNull(index.lookup(a, attributes(a)));
+        index.record(c, attributes(c), null);
+        assertEquals(2, index.size());
+        assertNotNull(index.lookup(a, attributes(a)));
+        assertNull(index.lookup(b, attributes(b)));
+        assertNotNull(index.lookup(c, attributes(c)));
+
+        assertThrows(IllegalStateException.class, () -> index.prune(tempDir));
+        assertThrows(IllegalArgumentException.class, () -> ScanIndex.inMemory("v1", 0));
+    }
+}
@@ -0,0 +1,168 @@
+package project.signature;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тестовый класс для {@link ScanJournal}.
+ * Проверяет продолжение прерванного сканирования без повторного чтения проверенных директорий,
+ * восстановление после неполной последней записи и проверку корневой директории журнала.
+ */
+class ScanJournalTest {
+
+    /**
+     * Временная директория, создаваемая JUnit Jupiter перед каждым тестовым методом.
+     */
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Создает дерево директорий с исполняемыми и обычными файлами.
+     *
+     * @param root Корневая директория.
+     * @throws IOException Если возникает ошибка при создании файлов.
+     */
+    private static void createTree(Path root) throws IOException {
+        for (int i = 0; i < 120; i++) {
+            Path dir = Files.createDirectories(root.resolve("d" + (i % 6)).resolve("s" + (i % 4)));
+            Files.write(dir.resolve("f" + i + ".exe"), new byte[]{'M', 'Z', 1});
+            Files.write(dir.resolve("f" + i + ".txt"), new byte[]{'t', 'x', 't'});
+        }
+    }
+
+    /**
+     * Сканирует директорию с журналом, отменяя сканирование после заданного количества найденных файлов.
+     *
+     * @param root        Корневая директория.
+     * @param journalFile Файл журнала.
+     * @param resume      Признак продолжения прерванного сканирования.
+     * @param parallelism Количество потоков.
+     * @param stopAfter   Количество найденных файлов до отмены; 0 — без отмены.
+     * @param hits        Найденные файлы.
+     * @return Итоги сканирования.
+     * @throws IOException Если журнал не удалось открыть.
+     */
+    private static ScanSummary scan(Path root, Path journalFile, boolean resume, int parallelism, int stopAfter,
+                                    List<ScanHit> hits) throws IOException {
+        try (ScanJournal journal = ScanJournal.open(journalFile, root, resume)) {
+            journal.setCheckpointInterval(0);
+            ScanSession session = new ScanSession(root.toFile());
+            session.setParallelism(parallelism);
+            session.setJournal(journal);
+            AtomicInteger count = new AtomicInteger();
+            session.setHitListener(hit -> {
+                hits.add(hit);
+                if (count.incrementAndGet() == stopAfter) {
+                    session.cancel();
+                }
+            });
+            return session.run();
+        }
+    }
+
+    /**
+     * Возвращает пути найденных файлов.
+     *
+     * @param hits Найденные файлы.
+     * @return Множество путей.
+     */
+    private static Set<Path> paths(List<ScanHit> hits) {
+        return hits.stream().map(ScanHit::path).collect(Collectors.toSet());
+    }
+
+    /**
+     * Тестирует, что продолженное сканирование находит все файлы ровно один раз, восстанавливает
+     * счетчики, читает меньше данных, чем полное, и удаляет журнал после окончания.
+     *
+     * @throws IOException Если возникает ошибка при работе с файлами.
+     */
+    @Test
+    void testInterruptAndResume() throws IOException {
+        Path root = tempDir.resolve("root");
+        createTree(root);
+        ScanSummary full = new ScanSession(root.toFile()).run();
+
+        for (int parallelism : new int[]{1, 4}) {
+            Path journalFile = tempDir.resolve("scan" + parallelism + ".journal");
+            List<ScanHit> first = new CopyOnWriteArrayList<>();
+            ScanSummary interrupted = scan(root, journalFile, false, parallelism, 70, first);
+            assertEquals(ScanStatus.CANCELLED, interrupted.status());
+            assertTrue(Files.exists(journalFile));
+
+            List<ScanHit> resumed = new CopyOnWriteArrayList<>();
+            ScanSummary summary = scan(root, journalFile, true, parallelism, 0, resumed);
+            assertEquals(ScanStatus.OK, summary.status());
+            assertEquals(120, resumed.size());
+            assertEquals(120, paths(resumed).size());
+            assertTrue(paths(resumed).containsAll(paths(first)));
+            assertEquals(120, summary.hits());
+            assertEquals(full.directories(), summary.directories());
+            assertEquals(full.files(), summary.files());
+            assertTrue(summary.bytesRead() < full.bytesRead(),
+                    "Resumed scan read " + summary.bytesRead() + " of " + full.bytesRead() + " bytes");
+            assertFalse(Files.exists(journalFile));
+        }
+    }
+
+    /**
+     * Тестирует продолжение по журналу, последняя запись которого оборвана сбоем.
+     *
+     * @throws IOException Если возникает ошибка при работе с файлами.
+     */
+    @Test
+    void testTruncatedJournal() throws IOException {
+        Path root = tempDir.resolve("root");
+        createTree(root);
+        Path journalFile = tempDir.resolve("scan.journal");
+        scan(root, journalFile, false, 1, 100, new CopyOnWriteArrayList<>());
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+
+        List<ScanHit> hits = new CopyOnWriteArrayList<>();
+        ScanSummary summary = scan(root, journalFile, true, 1, 0, hits);
+        assertEquals(ScanStatus.OK, summary.status());
+        Set<Path> expected = new HashSet<>();
+        try (var files = Files.walk(root)) {
+            files.filter(path -> path.toString().endsWith(".exe")).forEach(expected::add);
+        }
+        assertEquals(expected, paths(hits));
+        assertEquals(120, hits.size());
+    }
+
+    /**
+     * Тестирует, что журнал другой директории не продолжается, а без продолжения перезаписывается.
+     *
+     * @throws IOException Если возникает ошибка при работе с файлами.
+     */
+    @Test
+    void testAnotherRoot() throws IOException {
+        Path root = Files.createDirectories(tempDir.resolve("root"));
+        Path other = Files.createDirectories(tempDir.resolve("other"));
+        Path journalFile = tempDir.resolve("scan.journal");
+        ScanJournal.open(journalFile, root, false).close();
+
+        assertThrows(IOException.class, () -> ScanJournal.open(journalFile, other, true));
+        try (ScanJournal journal = ScanJournal.open(journalFile, other, false)) {
+            assertFalse(journal.isResumed());
+            assertEquals(0, journal.getRestoredHits());
+        }
+        try (ScanJournal journal = ScanJournal.open(journalFile, root, false)) {
+            assertThrows(IllegalArgumentException.class, () -> journal.setCheckpointInterval(-1));
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package project.signature;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тестовый класс для {@link ScanMetrics} и {@link LatencyHistogram}.
+ * Проверяет точность перцентилей гистограммы и публикацию показателей сканирования через JMX.
+ */
+class ScanMetricsTest {
+
+    /**
+     * Временная директория, создаваемая JUnit Jupiter перед каждым тестовым методом.
+     */
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Проверяет, что перцентили гистограммы отличаются от точных не более чем на размер корзины.
+     */
+    @Test
+    void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long i = 1; i <= 10_000; i++) {
+            histogram.record(i * 1000);
+        }
+
+        assertEquals(10_000, histogram.getCount());
+        assertEquals(5_000_500, histogram.getMean());
+        assertEquals(10_000_000, histogram.getMax());
+        long p50 = histogram.getPercentile(50);
+        long p99 = histogram.getPercentile(99);
+        assertTrue(p50 >= 5_000_000 && p50 <= 5_000_000 * 1.125, "p50 = " + p50);
+        assertTrue(p99 >= 9_900_000 && p99 <= 10_000_000, "p99 = " + p99);
+        assertEquals(0, new LatencyHistogram().getPercentile(99));
+    }
+
+    /**
+     * Проверяет, что каждое значение попадает в корзину, верхняя граница которой не меньше значения.
+     */
+    @Test
+    void testBucketBounds() {
+        long[] values = {0, 1, 7, 8, 9, 15, 16, 1000, 123_456_789, Long.MAX_VALUE};
+        for (long value : values) {
+            int bucket = LatencyHistogram.bucket(value);
+            assertTrue(LatencyHistogram.upperBound(bucket) >= value, "value " + value);
+            if (bucket > 0) {
+                assertTrue(LatencyHistogram.upperBound(bucket - 1) < value, "value " + value);
+            }
+        }
+    }
+
+    /**
+     * Проверяет, что показатели сессии доступны через JMX во время сканирования,
+     * совпадают с итогами и удаляются из JMX по его окончании.
+     *
+     * @throws Exception Если возникает ошибка при создании файлов или обращении к JMX.
+     */
+    @Test
+    void testSessionMetricsPublishedThroughJmx() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            Path dir = Files.createDirectories(tempDir.resolve("d" + i));
+            Files.write(dir.resolve("a.exe"), new byte[]{'M', 'Z'});
+            Files.write(dir.resolve("b.txt"), new byte[]{'t', 'x', 't'});
+        }
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ScanSession session = new ScanSession(tempDir.toFile());
+        session.setIndex(ScanIndex.load(tempDir.resolve("index.bin"), "v"));
+        AtomicReference<ObjectName> name = new AtomicReference<>();
+        AtomicReference<Object> root = new AtomicReference<>();
+        session.setHitListener(hit -> {
+            ObjectName current = session.getMetrics().getObjectName();
+            if (current != null && name.compareAndSet(null, current)) {
+                try {
+                    root.set(server.getAttribute(current, "Root"));
+                } catch (Exception e) {
+                    root.set(e);
+                }
+            }
+        });
+
+        ScanSummary summary = session.run();
+
+        assertNotNull(name.get());
+        assertEquals(tempDir.toFile().getAbsolutePath(), root.get());
+        assertFalse(server.isRegistered(name.get()));
+
+        ScanMetrics metrics = session.getMetrics();
+        assertEquals(4, summary.directories());
+        assertEquals(summary.directories(), metrics.getDirectoryListing().getCount());
+        assertEquals(6, metrics.getHeaderRead().getCount());
+        // Атрибуты читаются один раз для каждого элемента при обходе: 3 директории и 6 файлов
+        assertEquals(9, metrics.getAttributeRead().getCount());
+        assertEquals(0, metrics.getDeepScan().getCount());
+        assertEquals(summary.bytesRead(), metrics.getBytesRead());
+    }
+
+    /**
+     * Проверяет, что снимок гистограммы преобразуется в открытый тип JMX.
+     *
+     * @throws Exception Если возникает ошибка при обращении к JMX.
+     */
+    @Test
+    void testSnapshotIsCompositeData() throws Exception {
+        ScanMetrics metrics = new ScanMetrics("root");
+        metrics.directoryListed(System.nanoTime() - 2_000);
+        metrics.register();
+        try {
+            Object value = ManagementFactory.getPlatformMBeanServer()
+                    .getAttribute(metrics.getObjectName(), "DirectoryListing");
+            assertTrue(value instanceof CompositeData);
+            assertEquals(1L, ((CompositeData) value).get("count"));
+        } finally {
+            metrics.unregister();
+        }
+    }
+}
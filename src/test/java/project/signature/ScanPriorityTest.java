@@ -0,0 +1,233 @@
+package project.signature;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тестовый класс для {@link ScanPriority} и сканирования с очередностью и ограничением времени.
+ * Проверяет вычисление приоритета, порядок обхода, остановку по истечении времени и отчет о полноте.
+ */
+class ScanPriorityTest {
+
+    /**
+     * Временная директория, создаваемая JUnit Jupiter перед каждым тестовым методом.
+     */
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Создает дерево: директория загрузок с поддиректорией и обычные директории,
+     * по одному исполняемому файлу в каждой.
+     *
+     * @param root Корневая директория.
+     * @throws IOException Если возникает ошибка при создании файлов.
+     */
+    private static void createTree(Path root) throws IOException {
+        Path downloads = Files.createDirectories(root.resolve("Downloads").resolve("setup"));
+        Files.write(downloads.resolve("installer.exe"), new byte[]{'M', 'Z', 1});
+        Files.write(downloads.getParent().resolve("tool.exe"), new byte[]{'M', 'Z', 2});
+        for (int i = 0; i < 10; i++) {
+            Path dir = Files.createDirectories(root.resolve("d" + i));
+            Files.write(dir.resolve("f" + i + ".exe"), new byte[]{'M', 'Z', 3});
+            Files.writeString(dir.resolve("notes.txt"), "text");
+        }
+    }
+
+    /**
+     * Возвращает имена файлов.
+     *
+     * @param hits Найденные файлы.
+     * @return Имена файлов в порядке публикации.
+     */
+    private static List<String> names(List<ScanHit> hits) {
+        return hits.stream().map(hit -> hit.path().getFileName().toString()).collect(Collectors.toList());
+    }
+
+    /**
+     * Тестирует приоритет: вес шаблона распространяется на поддиректории, недавнее изменение
+     * добавляет вес, глубина уменьшает приоритет.
+     *
+     * @throws IOException Если возникает ошибка при работе с файлами.
+     */
+    @Test
+    void testRank() throws IOException {
+        Path root = tempDir;
+        Path temp = Files.createDirectories(root.resolve("Temp").resolve("inner"));
+        Path old = Files.createDirectories(root.resolve("old"));
+        Files.setLastModifiedTime(old, FileTime.from(Instant.now().minus(Duration.ofDays(30))));
+        Files.setLastModifiedTime(temp, FileTime.from(Instant.now().minus(Duration.ofDays(30))));
+
+        ScanPriority priority = new ScanPriority();
+        priority.addPattern("Temp", 100);
+        priority.addPattern("build/**", -40);
+        priority.setRecent(Duration.ofDays(7), 50);
+        priority.setDepthPenalty(5);
+        ScanPriority.Compiled rules = priority.compile(root);
+        assertEquals(List.of("Temp", "build/**", "modified within 7d"), rules.ruleNames());
+
+        ScanPriority.Rank rootRank = rules.rank(root, attributes(root), 0, null);
+        ScanPriority.Rank tempRank = rules.rank(temp.getParent(), attributes(temp.getParent()), 1, rootRank);
+        assertEquals(100 + 50 - 5, tempRank.score());
+        assertEquals(0b101, tempRank.rules());
+        ScanPriority.Rank innerRank = rules.rank(temp, attributes(temp), 2, tempRank);
+        assertEquals(100 - 10, innerRank.score());
+        assertEquals(0b001, innerRank.rules());
+        assertEquals(-5, rules.rank(old, attributes(old), 1, rootRank).score());
+        assertEquals(-40 + 50 - 10, rules.rank(root.resolve("build").resolve("x"), attributes(root), 2, rootRank)
+                .score());
+
+        assertThrows(IllegalArgumentException.class, () -> priority.addPattern(" ", 1));
+        assertThrows(IllegalArgumentException.class, () -> priority.setDepthPenalty(-1));
+    }
+
+    /**
+     * Читает атрибуты.
+     *
+     * @param path Путь.
+     * @return Атрибуты.
+     * @throws IOException Если атрибуты не удалось прочитать.
+     */
+    private static BasicFileAttributes attributes(Path path) throws IOException {
+        return Files.readAttributes(path, BasicFileAttributes.class);
+    }
+
+    /**
+     * Тестирует разбор длительности.
+     */
+    @Test
+    void testParseDuration() {
+        assertEquals(Duration.ofSeconds(90), ScanPriority.parseDuration("90"));
+        assertEquals(Duration.ofSeconds(45), ScanPriority.parseDuration("45s"));
+        assertEquals(Duration.ofMinutes(15), ScanPriority.parseDuration("15m"));
+        assertEquals(Duration.ofHours(2), ScanPriority.parseDuration("2H"));
+        assertEquals(Duration.ofDays(7), ScanPriority.parseDuration("7d"));
+        assertEquals("7d", ScanPriority.format(Duration.ofDays(7)));
+        assertEquals("90s", ScanPriority.format(Duration.ofSeconds(90)));
+        for (String invalid : new String[]{"", "0", "-5m", "1w", "m"}) {
+            assertThrows(IllegalArgumentException.class, () -> ScanPriority.parseDuration(invalid), invalid);
+        }
+    }
+
+    /**
+     * Тестирует, что директории с наибольшим приоритетом обходятся первыми, а полный обход
+     * с очередностью находит те же файлы, что и обычный, при разном количестве потоков.
+     *
+     * @throws IOException Если возникает ошибка при работе с файлами.
+     */
+    @Test
+    void testPriorityOrder() throws IOException {
+        Path root = Files.createDirectories(tempDir.resolve("root"));
+        createTree(root);
+
+        ScanSession plain = new ScanSession(root.toFile());
+        List<ScanHit> expected = new CopyOnWriteArrayList<>();
+        plain.setHitListener(expected::add);
+        plain.run();
+        assertNull(plain.getCoverage());
+
+        for (int parallelism : new int[]{1, 4}) {
+            ScanSession session = new ScanSession(root.toFile());
+            session.setParallelism(parallelism);
+            session.setPriority(ScanPriority.defaults());
+            List<ScanHit> hits = new CopyOnWriteArrayList<>();
+            session.setHitListener(hits::add);
+            ScanSummary summary = session.run();
+
+            assertEquals(ScanStatus.OK, summary.status());
+            assertEquals(Set.copyOf(names(expected)), Set.copyOf(names(hits)));
+            if (parallelism == 1) {
+                // Загрузки и их поддиректория обходятся раньше остальных директорий
+                assertEquals(List.of("tool.exe", "installer.exe"), names(hits).subList(0, 2));
+            }
+            ScanCoverage coverage = session.getCoverage();
+            assertTrue(coverage.complete());
+            assertEquals(0, coverage.budgetMillis());
+            assertEquals(13, coverage.directoriesScanned());
+            assertEquals(0, coverage.directoriesPending());
+            assertTrue(coverage.pendingPaths().isEmpty());
+            ScanCoverage.Rule downloads = coverage.rules().get(1);
+            assertEquals(new ScanCoverage.Rule("{Downloads,downloads,Загрузки}", 2, 0), downloads);
+        }
+    }
+
+    /**
+     * Тестирует остановку по истечении времени: найденные до остановки файлы опубликованы,
+     * состояние {@link ScanStatus#TIME_LIMIT}, непроверенные директории перечислены в отчете.
+     *
+     * @throws IOException Если возникает ошибка при работе с файлами.
+     */
+    @Test
+    void testTimeBudget() throws IOException {
+        Path root = Files.createDirectories(tempDir.resolve("root"));
+        createTree(root);
+
+        for (int parallelism : new int[]{1, 2}) {
+            ScanSession session = new ScanSession(root.toFile());
+            session.setParallelism(parallelism);
+            session.setTimeBudget(Duration.ofMillis(200));
+            List<ScanHit> hits = new CopyOnWriteArrayList<>();
+            session.setHitListener(hit -> {
+                hits.add(hit);
+                try {
+                    // Обработка первого найденного файла занимает больше отведенного времени
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            ScanSummary summary = session.run();
+
+            assertEquals(ScanStatus.TIME_LIMIT, summary.status());
+            assertFalse(hits.isEmpty());
+            assertTrue(names(hits).contains("tool.exe"), names(hits).toString());
+            assertTrue(hits.size() <= parallelism, names(hits).toString());
+            ScanCoverage coverage = session.getCoverage();
+            assertFalse(coverage.complete());
+            assertEquals(200, coverage.budgetMillis());
+            assertTrue(coverage.directoriesPending() > 0);
+            assertEquals(13, coverage.directoriesScanned() + coverage.directoriesPending());
+            List<String> pending = new ArrayList<>();
+            coverage.pendingPaths().forEach(path -> pending.add(root.relativize(path).toString()));
+            assertTrue(pending.stream().anyMatch(path -> path.startsWith("d")), pending.toString());
+            assertTrue(coverage.describe().startsWith("coverage: partial, time budget 200 ms"));
+        }
+    }
+
+    /**
+     * Тестирует, что ограничение времени не отменяет уже закончившееся сканирование и что
+     * ограничение должно быть положительным.
+     *
+     * @throws IOException Если возникает ошибка при работе с файлами.
+     */
+    @Test
+    void testBudgetNotExceeded() throws IOException {
+        Path root = Files.createDirectories(tempDir.resolve("root"));
+        createTree(root);
+        ScanSession session = new ScanSession(root.toFile());
+        session.setParallelism(2);
+        session.setTimeBudget(Duration.ofMinutes(1));
+        ScanSummary summary = session.run();
+        assertEquals(ScanStatus.OK, summary.status());
+        assertEquals(12, summary.hits());
+        assertTrue(session.getCoverage().complete());
+        assertEquals(60_000, session.getCoverage().budgetMillis());
+
+        ScanSession invalid = new ScanSession(root.toFile());
+        assertThrows(IllegalArgumentException.class, () -> invalid.setTimeBudget(Duration.ZERO));
+    }
+}
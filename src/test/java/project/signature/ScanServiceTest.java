@@ -0,0 +1,373 @@
+package project.signature;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тестовый класс для {@link ScanService}.
+ * Проверяет одновременное выполнение заданий, передачу найденных файлов клиенту, общий кэш результатов,
+ * очередь, отмену заданий, проверку доступа и ответы на некорректные запросы.
+ */
+class ScanServiceTest {
+
+    /**
+     * Токен доступа к службе в тестах.
+     */
+    private static final String TOKEN = "test-token";
+
+    /**
+     * Временная директория, создаваемая JUnit Jupiter перед каждым тестовым методом.
+     */
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Ответ службы.
+     *
+     * @param code  Код ответа.
+     * @param job   Номер задания из заголовка или {@code null}.
+     * @param lines Строки тела ответа.
+     */
+    private record Response(int code, String job, List<String> lines) {
+
+        /**
+         * Возвращает строки с найденными файлами.
+         *
+         * @return Строки без итогов.
+         */
+        List<String> hits() {
+            return lines.stream().filter(line -> line.startsWith("{\"path\":")).toList();
+        }
+
+        /**
+         * Возвращает строку итогов.
+         *
+         * @return Последняя строка ответа.
+         */
+        String summary() {
+            return lines.get(lines.size() - 1);
+        }
+    }
+
+    /**
+     * Выполняет запрос к службе с токеном {@link #TOKEN}.
+     *
+     * @param port   Порт службы.
+     * @param method Метод запроса.
+     * @param path   Путь с параметрами.
+     * @return Ответ службы.
+     */
+    private static Response request(int port, String method, String path) {
+        return request(port, method, path, TOKEN);
+    }
+
+    /**
+     * Выполняет запрос к службе.
+     *
+     * @param port   Порт службы.
+     * @param method Метод запроса.
+     * @param path   Путь с параметрами.
+     * @param token  Токен доступа или {@code null}, если запрос отправляется без него.
+     * @return Ответ службы.
+     */
+    private static Response request(int port, String method, String path, String token) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + port + path)
+                    .openConnection();
+            connection.setRequestMethod(method);
+            if (token != null) {
+                connection.setRequestProperty("Authorization", "Bearer " + token);
+            }
+            connection.setReadTimeout(30_000);
+            int code = connection.getResponseCode();
+            List<String> lines = new ArrayList<>();
+            InputStream body = code < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (body != null) {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+                    reader.lines().forEach(lines::add);
+                }
+            }
+            return new Response(code, connection.getHeaderField(ScanService.JOB_HEADER), lines);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Отправляет задание сканирования.
+     *
+     * @param port Порт службы.
+     * @param root Директория.
+     * @return Ответ службы.
+     */
+    private static Response scan(int port, Path root) {
+        return request(port, "POST", "/scan?root=" + URLEncoder.encode(root.toString(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Создает директорию с исполняемыми файлами.
+     *
+     * @param name  Имя директории.
+     * @param files Имена исполняемых файлов.
+     * @return Директория.
+     * @throws IOException Если возникает ошибка при создании файлов.
+     */
+    private Path createRoot(String name, String... files) throws IOException {
+        Path root = Files.createDirectories(tempDir.resolve(name));
+        for (String file : files) {
+            Files.write(root.resolve(file), new byte[]{'M', 'Z', 0, 1});
+        }
+        Files.writeString(root.resolve("notes.txt"), "plain text");
+        return root;
+    }
+
+    /**
+     * Тестирует одновременное выполнение заданий для разных директорий: каждый клиент получает
+     * только свои найденные файлы и итоги, а повторное задание берет результаты из общего индекса.
+     *
+     * @throws Exception Если возникает ошибка при работе с файлами или ожидании.
+     */
+    @Test
+    void testConcurrentJobsShareIndex() throws Exception {
+        Path first = createRoot("first", "a1.exe", "a2.exe", "a3.exe");
+        Path second = createRoot("second", "b1.exe", "b2.exe");
+        CountDownLatch bothRunning = new CountDownLatch(2);
+        Set<Path> roots = ConcurrentHashMap.newKeySet();
+        AtomicBoolean concurrent = new AtomicBoolean(true);
+
+        try (ScanService service = new ScanService()) {
+            service.setToken(TOKEN);
+            service.setMaxJobs(2);
+            service.setThreadsPerJob(1);
+            service.setHitListener(hit -> {
+                if (roots.add(hit.path().getParent())) {
+                    // Первый найденный файл каждого задания ожидает, пока начнется второе задание
+                    bothRunning.countDown();
+                    try {
+                        if (!bothRunning.await(10, TimeUnit.SECONDS)) {
+                            concurrent.set(false);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            int port = service.start();
+
+            CompletableFuture<Response> firstScan = CompletableFuture.supplyAsync(() -> scan(port, first));
+            CompletableFuture<Response> secondScan = CompletableFuture.supplyAsync(() -> scan(port, second));
+            Response firstResponse = firstScan.get(30, TimeUnit.SECONDS);
+            Response secondResponse = secondScan.get(30, TimeUnit.SECONDS);
+            assertTrue(concurrent.get());
+
+            assertEquals(200, firstResponse.code());
+            assertEquals(200, secondResponse.code());
+            assertNotEquals(firstResponse.job(), secondResponse.job());
+            assertEquals(3, firstResponse.hits().size());
+            assertEquals(2, secondResponse.hits().size());
+            for (String hit : firstResponse.hits()) {
+                assertTrue(hit.contains("first"), hit);
+            }
+            for (String hit : secondResponse.hits()) {
+                assertTrue(hit.contains("second"), hit);
+            }
+            assertTrue(firstResponse.summary().startsWith("{\"summary\":{\"job\":" + firstResponse.job()));
+            assertTrue(firstResponse.summary().contains("\"status\":\"OK\""), firstResponse.summary());
+            assertTrue(firstResponse.summary().contains("\"hits\":3"), firstResponse.summary());
+            assertTrue(secondResponse.summary().contains("\"hits\":2"), secondResponse.summary());
+            assertEquals(7, service.getIndex().size());
+
+            // Повторное задание берет результаты из индекса и не читает файлы
+            Response repeated = scan(port, first);
+            assertEquals(3, repeated.hits().size());
+            assertTrue(repeated.summary().contains("\"status\":\"OK\""), repeated.summary());
+            assertTrue(repeated.summary().contains("\"bytesRead\":0"), repeated.summary());
+            assertEquals(0, service.getJobCount());
+            assertThrows(IllegalStateException.class, () -> service.getIndex().save());
+        }
+    }
+
+    /**
+     * Тестирует очередь и отмену: при занятом пуле задание ожидает, при переполненной очереди
+     * отклоняется, ожидающее и выполняющееся задания отменяются по запросу.
+     *
+     * @throws Exception Если возникает ошибка при работе с файлами или ожидании.
+     */
+    @Test
+    void testQueueAndCancel() throws Exception {
+        Path slow = createRoot("slow", "slow.exe");
+        Path other = createRoot("other", "other.exe");
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ScanService service = new ScanService()) {
+            service.setToken(TOKEN);
+            service.setMaxJobs(1);
+            service.setQueueLimit(1);
+            service.setThreadsPerJob(1);
+            service.setHitListener(hit -> {
+                if (hit.path().endsWith("slow.exe")) {
+                    entered.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            int port = service.start();
+
+            CompletableFuture<Response> running = CompletableFuture.supplyAsync(() -> scan(port, slow));
+            assertTrue(entered.await(10, TimeUnit.SECONDS));
+            CompletableFuture<Response> queued = CompletableFuture.supplyAsync(() -> scan(port, other));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (service.getJobCount() < 2 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            Response jobs = request(port, "GET", "/jobs");
+            assertEquals(200, jobs.code());
+            assertTrue(jobs.lines().get(0).contains("{\"id\":1,"), jobs.lines().toString());
+            assertTrue(jobs.lines().get(0).contains("\"state\":\"RUNNING\""), jobs.lines().toString());
+            assertTrue(jobs.lines().get(0).contains("\"state\":\"QUEUED\""), jobs.lines().toString());
+
+            assertEquals(503, scan(port, other).code());
+
+            assertEquals(204, request(port, "DELETE", "/jobs/2").code());
+            Response cancelled = queued.get(10, TimeUnit.SECONDS);
+            assertEquals("2", cancelled.job());
+            assertTrue(cancelled.hits().isEmpty());
+            assertTrue(cancelled.summary().contains("\"status\":\"CANCELLED\""), cancelled.summary());
+
+            assertEquals(204, request(port, "DELETE", "/jobs/1").code());
+            release.countDown();
+            Response stopped = running.get(10, TimeUnit.SECONDS);
+            assertEquals(1, stopped.hits().size());
+            assertTrue(stopped.summary().contains("\"status\":\"CANCELLED\""), stopped.summary());
+
+            assertEquals(404, request(port, "DELETE", "/jobs/1").code());
+            assertEquals(List.of("{\"jobs\":[]}"), request(port, "GET", "/jobs").lines());
+        }
+    }
+
+    /**
+     * Тестирует, что ошибка {@link Error} в задании завершает ответ сообщением об ошибке,
+     * а не оставляет клиента ожидать итогов.
+     *
+     * @throws Exception Если возникает ошибка при работе с файлами или ожидании.
+     */
+    @Test
+    void testJobError() throws Exception {
+        Path root = createRoot("broken", "broken.exe");
+        try (ScanService service = new ScanService()) {
+            service.setToken(TOKEN);
+            service.setThreadsPerJob(1);
+            service.setHitListener(hit -> {
+                throw new AssertionError("listener failed");
+            });
+            int port = service.start();
+
+            Response response = CompletableFuture.supplyAsync(() -> scan(port, root)).get(30, TimeUnit.SECONDS);
+            assertEquals(200, response.code());
+            assertTrue(response.summary().startsWith("{\"error\":"), response.summary());
+            assertEquals(0, service.getJobCount());
+        }
+    }
+
+    /**
+     * Тестирует ответы на некорректные запросы.
+     *
+     * @throws IOException Если возникает ошибка при запуске службы.
+     */
+    @Test
+    void testInvalidRequests() throws IOException {
+        try (ScanService service = new ScanService()) {
+            service.setToken(TOKEN);
+            int port = service.start();
+            assertEquals(400, request(port, "POST", "/scan").code());
+            assertEquals(400, scan(port, tempDir.resolve("missing")).code());
+            assertEquals(400, request(port, "POST", "/scan?root=" + URLEncoder.encode(tempDir.toString(),
+                    StandardCharsets.UTF_8) + "&verify=maybe").code());
+            assertEquals(400, request(port, "POST", "/scan?root=x&depth=1").code());
+            assertEquals(405, request(port, "GET", "/scan?root=x").code());
+            assertEquals(405, request(port, "POST", "/jobs").code());
+            assertEquals(404, request(port, "DELETE", "/jobs/abc").code());
+            assertThrows(IllegalStateException.class, service::start);
+        }
+        assertThrows(IllegalArgumentException.class, () -> ScanService.parseQuery("a=1&a=2"));
+    }
+
+    /**
+     * Тестирует проверку доступа: запросы без токена или с неверным токеном, а также запросы
+     * с нелокальным адресом в заголовке {@code Host} отклоняются; токен создается при запуске.
+     *
+     * @throws IOException Если возникает ошибка при запуске службы или подключении.
+     */
+    @Test
+    void testAccessControl() throws IOException {
+        try (ScanService service = new ScanService()) {
+            int port = service.start();
+            String token = service.getToken();
+            assertNotNull(token);
+            assertEquals(401, request(port, "GET", "/jobs", null).code());
+            assertEquals(401, request(port, "GET", "/jobs", TOKEN).code());
+            assertEquals(401, request(port, "POST", "/scan?root=x", token + "x").code());
+            assertEquals(200, request(port, "GET", "/jobs", token).code());
+
+            assertEquals(200, status(port, "localhost:" + port, token));
+            assertEquals(200, status(port, "[::1]:" + port, token));
+            assertEquals(403, status(port, "attacker.example:" + port, token));
+            assertEquals(403, status(port, "10.0.0.1", token));
+            assertEquals(403, status(port, null, token));
+        }
+        assertThrows(IllegalArgumentException.class, () -> new ScanService().setToken(""));
+    }
+
+    /**
+     * Отправляет запрос списка заданий с заданным заголовком {@code Host} (HttpURLConnection
+     * не позволяет его изменить) и возвращает код ответа.
+     *
+     * @param port  Порт службы.
+     * @param host  Значение заголовка {@code Host} или {@code null}, если заголовок не отправляется.
+     * @param token Токен доступа.
+     * @return Код ответа.
+     * @throws IOException Если возникает ошибка при подключении.
+     */
+    private static int status(int port, String host, String token) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setSoTimeout(30_000);
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET /jobs HTTP/1.1\r\n" + (host == null ? "" : "Host: " + host + "\r\n")
+                    + "Authorization: Bearer " + token + "\r\nConnection: close\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                    StandardCharsets.US_ASCII));
+            return Integer.parseInt(reader.readLine().split(" ")[1]);
+        }
+    }
+}
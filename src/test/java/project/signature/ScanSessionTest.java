@@ -0,0 +1,393 @@
+package project.signature;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тестовый класс для {@link ScanSession}.
+ * Проверяет публикацию найденных файлов подписчикам, одновременную работу нескольких сессий, отмену,
+ * повторное использование атрибутов, прочитанных при обходе, и обработку циклов и жестких ссылок.
+ */
+class ScanSessionTest {
+
+    /**
+     * Временная директория, создаваемая JUnit Jupiter перед каждым тестовым методом.
+     */
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Создает дерево директорий с исполняемыми и обычными файлами.
+     *
+     * @param root        Корневая директория.
+     * @param executables Количество исполняемых файлов.
+     * @throws IOException Если возникает ошибка при создании файлов.
+     */
+    private static void createTree(Path root, int executables) throws IOException {
+        for (int i = 0; i < executables; i++) {
+            Path dir = Files.createDirectories(root.resolve("d" + (i % 5)).resolve("s" + (i % 3)));
+            Files.write(dir.resolve("f" + i + ".exe"), new byte[]{'M', 'Z', 1});
+            Files.write(dir.resolve("f" + i + ".txt"), new byte[]{'t', 'x', 't'});
+        }
+    }
+
+    /**
+     * Подписчик, запрашивающий найденные файлы по одному.
+     */
+    private static final class CollectingSubscriber implements Flow.Subscriber<ScanHit> {
+        private final List<ScanHit> received = new CopyOnWriteArrayList<>();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(ScanHit item) {
+            received.add(item);
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            done.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            done.countDown();
+        }
+    }
+
+    /**
+     * Тестирует, что подписчик с буфером на один элемент получает все найденные файлы
+     * и что итоги сессии совпадают с количеством полученных файлов.
+     *
+     * @throws Exception Если возникает ошибка при создании файлов или ожидании подписчика.
+     */
+    @Test
+    void testSubscribe_ReceivesAllHits() throws Exception {
+        createTree(tempDir, 40);
+        ScanSession session = new ScanSession(tempDir.toFile());
+        session.setParallelism(4);
+        session.setBufferSize(1);
+        CollectingSubscriber subscriber = new CollectingSubscriber();
+        session.subscribe(subscriber);
+
+        ScanSummary summary = session.run();
+
+        assertTrue(subscriber.done.await(10, TimeUnit.SECONDS));
+        assertEquals(ScanStatus.OK, summary.status());
+        assertEquals(40, summary.hits());
+        assertEquals(80, summary.files());
+        assertEquals(40, subscriber.received.size());
+        assertTrue(subscriber.received.stream().allMatch(hit -> hit.types().equals(List.of("exe"))));
+    }
+
+    /**
+     * Тестирует одновременное выполнение двух сессий по разным директориям.
+     *
+     * @throws Exception Если возникает ошибка при создании файлов или ожидании сессий.
+     */
+    @Test
+    void testConcurrentSessions() throws Exception {
+        Path first = Files.createDirectories(tempDir.resolve("first"));
+        Path second = Files.createDirectories(tempDir.resolve("second"));
+        createTree(first, 10);
+        createTree(second, 25);
+
+        Set<Path> firstHits = ConcurrentHashMap.newKeySet();
+        Set<Path> secondHits = ConcurrentHashMap.newKeySet();
+        ScanSession a = new ScanSession(first.toFile());
+        a.setHitListener(hit -> firstHits.add(hit.path()));
+        ScanSession b = new ScanSession(second.toFile());
+        b.setParallelism(2);
+        b.setHitListener(hit -> secondHits.add(hit.path()));
+
+        CompletableFuture<ScanSummary> futureA = a.start();
+        CompletableFuture<ScanSummary> futureB = b.start();
+
+        assertEquals(10, futureA.get(10, TimeUnit.SECONDS).hits());
+        assertEquals(25, futureB.get(10, TimeUnit.SECONDS).hits());
+        assertTrue(firstHits.stream().allMatch(path -> path.startsWith(first)));
+        assertEquals(25, secondHits.stream().filter(path -> path.startsWith(second)).collect(Collectors.toSet()).size());
+    }
+
+    /**
+     * Тестирует отмену сессии и запрет повторного запуска.
+     *
+     * @throws IOException Если возникает ошибка при создании файлов.
+     */
+    @Test
+    void testCancelAndRestart() throws IOException {
+        createTree(tempDir, 20);
+        ScanSession session = new ScanSession(tempDir.toFile());
+        session.setHitListener(hit -> session.cancel());
+
+        ScanSummary summary = session.run();
+
+        assertEquals(ScanStatus.CANCELLED, summary.status());
+        assertTrue(summary.hits() < 20);
+        assertThrows(IllegalStateException.class, session::run);
+        assertThrows(IllegalStateException.class, () -> session.setParallelism(2));
+    }
+
+    /**
+     * Тестирует, что ошибка в обработчике найденных файлов завершает результат запуска в отдельном потоке.
+     *
+     * @throws Exception Если возникает ошибка при создании файлов или ожидании сессии.
+     */
+    @Test
+    void testStartCompletesOnError() throws Exception {
+        createTree(tempDir, 1);
+        ScanSession session = new ScanSession(tempDir.toFile());
+        session.setHitListener(hit -> {
+            throw new AssertionError("listener failed");
+        });
+
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> session.start().get(10, TimeUnit.SECONDS));
+        assertInstanceOf(AssertionError.class, error.getCause());
+    }
+
+    /**
+     * Тестирует итоговое состояние для пустой и некорректной директории.
+     */
+    @Test
+    void testStatus_EmptyAndIncorrectDirectory() {
+        assertEquals(ScanStatus.EMPTY, new ScanSession(tempDir.toFile()).run().status());
+        assertEquals(ScanStatus.INVALID_DIRECTORY, new ScanSession(null).run().status());
+    }
+
+    /**
+     * Тестирует, что атрибуты файлов читаются один раз при обходе и переиспользуются
+     * в записи о найденном файле, а даты в записи совпадают с датами файла.
+     *
+     * @throws IOException Если возникает ошибка при создании файлов.
+     */
+    @Test
+    void testHitReusesTraversalAttributes() throws IOException {
+        createTree(tempDir, 6);
+        Path executable = tempDir.resolve("d0").resolve("s0").resolve("f0.exe");
+        FileTime modified = FileTime.fromMillis(1_600_000_000_123L);
+        Files.setLastModifiedTime(executable, modified);
+
+        List<ScanHit> hits = new CopyOnWriteArrayList<>();
+        ScanSession session = new ScanSession(tempDir.toFile());
+        session.setHitListener(hits::add);
+        ScanSummary summary = session.run();
+
+        assertEquals(6, hits.size());
+        long entries = summary.files() + summary.directories() - 1;
+        assertEquals(entries, session.getMetrics().getAttributeRead().getCount());
+        ScanHit hit = hits.stream().filter(h -> h.path().equals(executable)).findFirst().orElseThrow();
+        assertEquals(modified, hit.lastModifiedTime());
+        assertEquals(3, hit.size());
+        assertTrue(hit.describe().contains("Дата последнего изменения -> " + modified));
+    }
+
+    /**
+     * Создает дерево с жесткими ссылками на исполняемый файл, символической ссылкой на него,
+     * циклом из символической ссылки на корень и ссылкой на соседнюю директорию.
+     *
+     * @return Путь к исполняемому файлу.
+     * @throws IOException Если возникает ошибка при создании файлов.
+     */
+    private Path createLinkedTree() throws IOException {
+        Path a = Files.createDirectories(tempDir.resolve("a"));
+        Path b = Files.createDirectories(tempDir.resolve("b"));
+        Path app = Files.write(a.resolve("app.exe"), new byte[]{'M', 'Z', 1});
+        Files.createLink(a.resolve("hard.exe"), app);
+        Files.createLink(b.resolve("hard2.exe"), app);
+        Files.createSymbolicLink(a.resolve("loop"), tempDir);
+        Files.createSymbolicLink(b.resolve("up"), a);
+        Files.createSymbolicLink(tempDir.resolve("c.exe"), app);
+        return app;
+    }
+
+    /**
+     * Сканирует временную директорию с заданным правилом обработки ссылок.
+     *
+     * @param policy      Правило обработки ссылок.
+     * @param parallelism Количество рабочих потоков.
+     * @param hits        Получатель найденных файлов.
+     * @return Сессия после завершения сканирования.
+     */
+    private ScanSession scanLinks(SymlinkPolicy policy, int parallelism, List<ScanHit> hits) {
+        ScanSession session = new ScanSession(tempDir.toFile());
+        session.setSymlinkPolicy(policy);
+        session.setParallelism(parallelism);
+        session.setHitListener(hits::add);
+        assertEquals(ScanStatus.OK, session.run().status());
+        return session;
+    }
+
+    /**
+     * Тестирует, что цикл из символических ссылок не приводит к бесконечному обходу,
+     * а файл с несколькими путями читается один раз и публикуется для каждого пути.
+     *
+     * @throws IOException Если возникает ошибка при создании файлов.
+     */
+    @Test
+    void testLoopsAndHardLinks() throws IOException {
+        createLinkedTree();
+        Set<Path> expected = Set.of(tempDir.resolve("a/app.exe"), tempDir.resolve("a/hard.exe"),
+                tempDir.resolve("b/hard2.exe"), tempDir.resolve("c.exe"));
+        for (int parallelism : new int[]{1, 4}) {
+            List<ScanHit> hits = new CopyOnWriteArrayList<>();
+            ScanMetrics metrics = scanLinks(SymlinkPolicy.FOLLOW, parallelism, hits).getMetrics();
+
+            assertEquals(expected, hits.stream().map(ScanHit::path).collect(Collectors.toSet()));
+            List<ScanHit> read = hits.stream().filter(hit -> hit.aliasOf() == null).collect(Collectors.toList());
+            assertEquals(1, read.size());
+            for (ScanHit hit : hits) {
+                if (hit != read.get(0)) {
+                    assertEquals(read.get(0).path(), hit.aliasOf());
+                }
+                assertEquals(hit.path().endsWith("c.exe"), hit.symbolicLink());
+            }
+            assertEquals(1, metrics.getFiles());
+            assertEquals(3, metrics.getDirectories());
+            // Три пути к файлу, цикл a/loop и b/up
+            assertEquals(5, metrics.getAliases());
+        }
+    }
+
+    /**
+     * Тестирует, что другие пути к файлу без совпадений отбрасываются по окончании его проверки,
+     * а не хранятся до конца обхода.
+     *
+     * @throws IOException Если возникает ошибка при создании файлов.
+     */
+    @Test
+    void testAliasesOfMissesAreDropped() throws IOException {
+        Path note = Files.writeString(tempDir.resolve("note.txt"), "plain text");
+        for (int i = 0; i < 3; i++) {
+            Files.createLink(tempDir.resolve("link" + i + ".txt"), note);
+        }
+        Path sub = Files.createDirectories(tempDir.resolve("sub"));
+        Files.write(sub.resolve("app.exe"), new byte[]{'M', 'Z', 1});
+
+        List<Long> pending = new CopyOnWriteArrayList<>();
+        ScanSession session = new ScanSession(tempDir.toFile());
+        session.setParallelism(1);
+        session.setHitListener(hit -> pending.add(session.getPendingAliases()));
+        assertEquals(1, session.run().hits());
+
+        assertEquals(List.of(0L), pending);
+        assertEquals(2, session.getMetrics().getFiles());
+        assertEquals(3, session.getMetrics().getAliases());
+    }
+
+    /**
+     * Тестирует предел запомненных путей к файлу: пути сверх предела множества посещенных
+     * читаются заново, остальные публикуются без повторного чтения.
+     *
+     * @throws IOException Если возникает ошибка при создании файлов.
+     */
+    @Test
+    void testAliasLimit() throws IOException {
+        Path app = Files.write(tempDir.resolve("app.exe"), new byte[]{'M', 'Z', 1});
+        for (int i = 0; i < 6; i++) {
+            Files.createLink(tempDir.resolve("hard" + i + ".exe"), app);
+        }
+
+        List<ScanHit> hits = new CopyOnWriteArrayList<>();
+        ScanSession session = new ScanSession(tempDir.toFile());
+        session.setParallelism(1);
+        session.setVisitedLimit(4);
+        session.setHitListener(hits::add);
+        assertEquals(ScanStatus.OK, session.run().status());
+
+        assertEquals(7, hits.size());
+        assertEquals(3, hits.stream().filter(hit -> hit.aliasOf() == null).count());
+        assertEquals(3, session.getMetrics().getFiles());
+        assertEquals(4, session.getMetrics().getAliases());
+        assertEquals(0, session.getPendingAliases());
+    }
+
+    /**
+     * Тестирует, что найденные файлы с одной жесткой ссылкой не запоминаются до конца обхода,
+     * а символическая ссылка на такой файл, встреченная после его проверки, читается заново.
+     *
+     * @throws IOException Если возникает ошибка при создании файлов.
+     */
+    @Test
+    void testSingleLinkHitsAreNotRetained() throws IOException {
+        Path single = Files.write(tempDir.resolve("single.exe"), new byte[]{'M', 'Z', 2});
+        Path a = Files.createDirectories(tempDir.resolve("a"));
+        Path app = Files.write(a.resolve("app.exe"), new byte[]{'M', 'Z', 1});
+        Files.createLink(a.resolve("hard.exe"), app);
+        Path link = Files.createSymbolicLink(Files.createDirectories(tempDir.resolve("c")).resolve("link.exe"), single);
+
+        Map<Path, Integer> retained = new ConcurrentHashMap<>();
+        List<ScanHit> hits = new CopyOnWriteArrayList<>();
+        ScanSession session = new ScanSession(tempDir.toFile());
+        session.setParallelism(1);
+        session.setHitListener(hit -> {
+            hits.add(hit);
+            retained.put(hit.path(), session.getRetainedHits());
+        });
+        assertEquals(ScanStatus.OK, session.run().status());
+
+        assertEquals(4, hits.size());
+        assertEquals(1, hits.stream().filter(hit -> hit.aliasOf() != null).count());
+        assertEquals(0, retained.get(single));
+        assertTrue(hits.stream().anyMatch(hit -> hit.path().equals(link) && hit.aliasOf() == null));
+        assertEquals(0, session.getRetainedHits());
+    }
+
+    /**
+     * Тестирует правила обработки символических ссылок и обход без множества посещенных,
+     * при котором циклы обнаруживаются сравнением с предками.
+     *
+     * @throws IOException Если возникает ошибка при создании файлов.
+     */
+    @Test
+    void testSymlinkPolicies() throws IOException {
+        createLinkedTree();
+
+        List<ScanHit> hits = new CopyOnWriteArrayList<>();
+        ScanSession session = scanLinks(SymlinkPolicy.FILES, 1, hits);
+        assertEquals(4, hits.size());
+        assertEquals(2, session.getMetrics().getSkipped());
+
+        hits.clear();
+        session = scanLinks(SymlinkPolicy.NEVER, 1, hits);
+        assertEquals(Set.of(tempDir.resolve("a/app.exe"), tempDir.resolve("a/hard.exe"),
+                tempDir.resolve("b/hard2.exe")), hits.stream().map(ScanHit::path).collect(Collectors.toSet()));
+        assertEquals(3, session.getMetrics().getSkipped());
+
+        hits.clear();
+        session = new ScanSession(tempDir.toFile());
+        session.setVisitedLimit(0);
+        session.setHitListener(hits::add);
+        session.run();
+        // Директория a обходится дважды (через b/up), циклы через a/loop обрываются
+        assertEquals(6, hits.size());
+        assertTrue(hits.stream().allMatch(hit -> hit.aliasOf() == null));
+        assertEquals(6, session.getMetrics().getFiles());
+        assertEquals(4, session.getMetrics().getDirectories());
+    }
+}
@@ -0,0 +1,76 @@
+package project.signature;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тестовый класс для {@link SignatureMatcher}.
+ * Проверяет сопоставление сигнатур разной длины и с разными смещениями.
+ */
+class SignatureMatcherTest {
+
+    /**
+     * Набор сигнатур, используемый в тестах.
+     */
+    private final SignatureMatcher matcher = SignatureMatcher.compile(
+            Map.of("exe", "4D5A", "zip", "504B0304", "elf", "7F454C46", "tar", "7573746172", "pk", "504B"),
+            Map.of("tar", 257));
+
+    /**
+     * Возвращает названия сигнатур, совпавших с заголовком.
+     *
+     * @param header Заголовок файла.
+     * @return Множество названий сигнатур.
+     */
+    private Set<String> match(byte[] header) {
+        int[] ids = new int[8];
+        int found = matcher.match(header, header.length, ids);
+        Set<String> names = new HashSet<>();
+        for (int i = 0; i < found; i++) {
+            names.add(matcher.getName(ids[i]));
+        }
+        return names;
+    }
+
+    /**
+     * Тестирует, что все сигнатуры-префиксы заголовка находятся за один вызов.
+     */
+    @Test
+    void testMatch_AllPrefixes() {
+        assertEquals(Set.of("pk", "zip"), match(new byte[]{'P', 'K', 3, 4, 0}));
+        assertEquals(Set.of("pk"), match(new byte[]{'P', 'K', 5, 6}));
+        assertEquals(Set.of("exe"), match(new byte[]{'M', 'Z'}));
+        assertEquals(Set.of("elf"), match(new byte[]{0x7F, 'E', 'L', 'F', 2}));
+        assertEquals(Set.of(), match(new byte[]{'M'}));
+        assertFalse(matcher.matches(new byte[]{'t', 'x', 't'}, 3));
+    }
+
+    /**
+     * Тестирует сигнатуру со смещением от начала файла.
+     */
+    @Test
+    void testMatch_Offset() {
+        byte[] header = new byte[matcher.getHeaderLength()];
+        byte[] ustar = "ustar".getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(ustar, 0, header, 257, ustar.length);
+        assertEquals(262, matcher.getHeaderLength());
+        assertEquals(Set.of("tar"), match(header));
+        assertTrue(matcher.matches(header, header.length));
+        assertFalse(matcher.matches(header, 260));
+    }
+
+    /**
+     * Тестирует, что некорректная сигнатура отклоняется при компиляции.
+     */
+    @Test
+    void testCompile_InvalidSignature() {
+        assertThrows(IllegalArgumentException.class, () -> SignatureMatcher.compile(Map.of("bad", "4D5"), Map.of()));
+        assertThrows(IllegalArgumentException.class, () -> SignatureMatcher.compile(Map.of("bad", "ZZ"), Map.of()));
+    }
+}
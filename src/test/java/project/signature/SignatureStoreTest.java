@@ -0,0 +1,155 @@
+package project.signature;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тестовый класс для {@link SignatureStore}, {@link FileSignatureRepository} и {@link SignatureRecord}.
+ * Проверяет текстовый формат сигнатур, массовый импорт, сохранение между запусками
+ * и обновление реестра только при изменении версии хранилища.
+ */
+class SignatureStoreTest {
+
+    /**
+     * Временная директория, создаваемая JUnit Jupiter перед каждым тестовым методом.
+     */
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Восстанавливает встроенный набор сигнатур после каждого теста.
+     */
+    @AfterEach
+    void restoreSignatures() {
+        Signature.replaceAll(List.of());
+    }
+
+    /**
+     * Хранилище, считающее загрузки сигнатур.
+     */
+    private static final class CountingRepository implements SignatureRepository {
+        private final SignatureRepository delegate;
+        private final AtomicInteger loads = new AtomicInteger();
+
+        CountingRepository(SignatureRepository delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public long getVersion() throws IOException {
+            return delegate.getVersion();
+        }
+
+        @Override
+        public List<SignatureRecord> loadAll() throws IOException {
+            loads.incrementAndGet();
+            return delegate.loadAll();
+        }
+
+        @Override
+        public long saveAll(Collection<SignatureRecord> records) throws IOException {
+            return delegate.saveAll(records);
+        }
+    }
+
+    /**
+     * Проверяет разбор и запись текстового формата, включая комментарии и смещения.
+     *
+     * @throws IOException Если возникает ошибка чтения.
+     */
+    @Test
+    void testTextFormat() throws IOException {
+        String text = """
+                # comment
+                elf=7F 45 4C 46
+
+                tar=7573746172@257
+                """;
+        List<SignatureRecord> records = SignatureRecord.readAll(new BufferedReader(new StringReader(text)));
+
+        assertEquals(List.of(new SignatureRecord("elf", "7F 45 4C 46", 0), new SignatureRecord("tar", "7573746172", 257)),
+                records);
+        assertEquals("tar=7573746172@257", records.get(1).format());
+        assertEquals(records.get(1), SignatureRecord.parse(records.get(1).format()));
+
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> SignatureRecord.readAll(new BufferedReader(new StringReader("ok=4D5A\nbad=XYZ\n"))));
+        assertTrue(error.getMessage().startsWith("Line 2:"), error.getMessage());
+    }
+
+    /**
+     * Проверяет, что добавленная сигнатура сохраняется в файл и загружается новым экземпляром
+     * хранилища (как при перезапуске приложения).
+     *
+     * @throws IOException Если возникает ошибка при работе с файлом.
+     */
+    @Test
+    void testAddedSignatureSurvivesRestart() throws IOException {
+        Path file = tempDir.resolve("signatures.txt");
+        SignatureStore store = new SignatureStore(new FileSignatureRepository(file));
+        store.refresh();
+        store.add(new SignatureRecord("elf", "7F454C46", 0));
+        assertEquals("7F454C46", Signature.getExtensions().get("elf"));
+
+        Signature.replaceAll(List.of());
+        assertNull(Signature.getExtensions().get("elf"));
+
+        SignatureStore restarted = new SignatureStore(new FileSignatureRepository(file));
+        assertTrue(restarted.refresh());
+        assertEquals("7F454C46", Signature.getExtensions().get("elf"));
+        assertEquals("4D5A", Signature.getExtensions().get("exe"));
+        assertEquals(1, restarted.getRepository().getVersion());
+    }
+
+    /**
+     * Проверяет массовый импорт нескольких тысяч сигнатур одним изменением хранилища
+     * и то, что реестр перечитывается только при изменении версии.
+     *
+     * @throws IOException Если возникает ошибка при работе с файлами.
+     */
+    @Test
+    void testBulkImportAndVersionedRefresh() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            lines.add(String.format("t%d=%08X@%d", i, i * 2654435761L & 0xFFFFFFFFL, i % 8));
+        }
+        Path source = tempDir.resolve("import.txt");
+        Files.write(source, lines, StandardCharsets.UTF_8);
+
+        FileSignatureRepository file = new FileSignatureRepository(tempDir.resolve("db.txt"));
+        CountingRepository repository = new CountingRepository(file);
+        SignatureStore store = new SignatureStore(repository);
+
+        assertEquals(5000, store.importFrom(source));
+        assertEquals(1, file.getVersion());
+        assertEquals(5000, file.loadAll().size());
+        assertEquals(5001, Signature.getExtensions().size());
+        assertEquals(3, Signature.getOffset("t3"));
+        int loads = repository.loads.get();
+
+        SignatureMatcher matcher = Signature.getMatcher();
+        assertFalse(store.refresh());
+        assertEquals(loads, repository.loads.get());
+        assertSame(matcher, Signature.getMatcher());
+
+        // Изменение другим экземпляром увеличивает версию, и снимок перечитывается
+        file.save(new SignatureRecord("pdf", "25504446", 0));
+        assertTrue(store.refresh());
+        assertEquals(loads + 1, repository.loads.get());
+        assertEquals("25504446", Signature.getExtensions().get("pdf"));
+    }
+}
@@ -22,7 +22,8 @@ class SignatureTest {
     /**
      * Тестирует метод {@link Signature#getExtensions()}.
      * Проверяет, что метод возвращает корректную коллекцию сигнатур,
-     * включая предустановленные и добавленные в процессе теста.
+     * включая предустановленные и добавленные в процессе теста, и не позволяет изменять ее в обход
+     * {@link Signature#addSignature(String, String)}.
      */
     @Test
     void testGetExtensions() {
@@ -31,6 +32,7 @@ class SignatureTest {
         assertTrue(Signature.getExtensions().containsKey("png"));
         assertEquals("4D5A", Signature.getExtensions().get("exe"));
         assertEquals("8950", Signature.getExtensions().get("png"));
+        assertThrows(UnsupportedOperationException.class, () -> Signature.getExtensions().put("png", "0000"));
     }
 
     /**
@@ -43,4 +45,25 @@ class SignatureTest {
         Signature.addSignature("png", "8951");
         assertEquals("8951", Signature.getExtensions().get("png"));
     }
-}
\ No newline at end of file
+
+    /**
+     * Тестирует метод {@link Signature#addSignature(String, String, int)}.
+     * Проверяет, что сигнатура со смещением попадает в скомпилированный набор {@link Signature#getMatcher()}.
+     */
+    @Test
+    void testAddSignature_Offset() {
+        Signature.addSignature("tar", "7573746172", 257);
+        assertEquals(257, Signature.getOffset("tar"));
+        assertTrue(Signature.getMatcher().getHeaderLength() >= 262);
+    }
+
+    /**
+     * Тестирует метод {@link Signature#addSignature(String, String)} на случай некорректной сигнатуры.
+     * Проверяет, что сигнатура, не являющаяся шестнадцатеричной строкой, не добавляется в коллекцию.
+     */
+    @Test
+    void testAddSignature_Invalid() {
+        assertThrows(IllegalArgumentException.class, () -> Signature.addSignature("bad", "XYZ1"));
+        assertFalse(Signature.getExtensions().containsKey("bad"));
+    }
+}
@@ -0,0 +1,200 @@
+package project.signature;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Тестовый класс для {@link StructureVerifier}.
+ * Проверяет разбор заголовков PE, DOS, ELF и Mach-O и двухэтапное обнаружение в {@link ScanSession}.
+ */
+class StructureVerifierTest {
+
+    /**
+     * Временная директория, создаваемая JUnit Jupiter перед каждым тестовым методом.
+     */
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Создает минимальный заголовок PE.
+     *
+     * @param sections Количество секций.
+     * @return Содержимое файла.
+     */
+    static byte[] pe(int sections) {
+        ByteBuffer buffer = ByteBuffer.allocate(512).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(0, (byte) 'M').put(1, (byte) 'Z');
+        buffer.putInt(0x3C, 0x80);
+        buffer.putInt(0x80, 0x00004550);
+        buffer.putShort(0x84, (short) 0x14C);
+        buffer.putShort(0x86, (short) sections);
+        buffer.putShort(0x94, (short) 0xE0);
+        buffer.putShort(0x98, (short) 0x10B);
+        return buffer.array();
+    }
+
+    /**
+     * Создает исполняемый файл DOS без расширенного заголовка.
+     *
+     * @return Содержимое файла.
+     */
+    private static byte[] dos() {
+        ByteBuffer buffer = ByteBuffer.allocate(600).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(0, (byte) 'M').put(1, (byte) 'Z');
+        buffer.putShort(2, (short) 88);
+        buffer.putShort(4, (short) 2);
+        buffer.putShort(8, (short) 2);
+        buffer.putShort(0x18, (short) 0x1C);
+        return buffer.array();
+    }
+
+    /**
+     * Создает минимальный заголовок ELF64.
+     *
+     * @param type Тип файла.
+     * @return Содержимое файла.
+     */
+    private static byte[] elf(int type) {
+        ByteBuffer buffer = ByteBuffer.allocate(128).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0, 0x464C457F);
+        buffer.put(4, (byte) 2).put(5, (byte) 1).put(6, (byte) 1);
+        buffer.putShort(0x10, (short) type);
+        buffer.putShort(0x12, (short) 0x3E);
+        buffer.putInt(0x14, 1);
+        buffer.putLong(0x20, 64);
+        buffer.putShort(0x34, (short) 64);
+        return buffer.array();
+    }
+
+    /**
+     * Создает минимальный заголовок Mach-O 64 с порядком байт little-endian.
+     *
+     * @param commandsSize Размер команд загрузки.
+     * @return Содержимое файла.
+     */
+    private static byte[] machO(int commandsSize) {
+        ByteBuffer buffer = ByteBuffer.allocate(128).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0, 0xFEEDFACF);
+        buffer.putInt(4, 0x01000007);
+        buffer.putInt(12, 2);
+        buffer.putInt(16, 1);
+        buffer.putInt(20, commandsSize);
+        return buffer.array();
+    }
+
+    /**
+     * Записывает файл и проверяет его структуру.
+     *
+     * @param name    Имя файла.
+     * @param content Содержимое файла.
+     * @return Результат проверки.
+     * @throws IOException Если возникает ошибка при записи или чтении файла.
+     */
+    private boolean verify(String name, byte[] content) throws IOException {
+        Path file = Files.write(tempDir.resolve(name), content);
+        return StructureVerifier.verify(file, content.length);
+    }
+
+    /**
+     * Тестирует подтверждение корректных и отклонение поврежденных заголовков.
+     *
+     * @throws IOException Если возникает ошибка при работе с файлами.
+     */
+    @Test
+    void testHeaders() throws IOException {
+        assertTrue(verify("app.exe", pe(3)));
+        assertFalse(verify("no-sections.exe", pe(0)));
+        assertTrue(verify("dos.exe", dos()));
+        assertFalse(verify("text.txt", ("MZ is not an executable, only a text that starts with two letters "
+                + "and continues for a while").getBytes(StandardCharsets.US_ASCII)));
+        assertFalse(verify("short.exe", new byte[]{'M', 'Z', 1}));
+
+        assertTrue(verify("app", elf(2)));
+        assertFalse(verify("bad-type", elf(9)));
+        assertTrue(verify("app.dylib", machO(72)));
+        assertFalse(verify("truncated.dylib", machO(4096)));
+
+        // Файл класса Java и файлы других форматов не проверяются
+        assertTrue(verify("A.class", new byte[]{(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE, 0, 0, 0, 61}));
+        assertTrue(verify("a.zip", new byte[]{'P', 'K', 3, 4, 0, 0}));
+    }
+
+    /**
+     * Тестирует двухэтапное обнаружение: найденные по сигнатуре файлы с поврежденным заголовком
+     * отклоняются пулом проверки, остальные публикуются; пакетов больше одного.
+     *
+     * @throws IOException Если возникает ошибка при создании файлов.
+     */
+    @Test
+    void testScanSessionPipeline() throws IOException {
+        byte[] text = "MZ and some text after it, long enough to fill the DOS header of a file"
+                .getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < 50; i++) {
+            Path dir = Files.createDirectories(tempDir.resolve("d" + (i % 4)));
+            Files.write(dir.resolve("app" + i + ".exe"), pe(2));
+            Files.write(dir.resolve("note" + i + ".txt"), text);
+        }
+
+        List<ScanHit> hits = new CopyOnWriteArrayList<>();
+        ScanSession session = new ScanSession(tempDir.toFile());
+        session.setParallelism(4);
+        session.setVerifyStructure(true);
+        session.setHitListener(hits::add);
+        ScanSummary summary = session.run();
+
+        assertEquals(ScanStatus.OK, summary.status());
+        assertEquals(50, summary.hits());
+        assertEquals(100, summary.files());
+        Set<String> names = hits.stream().map(hit -> hit.path().getFileName().toString()).collect(Collectors.toSet());
+        assertEquals(50, names.size());
+        assertTrue(names.stream().allMatch(name -> name.endsWith(".exe")));
+        assertEquals(50, session.getMetrics().getRejected());
+        assertEquals(100, session.getMetrics().getStructureCheck().getCount());
+    }
+
+    /**
+     * Тестирует, что отклоненный при проверке структуры файл не скрывается из индекса:
+     * повторное сканирование без проверки с тем же индексом находит его, а сканирование
+     * с проверкой снова отклоняет файл.
+     *
+     * @throws IOException Если возникает ошибка при создании файлов.
+     */
+    @Test
+    void testIndexKeepsRejectedFiles() throws IOException {
+        Files.write(tempDir.resolve("app.exe"), pe(2));
+        Files.write(tempDir.resolve("note.txt"), "MZ and some text after it, long enough to fill the DOS header"
+                .getBytes(StandardCharsets.US_ASCII));
+        ScanIndex index = ScanIndex.inMemory(ScanIndex.currentVersion(false), 16);
+
+        ScanSession verified = new ScanSession(tempDir.toFile());
+        verified.setVerifyStructure(true);
+        verified.setIndex(index);
+        assertEquals(1, verified.run().hits());
+        assertEquals(1, verified.getMetrics().getRejected());
+
+        ScanSession plain = new ScanSession(tempDir.toFile());
+        plain.setIndex(index);
+        ScanSummary summary = plain.run();
+        assertEquals(2, summary.hits());
+        assertEquals(0, plain.getMetrics().getBytesRead());
+
+        ScanSession repeated = new ScanSession(tempDir.toFile());
+        repeated.setVerifyStructure(true);
+        repeated.setIndex(index);
+        assertEquals(1, repeated.run().hits());
+        assertEquals(1, repeated.getMetrics().getRejected());
+    }
+}